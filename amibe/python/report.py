@@ -71,31 +71,22 @@ else:
 qprocFactory = QualityProcedureFactory("org.jcae.mesh.amibe.validation."+options.crit)
 qproc = qprocFactory.buildQualityProcedure()
 mtb = qproc.getMeshTraitsBuilder()
-if options.verboseMesh:
-	if not  mtb.hasNodes():
-		mtb.addNodeList()
-	ttb = mtb.getTriangleTraitsBuilder()
-	if not ttb.hasHalfEdge() and not ttb.hasVirtualHalfEdge():
-		ttb.addHalfEdge()
-
 mesh = Mesh(mtb);
 MeshReader.readObject3D(mesh, xmlDir)
 # Compute mesh quality
 if options.verboseMesh:
-	nrVertices = 0
-	nrNMVertices = 0
+	# Topology is read into a CompactMesh, so that the mesh used for
+	# quality computations does not need adjacency relations
+	compact = MeshReader.readCompactObject3D(xmlDir)
+	nrTriangles = compact.getNumberOfTriangles()
 	nrEdges = 0
 	nrNMEdges = 0
 	nrFreeEdges = 0
-	nrTriangles = 0
-	ot = None
-	for t in mesh.getTriangles():
-		if not t.isWritable():
-			continue
-		ot = t.getAbstractHalfEdge(ot)
-		nrTriangles += 1
+	ot = compact.getCursor(0)
+	for t in xrange(nrTriangles):
+		ot.bind(t)
 		for i in range(3):
-			ot = ot.next()
+			ot.next()
 			nrEdges += 1
 			if ot.hasAttributes(AbstractHalfEdge.BOUNDARY):
 				nrFreeEdges += 1
@@ -104,12 +95,16 @@ if options.verboseMesh:
 				nrNMEdges += 1
 	nrEdges /= 2
 
-	for v in mesh.getNodes():
-		if not v.isWritable():
+	nrVertices = 0
+	nrNMVertices = 0
+	manifold = compact.computeManifoldVertices()
+	for v in xrange(compact.getNumberOfVertices()):
+		if compact.getIncidentCursor(v, ot) is None:
 			continue
 		nrVertices += 1
-		if not v.isManifold():
+		if not manifold[v]:
 			nrNMVertices += 1
+	compact = None
 	print("Number of triangles: "+str(nrTriangles))
 	print("Total number of edges: "+str(nrEdges))
 	if nrFreeEdges > 0:
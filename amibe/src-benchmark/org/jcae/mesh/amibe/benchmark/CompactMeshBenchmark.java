@@ -0,0 +1,111 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.benchmark;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.jcae.mesh.amibe.ds.CompactMesh;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link CompactMesh} against {@link Mesh}.  Traversal benchmarks
+ * visit all edges around all vertices.  Build benchmarks create a mesh with
+ * adjacency relations from the same torus; heap footprint can be compared
+ * with the <code>gc.alloc.rate.norm</code> metric of <code>-prof gc</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactMeshBenchmark
+{
+	@Param({"10000", "100000", "1000000"})
+	public int triangles;
+
+	private Mesh mesh;
+	private CompactMesh compact;
+
+	@Setup
+	public void createMesh()
+	{
+		mesh = MeshGenerator.createTorus(triangles, true);
+		compact = CompactMesh.createFromMesh(mesh);
+	}
+
+	@Benchmark
+	public long traverseMesh()
+	{
+		long ret = 0L;
+		for (Vertex v : mesh.getNodes())
+		{
+			for (Iterator<Vertex> it = v.getNeighbourIteratorVertex(); it.hasNext(); it.next())
+				ret++;
+		}
+		return ret;
+	}
+
+	@Benchmark
+	public long traverseCompactMesh()
+	{
+		long ret = 0L;
+		CompactMesh.Cursor ot = null;
+		for (int v = 0, n = compact.getNumberOfVertices(); v < n; v++)
+		{
+			ot = compact.getIncidentCursor(v, ot);
+			int d = ot.destination();
+			do
+			{
+				ot.nextOriginLoop();
+				ret++;
+			}
+			while (ot.destination() != d);
+		}
+		return ret;
+	}
+
+	@Benchmark
+	public Mesh buildMesh()
+	{
+		return MeshGenerator.createTorus(triangles, true);
+	}
+
+	@Benchmark
+	public CompactMesh buildCompactMesh()
+	{
+		CompactMesh ret = MeshGenerator.createCompactTorus(triangles);
+		ret.buildAdjacency();
+		return ret;
+	}
+}
@@ -0,0 +1,152 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of local mesh modifications: edge swap, edge split and
+ * edge collapse.  Each benchmark method restores the original connectivity,
+ * so that the same mesh can be used by all invocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EdgeOperationsBenchmark
+{
+	private static final int EDGES = 256;
+
+	@Param({"10000", "100000", "1000000", "10000000"})
+	public int triangles;
+
+	private Mesh mesh;
+	private final AbstractHalfEdge [] edges = new AbstractHalfEdge[EDGES];
+	private final Vertex [] middle = new Vertex[EDGES];
+
+	@Setup
+	public void createMesh()
+	{
+		mesh = MeshGenerator.createTorus(triangles, true);
+		ArrayList<Triangle> list = new ArrayList<Triangle>(mesh.getTriangles());
+		Random rand = new Random(triangles);
+		// Edges must not share any vertex, otherwise modifying an edge
+		// could remove triangles bound to another one
+		HashSet<Vertex> used = new HashSet<Vertex>();
+		int nr = 0;
+		while (nr < EDGES)
+		{
+			Triangle t = list.get(rand.nextInt(list.size()));
+			AbstractHalfEdge e = t.getAbstractHalfEdge();
+			for (int j = rand.nextInt(3); j > 0; j--)
+				e = e.next();
+			Vertex [] quad = new Vertex[] { e.origin(), e.destination(), e.apex(), e.sym().apex() };
+			boolean free = true;
+			for (Vertex v : quad)
+				free &= !used.contains(v);
+			if (!free)
+				continue;
+			for (Vertex v : quad)
+				used.add(v);
+			edges[nr] = e;
+			middle[nr] = mesh.createVertex(0.0, 0.0, 0.0);
+			nr++;
+		}
+	}
+
+	private static AbstractHalfEdge findEdge(AbstractHalfEdge e, Vertex v1, Vertex v2)
+	{
+		for (int i = 0; i < 3; i++)
+		{
+			if ((e.origin() == v1 && e.destination() == v2) || (e.origin() == v2 && e.destination() == v1))
+				return e;
+			e = e.next();
+		}
+		e = e.sym();
+		for (int i = 0; i < 3; i++)
+		{
+			if ((e.origin() == v1 && e.destination() == v2) || (e.origin() == v2 && e.destination() == v1))
+				return e;
+			e = e.next();
+		}
+		throw new IllegalStateException();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(2 * EDGES)
+	public void swap()
+	{
+		for (int i = 0; i < EDGES; i++)
+		{
+			AbstractHalfEdge e = edges[i];
+			Vertex o = e.origin();
+			Vertex d = e.destination();
+			Vertex a = e.apex();
+			Vertex b = e.sym().apex();
+			// Swap edge twice to restore original connectivity
+			AbstractHalfEdge f = findEdge(mesh.edgeSwap(e), a, b);
+			edges[i] = findEdge(mesh.edgeSwap(f), o, d);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(2 * EDGES)
+	public void splitCollapse()
+	{
+		for (int i = 0; i < EDGES; i++)
+		{
+			AbstractHalfEdge e = edges[i];
+			Vertex o = e.origin();
+			Vertex d = e.destination();
+			double [] p0 = o.getUV();
+			double [] p1 = d.getUV();
+			middle[i].moveTo(0.5*(p0[0]+p1[0]), 0.5*(p0[1]+p1[1]), 0.5*(p0[2]+p1[2]));
+			// Split edge, then collapse the new edge to restore
+			// original connectivity
+			AbstractHalfEdge f = mesh.vertexSplit(e, middle[i]);
+			f = findEdge(f, o, middle[i]);
+			if (f.origin() != o)
+				f = f.sym();
+			edges[i] = findEdge(mesh.edgeCollapse(f, o), o, d);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+package org.jcae.mesh.amibe.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.xmldata.Amibe2UNV;
+import org.jcae.mesh.xmldata.MeshExporter;
+import org.jcae.mesh.xmldata.MeshWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of mesh exporters.  A torus is written into an Amibe
+ * directory, which is then exported into UNV, MESH, STL and VTK files
+ * with a given number of threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ExporterBenchmark
+{
+	@Param({"100000", "1000000", "10000000"})
+	public int triangles;
+
+	@Param({"1", "4"})
+	public int threads;
+
+	private File dir;
+	private File out;
+
+	@Setup
+	public void createMesh() throws IOException
+	{
+		Mesh mesh = MeshGenerator.createTorus(triangles, false);
+		dir = File.createTempFile("amibe", ".dir");
+		if (!dir.delete() || !dir.mkdir())
+			throw new IOException("Cannot create directory "+dir);
+		MeshWriter.writeObject3D(mesh, dir.getPath(), null);
+		out = File.createTempFile("amibe", ".out");
+	}
+
+	@TearDown
+	public void deleteMesh()
+	{
+		delete(dir);
+		delete(out);
+	}
+
+	private static void delete(File f)
+	{
+		File [] children = f.listFiles();
+		if (children != null)
+		{
+			for (File c : children)
+				delete(c);
+		}
+		if (!f.delete())
+			f.deleteOnExit();
+	}
+
+	private File export(MeshExporter exporter)
+	{
+		exporter.setNumberOfThreads(threads);
+		exporter.write(out.getPath());
+		return out;
+	}
+
+	@Benchmark
+	public File unv()
+	{
+		return export(new MeshExporter.UNV(dir.getPath()));
+	}
+
+	@Benchmark
+	public File mesh()
+	{
+		return export(new MeshExporter.MESH(dir.getPath()));
+	}
+
+	@Benchmark
+	public File stl()
+	{
+		return export(new MeshExporter.STL(dir.getPath()));
+	}
+
+	@Benchmark
+	public File vtk()
+	{
+		return export(new MeshExporter.VTK(dir.getPath()));
+	}
+
+	@Benchmark
+	public File amibe2UNV() throws Exception
+	{
+		Amibe2UNV a = new Amibe2UNV(dir);
+		a.setNumberOfThreads(threads);
+		a.write(out.getPath());
+		return out;
+	}
+}
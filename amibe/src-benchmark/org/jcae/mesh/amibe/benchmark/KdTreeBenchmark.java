@@ -0,0 +1,143 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.jcae.mesh.amibe.metrics.EuclidianMetric3D;
+import org.jcae.mesh.amibe.metrics.KdTree;
+import org.jcae.mesh.amibe.metrics.Metric;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link KdTree} queries on mesh vertices.  Query points are
+ * random points in the bounding box of the mesh.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KdTreeBenchmark
+{
+	private static final int QUERIES = 1024;
+	private static final int K = 8;
+
+	@Param({"10000", "100000", "1000000", "10000000"})
+	public int triangles;
+
+	private KdTree<Vertex> kdTree;
+	private final Metric metric = new EuclidianMetric3D();
+	private final double [][] queries = new double[QUERIES][3];
+	private KdTree<Vertex>.SearchBuffer buffer;
+	private final Vertex [] nearest = new Vertex[K];
+	private final Vertex [] result = new Vertex[1024];
+	private final double [] dist2 = new double[1024];
+	private double radius2;
+
+	@Setup
+	public void createKdTree()
+	{
+		Mesh mesh = MeshGenerator.createTorus(triangles, false);
+		double [] bbox = new double[6];
+		for (int i = 0; i < 3; i++)
+		{
+			bbox[i] = Double.MAX_VALUE;
+			bbox[i+3] = - Double.MAX_VALUE;
+		}
+		for (Vertex v : mesh.getNodes())
+		{
+			double [] xyz = v.getUV();
+			for (int i = 0; i < 3; i++)
+			{
+				bbox[i] = Math.min(bbox[i], xyz[i]);
+				bbox[i+3] = Math.max(bbox[i+3], xyz[i]);
+			}
+		}
+		kdTree = new KdTree<Vertex>(bbox);
+		for (Vertex v : mesh.getNodes())
+			kdTree.add(v);
+		buffer = kdTree.createSearchBuffer();
+		// About 2*K vertices in this radius
+		double r = MeshGenerator.getEdgeLength(triangles) * Math.sqrt(2.0 * K / Math.PI);
+		radius2 = r * r;
+		Random rand = new Random(triangles);
+		for (double [] q : queries)
+		{
+			for (int i = 0; i < 3; i++)
+				q[i] = bbox[i] + rand.nextDouble() * (bbox[i+3] - bbox[i]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public int getNearestVertex()
+	{
+		int ret = 0;
+		for (double [] q : queries)
+			ret += kdTree.getNearestVertex(metric, q).getLabel();
+		return ret;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public int getNearestVertexBuffer()
+	{
+		int ret = 0;
+		for (double [] q : queries)
+			ret += kdTree.getNearestVertex(metric, q, buffer).getLabel();
+		return ret;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public int getNearestVertices()
+	{
+		int ret = 0;
+		for (double [] q : queries)
+			ret += kdTree.getNearestVertices(metric, q, nearest, dist2, buffer);
+		return ret;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public int getVerticesInRadius()
+	{
+		int ret = 0;
+		for (double [] q : queries)
+			ret += kdTree.getVerticesInRadius(metric, q, radius2, result, dist2, buffer);
+		return ret;
+	}
+}
@@ -0,0 +1,88 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.jcae.mesh.amibe.metrics.KdTree;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link KdTree} construction on random points in a unit cube.
+ * When <code>threads</code> is 0, vertices are added one by one by
+ * {@link KdTree#add}, otherwise the tree is bulk loaded by
+ * {@link KdTree#addAll} with this number of threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class KdTreeBuildBenchmark
+{
+	private static final double [] BBOX = { 0.0, 0.0, 0.0, 1.0, 1.0, 1.0 };
+
+	@Param({"1000000", "10000000"})
+	public int points;
+
+	@Param({"0", "1", "4"})
+	public int threads;
+
+	private Vertex [] vertices;
+
+	@Setup
+	public void createVertices()
+	{
+		Mesh mesh = new Mesh(MeshTraitsBuilder.getDefault3D());
+		Random rand = new Random(points);
+		vertices = new Vertex[points];
+		for (int i = 0; i < points; i++)
+			vertices[i] = mesh.createVertex(rand.nextDouble(), rand.nextDouble(), rand.nextDouble());
+	}
+
+	@Benchmark
+	public KdTree<Vertex> build()
+	{
+		KdTree<Vertex> ret = new KdTree<Vertex>(BBOX);
+		if (threads == 0)
+		{
+			for (Vertex v : vertices)
+				ret.add(v);
+		}
+		else
+			ret.addAll(vertices, threads);
+		return ret;
+	}
+}
@@ -0,0 +1,121 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.jcae.mesh.amibe.projection.MeshLiaison;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of projections onto a background mesh with
+ * {@link MeshLiaison#move}.  <code>MeshLiaison.project</code> is not
+ * implemented, <code>move</code> is the method used by remeshing
+ * algorithms.  Vertices are moved towards a neighbour and then moved back.
+ * The <code>locate</code> benchmark measures searches which cannot be
+ * solved by walking through adjacent triangles; they either scan all
+ * triangles or query the background index, depending on
+ * <code>index</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LiaisonBenchmark
+{
+	private static final int VERTICES = 256;
+	private static final int LOOKUPS = 16;
+
+	@Param({"10000", "100000", "1000000", "10000000"})
+	public int triangles;
+
+	@Param({"false", "true"})
+	public boolean index;
+
+	private MeshLiaison liaison;
+	private final Vertex [] vertices = new Vertex[VERTICES];
+	private final double [][] origin = new double[VERTICES][];
+	private final double [][] target = new double[VERTICES][3];
+
+	@Setup
+	public void createLiaison()
+	{
+		MeshTraitsBuilder mtb = MeshTraitsBuilder.getDefault3D();
+		mtb.addNodeSet();
+		liaison = new MeshLiaison(MeshGenerator.createTorus(triangles, true), mtb);
+		if (index)
+			liaison.buildBackgroundIndex();
+		ArrayList<Vertex> list = new ArrayList<Vertex>(liaison.getMesh().getNodes());
+		for (int i = 0; i < VERTICES; i++)
+		{
+			vertices[i] = list.get((int) ((long) i * list.size() / VERTICES));
+			origin[i] = vertices[i].getUV().clone();
+			Vertex n = vertices[i].getNeighbourIteratorVertex().next();
+			double [] xyz = n.getUV();
+			for (int k = 0; k < 3; k++)
+				target[i][k] = 0.7 * origin[i][k] + 0.3 * xyz[k];
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(2 * VERTICES)
+	public int move()
+	{
+		int ret = 0;
+		for (int i = 0; i < VERTICES; i++)
+		{
+			if (liaison.move(vertices[i], target[i]))
+				ret++;
+			if (liaison.move(vertices[i], origin[i]))
+				ret++;
+		}
+		return ret;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public int locate()
+	{
+		int ret = 0;
+		for (int i = 0; i < LOOKUPS; i++)
+		{
+			// A negative error forces a global search
+			if (liaison.findSurroundingTriangle(vertices[i], vertices[VERTICES - 1 - i], -1.0, true) != null)
+				ret++;
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,137 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.benchmark;
+
+import org.jcae.mesh.amibe.ds.CompactMesh;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+
+/**
+ * Generates meshes used by benchmarks.  Meshes are regular triangulations
+ * of a torus, so that they are closed manifolds without any boundary and
+ * all vertices have the same valence.
+ */
+public final class MeshGenerator
+{
+	// Torus radii
+	static final double R = 3.0;
+	static final double r = 1.0;
+
+	private MeshGenerator()
+	{
+	}
+
+	/**
+	 * Creates a torus mesh.
+	 *
+	 * @param nrTriangles  approximate number of triangles
+	 * @param adjacency  if <code>true</code>, adjacency relations are built
+	 * @return torus mesh
+	 */
+	public static Mesh createTorus(int nrTriangles, boolean adjacency)
+	{
+		MeshTraitsBuilder mtb = MeshTraitsBuilder.getDefault3D();
+		mtb.addNodeSet();
+		Mesh mesh = new Mesh(mtb);
+		// Around the torus axis, there are 3 times more vertices than
+		// in its section
+		int nv = Math.max(3, (int) Math.sqrt(nrTriangles / 6.0));
+		int nu = Math.max(3, nrTriangles / (2 * nv));
+		Vertex [] v = new Vertex[nu * nv];
+		for (int i = 0; i < nu; i++)
+		{
+			double theta = 2.0 * Math.PI * i / nu;
+			for (int j = 0; j < nv; j++)
+			{
+				double phi = 2.0 * Math.PI * j / nv;
+				double d = R + r * Math.cos(phi);
+				v[i * nv + j] = mesh.createVertex(d * Math.cos(theta), d * Math.sin(theta), r * Math.sin(phi));
+				mesh.add(v[i * nv + j]);
+			}
+		}
+		for (int i = 0; i < nu; i++)
+		{
+			int i1 = (i + 1) % nu;
+			for (int j = 0; j < nv; j++)
+			{
+				int j1 = (j + 1) % nv;
+				Triangle t1 = mesh.createTriangle(v[i * nv + j], v[i1 * nv + j], v[i * nv + j1]);
+				Triangle t2 = mesh.createTriangle(v[i1 * nv + j], v[i1 * nv + j1], v[i * nv + j1]);
+				mesh.add(t1);
+				mesh.add(t2);
+			}
+		}
+		if (adjacency)
+			mesh.buildAdjacency();
+		return mesh;
+	}
+
+	/**
+	 * Creates a torus mesh stored into a {@link CompactMesh}.  Vertices
+	 * and triangles are the same as with {@link #createTorus}, and
+	 * adjacency relations are not built.
+	 *
+	 * @param nrTriangles  approximate number of triangles
+	 * @return torus mesh
+	 */
+	public static CompactMesh createCompactTorus(int nrTriangles)
+	{
+		int nv = Math.max(3, (int) Math.sqrt(nrTriangles / 6.0));
+		int nu = Math.max(3, nrTriangles / (2 * nv));
+		CompactMesh mesh = new CompactMesh(nu * nv, 2 * nu * nv);
+		for (int i = 0; i < nu; i++)
+		{
+			double theta = 2.0 * Math.PI * i / nu;
+			for (int j = 0; j < nv; j++)
+			{
+				double phi = 2.0 * Math.PI * j / nv;
+				double d = R + r * Math.cos(phi);
+				mesh.addVertex(d * Math.cos(theta), d * Math.sin(theta), r * Math.sin(phi));
+			}
+		}
+		for (int i = 0; i < nu; i++)
+		{
+			int i1 = (i + 1) % nu;
+			for (int j = 0; j < nv; j++)
+			{
+				int j1 = (j + 1) % nv;
+				mesh.addTriangle(i * nv + j, i1 * nv + j, i * nv + j1, 0);
+				mesh.addTriangle(i1 * nv + j, i1 * nv + j1, i * nv + j1, 0);
+			}
+		}
+		return mesh;
+	}
+
+	/**
+	 * Returns the mean edge length of a torus created by {@link #createTorus}.
+	 *
+	 * @param nrTriangles  approximate number of triangles
+	 * @return mean edge length
+	 */
+	public static double getEdgeLength(int nrTriangles)
+	{
+		double area = 4.0 * Math.PI * Math.PI * R * r;
+		// Area of an equilateral triangle is sqrt(3)/4 * l^2
+		return Math.sqrt(4.0 * area / (Math.sqrt(3.0) * nrTriangles));
+	}
+}
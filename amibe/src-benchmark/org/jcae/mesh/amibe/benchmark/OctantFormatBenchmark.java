@@ -0,0 +1,166 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+
+package org.jcae.mesh.amibe.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.oemm.Aggregate;
+import org.jcae.mesh.oemm.OEMM;
+import org.jcae.mesh.oemm.OctantFormat;
+import org.jcae.mesh.oemm.RawStorage;
+import org.jcae.mesh.oemm.Storage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of OEMM octant formats.  A torus is written into a triangle
+ * soup, which is indexed into two OEMMs, with legacy and compressed
+ * octant formats.  Benchmarks decode all octants of each OEMM with
+ * {@link OctantFormat}.  Sizes of both OEMMs are printed during setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OctantFormatBenchmark
+{
+	@Param({"100000", "1000000", "4000000"})
+	public int triangles;
+
+	private File dir;
+	private OEMM legacy;
+	private OEMM compressed;
+
+	@Setup
+	public void writeOEMM() throws IOException
+	{
+		dir = File.createTempFile("oemm", ".dir");
+		if (!dir.delete() || !dir.mkdir())
+			throw new IOException("Cannot create directory "+dir);
+		String soup = new File(dir, "soup").getPath();
+		writeSoup(MeshGenerator.createTorus(triangles, false), soup);
+		OEMM oemm = new OEMM(8);
+		if (!RawStorage.countTriangles(oemm, soup))
+			RawStorage.countTriangles(oemm, soup);
+		Aggregate.compute(oemm, 20000);
+		String structFile = new File(dir, "dispatched").getPath();
+		RawStorage.dispatch(oemm, soup, structFile, new File(dir, "dispatched.data").getPath());
+		RawStorage.indexOEMM(structFile, new File(dir, "legacy").getPath(), false);
+		RawStorage.indexOEMM(structFile, new File(dir, "compressed").getPath(), true);
+		legacy = Storage.readOEMMStructure(new File(dir, "legacy").getPath());
+		compressed = Storage.readOEMMStructure(new File(dir, "compressed").getPath());
+		long legacySize = size(new File(dir, "legacy"));
+		long compressedSize = size(new File(dir, "compressed"));
+		System.out.println("Leaves: "+legacy.getNumberOfLeaves()+"  legacy: "+legacySize+
+			" bytes  compressed: "+compressedSize+" bytes  ratio: "+((double) legacySize / compressedSize));
+	}
+
+	@TearDown
+	public void deleteOEMM()
+	{
+		delete(dir);
+	}
+
+	private static void writeSoup(Mesh mesh, String file) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		for (Triangle t : mesh.getTriangles())
+		{
+			for (int i = 0; i < 3; i++)
+			{
+				double [] xyz = t.vertex[i].getUV();
+				out.writeDouble(xyz[0]);
+				out.writeDouble(xyz[1]);
+				out.writeDouble(xyz[2]);
+			}
+			out.writeInt(1);
+			out.writeInt(0);
+		}
+		out.close();
+	}
+
+	// Size of vertex and triangle files
+	private static long size(File f)
+	{
+		File [] children = f.listFiles();
+		if (children == null)
+			return (f.getName().endsWith("v") || f.getName().endsWith("t")) ? f.length() : 0L;
+		long ret = 0L;
+		for (File c : children)
+			ret += size(c);
+		return ret;
+	}
+
+	private static void delete(File f)
+	{
+		File [] children = f.listFiles();
+		if (children != null)
+		{
+			for (File c : children)
+				delete(c);
+		}
+		if (!f.delete())
+			f.deleteOnExit();
+	}
+
+	private static long decode(OEMM oemm) throws IOException
+	{
+		long ret = 0L;
+		for (OEMM.Node node : oemm.leaves)
+		{
+			double [] coords = OctantFormat.readVertices(oemm, node);
+			int [] ids = OctantFormat.readTriangles(oemm, node);
+			ret += coords.length + ids.length;
+		}
+		return ret;
+	}
+
+	@Benchmark
+	public long legacy() throws IOException
+	{
+		return decode(legacy);
+	}
+
+	@Benchmark
+	public long compressed() throws IOException
+	{
+		return decode(compressed);
+	}
+}
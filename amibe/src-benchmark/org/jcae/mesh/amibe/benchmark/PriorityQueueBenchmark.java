@@ -0,0 +1,264 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+package org.jcae.mesh.amibe.benchmark;
+
+import gnu.trove.TDoubleArrayList;
+import gnu.trove.TIntArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.jcae.mesh.amibe.algos3d.QEMDecimateHalfEdge;
+import org.jcae.mesh.amibe.ds.HalfEdge;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.util.PAVLSortedTree;
+import org.jcae.mesh.amibe.util.PIndexedHeap;
+import org.jcae.mesh.amibe.util.PRedBlackSortedTree;
+import org.jcae.mesh.amibe.util.QSortedTree;
+import org.jcae.mesh.amibe.util.QualityQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of priority queues used by
+ * {@link org.jcae.mesh.amibe.algos3d.AbstractAlgoHalfEdge}.  Operations
+ * performed on its queue by a {@link QEMDecimateHalfEdge} run, which
+ * decimates a torus down to a quarter of its triangles, are recorded once.
+ * This trace is then replayed against each queue implementation, so that
+ * only queue operations are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriorityQueueBenchmark
+{
+	// Operation codes
+	private static final int INSERT = 0;
+	private static final int REMOVE = 1;
+	private static final int UPDATE = 2;
+	private static final int CONTAINS = 3;
+	private static final int ITERATE = 4;
+	private static final int ROOT_VALUE = 5;
+
+	@Param({"10000", "100000", "1000000"})
+	public int triangles;
+
+	@Param({"avl", "redblack", "heap2", "heap4"})
+	public String queue;
+
+	// For each operation, its code, its argument (an item index, or the
+	// number of nodes visited by ITERATE) and its value
+	private int [] ops;
+	private int [] args;
+	private double [] values;
+	private Item [] items;
+
+	private static final class Item implements PIndexedHeap.Indexed
+	{
+		private int slot = -1;
+		public int getHeapSlot()
+		{
+			return slot;
+		}
+		public void setHeapSlot(int s)
+		{
+			slot = s;
+		}
+	}
+
+	/**
+	 * Queue which records operations and delegates them to the default
+	 * queue of <code>AbstractAlgoHalfEdge</code>.
+	 */
+	private static final class Recorder implements QualityQueue<HalfEdge>
+	{
+		private static final long serialVersionUID = 1L;
+		private final QualityQueue<HalfEdge> delegate = new PAVLSortedTree<HalfEdge>();
+		private final Map<HalfEdge, Integer> ids = new IdentityHashMap<HalfEdge, Integer>();
+		private final TIntArrayList ops = new TIntArrayList();
+		private final TIntArrayList args = new TIntArrayList();
+		private final TDoubleArrayList values = new TDoubleArrayList();
+
+		private void add(int op, int arg, double value)
+		{
+			ops.add(op);
+			args.add(arg);
+			values.add(value);
+		}
+
+		private int id(HalfEdge e)
+		{
+			Integer ret = ids.get(e);
+			if (ret == null)
+			{
+				ret = Integer.valueOf(ids.size());
+				ids.put(e, ret);
+			}
+			return ret.intValue();
+		}
+
+		public boolean isEmpty()
+		{
+			return delegate.isEmpty();
+		}
+		public void insert(HalfEdge o, double value)
+		{
+			add(INSERT, id(o), value);
+			delegate.insert(o, value);
+		}
+		public boolean remove(HalfEdge o)
+		{
+			add(REMOVE, id(o), 0.0);
+			return delegate.remove(o);
+		}
+		public boolean update(HalfEdge o, double value)
+		{
+			add(UPDATE, id(o), value);
+			return delegate.update(o, value);
+		}
+		public void clear()
+		{
+			delegate.clear();
+		}
+		public boolean contains(HalfEdge o)
+		{
+			add(CONTAINS, id(o), 0.0);
+			return delegate.contains(o);
+		}
+		public int size()
+		{
+			return delegate.size();
+		}
+		public double getRootValue()
+		{
+			add(ROOT_VALUE, 0, 0.0);
+			return delegate.getRootValue();
+		}
+		public Iterator<QSortedTree.Node<HalfEdge>> iterator()
+		{
+			// Number of visited nodes is updated by next()
+			final int index = ops.size();
+			add(ITERATE, 0, 0.0);
+			final Iterator<QSortedTree.Node<HalfEdge>> it = delegate.iterator();
+			return new Iterator<QSortedTree.Node<HalfEdge>>()
+			{
+				public boolean hasNext()
+				{
+					return it.hasNext();
+				}
+				public QSortedTree.Node<HalfEdge> next()
+				{
+					args.set(index, args.get(index) + 1);
+					return it.next();
+				}
+				public void remove()
+				{
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+		public Iterator<QSortedTree.Node<HalfEdge>> backwardIterator()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	@Setup
+	public void record()
+	{
+		Mesh mesh = MeshGenerator.createTorus(triangles, true);
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("maxtriangles", ""+(triangles / 4));
+		QEMDecimateHalfEdge algo = new QEMDecimateHalfEdge(mesh, options);
+		Recorder recorder = new Recorder();
+		algo.setQualityQueue(recorder);
+		algo.compute();
+		ops = recorder.ops.toNativeArray();
+		args = recorder.args.toNativeArray();
+		values = recorder.values.toNativeArray();
+		items = new Item[recorder.ids.size()];
+		for (int i = 0; i < items.length; i++)
+			items[i] = new Item();
+	}
+
+	private QualityQueue<Item> createQueue()
+	{
+		if ("avl".equals(queue))
+			return new PAVLSortedTree<Item>();
+		else if ("redblack".equals(queue))
+			return new PRedBlackSortedTree<Item>();
+		else if ("heap2".equals(queue))
+			return new PIndexedHeap<Item>(2);
+		else if ("heap4".equals(queue))
+			return new PIndexedHeap<Item>(4);
+		throw new IllegalArgumentException("Unknown queue: "+queue);
+	}
+
+	@Benchmark
+	public double replay()
+	{
+		QualityQueue<Item> q = createQueue();
+		double ret = 0.0;
+		for (int i = 0; i < ops.length; i++)
+		{
+			switch (ops[i])
+			{
+			case INSERT:
+				q.insert(items[args[i]], values[i]);
+				break;
+			case REMOVE:
+				q.remove(items[args[i]]);
+				break;
+			case UPDATE:
+				q.update(items[args[i]], values[i]);
+				break;
+			case CONTAINS:
+				if (q.contains(items[args[i]]))
+					ret += 1.0;
+				break;
+			case ITERATE:
+				Iterator<QSortedTree.Node<Item>> it = q.iterator();
+				for (int k = args[i]; k > 0 && it.hasNext(); k--)
+					ret += it.next().getValue();
+				break;
+			case ROOT_VALUE:
+				ret += q.getRootValue();
+				break;
+			default:
+				throw new IllegalStateException("Unknown operation: "+ops[i]);
+			}
+		}
+		q.clear();
+		return ret;
+	}
+}
@@ -0,0 +1,112 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.jcae.mesh.amibe.validation.MinAngleFace;
+import org.jcae.mesh.amibe.validation.QualityFloat;
+import org.jcae.mesh.amibe.validation.QualityTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of quality reports during mesh modifications.  Some vertices
+ * are moved, and the minimum and mean angles are then computed either by
+ * a {@link QualityTracker} or by a full {@link QualityFloat} pass.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QualityBenchmark
+{
+	private static final int VERTICES = 64;
+
+	@Param({"10000", "100000", "1000000"})
+	public int triangles;
+
+	@Param({"false", "true"})
+	public boolean tracker;
+
+	private Mesh mesh;
+	private QualityTracker qualityTracker;
+	private final Vertex [] vertices = new Vertex[VERTICES];
+	private final double [][] origin = new double[VERTICES][];
+	private final double [][] target = new double[VERTICES][3];
+	private boolean moved;
+
+	@Setup
+	public void createMesh()
+	{
+		mesh = MeshGenerator.createTorus(triangles, true);
+		if (tracker)
+			qualityTracker = new QualityTracker(mesh, new MinAngleFace(), 0.0f, (float) Math.PI, 180);
+		ArrayList<Vertex> list = new ArrayList<Vertex>(mesh.getNodes());
+		for (int i = 0; i < VERTICES; i++)
+		{
+			vertices[i] = list.get((int) ((long) i * list.size() / VERTICES));
+			origin[i] = vertices[i].getUV().clone();
+			Vertex n = vertices[i].getNeighbourIteratorVertex().next();
+			double [] xyz = n.getUV();
+			for (int k = 0; k < 3; k++)
+				target[i][k] = 0.9 * origin[i][k] + 0.1 * xyz[k];
+		}
+	}
+
+	@Benchmark
+	public float report()
+	{
+		double [][] dest = moved ? origin : target;
+		moved = !moved;
+		for (int i = 0; i < VERTICES; i++)
+		{
+			vertices[i].moveTo(dest[i][0], dest[i][1], dest[i][2]);
+			mesh.notifyVertexMoved(vertices[i]);
+		}
+		if (tracker)
+			return qualityTracker.getMinValue() + qualityTracker.getMeanValue();
+		QualityFloat data = new QualityFloat(mesh.getTriangles().size());
+		data.setQualityProcedure(new MinAngleFace());
+		for (Triangle t : mesh.getTriangles())
+		{
+			if (!t.hasAttributes(AbstractHalfEdge.OUTER))
+				data.compute(t);
+		}
+		data.finish();
+		return data.getValueByPercent(0.0) + data.getMeanValue();
+	}
+}
@@ -0,0 +1,125 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import org.jcae.mesh.xmldata.AmibeReader;
+import org.jcae.mesh.xmldata.DoubleFileReader;
+import org.jcae.mesh.xmldata.IntFileReader;
+import org.jcae.mesh.xmldata.MeshReader;
+import org.jcae.mesh.xmldata.MeshWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+/**
+ * Benchmark of Amibe 3D mesh readers.  A torus is written into a temporary
+ * directory with {@link MeshWriter#writeObject3D}, then read back either
+ * into a {@link Mesh} by {@link MeshReader#readObject3D}, or into raw arrays
+ * by {@link AmibeReader}.  Bulk reader runs with as many threads as there
+ * are available processors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReaderBenchmark
+{
+	@Param({"10000", "100000", "1000000", "10000000"})
+	public int triangles;
+
+	private File dir;
+
+	@Setup
+	public void writeMesh() throws IOException
+	{
+		dir = File.createTempFile("amibe", ".dir");
+		if (!dir.delete() || !dir.mkdir())
+			throw new IOException("Cannot create directory "+dir);
+		MeshWriter.writeObject3D(MeshGenerator.createTorus(triangles, false), dir.getPath(), null);
+	}
+
+	@TearDown
+	public void deleteMesh()
+	{
+		delete(dir);
+	}
+
+	private static void delete(File f)
+	{
+		File [] children = f.listFiles();
+		if (children != null)
+		{
+			for (File c : children)
+				delete(c);
+		}
+		if (!f.delete())
+			f.deleteOnExit();
+	}
+
+	@Benchmark
+	public Mesh meshReader() throws IOException
+	{
+		Mesh mesh = new Mesh(MeshTraitsBuilder.getDefault3D());
+		MeshReader.readObject3D(mesh, dir.getPath());
+		return mesh;
+	}
+
+	@Benchmark
+	public Mesh bulkMeshReader() throws IOException
+	{
+		Mesh mesh = new Mesh(MeshTraitsBuilder.getDefault3D());
+		MeshReader.readObject3D(mesh, dir.getPath(), Runtime.getRuntime().availableProcessors());
+		return mesh;
+	}
+
+	@Benchmark
+	public double amibeReader() throws IOException, SAXException
+	{
+		AmibeReader.Dim3 reader = new AmibeReader.Dim3(dir.getPath());
+		AmibeReader.SubMesh sm = reader.getSubmeshes().get(0);
+		DoubleFileReader nodes = sm.getNodes();
+		double [] coords = new double[3 * sm.getNumberOfNodes()];
+		nodes.get(coords);
+		nodes.close();
+		IntFileReader trias = sm.getTriangles();
+		int [] ids = new int[3 * sm.getNumberOfTrias()];
+		trias.get(ids);
+		trias.close();
+		return coords[coords.length - 1] + ids[ids.length - 1];
+	}
+}
@@ -0,0 +1,90 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.jcae.mesh.amibe.algos3d.ParallelRemesh;
+import org.jcae.mesh.amibe.algos3d.Remesh;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.projection.MeshLiaison;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link Remesh#compute}.  Torus is remeshed with a target
+ * size 1.5 times smaller than its current edge length.  When
+ * <code>threads</code> is not 0, {@link ParallelRemesh} is run with
+ * this number of threads instead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class RemeshBenchmark
+{
+	@Param({"10000", "100000", "1000000", "10000000"})
+	public int triangles;
+
+	@Param({"0", "1", "2", "4"})
+	public int threads;
+
+	private Remesh algo;
+	private ParallelRemesh parallel;
+
+	@Setup(Level.Iteration)
+	public void createMesh()
+	{
+		algo = null;
+		parallel = null;
+		Mesh mesh = MeshGenerator.createTorus(triangles, true);
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("size", ""+(MeshGenerator.getEdgeLength(triangles) / 1.5));
+		if (threads == 0)
+			algo = new Remesh(new MeshLiaison(mesh), options);
+		else
+		{
+			options.put("threads", ""+threads);
+			parallel = new ParallelRemesh(new MeshLiaison(mesh), options);
+		}
+	}
+
+	@Benchmark
+	public Mesh compute()
+	{
+		if (parallel != null)
+			return parallel.compute().getOutputMesh();
+		return algo.compute().getOutputMesh();
+	}
+}
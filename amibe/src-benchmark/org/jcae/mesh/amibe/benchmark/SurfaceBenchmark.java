@@ -0,0 +1,133 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+
+package org.jcae.mesh.amibe.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.jcae.mesh.cad.CADGeomSurface;
+import org.jcae.mesh.cad.CADSurfaceEvaluator;
+import org.jcae.mesh.cad.CADSurfaceEvaluatorAdapter;
+import org.jcae.mesh.cad.analytic.AnalyticSurface;
+import org.jcae.mesh.cad.analytic.Cylinder;
+import org.jcae.mesh.cad.analytic.Plane;
+import org.jcae.mesh.cad.analytic.Sphere;
+import org.jcae.mesh.cad.analytic.Torus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of surface evaluation with analytic surfaces.  The stateful
+ * {@link CADGeomSurface} API, as used by MetricBuilder before, is compared
+ * with {@link CADSurfaceEvaluator} on single and batched points.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SurfaceBenchmark
+{
+	private static final int POINTS = 1024;
+
+	@Param({"plane", "cylinder", "sphere", "torus"})
+	public String surface;
+
+	private AnalyticSurface evaluator;
+	private CADGeomSurface geomSurface;
+	private final double [] uv = new double[2 * POINTS];
+	private final double [] result = new double[POINTS * CADSurfaceEvaluator.SIZE];
+
+	@Setup
+	public void createSurface()
+	{
+		if ("plane".equals(surface))
+			evaluator = new Plane();
+		else if ("cylinder".equals(surface))
+			evaluator = new Cylinder(2.0);
+		else if ("sphere".equals(surface))
+			evaluator = new Sphere(2.0);
+		else if ("torus".equals(surface))
+			evaluator = new Torus(3.0, 1.0);
+		else
+			throw new IllegalArgumentException("Unknown surface: "+surface);
+		geomSurface = new CADSurfaceEvaluatorAdapter(evaluator);
+		geomSurface.dinit(2);
+		for (int i = 0; i < POINTS; i++)
+		{
+			uv[2*i] = 6.0 * i / POINTS;
+			uv[2*i+1] = 1.5 * Math.sin(i);
+		}
+	}
+
+	/**
+	 * Values needed to compute a metric: first derivatives, curvatures and
+	 * principal directions.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public double stateful()
+	{
+		double ret = 0.0;
+		for (int i = 0; i < POINTS; i++)
+		{
+			geomSurface.setParameter(uv[2*i], uv[2*i+1]);
+			double [] d1U = geomSurface.d1U();
+			double [] d1V = geomSurface.d1V();
+			double [] dcurv = geomSurface.curvatureDirections();
+			ret += d1U[0] + d1V[1] + geomSurface.minCurvature() + geomSurface.maxCurvature() + dcurv[0];
+		}
+		return ret;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public double single()
+	{
+		double ret = 0.0;
+		for (int i = 0; i < POINTS; i++)
+		{
+			evaluator.evaluate(uv[2*i], uv[2*i+1], result, 0);
+			ret += result[CADSurfaceEvaluator.D1U] + result[CADSurfaceEvaluator.D1V+1] +
+				result[CADSurfaceEvaluator.MIN_CURVATURE] + result[CADSurfaceEvaluator.MAX_CURVATURE] +
+				result[CADSurfaceEvaluator.MAX_DIRECTION];
+		}
+		return ret;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public double[] batch()
+	{
+		evaluator.evaluate(uv, POINTS, result);
+		return result;
+	}
+}
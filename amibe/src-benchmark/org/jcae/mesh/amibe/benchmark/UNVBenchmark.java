@@ -0,0 +1,127 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.jcae.mesh.xmldata.MeshExporter;
+import org.jcae.mesh.xmldata.UNV2Amibe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of UNV to Amibe conversion.  A UNV file containing a regular
+ * grid is generated, its size is printed so that throughput can be
+ * computed; a million triangles give a 143 MB file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class UNVBenchmark
+{
+	@Param({"100000", "1000000", "10000000", "30000000"})
+	public int triangles;
+
+	private File unv;
+	private File dir;
+
+	@Setup
+	public void createFile() throws IOException
+	{
+		unv = File.createTempFile("amibe", ".unv");
+		int n = (int) Math.sqrt(triangles / 2);
+		PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(unv)));
+		out.println("    -1");
+		out.println("  2411");
+		for (int j = 0; j <= n; j++)
+			for (int i = 0; i <= n; i++)
+				MeshExporter.UNV.writeSingleNode(out, 1 + i + j * (n + 1), 0.1 * i, j / 3.0, 0.01 * ((i * j) % 7));
+		out.println("    -1");
+		out.println("    -1");
+		out.println("  2412");
+		int count = 0;
+		for (int j = 0; j < n; j++)
+		{
+			for (int i = 0; i < n; i++)
+			{
+				int v0 = 1 + i + j * (n + 1);
+				MeshExporter.UNV.writeSingleTriangle(out, ++count, v0, v0 + 1, v0 + n + 2);
+				MeshExporter.UNV.writeSingleTriangle(out, ++count, v0, v0 + n + 2, v0 + n + 1);
+			}
+		}
+		out.println("    -1");
+		out.close();
+		System.out.println("UNV file size: "+(unv.length() >> 20)+" MB");
+		dir = File.createTempFile("amibe", ".dir");
+		if (!dir.delete() || !dir.mkdir())
+			throw new IOException("Cannot create directory "+dir);
+	}
+
+	@TearDown
+	public void deleteFile()
+	{
+		delete(dir);
+		delete(unv);
+	}
+
+	private static void delete(File f)
+	{
+		File [] children = f.listFiles();
+		if (children != null)
+		{
+			for (File c : children)
+				delete(c);
+		}
+		if (!f.delete())
+			f.deleteOnExit();
+	}
+
+	@Benchmark
+	public File unv2Amibe() throws IOException
+	{
+		new UNV2Amibe().importMesh(unv, dir.getPath());
+		return dir;
+	}
+
+	@Benchmark
+	public File parallelUNV2Amibe() throws IOException
+	{
+		new UNV2Amibe().importMesh(unv, dir.getPath(), Runtime.getRuntime().availableProcessors());
+		return dir;
+	}
+}
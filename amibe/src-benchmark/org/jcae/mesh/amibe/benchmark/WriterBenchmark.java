@@ -0,0 +1,99 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+package org.jcae.mesh.amibe.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.xmldata.MeshWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of Amibe 3D mesh writers.  A torus is written into a temporary
+ * directory by {@link MeshWriter#writeObject3D}, either sequentially or
+ * with as many threads as there are available processors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WriterBenchmark
+{
+	@Param({"10000", "100000", "1000000", "10000000"})
+	public int triangles;
+
+	private Mesh mesh;
+	private File dir;
+
+	@Setup
+	public void createMesh() throws IOException
+	{
+		mesh = MeshGenerator.createTorus(triangles, true);
+		dir = File.createTempFile("amibe", ".dir");
+		if (!dir.delete() || !dir.mkdir())
+			throw new IOException("Cannot create directory "+dir);
+	}
+
+	@TearDown
+	public void deleteMesh()
+	{
+		delete(dir);
+	}
+
+	private static void delete(File f)
+	{
+		File [] children = f.listFiles();
+		if (children != null)
+		{
+			for (File c : children)
+				delete(c);
+		}
+		if (!f.delete())
+			f.deleteOnExit();
+	}
+
+	@Benchmark
+	public File meshWriter() throws IOException
+	{
+		MeshWriter.writeObject3D(mesh, dir.getPath(), null);
+		return dir;
+	}
+
+	@Benchmark
+	public File parallelMeshWriter() throws IOException
+	{
+		MeshWriter.writeObject3D(mesh, dir.getPath(), null, Runtime.getRuntime().availableProcessors());
+		return dir;
+	}
+}
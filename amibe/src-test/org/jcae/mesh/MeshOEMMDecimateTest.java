@@ -0,0 +1,152 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh;
+
+import gnu.trove.TIntHashSet;
+import gnu.trove.TIntIterator;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.jcae.mesh.amibe.algos3d.AbstractAlgoHalfEdge;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.oemm.Aggregate;
+import org.jcae.mesh.oemm.MeshReader;
+import org.jcae.mesh.oemm.OEMM;
+import org.jcae.mesh.oemm.RawStorage;
+import org.jcae.mesh.oemm.Storage;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class MeshOEMMDecimateTest
+{
+	// Leaves which are read or written when a cell is decimated
+	private static TIntHashSet footprint(OEMM oemm, TIntHashSet leaves)
+	{
+		TIntHashSet ret = new TIntHashSet();
+		for (TIntIterator it = leaves.iterator(); it.hasNext(); )
+		{
+			int l = it.next();
+			ret.add(l);
+			ret.addAll(oemm.leaves[l].adjLeaves.toNativeArray());
+		}
+		return ret;
+	}
+
+	private static void checkIndependentSets(OEMM oemm, List<TIntHashSet> cells)
+	{
+		List<List<TIntHashSet>> sets = MeshOEMMDecimate.ParallelDecimation.color(oemm, cells);
+		assertTrue(sets.size() > 1);
+		assertTrue(sets.size() < cells.size());
+		int nrCells = 0;
+		for (List<TIntHashSet> set : sets)
+		{
+			nrCells += set.size();
+			TIntHashSet used = new TIntHashSet();
+			for (TIntHashSet leaves : set)
+			{
+				for (TIntIterator it = footprint(oemm, leaves).iterator(); it.hasNext(); )
+					assertTrue(used.add(it.next()));
+			}
+		}
+		assertEquals(cells.size(), nrCells);
+	}
+
+	// Writes a torus into an OEMM and returns its directory
+	private static String createOEMM(File dir) throws IOException
+	{
+		File soup = new File(dir, "soup");
+		TestUtils.writeSoup(soup, 200, 100);
+		OEMM oemm = new OEMM(5);
+		if (!RawStorage.countTriangles(oemm, soup.getPath()))
+			assertTrue(RawStorage.countTriangles(oemm, soup.getPath()));
+		Aggregate.compute(oemm, 1000);
+		String structFile = new File(dir, "dispatched").getPath();
+		RawStorage.dispatch(oemm, soup.getPath(), structFile, new File(dir, "dispatched.data").getPath());
+		String outDir = new File(dir, "oemm").getPath();
+		RawStorage.indexOEMM(structFile, outDir);
+		return outDir;
+	}
+
+	// Decimates an OEMM and returns the number of triangles of each leaf
+	private static int[] decimate(int nrThreads) throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			String outDir = createOEMM(dir);
+			OEMM oemm = Storage.readOEMMStructure(outDir);
+			int nrTriangles = 0;
+			for (OEMM.Node current : oemm.leaves)
+				nrTriangles += current.tn;
+			MeshOEMMDecimate.compute(oemm, 2, 0, nrThreads, 8);
+
+			oemm = Storage.readOEMMStructure(outDir);
+			int[] ret = new int[oemm.leaves.length];
+			int nrDecimated = 0;
+			for (OEMM.Node current : oemm.leaves)
+			{
+				ret[current.leafIndex] = current.tn;
+				nrDecimated += current.tn;
+			}
+			assertTrue(nrDecimated < nrTriangles / 2);
+			Mesh mesh = new MeshReader(oemm).buildWholeMesh();
+			assertEquals(nrDecimated, AbstractAlgoHalfEdge.countInnerTriangles(mesh));
+			assertTrue(mesh.isValid());
+			return ret;
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test public void independentSets() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			OEMM oemm = Storage.readOEMMStructure(createOEMM(dir));
+
+			List<TIntHashSet> cells = new ArrayList<TIntHashSet>();
+			for (OEMM.Node current : oemm.leaves)
+			{
+				TIntHashSet leaves = new TIntHashSet();
+				leaves.add(current.leafIndex);
+				cells.add(leaves);
+			}
+			checkIndependentSets(oemm, cells);
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test public void parallel() throws IOException
+	{
+		// Cells of a given height are independent, so they give
+		// the same result when decimated concurrently
+		int[] sequential = decimate(1);
+		int[] parallel = decimate(4);
+		assertArrayEquals(sequential, parallel);
+	}
+}
@@ -0,0 +1,171 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.algos2d;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.jcae.mesh.amibe.algos1d.UniformLength;
+import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
+import org.jcae.mesh.amibe.ds.MMesh1D;
+import org.jcae.mesh.amibe.ds.MeshParameters;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.patch.Mesh2D;
+import org.jcae.mesh.amibe.patch.Vertex2D;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import org.jcae.mesh.cad.CADExplorer;
+import org.jcae.mesh.cad.CADFace;
+import org.jcae.mesh.cad.CADShapeEnum;
+import org.jcae.mesh.cad.CADShapeFactory;
+import org.jcae.mesh.cad.analytic.AnalyticShapeFactory;
+import org.jcae.mesh.TestUtils;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class InsertionTest
+{
+	static
+	{
+		if (System.getProperty("org.jcae.mesh.cad") == null)
+			System.setProperty("org.jcae.mesh.cad", AnalyticShapeFactory.class.getName());
+	}
+
+	@Test public void hilbertIndex()
+	{
+		//  The first 16 positions fill the 4x4 lower left block, and
+		//  consecutive positions are neighbours
+		int [][] xy = new int[16][];
+		for (int x = 0; x < 4; x++)
+		{
+			for (int y = 0; y < 4; y++)
+			{
+				long d = SpatialSort.hilbertIndex(x, y);
+				assertTrue(d >= 0 && d < 16);
+				assertNull(xy[(int) d]);
+				xy[(int) d] = new int[] { x, y };
+			}
+		}
+		for (int i = 1; i < 16; i++)
+			assertEquals(1, Math.abs(xy[i][0] - xy[i-1][0]) + Math.abs(xy[i][1] - xy[i-1][1]));
+	}
+
+	@Test public void brio()
+	{
+		Mesh2D mesh = new Mesh2D();
+		Random rand = new Random(1234L);
+		List<Vertex2D> nodes = new ArrayList<Vertex2D>();
+		for (int i = 0; i < 1000; i++)
+			nodes.add((Vertex2D) mesh.createVertex(rand.nextDouble(), rand.nextDouble()));
+		List<Vertex2D> sorted = new ArrayList<Vertex2D>(nodes);
+		SpatialSort.brio(sorted, new Random(139L));
+		assertEquals(nodes.size(), sorted.size());
+		assertEquals(new HashSet<Vertex2D>(nodes), new HashSet<Vertex2D>(sorted));
+		//  Last round contains half of the nodes, sorted along a
+		//  Hilbert curve, so it is much shorter than a random path
+		double sortedLength = 0.0;
+		double randomLength = 0.0;
+		for (int i = 501; i < 1000; i++)
+		{
+			sortedLength += distance(sorted.get(i-1), sorted.get(i));
+			randomLength += distance(nodes.get(i-1), nodes.get(i));
+		}
+		assertTrue(sortedLength+" "+randomLength, 4.0 * sortedLength < randomLength);
+	}
+
+	private static double distance(Vertex2D v1, Vertex2D v2)
+	{
+		double [] p1 = v1.getUV();
+		double [] p2 = v2.getUV();
+		return Math.sqrt((p1[0] - p2[0]) * (p1[0] - p2[0]) + (p1[1] - p2[1]) * (p1[1] - p2[1]));
+	}
+
+	private static int countInnerTriangles(Mesh2D mesh)
+	{
+		int ret = 0;
+		for (Triangle t : mesh.getTriangles())
+		{
+			if (!t.hasAttributes(AbstractHalfEdge.OUTER))
+				ret++;
+		}
+		return ret;
+	}
+
+	private static int [] meshFaces(MMesh1D mesh1D, HashMap<String, String> options, boolean bulk)
+	{
+		CADExplorer exp = CADShapeFactory.getFactory().newExplorer();
+		List<Integer> ret = new ArrayList<Integer>();
+		MeshTraitsBuilder mtb = MeshTraitsBuilder.getDefault2D();
+		for (exp.init(mesh1D.getGeometry(), CADShapeEnum.FACE); exp.more(); exp.next())
+		{
+			CADFace face = (CADFace) exp.current();
+			Mesh2D mesh = new Mesh2D(mtb, new MeshParameters(options), face);
+			new Initial(mesh, mtb, mesh1D).compute();
+			mesh.pushCompGeom(3);
+			Insertion insertion = new Insertion(mesh, 1.0 / Math.sqrt(2.0), Math.sqrt(2.0));
+			insertion.setBulk(bulk);
+			insertion.compute();
+			mesh.popCompGeom(3);
+			assertTrue(mesh.isValid());
+			ret.add(countInnerTriangles(mesh));
+		}
+		int [] array = new int[ret.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = ret.get(i);
+		return array;
+	}
+
+	@Test public void bulk() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			File model = new File(dir, "model.txt");
+			FileWriter out = new FileWriter(model);
+			out.write("torus 0 0 0 0 0 1 3 1\n");
+			out.write("sphere 8 0 0 2\n");
+			out.close();
+			HashMap<String, String> options = new HashMap<String, String>();
+			options.put("size", "0.1");
+			MMesh1D mesh1D = new MMesh1D(model.getPath());
+			new UniformLength(mesh1D, options).compute();
+			mesh1D.duplicateEdges();
+			mesh1D.updateNodeLabels();
+			int [] reference = meshFaces(mesh1D, options, false);
+			int [] bulk = meshFaces(mesh1D, options, true);
+			assertEquals(2, reference.length);
+			assertEquals(2, bulk.length);
+			for (int i = 0; i < reference.length; i++)
+			{
+				assertTrue(reference[i] > 10000);
+				assertEquals(reference[i], bulk[i], 0.02 * reference[i]);
+			}
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.algos3d;
+
+import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.Vertex;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ParallelQEMDecimateHalfEdgeTest
+{
+	// Maximal distance between triangle centroids and unit sphere
+	private static double maxDeviation(Mesh mesh)
+	{
+		double ret = 0.0;
+		for (Triangle t: mesh.getTriangles())
+		{
+			if (!t.isWritable())
+				continue;
+			double x = 0.0, y = 0.0, z = 0.0;
+			for (int i = 0; i < 3; i++)
+			{
+				double [] p = t.vertex[i].getUV();
+				x += p[0] / 3.0;
+				y += p[1] / 3.0;
+				z += p[2] / 3.0;
+			}
+			ret = Math.max(ret, Math.abs(1.0 - Math.sqrt(x*x + y*y + z*z)));
+		}
+		return ret;
+	}
+
+	private static Mesh decimate(Map<String, String> options, boolean parallel)
+	{
+		Mesh mesh = SphereBuilder.createShuffledSphereMesh(4);
+		assertTrue("Mesh is not valid", mesh.isValid());
+		if (parallel)
+			new ParallelQEMDecimateHalfEdge(mesh, options).compute();
+		else
+			new QEMDecimateHalfEdge(mesh, options).compute();
+		assertTrue("Mesh is not valid", mesh.isValid());
+		assertTrue("Inverted triangles", mesh.checkNoInvertedTriangles());
+		return mesh;
+	}
+
+	@Test public void sphereSize()
+	{
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("size", "0.02");
+		Mesh seq = decimate(options, false);
+		options.put("threads", "2");
+		options.put("partitions", "8");
+		Mesh par = decimate(options, true);
+		int nrSeq = AbstractAlgoHalfEdge.countInnerTriangles(seq);
+		int nrPar = AbstractAlgoHalfEdge.countInnerTriangles(par);
+		double devSeq = maxDeviation(seq);
+		double devPar = maxDeviation(par);
+		assertTrue("Too many triangles: "+nrPar+" (sequential: "+nrSeq+")", nrPar < 1.05 * nrSeq);
+		assertTrue("Too few triangles: "+nrPar+" (sequential: "+nrSeq+")", nrPar > 0.95 * nrSeq);
+		assertTrue("Deviation too large: "+devPar+" (sequential: "+devSeq+")", devPar <= 1.1 * devSeq + 1.e-6);
+	}
+
+	@Test public void sphereMaxTriangles()
+	{
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("maxtriangles", "1000");
+		Mesh seq = decimate(options, false);
+		options.put("threads", "4");
+		Mesh par = decimate(options, true);
+		int nrSeq = AbstractAlgoHalfEdge.countInnerTriangles(seq);
+		int nrPar = AbstractAlgoHalfEdge.countInnerTriangles(par);
+		double devSeq = maxDeviation(seq);
+		double devPar = maxDeviation(par);
+		assertTrue("Too many triangles: "+nrPar, nrPar <= 1000);
+		assertTrue("Too few triangles: "+nrPar+" (sequential: "+nrSeq+")", nrPar > 0.95 * nrSeq);
+		assertTrue("Deviation too large: "+devPar+" (sequential: "+devSeq+")", devPar <= 1.5 * devSeq + 1.e-6);
+	}
+
+	@Test public void sphereNotWritable()
+	{
+		Mesh mesh = SphereBuilder.createShuffledSphereMesh(4);
+		// Triangles of the north cap and their vertices are not writable,
+		// as when reading some leaves of an OEMM
+		Collection<Triangle> kept = new ArrayList<Triangle>();
+		for (Triangle t: mesh.getTriangles())
+		{
+			if (t.hasAttributes(AbstractHalfEdge.OUTER))
+				continue;
+			if (t.vertex[0].getUV()[2] > 0.3 && t.vertex[1].getUV()[2] > 0.3 && t.vertex[2].getUV()[2] > 0.3)
+			{
+				t.setWritable(false);
+				for (Vertex v: t.vertex)
+					v.setWritable(false);
+				kept.add(t);
+			}
+		}
+		Vertex isolated = mesh.createVertex(2.0, 0.0, 0.0);
+		mesh.add(isolated);
+		int nrInitial = AbstractAlgoHalfEdge.countInnerTriangles(mesh);
+
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("size", "0.02");
+		options.put("threads", "2");
+		options.put("partitions", "8");
+		new ParallelQEMDecimateHalfEdge(mesh, options).compute();
+		assertTrue("Mesh is not valid", mesh.isValid());
+		assertTrue("Inverted triangles", mesh.checkNoInvertedTriangles());
+		assertTrue("Mesh is not decimated", AbstractAlgoHalfEdge.countInnerTriangles(mesh) < 0.6 * nrInitial);
+		Set<List<Vertex>> triangles = new HashSet<List<Vertex>>();
+		for (Triangle t: mesh.getTriangles())
+		{
+			if (!t.isWritable() && !t.hasAttributes(AbstractHalfEdge.OUTER))
+				triangles.add(Arrays.asList(t.vertex));
+		}
+		assertEquals(kept.size(), triangles.size());
+		for (Triangle t: kept)
+			assertTrue("Triangle not writable has been modified: "+t, triangles.contains(Arrays.asList(t.vertex)));
+		assertTrue("Isolated node has been removed", mesh.getNodes().contains(isolated));
+	}
+
+	// Coordinates of the end points of half-edges which are immutable
+	private static Set<List<Double>> immutableEdges(Mesh mesh)
+	{
+		Set<List<Double>> ret = new HashSet<List<Double>>();
+		AbstractHalfEdge ot = null;
+		for (Triangle t: mesh.getTriangles())
+		{
+			if (t.hasAttributes(AbstractHalfEdge.OUTER))
+				continue;
+			ot = t.getAbstractHalfEdge(ot);
+			for (int j = 0; j < 3; j++)
+			{
+				ot = ot.next();
+				if (!ot.hasAttributes(AbstractHalfEdge.IMMUTABLE))
+					continue;
+				double [] o = ot.origin().getUV();
+				double [] d = ot.destination().getUV();
+				ret.add(Arrays.asList(o[0], o[1], o[2], d[0], d[1], d[2]));
+			}
+		}
+		return ret;
+	}
+
+	@Test public void sphereImmutable()
+	{
+		Mesh mesh = SphereBuilder.createShuffledSphereMesh(4);
+		// Edges of the north cap are immutable
+		AbstractHalfEdge ot = null;
+		for (Triangle t: mesh.getTriangles())
+		{
+			if (t.hasAttributes(AbstractHalfEdge.OUTER))
+				continue;
+			ot = t.getAbstractHalfEdge(ot);
+			for (int j = 0; j < 3; j++)
+			{
+				ot = ot.next();
+				if (ot.origin().getUV()[2] > 0.9 && ot.destination().getUV()[2] > 0.9)
+					ot.setAttributes(AbstractHalfEdge.IMMUTABLE);
+			}
+		}
+		// Vertices inside the cap cannot be moved, edges between them
+		// must be kept
+		Set<Vertex> inner = new HashSet<Vertex>();
+		for (Vertex v: mesh.getNodes())
+		{
+			if (v.getLink() == null || v.getUV()[2] <= 0.9)
+				continue;
+			boolean isInner = true;
+			for (Iterator<Vertex> it = v.getNeighbourIteratorVertex(); it.hasNext(); )
+			{
+				if (it.next().getUV()[2] <= 0.9)
+					isInner = false;
+			}
+			if (isInner)
+				inner.add(v);
+		}
+		Set<List<Double>> expected = new HashSet<List<Double>>();
+		for (Triangle t: mesh.getTriangles())
+		{
+			if (t.hasAttributes(AbstractHalfEdge.OUTER))
+				continue;
+			for (int j = 0; j < 3; j++)
+			{
+				double [] o = t.vertex[j].getUV();
+				double [] d = t.vertex[(j+1)%3].getUV();
+				if (inner.contains(t.vertex[j]) && inner.contains(t.vertex[(j+1)%3]))
+					expected.add(Arrays.asList(o[0], o[1], o[2], d[0], d[1], d[2]));
+			}
+		}
+		assertFalse(expected.isEmpty());
+		int nrInitial = AbstractAlgoHalfEdge.countInnerTriangles(mesh);
+
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("size", "0.02");
+		options.put("threads", "2");
+		options.put("partitions", "8");
+		new ParallelQEMDecimateHalfEdge(mesh, options).compute();
+		assertTrue("Mesh is not valid", mesh.isValid());
+		assertTrue("Inverted triangles", mesh.checkNoInvertedTriangles());
+		assertTrue("Mesh is not decimated", AbstractAlgoHalfEdge.countInnerTriangles(mesh) < 0.6 * nrInitial);
+		Set<List<Double>> actual = immutableEdges(mesh);
+		for (List<Double> e: expected)
+			assertTrue("Immutable edge has been removed: "+e, actual.contains(e));
+	}
+}
@@ -0,0 +1,139 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.algos3d;
+
+import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.jcae.mesh.amibe.projection.MeshLiaison;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import org.jcae.mesh.xmldata.MeshReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ParallelRemeshTest
+{
+	// Sequential Remesh also leaves a few edges which cannot be split,
+	// up to 3.7 times longer than target size on torus1426.
+	private static final double MAX_LENGTH_RATIO = 4.0;
+
+	private static Mesh remesh(Mesh bgMesh, MeshTraitsBuilder mtb, Map<String, String> options)
+	{
+		assertTrue("Original mesh is not valid", bgMesh.isValid());
+		MeshLiaison liaison = new MeshLiaison(bgMesh, mtb);
+		Mesh mesh = new ParallelRemesh(liaison, options).compute().getOutputMesh();
+		assertTrue("Mesh is not valid", mesh.isValid());
+		assertTrue("Mesh contains inverted triangles", mesh.checkNoInvertedTriangles());
+		assertTrue("Mesh contains degenerated triangles", mesh.checkNoDegeneratedTriangles());
+		return mesh;
+	}
+
+	// Checks edge lengths against target size, and that the remeshed
+	// closed surface is still closed and manifold.
+	private static void checkQuality(Mesh mesh, double size)
+	{
+		int nrEdges = 0;
+		int nrLong = 0;
+		double sum = 0.0;
+		double max = 0.0;
+		AbstractHalfEdge ot = null;
+		for (Triangle t: mesh.getTriangles())
+		{
+			if (t.hasAttributes(AbstractHalfEdge.OUTER))
+				continue;
+			ot = t.getAbstractHalfEdge(ot);
+			for (int i = 0; i < 3; i++)
+			{
+				ot = ot.next();
+				assertFalse("Boundary edge: "+ot, ot.hasAttributes(AbstractHalfEdge.BOUNDARY));
+				assertFalse("Non-manifold edge: "+ot, ot.hasAttributes(AbstractHalfEdge.NONMANIFOLD));
+				double ratio = ot.origin().distance3D(ot.destination()) / size;
+				nrEdges++;
+				sum += ratio;
+				if (ratio > max)
+					max = ratio;
+				if (ratio > 2.0)
+					nrLong++;
+			}
+		}
+		double mean = sum / nrEdges;
+		assertTrue("Mean edge length ratio: "+mean, mean > 0.9 && mean < 1.1);
+		assertTrue("Maximal edge length ratio: "+max, max < MAX_LENGTH_RATIO);
+		assertTrue("Too many long edges: "+nrLong+" out of "+nrEdges, nrLong < nrEdges / 1000);
+	}
+
+	@Test public void sphere()
+	{
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("size", "0.02");
+		options.put("threads", "2");
+		options.put("partitions", "8");
+		Mesh mesh = remesh(SphereBuilder.createShuffledSphereMesh(3), MeshTraitsBuilder.getDefault3D(), options);
+		checkQuality(mesh, 0.02);
+	}
+
+	@Test public void sphereAnalyticMetric()
+	{
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("threads", "4");
+		MeshLiaison liaison = new MeshLiaison(SphereBuilder.createShuffledSphereMesh(3));
+		ParallelRemesh algo = new ParallelRemesh(liaison, options);
+		algo.setAnalyticMetric(new Remesh.AnalyticMetricInterface() {
+			public double getTargetSize(double x, double y, double z)
+			{
+				return z > 0.0 ? 0.02 : 0.05;
+			}
+		});
+		Mesh mesh = algo.compute().getOutputMesh();
+		assertTrue("Mesh is not valid", mesh.isValid());
+		assertTrue("Mesh contains inverted triangles", mesh.checkNoInvertedTriangles());
+	}
+
+	@Test public void torus() throws IOException
+	{
+		MeshTraitsBuilder mtb = MeshTraitsBuilder.getDefault3D();
+		mtb.addNodeList();
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("size", "0.05");
+		options.put("coplanarity", "0.9");
+		options.put("threads", "4");
+		Mesh bgMesh = new Mesh(mtb);
+		MeshReader.readObject3D(bgMesh, "test"+File.separator+"input"+File.separator+"torus1426");
+		Mesh mesh = remesh(bgMesh, mtb, options);
+		checkQuality(mesh, 0.05);
+		// New vertices must have been added to node list
+		Set<Vertex> nodes = new HashSet<Vertex>(mesh.getNodes());
+		for (Triangle t: mesh.getTriangles())
+		{
+			if (t.hasAttributes(AbstractHalfEdge.OUTER))
+				continue;
+			for (Vertex v: t.vertex)
+				assertTrue("Missing node: "+v, nodes.contains(v));
+		}
+	}
+}
@@ -30,12 +30,13 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.jcae.mesh.MeshOEMMIndex;
 import org.jcae.mesh.amibe.ds.Mesh;
 import org.jcae.mesh.amibe.ds.Vertex;
 import org.jcae.mesh.amibe.metrics.Matrix3D;
+import org.jcae.mesh.oemm.Aggregate;
 import org.jcae.mesh.oemm.MeshReader;
 import org.jcae.mesh.oemm.OEMM;
+import org.jcae.mesh.oemm.RawStorage;
 import org.jcae.mesh.oemm.Storage;
 
 import org.junit.Ignore;
@@ -203,15 +204,19 @@ public class SphereBuilder
 			return null;
 		}
 		
-		// Build oemm
-		String [] mainArgs = new String[4];
-		mainArgs[0] = tmpdir;
-		mainArgs[1] = tmpdir;
-		mainArgs[2] = "4";
-		mainArgs[3] = "50000";
-		MeshOEMMIndex.main(mainArgs);
+		// Build oemm like MeshOEMMIndex, but write intermediate files
+		// into the temporary dir instead of the current directory
+		String soupFile = tmpdir+File.separator+"soup";
+		String structFile = tmpdir+File.separator+"dispatched";
+		OEMM oemm = new OEMM(4);
+		// Bounding box is computed by the first pass
+		if (!RawStorage.countTriangles(oemm, soupFile))
+			RawStorage.countTriangles(oemm, soupFile);
+		Aggregate.compute(oemm, 50000);
+		RawStorage.dispatch(oemm, soupFile, structFile, structFile+".data");
+		RawStorage.indexOEMM(structFile, tmpdir);
 		// Read oemm into a Mesh
-		OEMM oemm = Storage.readOEMMStructure(mainArgs[1]);
+		oemm = Storage.readOEMMStructure(tmpdir);
 		MeshReader mr = new MeshReader(oemm);
 		Mesh toReturn = mr.buildWholeMesh();
 		// Clean up
@@ -0,0 +1,187 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.ds;
+
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CompactMeshTest
+{
+	// m Vertex on rows, n Vertex on columns
+	private static CompactMesh createMxNShell(int m, int n)
+	{
+		CompactMesh mesh = new CompactMesh(m*n, 2*(m-1)*(n-1));
+		for (int j = 0; j < n; j++)
+			for (int i = 0; i < m; i++)
+				mesh.addVertex(i, j, 0.0);
+		for (int j = 0; j < n-1; j++)
+		{
+			for (int i = 0; i < m-1; i++)
+			{
+				mesh.addTriangle(m*j+i, m*j+i+1, m*(j+1)+i, 0);
+				mesh.addTriangle(m*j+i+1, m*(j+1)+i+1, m*(j+1)+i, 0);
+			}
+		}
+		return mesh;
+	}
+
+	private static int countAttributes(CompactMesh mesh, int attr)
+	{
+		int ret = 0;
+		CompactMesh.Cursor ot = mesh.getCursor(0);
+		for (int t = 0; t < mesh.getNumberOfTriangles(); t++)
+		{
+			ot.bind(t);
+			for (int i = 0; i < 3; i++)
+			{
+				ot.next();
+				if (ot.hasAttributes(attr))
+					ret++;
+			}
+		}
+		return ret;
+	}
+
+	@Test public void adjacency()
+	{
+		CompactMesh mesh = createMxNShell(4, 3);
+		mesh.buildAdjacency();
+		assertTrue(mesh.hasAdjacency());
+		assertEquals(10, countAttributes(mesh, AbstractHalfEdge.BOUNDARY));
+		assertEquals(0, countAttributes(mesh, AbstractHalfEdge.NONMANIFOLD));
+		CompactMesh.Cursor ot = mesh.getCursor(0);
+		CompactMesh.Cursor sym = mesh.getCursor(0);
+		for (int t = 0; t < mesh.getNumberOfTriangles(); t++)
+		{
+			ot.bind(t);
+			for (int i = 0; i < 3; i++)
+			{
+				ot.next();
+				if (!ot.hasSymmetricEdge())
+					continue;
+				sym.copy(ot);
+				sym.sym();
+				assertEquals(ot.origin(), sym.destination());
+				assertEquals(ot.destination(), sym.origin());
+				assertEquals(ot.getIndex(), sym.sym().getIndex());
+			}
+		}
+	}
+
+	@Test public void originLoop()
+	{
+		CompactMesh mesh = createMxNShell(3, 3);
+		mesh.buildAdjacency();
+		// Inner vertex has valence 6
+		CompactMesh.Cursor ot = mesh.getIncidentCursor(4, null);
+		assertEquals(4, ot.origin());
+		int d = ot.destination();
+		int cnt = 0;
+		do
+		{
+			assertEquals(4, ot.origin());
+			ot.nextOriginLoop();
+			cnt++;
+		}
+		while (ot.destination() != d);
+		assertEquals(6, cnt);
+		// Boundary vertex
+		ot = mesh.getIncidentCursor(1, ot);
+		d = ot.destination();
+		cnt = 0;
+		do
+		{
+			assertEquals(1, ot.origin());
+			ot.nextOriginLoop();
+			cnt++;
+		}
+		while (ot.destination() != d);
+		assertEquals(3, cnt);
+	}
+
+	@Test public void nonManifold()
+	{
+		CompactMesh mesh = new CompactMesh(5, 3);
+		mesh.addVertex(0.0, 0.0, 0.0);
+		mesh.addVertex(1.0, 0.0, 0.0);
+		mesh.addVertex(0.0, 1.0, 0.0);
+		mesh.addVertex(0.0, -1.0, 0.0);
+		mesh.addVertex(0.0, 0.0, 1.0);
+		mesh.addTriangle(0, 1, 2, 0);
+		mesh.addTriangle(1, 0, 3, 0);
+		mesh.addTriangle(1, 0, 4, 0);
+		mesh.buildAdjacency();
+		assertEquals(3, countAttributes(mesh, AbstractHalfEdge.NONMANIFOLD));
+		assertEquals(6, countAttributes(mesh, AbstractHalfEdge.BOUNDARY));
+	}
+
+	@Test public void manifoldVertices()
+	{
+		// Two triangles sharing vertex 0, and a non-manifold edge (5,6)
+		CompactMesh mesh = new CompactMesh(9, 5);
+		mesh.addVertex(0.0, 0.0, 0.0);
+		mesh.addVertex(1.0, 0.0, 0.0);
+		mesh.addVertex(0.0, 1.0, 0.0);
+		mesh.addVertex(-1.0, 0.0, 0.0);
+		mesh.addVertex(0.0, -1.0, 0.0);
+		mesh.addVertex(5.0, 0.0, 0.0);
+		mesh.addVertex(6.0, 0.0, 0.0);
+		mesh.addVertex(5.0, 1.0, 0.0);
+		mesh.addVertex(5.0, 0.0, 1.0);
+		mesh.addTriangle(0, 1, 2, 0);
+		mesh.addTriangle(0, 3, 4, 0);
+		mesh.addTriangle(5, 6, 7, 0);
+		mesh.addTriangle(6, 5, 8, 0);
+		mesh.addTriangle(5, 6, 8, 0);
+		mesh.buildAdjacency();
+		boolean [] manifold = mesh.computeManifoldVertices();
+		boolean [] expected = { false, true, true, true, true, false, false, true, true };
+		for (int v = 0; v < expected.length; v++)
+			assertEquals("Vertex "+v, expected[v], manifold[v]);
+
+		mesh = createMxNShell(4, 3);
+		mesh.buildAdjacency();
+		for (boolean b : mesh.computeManifoldVertices())
+			assertTrue(b);
+	}
+
+	@Test public void roundTrip()
+	{
+		CompactMesh mesh = createMxNShell(5, 4);
+		mesh.setGroupId(3, 2);
+		mesh.setRef(0, 7);
+		Mesh m = mesh.toMesh(MeshTraitsBuilder.getDefault3D());
+		// 24 inner triangles and 14 outer triangles
+		assertEquals(38, m.getTriangles().size());
+		assertTrue(m.isValid());
+		CompactMesh copy = CompactMesh.createFromMesh(m);
+		assertEquals(mesh.getNumberOfTriangles(), copy.getNumberOfTriangles());
+		assertEquals(mesh.getNumberOfVertices(), copy.getNumberOfVertices());
+		assertTrue(copy.hasAdjacency());
+		assertEquals(14, countAttributes(copy, AbstractHalfEdge.BOUNDARY));
+		int nrGroup2 = 0;
+		for (int t = 0; t < copy.getNumberOfTriangles(); t++)
+			if (copy.getGroupId(t) == 2)
+				nrGroup2++;
+		assertEquals(1, nrGroup2);
+	}
+}
@@ -21,6 +21,9 @@ package org.jcae.mesh.amibe.ds;
 
 import org.jcae.mesh.amibe.traits.TriangleTraitsBuilder;
 import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -132,5 +135,151 @@ public class MeshTest
 		nr = mesh.scratchVirtualBoundaries();
 		assertTrue("Wrong return value of scratchVirtualBoundaries (2 was expected): "+nr, 2 == nr);
 	}
-	
+
+	// Creates nrFans MxN shells sharing their first column, shell k is
+	// rotated by k*360/nrFans degrees around Y axis.  When flip is true,
+	// orientation of odd shells is reversed.
+	private Vertex [] createFans(int m, int n, int nrFans, boolean flip, boolean nodes)
+	{
+		ArrayList<Vertex> vertices = new ArrayList<Vertex>();
+		Vertex [] first = new Vertex[m*n];
+		for (int k = 0; k < nrFans; k++)
+		{
+			double angle = 2.0 * Math.PI * k / nrFans;
+			Vertex [] vv = new Vertex[m*n];
+			for (int j = 0; j < n; j++)
+			{
+				for (int i = 0; i < m; i++)
+				{
+					if (k > 0 && i == 0)
+						vv[m*j+i] = first[m*j];
+					else
+					{
+						vv[m*j+i] = mesh.createVertex(i*Math.cos(angle), j, i*Math.sin(angle));
+						vertices.add(vv[m*j+i]);
+						if (nodes)
+							mesh.add(vv[m*j+i]);
+					}
+				}
+			}
+			if (k == 0)
+				System.arraycopy(vv, 0, first, 0, m*n);
+			Triangle [] tt = createMxNTriangles(m, n, vv);
+			if (flip && k % 2 == 1)
+			{
+				for (Triangle t : tt)
+				{
+					Vertex temp = t.vertex[1];
+					t.vertex[1] = t.vertex[2];
+					t.vertex[2] = temp;
+				}
+			}
+		}
+		return vertices.toArray(new Vertex[vertices.size()]);
+	}
+
+	private Mesh createMesh(boolean nodes)
+	{
+		MeshTraitsBuilder mtb = MeshTraitsBuilder.getDefault3D();
+		if (nodes)
+			mtb.addNodeList();
+		return new Mesh(mtb);
+	}
+
+	private static int [] getLinks(Vertex vertex, Map<Triangle, Integer> index)
+	{
+		Object link = vertex.getLink();
+		if (link instanceof Triangle)
+			return new int[] { index.get((Triangle) link) };
+		Triangle [] links = (Triangle []) link;
+		int [] ret = new int[links.length];
+		for (int i = 0; i < links.length; i++)
+			ret[i] = index.get(links[i]);
+		return ret;
+	}
+
+	private void checkParallelAdjacency(int m, int n, int nrFans, boolean flip, boolean nodes)
+	{
+		mesh = createMesh(nodes);
+		Vertex [] v1 = createFans(m, n, nrFans, flip, nodes);
+		Mesh mesh1 = mesh;
+		mesh1.buildAdjacency();
+		mesh = createMesh(nodes);
+		Vertex [] v2 = createFans(m, n, nrFans, flip, nodes);
+		Mesh mesh2 = mesh;
+		mesh2.buildAdjacency(0, 4);
+
+		ArrayList<Triangle> t1 = new ArrayList<Triangle>(mesh1.getTriangles());
+		ArrayList<Triangle> t2 = new ArrayList<Triangle>(mesh2.getTriangles());
+		assertEquals(t1.size(), t2.size());
+		Map<Triangle, Integer> index1 = new IdentityHashMap<Triangle, Integer>();
+		Map<Triangle, Integer> index2 = new IdentityHashMap<Triangle, Integer>();
+		for (int i = 0; i < t1.size(); i++)
+		{
+			index1.put(t1.get(i), i);
+			index2.put(t2.get(i), i);
+		}
+		Map<Vertex, Integer> vIndex1 = new IdentityHashMap<Vertex, Integer>();
+		Map<Vertex, Integer> vIndex2 = new IdentityHashMap<Vertex, Integer>();
+		vIndex1.put(mesh1.outerVertex, -1);
+		vIndex2.put(mesh2.outerVertex, -1);
+		for (int i = 0; i < v1.length; i++)
+		{
+			vIndex1.put(v1[i], i);
+			vIndex2.put(v2[i], i);
+		}
+		AbstractHalfEdge ot1 = null;
+		AbstractHalfEdge ot2 = null;
+		for (int i = 0; i < t1.size(); i++)
+		{
+			ot1 = t1.get(i).getAbstractHalfEdge(ot1);
+			ot2 = t2.get(i).getAbstractHalfEdge(ot2);
+			for (int l = 0; l < 3; l++)
+			{
+				assertEquals(vIndex1.get(t1.get(i).vertex[l]), vIndex2.get(t2.get(i).vertex[l]));
+				assertEquals(ot1.getLocalNumber(), ot2.getLocalNumber());
+				assertEquals(ot1.hasAttributes(0xff), ot2.hasAttributes(0xff));
+				assertEquals(ot1.hasAttributes(AbstractHalfEdge.BOUNDARY), ot2.hasAttributes(AbstractHalfEdge.BOUNDARY));
+				assertEquals(ot1.hasAttributes(AbstractHalfEdge.NONMANIFOLD), ot2.hasAttributes(AbstractHalfEdge.NONMANIFOLD));
+				assertEquals(ot1.hasAttributes(AbstractHalfEdge.OUTER), ot2.hasAttributes(AbstractHalfEdge.OUTER));
+				assertEquals(ot1.hasSymmetricEdge(), ot2.hasSymmetricEdge());
+				if (ot1.hasSymmetricEdge())
+				{
+					AbstractHalfEdge s1 = ot1.sym();
+					AbstractHalfEdge s2 = ot2.sym();
+					assertEquals(index1.get(s1.getTri()), index2.get(s2.getTri()));
+					assertEquals(s1.getLocalNumber(), s2.getLocalNumber());
+				}
+				ot1 = ot1.next();
+				ot2 = ot2.next();
+			}
+		}
+		for (int i = 0; i < v1.length; i++)
+		{
+			assertArrayEquals(getLinks(v1[i], index1), getLinks(v2[i], index2));
+			assertEquals(v1[i].getRef(), v2[i].getRef());
+		}
+	}
+
+	@Test public void parallelAdjacencyShell()
+	{
+		checkParallelAdjacency(20, 15, 1, false, false);
+	}
+
+	@Test public void parallelAdjacencyNodes()
+	{
+		checkParallelAdjacency(20, 15, 1, false, true);
+	}
+
+	@Test public void parallelAdjacencyNonManifold()
+	{
+		checkParallelAdjacency(10, 12, 3, false, false);
+		checkParallelAdjacency(10, 12, 4, false, true);
+	}
+
+	@Test public void parallelAdjacencyNonManifoldFlip()
+	{
+		checkParallelAdjacency(10, 12, 3, true, false);
+		checkParallelAdjacency(10, 12, 4, true, true);
+	}
 }
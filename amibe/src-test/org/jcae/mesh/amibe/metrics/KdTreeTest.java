@@ -0,0 +1,299 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class KdTreeTest
+{
+	private static final double [] BBOX = { 0.0, 0.0, 0.0, 1.0, 1.0, 1.0 };
+	private final Metric metric = new EuclidianMetric3D();
+
+	private static Vertex [] createVertices(int n, long seed)
+	{
+		Mesh mesh = new Mesh(MeshTraitsBuilder.getDefault3D());
+		Random rand = new Random(seed);
+		Vertex [] ret = new Vertex[n];
+		for (int i = 0; i < n; i++)
+		{
+			// Put some vertices in a small region to get deep cells
+			double scale = (i % 3 == 0 ? 0.001 : 1.0);
+			ret[i] = mesh.createVertex(scale * rand.nextDouble(), scale * rand.nextDouble(), scale * rand.nextDouble());
+		}
+		return ret;
+	}
+
+	// Records cell sizes, positions and contents in prefix order
+	private static final class RecordProcedure implements KdTreeProcedure
+	{
+		private final KdTree<Vertex> tree;
+		private final Map<Vertex, Integer> index = new IdentityHashMap<Vertex, Integer>();
+		private final List<Integer> data = new ArrayList<Integer>();
+		private RecordProcedure(KdTree<Vertex> tree, Vertex [] vertices)
+		{
+			this.tree = tree;
+			for (int i = 0; i < vertices.length; i++)
+				index.put(vertices[i], i);
+		}
+		public int action(Object o, int s, final int [] i0)
+		{
+			KdTree<Vertex>.Cell self = tree.asCell(o);
+			data.add(s);
+			for (int k : i0)
+				data.add(k);
+			data.add(self.isLeaf() ? self.count() : -self.count());
+			if (self.isLeaf())
+			{
+				for (int i = 0; i < self.count(); i++)
+					data.add(index.get(self.getVertex(i)));
+			}
+			return KdTreeProcedure.OK;
+		}
+	}
+
+	private static List<Integer> record(KdTree<Vertex> tree, Vertex [] vertices)
+	{
+		RecordProcedure proc = new RecordProcedure(tree, vertices);
+		tree.walk(proc);
+		return proc.data;
+	}
+
+	private void checkBulkLoad(int n, int nrThreads)
+	{
+		Vertex [] vertices = createVertices(n, n);
+		KdTree<Vertex> expected = new KdTree<Vertex>(BBOX);
+		for (Vertex v : vertices)
+			expected.add(v);
+		KdTree<Vertex> tree = new KdTree<Vertex>(BBOX, vertices, nrThreads);
+		assertEquals(expected.nCells, tree.nCells);
+		assertEquals(record(expected, vertices), record(tree, vertices));
+	}
+
+	@Test public void bulkLoad()
+	{
+		checkBulkLoad(0, 1);
+		checkBulkLoad(7, 1);
+		checkBulkLoad(5000, 1);
+	}
+
+	@Test public void bulkLoadThreads()
+	{
+		checkBulkLoad(100000, 4);
+	}
+
+	@Test public void addAllNotEmpty()
+	{
+		Vertex [] vertices = createVertices(1000, 1L);
+		KdTree<Vertex> expected = new KdTree<Vertex>(BBOX);
+		for (Vertex v : vertices)
+			expected.add(v);
+		KdTree<Vertex> tree = new KdTree<Vertex>(BBOX);
+		tree.add(vertices[0]);
+		Vertex [] others = new Vertex[vertices.length - 1];
+		System.arraycopy(vertices, 1, others, 0, others.length);
+		tree.addAll(others, 2);
+		assertEquals(record(expected, vertices), record(tree, vertices));
+	}
+
+	@Test public void concurrentAccess() throws Exception
+	{
+		final Vertex [] vertices = createVertices(40000, 2L);
+		Vertex [] first = new Vertex[vertices.length / 2];
+		System.arraycopy(vertices, 0, first, 0, first.length);
+		final KdTree<Vertex> tree = new KdTree<Vertex>(BBOX, first, 2);
+		tree.setConcurrentAccess(true);
+		final int start = first.length;
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+			tasks.add(new Callable<Integer>()
+			{
+				public Integer call()
+				{
+					for (int i = start; i < vertices.length; i++)
+					{
+						tree.add(vertices[i]);
+						if (i % 10 == 0)
+							tree.remove(vertices[i]);
+					}
+					return 0;
+				}
+			});
+			for (int t = 0; t < 3; t++)
+			{
+				final Random rand = new Random(t);
+				tasks.add(new Callable<Integer>()
+				{
+					public Integer call()
+					{
+						int found = 0;
+						double [] xyz = new double[3];
+						Vertex [] knn = new Vertex[4];
+						double [] dist2 = new double[knn.length];
+						KdTree<Vertex>.SearchBuffer buffer = tree.createSearchBuffer();
+						for (int i = 0; i < 20000; i++)
+						{
+							for (int k = 0; k < 3; k++)
+								xyz[k] = rand.nextDouble();
+							// Exercise descent, sibling search and walk
+							if (tree.getNearestVertex(metric, xyz) != null &&
+								tree.getNearVertex(metric, xyz) != null &&
+								tree.getNearestVertices(metric, xyz, knn, dist2, buffer) == knn.length)
+								found++;
+						}
+						return found;
+					}
+				});
+			}
+			List<Future<Integer>> results = pool.invokeAll(tasks);
+			for (int t = 1; t < results.size(); t++)
+				assertEquals(20000, results.get(t).get().intValue());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		int expected = vertices.length - (vertices.length - start + 9) / 10;
+		assertEquals(expected, tree.getAllVertices(expected).size());
+		Random rand = new Random(3L);
+		double [] xyz = new double[3];
+		for (int i = 0; i < 100; i++)
+		{
+			for (int k = 0; k < 3; k++)
+				xyz[k] = rand.nextDouble();
+			assertSame(tree.getNearestVertexDebug(metric, xyz), tree.getNearestVertex(metric, xyz));
+		}
+	}
+
+	// Metric whose unit ball is an axis-aligned ellipsoid
+	private static final class AnisotropicMetric implements Metric
+	{
+		private final double [] bounds;
+		private AnisotropicMetric(double a, double b, double c)
+		{
+			bounds = new double[] { a, b, c };
+		}
+		public double distance2(double [] p1, double [] p2)
+		{
+			double ret = 0.0;
+			for (int k = 0; k < 3; k++)
+			{
+				double d = (p1[k] - p2[k]) / bounds[k];
+				ret += d * d;
+			}
+			return ret;
+		}
+		public double [] getUnitBallBBox()
+		{
+			return bounds;
+		}
+	}
+
+	private static double [] sortedDistances(Metric m, double [] uv, Vertex [] vertices)
+	{
+		double [] ret = new double[vertices.length];
+		for (int i = 0; i < vertices.length; i++)
+			ret[i] = m.distance2(uv, vertices[i].getUV());
+		Arrays.sort(ret);
+		return ret;
+	}
+
+	@Test public void nearestVertices()
+	{
+		Vertex [] vertices = createVertices(20000, 4L);
+		KdTree<Vertex> tree = new KdTree<Vertex>(BBOX, vertices, 1);
+		KdTree<Vertex>.SearchBuffer buffer = tree.createSearchBuffer();
+		Metric [] metrics = { metric, new AnisotropicMetric(1.0, 0.1, 0.01) };
+		Vertex [] result = new Vertex[16];
+		double [] dist2 = new double[16];
+		Random rand = new Random(5L);
+		double [] xyz = new double[3];
+		for (int i = 0; i < 200; i++)
+		{
+			Metric m = metrics[i % 2];
+			for (int k = 0; k < 3; k++)
+				xyz[k] = rand.nextDouble();
+			double [] expected = sortedDistances(m, xyz, vertices);
+			assertEquals(result.length, tree.getNearestVertices(m, xyz, result, dist2, buffer));
+			for (int j = 0; j < result.length; j++)
+			{
+				assertEquals(expected[j], dist2[j], 0.0);
+				assertEquals(dist2[j], m.distance2(xyz, result[j].getUV()), 0.0);
+			}
+			Vertex v = tree.getNearestVertex(m, xyz, buffer);
+			assertEquals(expected[0], m.distance2(xyz, v.getUV()), 0.0);
+		}
+		// Less vertices than requested
+		KdTree<Vertex> small = new KdTree<Vertex>(BBOX, new Vertex[] { vertices[0], vertices[1] }, 1);
+		assertEquals(2, small.getNearestVertices(metric, xyz, result, dist2, small.createSearchBuffer()));
+		assertTrue(dist2[0] <= dist2[1]);
+	}
+
+	@Test public void verticesInRadius()
+	{
+		Vertex [] vertices = createVertices(20000, 6L);
+		KdTree<Vertex> tree = new KdTree<Vertex>(BBOX, vertices, 1);
+		KdTree<Vertex>.SearchBuffer buffer = tree.createSearchBuffer();
+		Metric m = new AnisotropicMetric(0.1, 0.05, 0.2);
+		Vertex [] result = new Vertex[10000];
+		double [] dist2 = new double[10000];
+		Random rand = new Random(7L);
+		double [] xyz = new double[3];
+		for (int i = 0; i < 100; i++)
+		{
+			for (int k = 0; k < 3; k++)
+				xyz[k] = rand.nextDouble();
+			double radius2 = rand.nextDouble();
+			int expected = 0;
+			for (Vertex v : vertices)
+			{
+				if (m.distance2(xyz, v.getUV()) <= radius2)
+					expected++;
+			}
+			int nr = tree.getVerticesInRadius(m, xyz, radius2, result, dist2, buffer);
+			assertEquals(expected, nr);
+			for (int j = 0; j < nr; j++)
+			{
+				assertTrue(dist2[j] <= radius2);
+				assertEquals(dist2[j], m.distance2(xyz, result[j].getUV()), 0.0);
+			}
+		}
+		// Result array is too small
+		Vertex [] one = new Vertex[1];
+		assertTrue(tree.getVerticesInRadius(m, xyz, 1.0, one, dist2, buffer) > 1);
+		assertNotNull(one[0]);
+	}
+}
@@ -0,0 +1,121 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.patch;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.jcae.mesh.amibe.ds.MeshParameters;
+import org.jcae.mesh.amibe.metrics.PoolWorkVectors;
+import org.jcae.mesh.cad.CADSurfaceEvaluator;
+import org.jcae.mesh.cad.analytic.Sphere;
+import org.jcae.mesh.cad.analytic.Torus;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class MetricField2DTest
+{
+	private static final double [] BBMIN = { 0.0, 0.0 };
+	private static final double [] BBMAX = { 2.0 * Math.PI, 2.0 * Math.PI };
+
+	private final PoolWorkVectors temp = new PoolWorkVectors();
+
+	private static MeshParameters createParameters(String size, String deflection)
+	{
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("size", size);
+		if (deflection != null)
+			options.put("deflection", deflection);
+		return new MeshParameters(options);
+	}
+
+	private MetricOnSurface exact(CADSurfaceEvaluator surface, MeshParameters mp, double u, double v)
+	{
+		return new MetricBuilder(surface, u, v, mp, temp).computeMetricOnSurface();
+	}
+
+	// Returns the largest relative error on squared lengths for few directions
+	private static double maxError(MetricOnSurface m, MetricOnSurface ref)
+	{
+		double ret = 0.0;
+		for (int k = 0; k < 16; k++)
+		{
+			double angle = k * Math.PI / 16.0;
+			double x = Math.cos(angle);
+			double y = Math.sin(angle);
+			double d = m.dot(x, y, x, y) / ref.dot(x, y, x, y) - 1.0;
+			ret = Math.max(ret, Math.abs(d));
+		}
+		return ret;
+	}
+
+	private void checkField(CADSurfaceEvaluator surface, MeshParameters mp,
+		double [] bbmin, double [] bbmax)
+	{
+		MetricField2D field = new MetricField2D(surface, mp, temp, bbmin, bbmax);
+		Random rand = new Random(1234L);
+		int nr = 20000;
+		double sumError = 0.0;
+		for (int i = 0; i < nr; i++)
+		{
+			double u = bbmin[0] + rand.nextDouble() * (bbmax[0] - bbmin[0]);
+			double v = bbmin[1] + rand.nextDouble() * (bbmax[1] - bbmin[1]);
+			double error = maxError(field.getMetric(u, v), exact(surface, mp, u, v));
+			assertTrue("Error too large at ("+u+","+v+"): "+error, error < 0.3);
+			sumError += error;
+		}
+		assertTrue("Mean error: "+sumError / nr, sumError / nr < 0.05);
+		assertEquals(nr, field.getNumberOfQueries());
+		assertTrue(field.toString(), field.getNumberOfSavedEvaluations() > nr / 2);
+		assertTrue(field.getNumberOfInterpolations() <= nr);
+		assertTrue(field.getNumberOfCells() > 1);
+	}
+
+	@Test public void torus()
+	{
+		checkField(new Torus(3.0, 1.0), createParameters("0.1", null), BBMIN, BBMAX);
+	}
+
+	@Test public void torusDeflection()
+	{
+		checkField(new Torus(3.0, 1.0), createParameters("0.5", "0.01"), BBMIN, BBMAX);
+	}
+
+	@Test public void sphere()
+	{
+		//  Avoid poles, metric is singular there
+		double [] bbmin = { 0.0, -1.5 };
+		double [] bbmax = { 2.0 * Math.PI, 1.5 };
+		checkField(new Sphere(2.0), createParameters("0.1", "0.01"), bbmin, bbmax);
+	}
+
+	@Test public void outside()
+	{
+		Torus surface = new Torus(3.0, 1.0);
+		MeshParameters mp = createParameters("0.1", null);
+		MetricField2D field = new MetricField2D(surface, mp, temp, BBMIN, BBMAX);
+		long evaluations = field.getNumberOfEvaluations();
+		MetricOnSurface m = field.getMetric(-1.0, 1.0);
+		assertEquals(evaluations + 1, field.getNumberOfEvaluations());
+		assertEquals(0, field.getNumberOfInterpolations());
+		assertEquals(0.0, maxError(m, exact(surface, mp, -1.0, 1.0)), 0.0);
+	}
+}
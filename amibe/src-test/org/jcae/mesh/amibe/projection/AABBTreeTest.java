@@ -0,0 +1,117 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.projection;
+
+import org.jcae.mesh.amibe.algos3d.SphereBuilder;
+import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AABBTreeTest
+{
+	private static Triangle bruteForce(Mesh mesh, double [] pos)
+	{
+		int [] index = new int[2];
+		double dmin = Double.MAX_VALUE;
+		Triangle ret = null;
+		for (Triangle t : mesh.getTriangles())
+		{
+			if (t.hasAttributes(AbstractHalfEdge.OUTER))
+				continue;
+			double d = MeshLiaison.sqrDistanceVertexTriangle(pos, t, index);
+			if (d < dmin)
+			{
+				dmin = d;
+				ret = t;
+			}
+		}
+		return ret;
+	}
+
+	private static double [] randomPoint(Random rand)
+	{
+		double [] pos = new double[3];
+		for (int k = 0; k < 3; k++)
+			pos[k] = 2.4 * rand.nextDouble() - 1.2;
+		return pos;
+	}
+
+	@Test public void nearestOnSphere()
+	{
+		Mesh mesh = SphereBuilder.createShuffledSphereMesh(4);
+		AABBTree tree = new AABBTree(mesh.getTriangles());
+		tree.setCountQueries(true);
+		Random rand = new Random(12345L);
+		int [] index = new int[2];
+		for (int i = 0; i < 500; i++)
+		{
+			double [] pos = randomPoint(rand);
+			Triangle ref = bruteForce(mesh, pos);
+			Triangle t = tree.getNearestTriangle(pos);
+			assertEquals(MeshLiaison.sqrDistanceVertexTriangle(pos, ref, index),
+				MeshLiaison.sqrDistanceVertexTriangle(pos, t, index), 0.0);
+		}
+		assertEquals(500L, tree.getNumberOfQueries());
+		// Check that tree is really pruned
+		assertTrue(tree.getNumberOfDistances() < 500L * tree.size() / 10);
+	}
+
+	@Test public void concurrentQueries() throws InterruptedException
+	{
+		final Mesh mesh = SphereBuilder.createShuffledSphereMesh(3);
+		final AABBTree tree = new AABBTree(mesh.getTriangles());
+		final Triangle hint = mesh.getTriangles().iterator().next();
+		final AtomicInteger errors = new AtomicInteger();
+		Thread [] threads = new Thread[4];
+		for (int n = 0; n < threads.length; n++)
+		{
+			final long seed = n;
+			threads[n] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					Random rand = new Random(seed);
+					int [] index = new int[2];
+					for (int i = 0; i < 200; i++)
+					{
+						double [] pos = randomPoint(rand);
+						Triangle ref = bruteForce(mesh, pos);
+						Triangle t = tree.getNearestTriangle(pos, (i % 2 == 0) ? null : hint);
+						if (MeshLiaison.sqrDistanceVertexTriangle(pos, ref, index) !=
+						    MeshLiaison.sqrDistanceVertexTriangle(pos, t, index))
+							errors.incrementAndGet();
+					}
+				}
+			};
+			threads[n].start();
+		}
+		for (Thread t : threads)
+			t.join();
+		assertEquals(0, errors.get());
+		// Shared counters are disabled by default
+		assertEquals(0L, tree.getNumberOfQueries());
+	}
+}
@@ -143,5 +143,23 @@ public class MeshLiaisonTest
 		Triangle tRes = ot.getTri();
 		assertTrue("North Pole not found", tRes.vertex[0] == northPole || tRes.vertex[1] == northPole || tRes.vertex[2] == northPole);
 	}
+
+	@Test public void finderWithIndex()
+	{
+		mesh = SphereBuilder.createShuffledSphereMesh(3);
+		MeshLiaison liaison = new MeshLiaison(mesh, MeshTraitsBuilder.getDefault3D().addNodeList());
+		liaison.buildBackgroundIndex();
+		liaison.getBackgroundIndex().setCountQueries(true);
+		Mesh newMesh = liaison.getMesh();
+		Vertex start = newMesh.getNodes().iterator().next();
+		Vertex vTest = newMesh.createVertex(0.3, -0.2, 0.9);
+		// A negative error forces a lookup into background index
+		AbstractHalfEdge ref = MeshLiaison.findSurroundingTriangleDebug(vTest, mesh);
+		AbstractHalfEdge ot = liaison.findSurroundingTriangle(vTest, start, -1.0, true);
+		assertTrue("findSurroundingTriangle failed", ot != null);
+		assertTrue("findSurroundingTriangle failed", ref.getTri() == ot.getTri());
+		assertEquals(1L, liaison.getNumberOfWalkMisses());
+		assertEquals(1L, liaison.getBackgroundIndex().getNumberOfQueries());
+	}
 	
 }
@@ -0,0 +1,126 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class PIndexedHeapTest
+{
+	private static final class Item implements PIndexedHeap.Indexed
+	{
+		private int slot = -1;
+		private double value;
+		public int getHeapSlot()
+		{
+			return slot;
+		}
+		public void setHeapSlot(int s)
+		{
+			slot = s;
+		}
+	}
+
+	private static void checkOrder(QualityQueue<Item> heap, Item [] items, int n)
+	{
+		double [] expected = new double[n];
+		int k = 0;
+		for (Item it : items)
+		{
+			if (heap.contains(it))
+			{
+				expected[k] = it.value;
+				k++;
+			}
+		}
+		assertEquals(n, k);
+		assertEquals(n, heap.size());
+		Arrays.sort(expected);
+		int i = 0;
+		for (Iterator<QSortedTree.Node<Item>> it = heap.iterator(); it.hasNext(); i++)
+		{
+			QSortedTree.Node<Item> node = it.next();
+			assertEquals(expected[i], node.getValue(), 0.0);
+			assertEquals(node.getData().value, node.getValue(), 0.0);
+		}
+		assertEquals(n, i);
+		i = n - 1;
+		for (Iterator<QSortedTree.Node<Item>> it = heap.backwardIterator(); it.hasNext(); i--)
+			assertEquals(expected[i], it.next().getValue(), 0.0);
+		assertEquals(-1, i);
+	}
+
+	private void randomOperations(int arity)
+	{
+		Random rand = new Random(arity);
+		PIndexedHeap<Item> heap = new PIndexedHeap<Item>(arity);
+		Item [] items = new Item[500];
+		for (int i = 0; i < items.length; i++)
+		{
+			items[i] = new Item();
+			// Many duplicates
+			items[i].value = rand.nextInt(50);
+			heap.insert(items[i], items[i].value);
+		}
+		checkOrder(heap, items, items.length);
+		int n = items.length;
+		for (int i = 0; i < items.length; i += 3)
+		{
+			assertTrue(heap.remove(items[i]));
+			assertFalse(heap.remove(items[i]));
+			assertEquals(-1, items[i].getHeapSlot());
+			n--;
+		}
+		checkOrder(heap, items, n);
+		for (int i = 1; i < items.length; i += 2)
+		{
+			items[i].value = rand.nextDouble() * 100.0;
+			assertEquals(i % 3 != 0, heap.update(items[i], items[i].value));
+		}
+		checkOrder(heap, items, n);
+		heap.clear();
+		assertTrue(heap.isEmpty());
+		for (Item it : items)
+			assertEquals(-1, it.getHeapSlot());
+	}
+
+	@Test public void binary()
+	{
+		randomOperations(2);
+	}
+
+	@Test public void quaternary()
+	{
+		randomOperations(4);
+	}
+
+	@Test public void rootValue()
+	{
+		PIndexedHeap<Item> heap = new PIndexedHeap<Item>();
+		for (int i = 0; i < 101; i++)
+			heap.insert(new Item(), 100 - i);
+		double median = heap.getRootValue();
+		assertTrue("Bad median approximation: "+median, median > 25.0 && median < 75.0);
+	}
+}
@@ -0,0 +1,143 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.validation;
+
+import org.jcae.mesh.amibe.algos3d.QEMDecimateHalfEdge;
+import org.jcae.mesh.amibe.algos3d.Remesh;
+import org.jcae.mesh.amibe.algos3d.SmoothNodes3DBg;
+import org.jcae.mesh.amibe.algos3d.SphereBuilder;
+import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.jcae.mesh.amibe.projection.MeshLiaison;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class QualityTrackerTest
+{
+	// Compare tracker against a full computation; percentiles are
+	// interpolated within bins
+	private static void check(Mesh mesh, QualityTracker tracker, QualityProcedure qproc, float binWidth)
+	{
+		QualityFloat data = new QualityFloat();
+		data.setQualityProcedure(qproc);
+		if (qproc.getType() == QualityProcedure.FACE)
+		{
+			for (Triangle t : mesh.getTriangles())
+			{
+				if (!t.hasAttributes(AbstractHalfEdge.OUTER))
+					data.compute(t);
+			}
+		}
+		else
+		{
+			Set<Vertex> nodes = new HashSet<Vertex>();
+			for (Triangle t : mesh.getTriangles())
+			{
+				if (!t.hasAttributes(AbstractHalfEdge.OUTER))
+					nodes.addAll(Arrays.asList(t.vertex));
+			}
+			for (Vertex v : nodes)
+				data.compute(v);
+		}
+		data.finish();
+		assertEquals(data.size(), tracker.size());
+		assertEquals(data.getValueByPercent(0.0), tracker.getMinValue(), 0.0f);
+		assertEquals(data.getValueByPercent(1.0), tracker.getMaxValue(), 0.0f);
+		assertEquals(data.getMeanValue(), tracker.getMeanValue(), 1.e-4f * Math.abs(data.getMeanValue()));
+		assertEquals(data.getValueByPercent(0.5), tracker.getValueByPercent(0.5), binWidth);
+	}
+
+	@Test public void remeshSphere()
+	{
+		MeshTraitsBuilder mtb = MeshTraitsBuilder.getDefault3D();
+		mtb.addNodeList();
+		MeshLiaison liaison = new MeshLiaison(SphereBuilder.createShuffledSphereMesh(3), mtb);
+		Mesh mesh = liaison.getMesh();
+		QualityProcedure angle = new MinAngleFace();
+		QualityTracker angleTracker = new QualityTracker(mesh, angle, 0.0f, (float) Math.PI, 180);
+		QualityProcedure dihedral = new DihedralAngle();
+		QualityTracker dihedralTracker = new QualityTracker(mesh, dihedral, -1.0f, 1.0f, 200);
+		QualityProcedure connectivity = new NodeConnectivity();
+		QualityTracker connectivityTracker = new QualityTracker(mesh, connectivity, 0.0f, 20.0f, 20);
+		check(mesh, angleTracker, angle, (float) Math.PI / 180.0f);
+
+		// Vertex splits and edge swaps
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("size", "0.05");
+		new Remesh(liaison, options).compute();
+		check(mesh, angleTracker, angle, (float) Math.PI / 180.0f);
+		check(mesh, dihedralTracker, dihedral, 0.01f);
+		check(mesh, connectivityTracker, connectivity, 1.0f);
+
+		// Edge collapses
+		options.clear();
+		options.put("size", "0.1");
+		new QEMDecimateHalfEdge(liaison, options).compute();
+		check(mesh, angleTracker, angle, (float) Math.PI / 180.0f);
+		check(mesh, dihedralTracker, dihedral, 0.01f);
+		check(mesh, connectivityTracker, connectivity, 1.0f);
+
+		// Vertex moves
+		long before = angleTracker.getNumberOfComputedValues();
+		options.clear();
+		options.put("iterations", "1");
+		new SmoothNodes3DBg(liaison, options).compute();
+		check(mesh, angleTracker, angle, (float) Math.PI / 180.0f);
+		check(mesh, dihedralTracker, dihedral, 0.01f);
+		assertTrue("No value recomputed", angleTracker.getNumberOfComputedValues() > before);
+
+		// Detached tracker is not updated any more
+		angleTracker.detach();
+		before = angleTracker.getNumberOfComputedValues();
+		new SmoothNodes3DBg(liaison, options).compute();
+		assertEquals(before, angleTracker.getNumberOfComputedValues());
+	}
+
+	@Test public void localUpdate()
+	{
+		Mesh mesh = SphereBuilder.createShuffledSphereMesh(3);
+		QualityProcedure angle = new MinAngleFace();
+		QualityTracker tracker = new QualityTracker(mesh, angle, 0.0f, (float) Math.PI, 180);
+		long before = tracker.getNumberOfComputedValues();
+		// Swap a single edge
+		AbstractHalfEdge ot = null;
+		for (Triangle t : mesh.getTriangles())
+		{
+			if (t.hasAttributes(AbstractHalfEdge.OUTER))
+				continue;
+			ot = t.getAbstractHalfEdge(ot);
+			if (ot.hasSymmetricEdge() && !ot.hasAttributes(AbstractHalfEdge.BOUNDARY | AbstractHalfEdge.OUTER))
+				break;
+		}
+		mesh.edgeSwap(ot);
+		check(mesh, tracker, angle, (float) Math.PI / 180.0f);
+		long computed = tracker.getNumberOfComputedValues() - before;
+		assertTrue("Too many values recomputed: "+computed, computed < 100);
+	}
+}
@@ -0,0 +1,377 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.Set;
+import org.jcae.mesh.Mesher;
+import org.jcae.mesh.cad.CADEdge;
+import org.jcae.mesh.cad.CADExplorer;
+import org.jcae.mesh.cad.CADFace;
+import org.jcae.mesh.cad.CADGeomCurve2D;
+import org.jcae.mesh.cad.CADGeomCurve3D;
+import org.jcae.mesh.cad.CADShape;
+import org.jcae.mesh.cad.CADShapeEnum;
+import org.jcae.mesh.cad.CADShapeFactory;
+import org.jcae.mesh.cad.CADSurfaceEvaluator;
+import org.jcae.mesh.cad.CADVertex;
+import org.jcae.mesh.cad.CADWire;
+import org.jcae.mesh.cad.CADWireExplorer;
+import org.jcae.mesh.TestUtils;
+import org.jcae.mesh.xmldata.MeshReader;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class AnalyticShapeFactoryTest
+{
+	static
+	{
+		if (System.getProperty("org.jcae.mesh.cad") == null)
+			System.setProperty("org.jcae.mesh.cad", AnalyticShapeFactory.class.getName());
+	}
+
+	private static final CADShapeFactory factory = CADShapeFactory.getFactory();
+
+	private static int count(CADShape shape, CADShapeEnum type, boolean distinct)
+	{
+		Set<CADShape> seen = new HashSet<CADShape>();
+		int ret = 0;
+		CADExplorer exp = factory.newExplorer();
+		for (exp.init(shape, type); exp.more(); exp.next())
+		{
+			ret++;
+			seen.add(exp.current());
+		}
+		return distinct ? seen.size() : ret;
+	}
+
+	private static void assertPoint(String msg, double [] expected, double [] actual, double eps)
+	{
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(msg, expected[i], actual[i], eps);
+	}
+
+	/**
+	 * Checks that wires are closed and counterclockwise in parameter
+	 * space, that curves on surfaces match 3D curves, and that normals
+	 * point outwards.
+	 */
+	private static void checkFaces(CADShape shape, double [] inside)
+	{
+		CADExplorer expF = factory.newExplorer();
+		CADExplorer expW = factory.newExplorer();
+		CADWireExplorer wexp = factory.newWireExplorer();
+		double [] r = new double[CADSurfaceEvaluator.SIZE];
+		for (expF.init(shape, CADShapeEnum.FACE); expF.more(); expF.next())
+		{
+			CADFace face = (CADFace) expF.current();
+			assertTrue(face.isOrientationForward());
+			AnalyticSurface surface = ((AnalyticFace) face).getSurface();
+			//  Sample a point between the first vertex and the centroid
+			//  of wire samples, it is inside the face
+			double [] centroid = new double[3];
+			double [] sample = null;
+			for (expW.init(face, CADShapeEnum.WIRE); expW.more(); expW.next())
+			{
+				double [] first = null;
+				double [] last = null;
+				double area = 0.0;
+				for (wexp.init((CADWire) expW.current(), face); wexp.more(); wexp.next())
+				{
+					CADEdge edge = wexp.current();
+					CADGeomCurve2D c2d = factory.newCurve2D(edge, face);
+					CADGeomCurve3D c3d = factory.newCurve3D(edge);
+					assertNotNull(c2d);
+					assertEquals(edge.isDegenerated(), c3d == null);
+					double [] range = edge.range();
+					CADVertex [] v = edge.vertices();
+					double t0 = range[0];
+					double t1 = range[1];
+					if (!edge.isOrientationForward())
+					{
+						t0 = range[1];
+						t1 = range[0];
+					}
+					double [] start = c2d.value(t0);
+					if (last != null)
+						assertPoint("Wire is not closed", last, start, 1.e-12);
+					else
+						first = start;
+					int n = 16;
+					double [] prev = start;
+					for (int i = 0; i <= n; i++)
+					{
+						double t = range[0] + (range[1] - range[0]) * i / n;
+						double [] uv = c2d.value(t);
+						double [] xyz = new double[3];
+						surface.value(uv[0], uv[1], xyz, 0);
+						if (c3d != null)
+							assertPoint("Curves do not match", c3d.value(t), xyz, 1.e-12);
+						else
+							assertPoint("Degenerated edge", v[0].pnt(), xyz, 1.e-12);
+						uv = c2d.value(t0 + (t1 - t0) * i / n);
+						if (sample == null)
+							sample = uv;
+						centroid[0] += uv[0];
+						centroid[1] += uv[1];
+						centroid[2] += 1.0;
+						area += prev[0] * uv[1] - prev[1] * uv[0];
+						prev = uv;
+					}
+					assertPoint("First vertex", v[0].pnt(), v0(surface, c2d.value(range[0])), 1.e-12);
+					assertPoint("Last vertex", v[1].pnt(), v0(surface, c2d.value(range[1])), 1.e-12);
+					last = c2d.value(t1);
+				}
+				assertPoint("Wire is not closed", first, last, 1.e-12);
+				assertTrue("Wire is not counterclockwise", area > 0.0);
+			}
+			//  Normal at vertex parameters
+			CADExplorer expV = factory.newExplorer();
+			for (expV.init(face, CADShapeEnum.VERTEX); expV.more(); expV.next())
+			{
+				CADVertex v = (CADVertex) expV.current();
+				double [] uv = v.parameters(face);
+				assertPoint("Vertex parameters", v.pnt(), v0(surface, uv), 1.e-12);
+			}
+			double [] bbox = face.boundingBox();
+			surface.evaluate(
+				0.9 * sample[0] + 0.1 * centroid[0] / centroid[2],
+				0.9 * sample[1] + 0.1 * centroid[1] / centroid[2], r, 0);
+			double dot = 0.0;
+			for (int i = 0; i < 3; i++)
+			{
+				dot += r[CADSurfaceEvaluator.NORMAL+i] * (r[CADSurfaceEvaluator.POINT+i] - inside[i]);
+				assertTrue(r[CADSurfaceEvaluator.POINT+i] >= bbox[i] - 1.e-12);
+				assertTrue(r[CADSurfaceEvaluator.POINT+i] <= bbox[i+3] + 1.e-12);
+			}
+			assertTrue("Normal is not outwards", dot > 0.0);
+		}
+	}
+
+	private static double [] v0(AnalyticSurface surface, double [] uv)
+	{
+		double [] xyz = new double[3];
+		surface.value(uv[0], uv[1], xyz, 0);
+		return xyz;
+	}
+
+	@Test public void box()
+	{
+		CADShape box = AnalyticModel.box(new double[] {1.0, 2.0, 3.0}, 1.0, 2.0, 3.0);
+		assertEquals(6, count(box, CADShapeEnum.FACE, true));
+		assertEquals(6, count(box, CADShapeEnum.WIRE, true));
+		assertEquals(24, count(box, CADShapeEnum.EDGE, false));
+		assertEquals(12, count(box, CADShapeEnum.EDGE, true));
+		assertEquals(8, count(box, CADShapeEnum.VERTEX, true));
+		assertPoint("Bounding box", new double[] {1.0, 2.0, 3.0, 2.0, 4.0, 6.0}, box.boundingBox(), 0.0);
+		checkFaces(box, new double[] {1.5, 3.0, 4.5});
+	}
+
+	@Test public void cylinder()
+	{
+		double [] origin = new double[] {1.0, 2.0, 3.0};
+		CADShape cylinder = AnalyticModel.cylinder(origin, new double[] {1.0, 1.0, 0.0}, 2.0, 5.0);
+		assertEquals(3, count(cylinder, CADShapeEnum.FACE, true));
+		assertEquals(3, count(cylinder, CADShapeEnum.EDGE, true));
+		assertEquals(2, count(cylinder, CADShapeEnum.VERTEX, true));
+		CADExplorer exp = factory.newExplorer();
+		double [] length = new double[3];
+		int i = 0;
+		for (exp.init(cylinder, CADShapeEnum.WIRE); exp.more(); exp.next())
+			length[i++] = ((CADWire) exp.current()).length();
+		//  Seam edge is counted twice
+		assertEquals(8.0 * Math.PI + 10.0, length[0], 1.e-12);
+		assertEquals(4.0 * Math.PI, length[1], 1.e-12);
+		checkFaces(cylinder, new double[] {1.0 + 2.5 * Math.sqrt(0.5), 2.0 + 2.5 * Math.sqrt(0.5), 3.0});
+	}
+
+	@Test public void sphere()
+	{
+		double [] center = new double[] {1.0, 2.0, 3.0};
+		CADShape sphere = AnalyticModel.sphere(center, 2.0);
+		assertEquals(1, count(sphere, CADShapeEnum.FACE, true));
+		assertEquals(3, count(sphere, CADShapeEnum.EDGE, true));
+		assertEquals(2, count(sphere, CADShapeEnum.VERTEX, true));
+		int degenerated = 0;
+		CADExplorer exp = factory.newExplorer();
+		for (exp.init(sphere, CADShapeEnum.EDGE); exp.more(); exp.next())
+			if (((CADEdge) exp.current()).isDegenerated())
+				degenerated++;
+		assertEquals(2, degenerated);
+		checkFaces(sphere, center);
+	}
+
+	@Test public void torus()
+	{
+		double [] center = new double[] {1.0, 2.0, 3.0};
+		CADShape torus = AnalyticModel.torus(center, new double[] {0.0, 1.0, 1.0}, 3.0, 1.0);
+		assertEquals(1, count(torus, CADShapeEnum.FACE, true));
+		assertEquals(4, count(torus, CADShapeEnum.EDGE, false));
+		assertEquals(2, count(torus, CADShapeEnum.EDGE, true));
+		assertEquals(1, count(torus, CADShapeEnum.VERTEX, true));
+		CADExplorer exp = factory.newExplorer();
+		exp.init(torus, CADShapeEnum.VERTEX);
+		double [] p = ((CADVertex) exp.current()).pnt();
+		//  Inside the tube
+		double [] inside = new double[3];
+		for (int i = 0; i < 3; i++)
+			inside[i] = center[i] + 0.75 * (p[i] - center[i]);
+		checkFaces(torus, inside);
+	}
+
+	@Test public void orientation()
+	{
+		CADShape box = AnalyticModel.box(new double[] {0.0, 0.0, 0.0}, 1.0, 1.0, 1.0);
+		CADShape rev = box.reversed();
+		assertEquals(box, rev);
+		assertTrue(box.isSame(rev));
+		assertEquals(box.hashCode(), rev.hashCode());
+		assertFalse(rev.isOrientationForward());
+		CADExplorer exp = factory.newExplorer();
+		for (exp.init(rev, CADShapeEnum.FACE); exp.more(); exp.next())
+			assertFalse(exp.current().isOrientationForward());
+		//  Curves of seam edges depend on edge orientation relative
+		//  to the face
+		CADShape cylinder = AnalyticModel.cylinder(new double[] {0.0, 0.0, 0.0}, new double[] {0.0, 0.0, 1.0}, 1.0, 1.0);
+		CADExplorer expF = factory.newExplorer();
+		CADExplorer expE = factory.newExplorer();
+		expF.init(cylinder, CADShapeEnum.FACE);
+		CADFace face = (CADFace) expF.current();
+		expF.init(cylinder.reversed(), CADShapeEnum.FACE);
+		CADFace revFace = (CADFace) expF.current();
+		double [][] uv = new double[4][];
+		int i = 0;
+		for (expE.init(face, CADShapeEnum.EDGE); expE.more(); expE.next())
+			uv[i++] = factory.newCurve2D((CADEdge) expE.current(), face).value(0.5);
+		assertFalse(uv[1][0] == uv[3][0]);
+		i = 0;
+		for (expE.init(revFace, CADShapeEnum.EDGE); expE.more(); expE.next())
+		{
+			CADEdge edge = (CADEdge) expE.current();
+			assertEquals(i < 2, !edge.isOrientationForward());
+			assertPoint("Curve on reversed face", uv[i++], factory.newCurve2D(edge, revFace).value(0.5), 0.0);
+		}
+	}
+
+	@Test public void readPattern() throws IOException
+	{
+		CADShape shape = AnalyticModel.read(new StringReader(
+			"# Test\n" +
+			"box 0 0 0 1 1 1\n" +
+			"sphere 3 0.5 0.5 0.5\n" +
+			"\n" +
+			"pattern 2 3 1 5 2 0\n"));
+		assertEquals(12, count(shape, CADShapeEnum.SOLID, true));
+		assertEquals(6 * 7, count(shape, CADShapeEnum.FACE, true));
+		assertPoint("Bounding box", new double[] {0.0, 0.0, 0.0, 8.5, 5.0, 1.0}, shape.boundingBox(), 1.e-12);
+
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			String file = dir.getPath()+File.separator+"pattern.txt";
+			shape.writeNative(file);
+			CADShape copy = factory.newShape(file);
+			assertEquals(12, count(copy, CADShapeEnum.SOLID, true));
+			assertPoint("Bounding box", shape.boundingBox(), copy.boundingBox(), 0.0);
+			//  A face is written as the primitive which owns it
+			CADExplorer exp = factory.newExplorer();
+			exp.init(copy, CADShapeEnum.FACE);
+			exp.current().writeNative(file);
+			assertEquals(6, count(factory.newShape(file), CADShapeEnum.FACE, true));
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test(expected=IOException.class) public void readInvalid() throws IOException
+	{
+		AnalyticModel.read(new StringReader("cone 0 0 0 1\n"));
+	}
+
+	@Test public void mesher() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			File model = new File(dir, "model.txt");
+			FileWriter out = new FileWriter(model);
+			out.write("box 0 0 0 1 1 1\n");
+			out.write("cylinder 3 0 0 0 0 1 0.5 1\n");
+			out.write("sphere 0 3 0 0.5\n");
+			out.write("torus 3 3 0 0 0 1 1 0.3\n");
+			out.close();
+			String outputDir = dir.getPath()+File.separator+"out";
+			Mesher.main(new String[] { model.getPath(), outputDir, "0.1", "0.0" });
+			int [] res = MeshReader.getInfos(outputDir);
+			assertTrue(res[1] > 1000);
+			//  Each closed surface has Euler characteristic 2, except
+			//  the torus.
+			assertEquals(6, res[0] - res[1] / 2);
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test public void parallelMesher() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		String threads = System.getProperty("org.jcae.mesh.Mesher.threads");
+		try
+		{
+			File model = new File(dir, "model.txt");
+			FileWriter out = new FileWriter(model);
+			out.write("box 0 0 0 1 1 1\n");
+			out.write("cylinder 3 0 0 0 0 1 0.5 1\n");
+			out.write("sphere 0 3 0 0.5\n");
+			out.write("torus 3 3 0 0 0 1 1 0.3\n");
+			out.write("pattern 2 2 1 6 6 0\n");
+			out.close();
+			File seqDir = new File(dir, "seq");
+			File parDir = new File(dir, "par");
+			System.setProperty("org.jcae.mesh.Mesher.threads", "1");
+			Mesher.main(new String[] { model.getPath(), seqDir.getPath(), "0.2", "0.0" });
+			System.setProperty("org.jcae.mesh.Mesher.threads", "4");
+			Mesher.main(new String[] { model.getPath(), parDir.getPath(), "0.2", "0.0" });
+			int [] res = MeshReader.getInfos(seqDir.getPath());
+			assertEquals(4 * 6, res[0] - res[1] / 2);
+			//  Faces are meshed independently, so output files do not
+			//  depend on the number of threads
+			TestUtils.assertSameFiles(seqDir, parDir);
+		}
+		finally
+		{
+			if (threads == null)
+				System.clearProperty("org.jcae.mesh.Mesher.threads");
+			else
+				System.setProperty("org.jcae.mesh.Mesher.threads", threads);
+			TestUtils.delete(dir);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import org.jcae.mesh.cad.CADGeomSurface;
+import org.jcae.mesh.cad.CADGeomSurfaceEvaluator;
+import org.jcae.mesh.cad.CADSurfaceEvaluator;
+import org.jcae.mesh.cad.CADSurfaceEvaluatorAdapter;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class AnalyticSurfaceTest
+{
+	private static final double [] ORIGIN = new double[] {1.0, -2.0, 0.5};
+	private static final double [] AXIS = new double[] {1.0, 2.0, 2.0};
+	private static final double [] XDIR = new double[] {0.0, 1.0, 0.0};
+
+	private static double dot(double [] a, int i, double [] b, int j)
+	{
+		return a[i] * b[j] + a[i+1] * b[j+1] + a[i+2] * b[j+2];
+	}
+
+	private static void checkDerivatives(AnalyticSurface s, double u, double v)
+	{
+		final double h = 1.e-5;
+		double [] r = new double[CADSurfaceEvaluator.SIZE];
+		double [] rpu = new double[CADSurfaceEvaluator.SIZE];
+		double [] rmu = new double[CADSurfaceEvaluator.SIZE];
+		double [] rpv = new double[CADSurfaceEvaluator.SIZE];
+		double [] rmv = new double[CADSurfaceEvaluator.SIZE];
+		s.evaluate(u, v, r, 0);
+		s.evaluate(u + h, v, rpu, 0);
+		s.evaluate(u - h, v, rmu, 0);
+		s.evaluate(u, v + h, rpv, 0);
+		s.evaluate(u, v - h, rmv, 0);
+		double [] xyz = new double[4];
+		s.value(u, v, xyz, 1);
+		for (int i = 0; i < 3; i++)
+		{
+			assertEquals(r[CADSurfaceEvaluator.POINT+i], xyz[1+i], 1.e-12);
+			assertEquals((rpu[i] - rmu[i]) / (2.0 * h), r[CADSurfaceEvaluator.D1U+i], 1.e-6);
+			assertEquals((rpv[i] - rmv[i]) / (2.0 * h), r[CADSurfaceEvaluator.D1V+i], 1.e-6);
+			assertEquals((rpu[CADSurfaceEvaluator.D1U+i] - rmu[CADSurfaceEvaluator.D1U+i]) / (2.0 * h), r[CADSurfaceEvaluator.D2U+i], 1.e-6);
+			assertEquals((rpv[CADSurfaceEvaluator.D1V+i] - rmv[CADSurfaceEvaluator.D1V+i]) / (2.0 * h), r[CADSurfaceEvaluator.D2V+i], 1.e-6);
+			assertEquals((rpv[CADSurfaceEvaluator.D1U+i] - rmv[CADSurfaceEvaluator.D1U+i]) / (2.0 * h), r[CADSurfaceEvaluator.DUV+i], 1.e-6);
+		}
+		// Normal and principal directions form an orthonormal frame
+		int [] dirs = new int[] { CADSurfaceEvaluator.NORMAL, CADSurfaceEvaluator.MAX_DIRECTION, CADSurfaceEvaluator.MIN_DIRECTION };
+		for (int i = 0; i < 3; i++)
+			for (int j = 0; j < 3; j++)
+				assertEquals(i == j ? 1.0 : 0.0, dot(r, dirs[i], r, dirs[j]), 1.e-12);
+		assertEquals(0.0, dot(r, CADSurfaceEvaluator.NORMAL, r, CADSurfaceEvaluator.D1U), 1.e-12);
+		assertEquals(0.0, dot(r, CADSurfaceEvaluator.NORMAL, r, CADSurfaceEvaluator.D1V), 1.e-12);
+		assertTrue(r[CADSurfaceEvaluator.MIN_CURVATURE] <= r[CADSurfaceEvaluator.MAX_CURVATURE]);
+		assertEquals(r[CADSurfaceEvaluator.MIN_CURVATURE] * r[CADSurfaceEvaluator.MAX_CURVATURE],
+			r[CADSurfaceEvaluator.GAUSSIAN_CURVATURE], 1.e-12);
+		assertEquals(0.5 * (r[CADSurfaceEvaluator.MIN_CURVATURE] + r[CADSurfaceEvaluator.MAX_CURVATURE]),
+			r[CADSurfaceEvaluator.MEAN_CURVATURE], 1.e-12);
+		// Move along normal
+		double [] p = new double[3];
+		for (int i = 0; i < 3; i++)
+			p[i] = r[CADSurfaceEvaluator.POINT+i] + 0.01 * r[CADSurfaceEvaluator.NORMAL+i];
+		assertEquals(0.01, s.lowerDistance(p), 1.e-12);
+	}
+
+	private static void checkCurvatures(AnalyticSurface s, double u, double v, double kmin, double kmax)
+	{
+		double [] r = new double[CADSurfaceEvaluator.SIZE];
+		s.evaluate(u, v, r, 0);
+		double k1 = Math.abs(r[CADSurfaceEvaluator.MIN_CURVATURE]);
+		double k2 = Math.abs(r[CADSurfaceEvaluator.MAX_CURVATURE]);
+		assertEquals(kmin, Math.min(k1, k2), 1.e-12);
+		assertEquals(kmax, Math.max(k1, k2), 1.e-12);
+	}
+
+	@Test public void plane()
+	{
+		AnalyticSurface s = new Plane(ORIGIN, AXIS, XDIR);
+		checkDerivatives(s, 0.3, -1.2);
+		checkCurvatures(s, 0.3, -1.2, 0.0, 0.0);
+	}
+
+	@Test public void cylinder()
+	{
+		AnalyticSurface s = new Cylinder(ORIGIN, AXIS, XDIR, 2.0);
+		checkDerivatives(s, 0.3, -1.2);
+		checkCurvatures(s, 0.3, -1.2, 0.0, 0.5);
+	}
+
+	@Test public void sphere()
+	{
+		AnalyticSurface s = new Sphere(ORIGIN, AXIS, XDIR, 4.0);
+		checkDerivatives(s, 0.3, -1.2);
+		checkCurvatures(s, 2.0, 0.7, 0.25, 0.25);
+		// Normal is undefined at poles
+		double [] r = new double[CADSurfaceEvaluator.SIZE];
+		s.evaluate(0.0, 0.5 * Math.PI, r, 0);
+		assertTrue(Double.isNaN(r[CADSurfaceEvaluator.NORMAL]));
+		assertTrue(Double.isNaN(r[CADSurfaceEvaluator.MAX_CURVATURE]));
+	}
+
+	@Test public void torus()
+	{
+		AnalyticSurface s = new Torus(ORIGIN, AXIS, XDIR, 3.0, 1.0);
+		for (double v = -3.0; v < 3.0; v += 0.5)
+		{
+			checkDerivatives(s, 0.3 + v, v);
+			double k = Math.abs(Math.cos(v) / (3.0 + Math.cos(v)));
+			checkCurvatures(s, 0.3, v, Math.min(k, 1.0), Math.max(k, 1.0));
+		}
+	}
+
+	@Test public void batch()
+	{
+		AnalyticSurface s = new Torus(3.0, 1.0);
+		int nr = 10;
+		double [] uv = new double[2*nr];
+		for (int i = 0; i < uv.length; i++)
+			uv[i] = 0.37 * i;
+		double [] all = new double[nr * CADSurfaceEvaluator.SIZE];
+		s.evaluate(uv, nr, all);
+		double [] r = new double[CADSurfaceEvaluator.SIZE + 2];
+		for (int i = 0; i < nr; i++)
+		{
+			s.evaluate(uv[2*i], uv[2*i+1], r, 2);
+			for (int j = 0; j < CADSurfaceEvaluator.SIZE; j++)
+				assertEquals(r[2+j], all[i * CADSurfaceEvaluator.SIZE + j], 0.0);
+		}
+	}
+
+	@Test public void adapters()
+	{
+		AnalyticSurface s = new Sphere(ORIGIN, AXIS, XDIR, 4.0);
+		CADGeomSurface geom = new CADSurfaceEvaluatorAdapter(s);
+		assertSame(s, CADGeomSurfaceEvaluator.getEvaluator(geom));
+		geom.dinit(2);
+		geom.setParameter(0.4, 0.2);
+		double [] r = new double[CADSurfaceEvaluator.SIZE];
+		s.evaluate(0.4, 0.2, r, 0);
+		assertArrayEquals(new double[] {r[3], r[4], r[5]}, geom.d1U(), 0.0);
+		assertArrayEquals(new double[] {r[21], r[22]}, new double[] {geom.minCurvature(), geom.maxCurvature()}, 0.0);
+		// Wrap stateful surface again
+		double [] r2 = new double[CADSurfaceEvaluator.SIZE];
+		new CADGeomSurfaceEvaluator(geom).evaluate(0.4, 0.2, r2, 0);
+		assertArrayEquals(r, r2, 0.0);
+	}
+
+	private static void checkProperties(CADSurfaceEvaluator s, double [] all, int properties, int [] offsets)
+	{
+		double [] r = new double[CADSurfaceEvaluator.SIZE];
+		s.evaluate(0.4, 0.2, properties, r, 0);
+		for (int i = 0; i < offsets.length; i += 2)
+			for (int j = offsets[i]; j < offsets[i+1]; j++)
+				assertEquals(all[j], r[j], 0.0);
+	}
+
+	@Test public void properties()
+	{
+		AnalyticSurface s = new Torus(ORIGIN, AXIS, XDIR, 3.0, 1.0);
+		CADGeomSurface geom = new CADSurfaceEvaluatorAdapter(s);
+		double [] all = new double[CADSurfaceEvaluator.SIZE];
+		s.evaluate(0.4, 0.2, all, 0);
+		int [] point = new int[] { CADSurfaceEvaluator.POINT, CADSurfaceEvaluator.D1U };
+		int [] first = new int[] { CADSurfaceEvaluator.POINT, CADSurfaceEvaluator.D2U,
+			CADSurfaceEvaluator.NORMAL, CADSurfaceEvaluator.MIN_CURVATURE };
+		int [] second = new int[] { CADSurfaceEvaluator.POINT, CADSurfaceEvaluator.D1U,
+			CADSurfaceEvaluator.D2U, CADSurfaceEvaluator.NORMAL };
+		int [] curvatures = new int[] { CADSurfaceEvaluator.POINT, CADSurfaceEvaluator.D2U,
+			CADSurfaceEvaluator.NORMAL, CADSurfaceEvaluator.SIZE };
+		for (CADSurfaceEvaluator e: new CADSurfaceEvaluator[] { s, new CADGeomSurfaceEvaluator(geom) })
+		{
+			checkProperties(e, all, 0, point);
+			checkProperties(e, all, CADSurfaceEvaluator.FIRST_DERIVATIVES, first);
+			checkProperties(e, all, CADSurfaceEvaluator.SECOND_DERIVATIVES, second);
+			checkProperties(e, all, CADSurfaceEvaluator.FIRST_DERIVATIVES | CADSurfaceEvaluator.CURVATURES, curvatures);
+		}
+		// Adapter only computes first derivatives
+		geom.dinit(1);
+		geom.setParameter(0.4, 0.2);
+		assertArrayEquals(new double[] {all[18], all[19], all[20]}, geom.normal(), 0.0);
+	}
+}
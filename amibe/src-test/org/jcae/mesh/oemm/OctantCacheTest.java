@@ -0,0 +1,155 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.oemm;
+
+import gnu.trove.TIntHashSet;
+import java.io.File;
+import java.io.IOException;
+import org.jcae.mesh.TestUtils;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.Vertex;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class OctantCacheTest
+{
+	private static OEMM build(File dir) throws IOException
+	{
+		String soup = new File(dir, "soup").getPath();
+		TestUtils.writeSoup(new File(soup), 200, 100);
+		OEMM oemm = new OEMM(5);
+		if (!RawStorage.countTriangles(oemm, soup))
+			assertTrue(RawStorage.countTriangles(oemm, soup));
+		Aggregate.compute(oemm, 2000);
+		String structFile = new File(dir, "dispatched").getPath();
+		RawStorage.dispatch(oemm, soup, structFile, new File(dir, "dispatched.data").getPath());
+		String outDir = new File(dir, "oemm").getPath();
+		RawStorage.indexOEMM(structFile, outDir);
+		return Storage.readOEMMStructure(outDir);
+	}
+
+	private static void assertSameMesh(Mesh expected, Mesh actual)
+	{
+		assertEquals(expected.getTriangles().size(), actual.getTriangles().size());
+		assertEquals(expected.getNodes().size(), actual.getNodes().size());
+		double [] sum = new double[4];
+		for (Triangle t : expected.getTriangles())
+			addTriangle(t, sum, 1.0);
+		for (Triangle t : actual.getTriangles())
+			addTriangle(t, sum, -1.0);
+		for (double d : sum)
+			assertEquals(0.0, d, 1.e-6);
+	}
+
+	private static void addTriangle(Triangle t, double [] sum, double sign)
+	{
+		for (Vertex v : t.vertex)
+		{
+			if (!v.isReadable())
+				continue;
+			for (int i = 0; i < 3; i++)
+				sum[i] += sign * v.getUV()[i];
+			if (v.isWritable())
+				sum[3] += sign;
+		}
+		if (t.isWritable())
+			sum[3] += sign * t.getGroupId();
+	}
+
+	@Test public void sameMesh() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			OEMM oemm = build(dir);
+			assertTrue(oemm.getNumberOfLeaves() > 8);
+			OctantCache cache = new OctantCache(oemm);
+			for (int i = 0; i < oemm.getNumberOfLeaves(); i += 3)
+			{
+				TIntHashSet leaves = new TIntHashSet();
+				leaves.add(i);
+				leaves.add((i + 1) % oemm.getNumberOfLeaves());
+				MeshReader reader = new MeshReader(oemm);
+				reader.setLoadNonReadableTriangles(true);
+				Mesh expected = reader.buildMesh(leaves);
+				reader = new MeshReader(oemm);
+				reader.setLoadNonReadableTriangles(true);
+				reader.setOctantCache(cache);
+				assertSameMesh(expected, reader.buildMesh(leaves));
+			}
+			assertTrue(cache.getHits() > 0L);
+			assertTrue(cache.getBytesRead() > 0L);
+			cache.shutdown();
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test public void hitsAndEviction() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			OEMM oemm = build(dir);
+			OctantCache cache = new OctantCache(oemm);
+			OctantCache.Octant octant = cache.get(0);
+			assertEquals(1L, cache.getMisses());
+			assertEquals(3 * oemm.leaves[0].vn, octant.coords.length);
+			assertEquals(7 * oemm.leaves[0].tn, octant.triangles.length);
+			assertSame(octant, cache.get(0));
+			assertEquals(1L, cache.getHits());
+
+			// Leaf is read again when its files are modified
+			oemm.leaves[0].version++;
+			assertNotSame(octant, cache.get(0));
+			assertEquals(2L, cache.getMisses());
+
+			// Prefetched octants are hits
+			TIntHashSet leaves = new TIntHashSet();
+			leaves.add(0);
+			cache.prefetchAdjacent(leaves);
+			int adj = oemm.leaves[0].adjLeaves.get(0);
+			cache.get(adj);
+			assertEquals(2L, cache.getMisses());
+			assertTrue(cache.getPrefetched() > 0L);
+			cache.shutdown();
+
+			// Memory is bounded
+			long max = 2L * octant.getMemorySize();
+			cache = new OctantCache(oemm, max);
+			for (int i = 0; i < oemm.getNumberOfLeaves(); i++)
+			{
+				cache.get(i);
+				assertTrue(cache.getMemorySize() <= max || cache.getMemorySize() == cache.get(i).getMemorySize());
+			}
+			long misses = cache.getMisses();
+			cache.get(0);
+			assertEquals(misses + 1L, cache.getMisses());
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+}
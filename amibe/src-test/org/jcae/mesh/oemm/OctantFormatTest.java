@@ -0,0 +1,160 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.oemm;
+
+import gnu.trove.TIntHashSet;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.jcae.mesh.TestUtils;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.Vertex;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class OctantFormatTest
+{
+	private static OEMM build(File dir, boolean compress) throws IOException
+	{
+		String soup = new File(dir, "soup").getPath();
+		if (!new File(soup).exists())
+			TestUtils.writeSoup(new File(soup), 200, 100);
+		OEMM oemm = new OEMM(5);
+		if (!RawStorage.countTriangles(oemm, soup))
+			assertTrue(RawStorage.countTriangles(oemm, soup));
+		Aggregate.compute(oemm, 2000);
+		String structFile = new File(dir, "dispatched").getPath();
+		RawStorage.dispatch(oemm, soup, structFile, new File(dir, "dispatched.data").getPath());
+		String outDir = new File(dir, compress ? "compressed" : "legacy").getPath();
+		RawStorage.indexOEMM(structFile, outDir, compress);
+		return Storage.readOEMMStructure(outDir);
+	}
+
+	private static long size(OEMM oemm)
+	{
+		long ret = 0L;
+		for (OEMM.Node node : oemm.leaves)
+			ret += Storage.getVerticesFile(oemm, node).length() + Storage.getTrianglesFile(oemm, node).length();
+		return ret;
+	}
+
+	private static void assertSameMesh(Mesh expected, Mesh actual)
+	{
+		assertEquals(expected.getTriangles().size(), actual.getTriangles().size());
+		double [] sum = new double[4];
+		for (Triangle t : expected.getTriangles())
+			addTriangle(t, sum, 1.0);
+		for (Triangle t : actual.getTriangles())
+			addTriangle(t, sum, -1.0);
+		for (double d : sum)
+			assertEquals(0.0, d, 1.e-6);
+	}
+
+	private static void addTriangle(Triangle t, double [] sum, double sign)
+	{
+		for (Vertex v : t.vertex)
+		{
+			for (int i = 0; i < 3; i++)
+				sum[i] += sign * v.getUV()[i];
+		}
+		sum[3] += sign * t.getGroupId();
+	}
+
+	@Test public void compressedIndex() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			OEMM legacy = build(dir, false);
+			OEMM compressed = build(dir, true);
+			assertEquals(legacy.getNumberOfLeaves(), compressed.getNumberOfLeaves());
+			for (OEMM.Node node : compressed.leaves)
+			{
+				assertFalse(OctantFormat.isCompressed(legacy, legacy.leaves[node.leafIndex]));
+				assertTrue(OctantFormat.isCompressed(compressed, node));
+				// Vertices are quantized on the same grid
+				assertArrayEquals(OctantFormat.readVertices(legacy, legacy.leaves[node.leafIndex]),
+					OctantFormat.readVertices(compressed, node), 0.0);
+				assertArrayEquals(OctantFormat.readTriangles(legacy, legacy.leaves[node.leafIndex]),
+					OctantFormat.readTriangles(compressed, node));
+			}
+			assertTrue("Compression ratio: "+((double) size(legacy) / size(compressed)), 2L * size(compressed) < size(legacy));
+			assertSameMesh(new MeshReader(legacy).buildWholeMesh(), new MeshReader(compressed).buildWholeMesh());
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test public void saveKeepsFormat() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			OEMM oemm = build(dir, true);
+			TIntHashSet leaves = new TIntHashSet();
+			leaves.add(0);
+			leaves.add(1);
+			Mesh expected = new MeshReader(oemm).buildWholeMesh();
+			Mesh mesh = new MeshReader(oemm).buildMesh(leaves);
+			Storage.saveNodes(oemm, mesh, leaves);
+			for (OEMM.Node node : oemm.leaves)
+				assertTrue(OctantFormat.isCompressed(oemm, node));
+			assertSameMesh(expected, new MeshReader(Storage.readOEMMStructure(oemm.getDirectory())).buildWholeMesh());
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test public void checksum() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			OEMM oemm = build(dir, true);
+			OEMM.Node node = oemm.leaves[0];
+			File file = Storage.getTrianglesFile(oemm, node);
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			raf.seek(file.length() / 2);
+			int b = raf.read();
+			raf.seek(file.length() / 2);
+			raf.write(b ^ 0x10);
+			raf.close();
+			try
+			{
+				OctantFormat.readTriangles(oemm, node);
+				fail("Corrupted file has been read");
+			}
+			catch (IOException ex)
+			{
+				assertTrue(ex.getMessage().startsWith("Checksum error"));
+			}
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+}
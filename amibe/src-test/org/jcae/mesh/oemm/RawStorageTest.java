@@ -0,0 +1,183 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.oemm;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class RawStorageTest
+{
+	private static File createTempDir() throws IOException
+	{
+		File ret = File.createTempFile("oemm", ".dir");
+		ret.delete();
+		ret.mkdirs();
+		return ret;
+	}
+
+	// Writes a torus into a triangle soup, triangles are shuffled
+	private static void writeSoup(File soup, int n, int m) throws IOException
+	{
+		List<double []> triangles = new ArrayList<double []>(2 * n * m);
+		double [][] xyz = new double[n * m][3];
+		for (int i = 0; i < n; i++)
+		{
+			double u = 2.0 * Math.PI * i / n;
+			for (int j = 0; j < m; j++)
+			{
+				double v = 2.0 * Math.PI * j / m;
+				xyz[i * m + j][0] = (2.0 + Math.cos(v)) * Math.cos(u);
+				xyz[i * m + j][1] = (2.0 + Math.cos(v)) * Math.sin(u);
+				xyz[i * m + j][2] = Math.sin(v);
+			}
+		}
+		for (int i = 0; i < n; i++)
+		{
+			int i1 = (i + 1) % n;
+			for (int j = 0; j < m; j++)
+			{
+				int j1 = (j + 1) % m;
+				triangles.add(triangle(xyz[i*m+j], xyz[i1*m+j], xyz[i1*m+j1], i));
+				triangles.add(triangle(xyz[i*m+j], xyz[i1*m+j1], xyz[i*m+j1], i));
+			}
+		}
+		Collections.shuffle(triangles, new Random(12345L));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(soup)));
+		for (double [] t : triangles)
+		{
+			for (int i = 0; i < 9; i++)
+				out.writeDouble(t[i]);
+			out.writeInt((int) t[9]);
+			out.writeInt(0);
+		}
+		out.close();
+	}
+
+	private static double [] triangle(double [] a, double [] b, double [] c, int group)
+	{
+		double [] ret = new double[10];
+		System.arraycopy(a, 0, ret, 0, 3);
+		System.arraycopy(b, 0, ret, 3, 3);
+		System.arraycopy(c, 0, ret, 6, 3);
+		ret[9] = group;
+		return ret;
+	}
+
+	private static byte [] readFile(File f) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		byte [] ret = new byte[(int) raf.length()];
+		raf.readFully(ret);
+		raf.close();
+		return ret;
+	}
+
+	// Builds an OEMM like MeshOEMMIndex
+	private static OEMM build(File dir, int nrThreads) throws IOException
+	{
+		String soup = new File(dir, "soup").getPath();
+		OEMM oemm = new OEMM(6);
+		if (!RawStorage.countTriangles(oemm, soup, true, nrThreads))
+			assertTrue(RawStorage.countTriangles(oemm, soup, true, nrThreads));
+		Aggregate.compute(oemm, 2000);
+		RawStorage.dispatch(oemm, soup, new File(dir, "dispatched").getPath(),
+			new File(dir, "dispatched.data").getPath(), nrThreads);
+		return oemm;
+	}
+
+	private static void assertSameFiles(File expected, File actual) throws IOException
+	{
+		String [] names = expected.list();
+		Arrays.sort(names);
+		String [] actualNames = actual.list();
+		Arrays.sort(actualNames);
+		assertArrayEquals(names, actualNames);
+		for (String name : names)
+		{
+			File e = new File(expected, name);
+			File a = new File(actual, name);
+			if (e.isDirectory())
+				assertSameFiles(e, a);
+			else
+				assertArrayEquals("File "+a+" differs", readFile(e), readFile(a));
+		}
+	}
+
+	private static void delete(File f)
+	{
+		if (f.isDirectory())
+		{
+			for (File c : f.listFiles())
+				delete(c);
+		}
+		f.delete();
+	}
+
+	@Test public void parallelBuild() throws IOException
+	{
+		File dir = createTempDir();
+		try
+		{
+			writeSoup(new File(dir, "soup"), 300, 100);
+			File seqDir = new File(dir, "seq");
+			File parDir = new File(dir, "par");
+
+			OEMM seq = build(dir, 1);
+			byte [] structFile = readFile(new File(dir, "dispatched"));
+			byte [] dataFile = readFile(new File(dir, "dispatched.data"));
+			RawStorage.indexOEMM(new File(dir, "dispatched").getPath(), seqDir.getPath());
+
+			OEMM par = build(dir, 4);
+			assertEquals(seq.getNumberOfLeaves(), par.getNumberOfLeaves());
+			assertTrue(par.getNumberOfLeaves() > 8);
+			assertArrayEquals(structFile, readFile(new File(dir, "dispatched")));
+			assertArrayEquals(dataFile, readFile(new File(dir, "dispatched.data")));
+			RawStorage.indexOEMM(new File(dir, "dispatched").getPath(), parDir.getPath());
+			assertSameFiles(seqDir, parDir);
+
+			// Count triangles into an existing OEMM
+			OEMM oemm = Storage.readOEMMStructure(seqDir.getPath());
+			String soup = new File(dir, "soup").getPath();
+			assertTrue(RawStorage.countTriangles(oemm, soup, false, 1));
+			int [] expected = new int[oemm.getNumberOfLeaves()];
+			for (int i = 0; i < expected.length; i++)
+				expected[i] = oemm.leaves[i].tn;
+			assertTrue(RawStorage.countTriangles(oemm, soup, false, 3));
+			for (int i = 0; i < expected.length; i++)
+				assertEquals(expected[i], oemm.leaves[i].tn);
+		}
+		finally
+		{
+			delete(dir);
+		}
+	}
+}
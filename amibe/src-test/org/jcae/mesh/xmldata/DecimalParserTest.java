@@ -0,0 +1,115 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+
+package org.jcae.mesh.xmldata;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class DecimalParserTest
+{
+	private static byte [] bytes(String s)
+	{
+		byte [] ret = new byte[s.length() + 2];
+		ret[0] = ' ';
+		for (int i = 0; i < s.length(); i++)
+			ret[i + 1] = (byte) s.charAt(i);
+		ret[s.length() + 1] = ' ';
+		return ret;
+	}
+
+	private static double parseDouble(String s)
+	{
+		return DecimalParser.parseDouble(bytes(s), 1, s.length() + 1);
+	}
+
+	private static void check(double expected, String s)
+	{
+		assertEquals(s, Double.doubleToLongBits(expected), Double.doubleToLongBits(parseDouble(s)));
+	}
+
+	@Test public void parseInt()
+	{
+		String [] values = { "0", "7", "-12", "+345", "2147483647", "-2147483648" };
+		for (String s : values)
+			assertEquals(Integer.parseInt(s.startsWith("+") ? s.substring(1) : s),
+				DecimalParser.parseInt(bytes(s), 1, s.length() + 1));
+	}
+
+	@Test(expected=NumberFormatException.class)
+	public void intOverflow()
+	{
+		DecimalParser.parseInt(bytes("2147483648"), 1, 11);
+	}
+
+	@Test(expected=NumberFormatException.class)
+	public void notADouble()
+	{
+		parseDouble("1.0x");
+	}
+
+	@Test public void fortran()
+	{
+		check(1.0, "1.00000000000000000D+00");
+		check(273.15, "2.73149999999999977D+02");
+		check(-0.5, "-5.0000000000000000d-01");
+		check(1.0e-100, "1.0-100");
+		check(1.0e-100, "1.00000000000000000000000000-100");
+		check(2.5e200, "2.5+200");
+		check(-0.0, "-0.0");
+		check(0.0, "0");
+		check(1.5, ".15E1");
+		check(4.9e-324, "4.9e-324");
+		check(Double.MAX_VALUE, "1.7976931348623157e308");
+	}
+
+	@Test public void random()
+	{
+		Random r = new Random(1234L);
+		for (int i = 0; i < 200000; i++)
+		{
+			double d;
+			switch (i % 3)
+			{
+				case 0:
+					d = Double.longBitsToDouble(r.nextLong());
+					if (Double.isNaN(d) || Double.isInfinite(d))
+						continue;
+					break;
+				case 1:
+					d = r.nextGaussian() * 1000.0;
+					break;
+				default:
+					d = r.nextInt(1000000) / 1000.0;
+			}
+			String s = Double.toString(d);
+			check(d, s);
+			check(d, s.replace('E', 'D'));
+			s = String.format(Locale.US, "%.17E", d);
+			check(Double.parseDouble(s), s);
+			s = String.format(Locale.US, "%.6f", d);
+			check(Double.parseDouble(s), s);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.xmldata;
+
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.TestUtils;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class Mesh3dToSoupConvertTest
+{
+	@Test public void grid() throws Exception
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			Mesh mesh = MeshReaderTest.createGrid(50);
+			MeshWriter.writeObject3D(mesh, dir.getPath(), null);
+			Mesh3dToSoupConvert.convert(dir.getPath());
+
+			List<Triangle> expected = new ArrayList<Triangle>();
+			for (Triangle t : mesh.getTriangles())
+				if (t.isWritable())
+					expected.add(t);
+			File soup = new File(dir, "soup");
+			assertEquals(expected.size() * SoupWriter.RECORD_SIZE, soup.length());
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(soup)));
+			try
+			{
+				// MeshWriter keeps triangle order
+				for (Triangle t : expected)
+				{
+					for (int i = 0; i < 3; i++)
+					{
+						double [] xyz = t.vertex[i].getUV();
+						for (int k = 0; k < 3; k++)
+							assertEquals(xyz[k], in.readDouble(), 0.0);
+					}
+					assertEquals(0, in.readInt());
+					assertEquals(0, in.readInt());
+				}
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+}
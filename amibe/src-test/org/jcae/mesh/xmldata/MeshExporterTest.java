@@ -0,0 +1,147 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.xmldata;
+
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import org.jcae.mesh.amibe.util.UNVReader;
+import org.jcae.mesh.TestUtils;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.xml.parsers.ParserConfigurationException;
+import org.xml.sax.SAXException;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class MeshExporterTest
+{
+	private static void export(File amibe, File dir, int nrThreads)
+		throws IOException, SAXException, ParserConfigurationException
+	{
+		dir.mkdirs();
+		MeshExporter [] exporters = new MeshExporter[] {
+			new MeshExporter.UNV(amibe.getPath()),
+			new MeshExporter.MESH(amibe.getPath()),
+			new MeshExporter.STL(amibe.getPath()),
+			new MeshExporter.POLY(amibe.getPath()),
+			new MeshExporter.VTK(amibe.getPath())
+		};
+		String [] names = new String[] { "m.unv", "m.mesh", "m.stl", "m.poly", "m.vtp" };
+		for (int i = 0; i < exporters.length; i++)
+		{
+			exporters[i].setNumberOfThreads(nrThreads);
+			exporters[i].write(new File(dir, names[i]).getPath());
+		}
+		Amibe2UNV a2unv = new Amibe2UNV(amibe);
+		a2unv.setNumberOfThreads(nrThreads);
+		a2unv.write(new File(dir, "a.unv").getPath());
+		Amibe2VTK a2vtk = new Amibe2VTK(amibe);
+		a2vtk.setNumberOfThreads(nrThreads);
+		a2vtk.write(new File(dir, "a.vtp").getPath());
+	}
+
+	// Writes a grid with two beams into an Amibe directory
+	private static File writeGrid(File dir, int n) throws IOException
+	{
+		Mesh mesh = MeshReaderTest.createGrid(n);
+		Iterator<Triangle> it = mesh.getTriangles().iterator();
+		Triangle t = it.next();
+		mesh.addBeam(t.vertex[0], t.vertex[1], 1);
+		t = it.next();
+		mesh.addBeam(t.vertex[1], t.vertex[2], 2);
+		File amibe = new File(dir, "grid");
+		MeshWriter.writeObject3D(mesh, amibe.getPath(), null);
+		return amibe;
+	}
+
+	@Test public void threads() throws Exception
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			// Several chunks are needed
+			File amibe = writeGrid(dir, 200);
+			File expected = new File(dir, "out1");
+			export(amibe, expected, 1);
+			File actual = new File(dir, "out4");
+			export(amibe, actual, 4);
+			TestUtils.assertSameFiles(expected, actual);
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test public void golden() throws Exception
+	{
+		// Files in test/input/export have been written by MeshExporter
+		// before nodes and elements were formatted by chunks.
+		File golden = new File("test"+File.separator+"input"+File.separator+"export");
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			File amibe = writeGrid(dir, 6);
+			File actual = new File(dir, "out");
+			export(amibe, actual, 4);
+			String [] extensions = new String[] { "unv", "mesh", "stl", "poly", "vtp" };
+			for (String ext : extensions)
+				TestUtils.assertSameFiles(new File(golden, "grid6."+ext), new File(actual, "m."+ext));
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test public void unv() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			Mesh expected = new Mesh(MeshTraitsBuilder.getDefault3D());
+			MeshReader.readObject3D(expected, "test"+File.separator+"input"+File.separator+"torus1426");
+			File unv = new File(dir, "torus.unv");
+			MeshExporter.UNV exporter = new MeshExporter.UNV(
+				"test"+File.separator+"input"+File.separator+"torus1426");
+			exporter.setNumberOfThreads(2);
+			exporter.write(unv.getPath());
+			Mesh actual = new Mesh(MeshTraitsBuilder.getDefault3D());
+			UNVReader.readMesh(actual, unv.getPath());
+			assertEquals(expected.getTriangles().size(), actual.getTriangles().size());
+			// Coordinates are written with 17 digits
+			Iterator<Triangle> it = actual.getTriangles().iterator();
+			for (Triangle e : expected.getTriangles())
+			{
+				Triangle a = it.next();
+				for (int i = 0; i < 3; i++)
+					assertArrayEquals(e.vertex[i].getUV(), a.vertex[i].getUV(), 0.0);
+			}
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+}
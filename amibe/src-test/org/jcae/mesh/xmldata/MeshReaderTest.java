@@ -0,0 +1,194 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+
+package org.jcae.mesh.xmldata;
+
+import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
+import org.jcae.mesh.amibe.ds.CompactMesh;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import org.jcae.mesh.TestUtils;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class MeshReaderTest
+{
+	// Grid of n x n quads, left and right halves are in different groups
+	static Mesh createGrid(int n)
+	{
+		Mesh mesh = new Mesh(MeshTraitsBuilder.getDefault3D());
+		Vertex [] v = new Vertex[(n+1)*(n+1)];
+		for (int j = 0; j <= n; j++)
+			for (int i = 0; i <= n; i++)
+				v[i+j*(n+1)] = mesh.createVertex(i, j, 0.01 * ((i * j) % 7));
+		for (int j = 0; j < n; j++)
+		{
+			for (int i = 0; i < n; i++)
+			{
+				Vertex v0 = v[i+j*(n+1)];
+				Vertex v1 = v[i+1+j*(n+1)];
+				Vertex v2 = v[i+1+(j+1)*(n+1)];
+				Vertex v3 = v[i+(j+1)*(n+1)];
+				Triangle t1 = mesh.createTriangle(v0, v1, v2);
+				Triangle t2 = mesh.createTriangle(v0, v2, v3);
+				int group = (i < n / 2) ? 1 : 2;
+				t1.setGroupId(group);
+				t2.setGroupId(group);
+				mesh.add(t1);
+				mesh.add(t2);
+			}
+		}
+		mesh.setGroupName(1, "left");
+		mesh.setGroupName(2, "right");
+		mesh.buildAdjacency();
+		return mesh;
+	}
+
+	private static void assertSameMesh(Mesh expected, Mesh actual)
+	{
+		List<Triangle> exp = new ArrayList<Triangle>(expected.getTriangles());
+		List<Triangle> act = new ArrayList<Triangle>(actual.getTriangles());
+		assertEquals(exp.size(), act.size());
+		Map<Triangle, Integer> expIndex = new HashMap<Triangle, Integer>();
+		Map<Triangle, Integer> actIndex = new HashMap<Triangle, Integer>();
+		for (int i = 0; i < exp.size(); i++)
+		{
+			expIndex.put(exp.get(i), i);
+			actIndex.put(act.get(i), i);
+		}
+		AbstractHalfEdge expOT = null;
+		AbstractHalfEdge actOT = null;
+		for (int i = 0; i < exp.size(); i++)
+		{
+			Triangle te = exp.get(i);
+			Triangle ta = act.get(i);
+			assertEquals(te.hasAttributes(AbstractHalfEdge.OUTER), ta.hasAttributes(AbstractHalfEdge.OUTER));
+			if (te.hasAttributes(AbstractHalfEdge.OUTER))
+				continue;
+			assertEquals(te.getGroupId(), ta.getGroupId());
+			expOT = te.getAbstractHalfEdge(expOT);
+			actOT = ta.getAbstractHalfEdge(actOT);
+			for (int j = 0; j < 3; j++)
+			{
+				assertArrayEquals(te.vertex[j].getUV(), ta.vertex[j].getUV(), 0.0);
+				assertEquals(te.vertex[j].getRef(), ta.vertex[j].getRef());
+				assertEquals(expOT.hasAttributes(AbstractHalfEdge.BOUNDARY), actOT.hasAttributes(AbstractHalfEdge.BOUNDARY));
+				assertEquals(expIndex.get(expOT.sym().getTri()), actIndex.get(actOT.sym().getTri()));
+				expOT = expOT.next();
+				actOT = actOT.next();
+			}
+		}
+	}
+
+	@Test public void bulkRead() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			MeshWriter.writeObject3D(createGrid(300), dir.getPath(), null);
+			Mesh expected = new Mesh(MeshTraitsBuilder.getDefault3D());
+			MeshReader.readObject3D(expected, dir.getPath());
+			assertTrue(expected.isValid());
+			for (int nrThreads = 1; nrThreads <= 4; nrThreads *= 2)
+			{
+				Mesh actual = new Mesh(MeshTraitsBuilder.getDefault3D());
+				MeshReader.readObject3D(actual, dir.getPath(), nrThreads);
+				assertTrue(actual.isValid());
+				assertSameMesh(expected, actual);
+			}
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test public void compactRead() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			MeshWriter.writeObject3D(createGrid(20), dir.getPath(), null);
+			// Triangles are compared in file order
+			Mesh expected = new Mesh(MeshTraitsBuilder.getDefault3D().addTriangleList());
+			MeshReader.readObject3D(expected, dir.getPath());
+			CompactMesh actual = MeshReader.readCompactObject3D(dir.getPath());
+			assertTrue(actual.hasAdjacency());
+			assertEquals(21*21, actual.getNumberOfVertices());
+			assertEquals(2*20*20, actual.getNumberOfTriangles());
+			double [] xyz = new double[3];
+			int t = 0;
+			for (Triangle te : expected.getTriangles())
+			{
+				if (te.hasAttributes(AbstractHalfEdge.OUTER))
+					continue;
+				assertEquals(te.getGroupId(), actual.getGroupId(t));
+				for (int j = 0; j < 3; j++)
+				{
+					int v = actual.getTriangleVertex(t, j);
+					actual.getCoordinates(v, xyz);
+					assertArrayEquals(te.vertex[j].getUV(), xyz, 0.0);
+				}
+				t++;
+			}
+			assertEquals(actual.getNumberOfTriangles(), t);
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test public void absoluteBulkGet() throws IOException
+	{
+		File f = File.createTempFile("ints", ".bin");
+		try
+		{
+			DataOutputStream out = new DataOutputStream(new FileOutputStream(f));
+			for (int i = 0; i < 100; i++)
+				out.writeInt(i);
+			out.close();
+			PrimitiveFileReaderFactory pfrf = new PrimitiveFileReaderFactory("mmap");
+			IntFileReader ifr = pfrf.getIntReader(f);
+			int [] dst = new int[10];
+			assertEquals(10, ifr.get(50, dst));
+			for (int i = 0; i < 10; i++)
+				assertEquals(50 + i, dst[i]);
+			assertEquals(60, ifr.get());
+			ifr.close();
+		}
+		finally
+		{
+			f.delete();
+		}
+	}
+}
@@ -0,0 +1,237 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.xmldata;
+
+import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
+import org.jcae.mesh.amibe.ds.HalfEdge;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import org.jcae.mesh.TestUtils;
+import java.io.File;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class MeshSnapshotTest
+{
+	private static void assertSameEdge(Map<Triangle, Triangle> map, HalfEdge expected, HalfEdge actual)
+	{
+		assertEquals(expected.getLocalNumber(), actual.getLocalNumber());
+		assertEquals(expected.getAttributes(), actual.getAttributes());
+		if (expected.sym() == null)
+			assertNull(actual.sym());
+		else
+		{
+			assertSame(map.get(expected.sym().getTri()), actual.sym().getTri());
+			assertEquals(expected.sym().getLocalNumber(), actual.sym().getLocalNumber());
+		}
+	}
+
+	private static void assertSameMesh(Mesh expected, Mesh actual)
+	{
+		assertEquals(expected.getTriangles().size(), actual.getTriangles().size());
+		Map<Triangle, Triangle> triangles = new IdentityHashMap<Triangle, Triangle>();
+		Map<Vertex, Vertex> vertices = new IdentityHashMap<Vertex, Vertex>();
+		vertices.put(expected.outerVertex, actual.outerVertex);
+		Iterator<Triangle> it = actual.getTriangles().iterator();
+		for (Triangle e : expected.getTriangles())
+		{
+			Triangle a = it.next();
+			triangles.put(e, a);
+			assertEquals(e.getGroupId(), a.getGroupId());
+			assertEquals(e.isReadable(), a.isReadable());
+			assertEquals(e.isWritable(), a.isWritable());
+			for (int i = 0; i < 3; i++)
+			{
+				Vertex v = vertices.get(e.vertex[i]);
+				if (v == null)
+					vertices.put(e.vertex[i], a.vertex[i]);
+				else
+					assertSame(v, a.vertex[i]);
+			}
+		}
+		for (Triangle e : expected.getTriangles())
+		{
+			HalfEdge he = (HalfEdge) e.getAbstractHalfEdge();
+			HalfEdge ha = (HalfEdge) triangles.get(e).getAbstractHalfEdge();
+			for (int i = 0; i < 3; i++)
+			{
+				assertSameEdge(triangles, he, ha);
+				he = he.next();
+				ha = ha.next();
+			}
+		}
+		for (Map.Entry<Vertex, Vertex> entry : vertices.entrySet())
+		{
+			Vertex e = entry.getKey();
+			Vertex a = entry.getValue();
+			if (e == expected.outerVertex)
+				continue;
+			assertArrayEquals(e.getUV(), a.getUV(), 0.0);
+			assertEquals(e.getRef(), a.getRef());
+			assertEquals(e.isMutable(), a.isMutable());
+			Object link = e.getLink();
+			if (link instanceof Triangle)
+				assertSame(triangles.get(link), a.getLink());
+			else
+			{
+				Triangle [] le = (Triangle []) link;
+				Triangle [] la = (Triangle []) a.getLink();
+				assertEquals(le.length, la.length);
+				for (int i = 0; i < le.length; i++)
+					assertSame(triangles.get(le[i]), la[i]);
+			}
+		}
+		assertEquals(expected.getBeams().size(), actual.getBeams().size());
+		for (int i = 0; i < expected.getBeams().size(); i++)
+		{
+			assertArrayEquals(expected.getBeams().get(i).getUV(), actual.getBeams().get(i).getUV(), 0.0);
+			if (i % 2 == 0)
+				assertEquals(expected.getBeamGroup(i / 2), actual.getBeamGroup(i / 2));
+		}
+		for (Triangle t : expected.getTriangles())
+			assertEquals(expected.getGroupName(t.getGroupId()), actual.getGroupName(t.getGroupId()));
+		assertEquals(expected.getMaxLabel(), actual.getMaxLabel());
+		assertEquals(expected.hasPersistentReferences(), actual.hasPersistentReferences());
+		assertTrue(actual.isValid());
+	}
+
+	private static void checkSnapshot(Mesh mesh) throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			File file = new File(dir, "mesh"+MeshSnapshot.SUFFIX);
+			MeshSnapshot.write(mesh, file.getPath());
+			for (int nrThreads = 1; nrThreads <= 4; nrThreads *= 2)
+			{
+				Mesh copy = new Mesh(MeshTraitsBuilder.getDefault3D());
+				MeshSnapshot.read(copy, file.getPath(), nrThreads);
+				assertSameMesh(mesh, copy);
+				// Snapshot of the copy is identical
+				File other = new File(dir, "copy"+MeshSnapshot.SUFFIX);
+				MeshSnapshot.write(copy, other.getPath());
+				TestUtils.assertSameFiles(file, other);
+			}
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test public void grid() throws IOException
+	{
+		Mesh mesh = MeshReaderTest.createGrid(200);
+		mesh.setPersistentReferences(true);
+		mesh.buildGroupBoundaries();
+		checkSnapshot(mesh);
+	}
+
+	@Test public void torus() throws IOException
+	{
+		Mesh mesh = new Mesh(MeshTraitsBuilder.getDefault3D());
+		MeshReader.readObject3D(mesh, "test"+File.separator+"input"+File.separator+"torus1426");
+		mesh.buildRidges(0.9);
+		Iterator<Triangle> it = mesh.getTriangles().iterator();
+		Triangle t = it.next();
+		mesh.addBeam(t.vertex[0], t.vertex[1], 1);
+		t = it.next();
+		mesh.addBeam(t.vertex[1], t.vertex[2], 2);
+		mesh.setGroupName(2, "beams");
+		checkSnapshot(mesh);
+	}
+
+	@Test public void nonManifold() throws IOException
+	{
+		// Three triangles share an edge, and two fans share a vertex
+		Mesh mesh = new Mesh(MeshTraitsBuilder.getDefault3D());
+		Vertex [] v = new Vertex[] {
+			mesh.createVertex(0.0, 0.0, 0.0),
+			mesh.createVertex(1.0, 0.0, 0.0),
+			mesh.createVertex(0.0, 1.0, 0.0),
+			mesh.createVertex(0.0, -1.0, 0.0),
+			mesh.createVertex(0.0, 0.0, 1.0),
+			mesh.createVertex(-1.0, 1.0, 1.0),
+			mesh.createVertex(-1.0, -1.0, 1.0)
+		};
+		mesh.add(mesh.createTriangle(v[0], v[1], v[2]));
+		mesh.add(mesh.createTriangle(v[1], v[0], v[3]));
+		mesh.add(mesh.createTriangle(v[1], v[0], v[4]));
+		mesh.add(mesh.createTriangle(v[2], v[5], v[6]));
+		mesh.buildAdjacency();
+		int nonManifold = 0;
+		for (Triangle t : mesh.getTriangles())
+		{
+			AbstractHalfEdge e = t.getAbstractHalfEdge();
+			for (int i = 0; i < 3; i++)
+			{
+				if (e.hasAttributes(AbstractHalfEdge.NONMANIFOLD))
+					nonManifold++;
+				e = e.next();
+			}
+		}
+		assertTrue(nonManifold > 0);
+		assertTrue(v[2].getLink() instanceof Triangle[]);
+		checkSnapshot(mesh);
+	}
+
+	@Test public void readerAndWriter() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			Mesh mesh = MeshReaderTest.createGrid(20);
+			String file = new File(dir, "grid"+MeshSnapshot.SUFFIX).getPath();
+			MeshWriter.writeObject3D(mesh, file, null);
+			assertTrue(new File(file).isFile());
+			Mesh copy = new Mesh(MeshTraitsBuilder.getDefault3D());
+			MeshReader.readObject3D(copy, file);
+			assertSameMesh(mesh, copy);
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test(expected=IOException.class)
+	public void notASnapshot() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			MeshWriter.writeObject3D(MeshReaderTest.createGrid(2), dir.getPath(), null);
+			Mesh mesh = new Mesh(MeshTraitsBuilder.getDefault3D());
+			MeshSnapshot.read(mesh, new File(dir, JCAEXMLData.xml3dFilename).getPath());
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+
+package org.jcae.mesh.xmldata;
+
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import org.jcae.mesh.TestUtils;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class MeshWriterTest
+{
+	private static void checkWriters(Mesh mesh) throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			File expected = new File(dir, "sequential");
+			MeshWriter.writeObject3D(mesh, expected.getPath(), "shape.brep");
+			for (int nrThreads = 1; nrThreads <= 4; nrThreads *= 2)
+			{
+				File actual = new File(dir, "parallel"+nrThreads);
+				MeshWriter.writeObject3D(mesh, actual.getPath(), "shape.brep", nrThreads);
+				TestUtils.assertSameFiles(expected, actual);
+			}
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test public void grid() throws IOException
+	{
+		Mesh mesh = MeshReaderTest.createGrid(300);
+		//  Boundary nodes have references
+		mesh.setPersistentReferences(true);
+		checkWriters(mesh);
+	}
+
+	@Test public void torus() throws IOException
+	{
+		Mesh mesh = new Mesh(MeshTraitsBuilder.getDefault3D());
+		MeshReader.readObject3D(mesh, "test"+File.separator+"input"+File.separator+"torus1426");
+		Vertex v0 = mesh.getTriangles().iterator().next().vertex[0];
+		Vertex v1 = mesh.getTriangles().iterator().next().vertex[1];
+		mesh.addBeam(v0, v1, 1);
+		checkWriters(mesh);
+	}
+}
@@ -0,0 +1,117 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.xmldata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class OutputBufferTest
+{
+	private static final double [] VALUES = {
+		0.0, -0.0, 1.0, -1.0, 0.1, 0.5, 2.0/3.0, 273.15, 1.0e-3, 9.999e-4,
+		1.0e7, 9999999.999, 1.0e-100, 1.0e100, 1.0e200, 123456.789e-50,
+		Double.MIN_VALUE, Double.MAX_VALUE, Double.MIN_NORMAL, Math.PI,
+		-Math.E, 0.3, 4.35, Double.NaN, Double.POSITIVE_INFINITY,
+		Double.NEGATIVE_INFINITY
+	};
+
+	private static String toString(OutputBuffer out) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		out.writeTo(Channels.newChannel(bytes));
+		out.clear();
+		return bytes.toString();
+	}
+
+	@Test public void doubles() throws IOException
+	{
+		OutputBuffer out = new OutputBuffer(16);
+		for (double v : VALUES)
+		{
+			out.print(v);
+			assertEquals(Double.toString(v), toString(out));
+		}
+	}
+
+	@Test public void roundTrip() throws IOException
+	{
+		OutputBuffer out = new OutputBuffer(16);
+		Random random = new Random(0L);
+		for (int i = 0; i < 100000; i++)
+		{
+			double v = Double.longBitsToDouble(random.nextLong());
+			if (Double.isNaN(v))
+				continue;
+			out.print(v);
+			String s = toString(out);
+			assertEquals(s, v, Double.parseDouble(s), 0.0);
+			//  Shortest representation
+			assertTrue(s, s.length() <= Double.toString(v).length());
+		}
+	}
+
+	@Test public void fortran() throws IOException
+	{
+		MeshExporter.FormatD25_16 format = new MeshExporter.FormatD25_16();
+		OutputBuffer out = new OutputBuffer(16);
+		for (double v : VALUES)
+		{
+			//  Infinity is not an ASCII character
+			if (Double.isInfinite(v))
+				continue;
+			out.printD25_16(v);
+			assertEquals(format.format(v), toString(out));
+		}
+		Random random = new Random(0L);
+		for (int i = 0; i < 10000; i++)
+		{
+			double v = 2000.0 * random.nextDouble() - 1000.0;
+			out.printD25_16(v);
+			String s = toString(out);
+			assertEquals(format.format(v), s);
+			assertEquals(v, Double.parseDouble(s.replace('D', 'E')), 0.0);
+		}
+	}
+
+	@Test public void integers() throws IOException
+	{
+		MeshExporter.FormatI10 format = new MeshExporter.FormatI10();
+		OutputBuffer out = new OutputBuffer(4);
+		long [] values = { 0, 1, -1, 9, 10, 123456789, -123456789, 999999999,
+			Integer.MAX_VALUE, Long.MIN_VALUE };
+		for (long v : values)
+		{
+			out.print(v);
+			assertEquals(Long.toString(v), toString(out));
+			//  Legacy format is empty for larger numbers
+			if (Long.toString(v).length() < 10)
+			{
+				out.printI10(v);
+				assertEquals(format.format(v), toString(out));
+			}
+		}
+	}
+}
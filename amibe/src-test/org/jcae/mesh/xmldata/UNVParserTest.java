@@ -0,0 +1,232 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+
+package org.jcae.mesh.xmldata;
+
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import org.jcae.mesh.amibe.util.UNVReader;
+import org.jcae.mesh.TestUtils;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class UNVParserTest
+{
+	/**
+	 * Writes a n*n grid with contiguous labels, parabolic triangles,
+	 * beams along a side, and 2 groups.
+	 */
+	private static void writeGrid(File file, int n) throws IOException
+	{
+		PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.println("    -1");
+		out.println("   164");
+		out.println("         5mm (milli-newton)            2");
+		out.println("  1.00000000000000000D+03  1.00000000000000000D+03  1.00000000000000000D+00");
+		out.println("  2.73149999999999977D+02");
+		out.println("    -1");
+		out.println("    -1");
+		out.println("  2411");
+		for (int j = 0; j <= n; j++)
+			for (int i = 0; i <= n; i++)
+				MeshExporter.UNV.writeSingleNode(out, 1 + i + j * (n + 1), 0.1 * i, j / 3.0, 0.01 * ((i * j) % 7));
+		out.println("    -1");
+		out.println("    -1");
+		out.println("  2412");
+		int count = 0;
+		List<Integer> left = new ArrayList<Integer>();
+		List<Integer> right = new ArrayList<Integer>();
+		for (int j = 0; j < n; j++)
+		{
+			for (int i = 0; i < n; i++)
+			{
+				int v0 = 1 + i + j * (n + 1);
+				int v1 = v0 + 1;
+				int v2 = v1 + n + 1;
+				int v3 = v0 + n + 1;
+				count++;
+				MeshExporter.UNV.writeSingleTriangle(out, count, v0, v1, v2);
+				(i < n / 2 ? left : right).add(count);
+				count++;
+				if (i % 3 == 0)
+				{
+					// Parabolic triangle, mid nodes are not read
+					out.println(i10(count)+"        92         1         1         1         6");
+					out.println(i10(v0)+i10(v1)+
+						i10(v2)+i10(v2)+
+						i10(v3)+i10(v0));
+				}
+				else
+					MeshExporter.UNV.writeSingleTriangle(out, count, v0, v2, v3);
+				(i < n / 2 ? left : right).add(count);
+			}
+			count++;
+			out.println(i10(count)+"        21         1         1         1         2");
+			out.println("         0         1         1");
+			out.println(i10(1 + j * (n + 1))+i10(1 + (j + 1) * (n + 1)));
+			left.add(count);
+		}
+		out.println("    -1");
+		out.println("    -1");
+		out.println("  2435");
+		MeshExporter.UNV.writeSingleGroup(out, 1, "left", toArray(left));
+		MeshExporter.UNV.writeSingleGroup(out, 2, "right", toArray(right));
+		out.println("    -1");
+		out.close();
+		assertFalse(out.checkError());
+	}
+
+	private static String i10(int i)
+	{
+		return String.format("%10d", i);
+	}
+
+	private static int [] toArray(List<Integer> list)
+	{
+		int [] ret = new int[list.size()];
+		for (int i = 0; i < ret.length; i++)
+			ret[i] = list.get(i);
+		return ret;
+	}
+
+	@Test public void amibe() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			File unv = new File(dir, "grid.unv");
+			writeGrid(unv, 250);
+			File expected = new File(dir, "sequential");
+			new UNV2Amibe().importMesh(unv, expected.getPath());
+			for (int nrThreads = 1; nrThreads <= 4; nrThreads *= 2)
+			{
+				File actual = new File(dir, "parallel"+nrThreads);
+				new UNV2Amibe().importMesh(unv, actual.getPath(), nrThreads);
+				TestUtils.assertSameFiles(expected, actual);
+			}
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test public void mesh() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			File unv = new File(dir, "grid.unv");
+			writeGrid(unv, 50);
+			Mesh expected = new Mesh(MeshTraitsBuilder.getDefault3D());
+			UNVReader.readMesh(expected, unv.getPath());
+			Mesh actual = new Mesh(MeshTraitsBuilder.getDefault3D());
+			UNVReader.readMesh(actual, unv.getPath(), 2);
+			assertTrue(actual.isValid());
+			assertEquals(expected.getTriangles().size(), actual.getTriangles().size());
+			Iterator<Triangle> it = actual.getTriangles().iterator();
+			for (Triangle e : expected.getTriangles())
+			{
+				Triangle a = it.next();
+				assertEquals(e.getGroupId(), a.getGroupId());
+				for (int i = 0; i < 3; i++)
+				{
+					assertEquals(e.vertex[i].getLabel(), a.vertex[i].getLabel());
+					assertArrayEquals(e.vertex[i].getUV(), a.vertex[i].getUV(), 0.0);
+				}
+			}
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+
+	@Test public void labels() throws IOException
+	{
+		File dir = TestUtils.createTempDir();
+		try
+		{
+			File unv = new File(dir, "labels.unv");
+			PrintStream out = new PrintStream(new FileOutputStream(unv));
+			out.println("    -1");
+			out.println("  2420");
+			out.println("  unknown dataset");
+			out.println("    -1");
+			out.println("    -1");
+			out.println("  2411");
+			for (int i = 0; i < 5; i++)
+				MeshExporter.UNV.writeSingleNode(out, 10 * (5 - i), i, 2 * i, 3 * i);
+			out.println("    -1");
+			out.println("    -1");
+			out.println("  2412");
+			// Quadrangle
+			out.println("         7        94         1         1         1         4");
+			out.println("        50        40        30        20");
+			// Tetrahedron, skipped
+			out.println("         3       111         1         1         1         4");
+			out.println("        50        40        30        20");
+			// Parabolic tetrahedron, skipped
+			out.println("         4       118         1         1         1        10");
+			out.println("        50        40        30        20        10        50        40        30");
+			out.println("        20        10");
+			// Beam
+			out.println("         5        21         1         1         1         2");
+			out.println("         0         1         1");
+			out.println("        10        20");
+			MeshExporter.UNV.writeSingleTriangle(out, 2, 10, 30, 50);
+			out.println("    -1");
+			out.println("    -1");
+			out.println("  2467");
+			MeshExporter.UNV.writeSingleGroup(out, 1, "all", new int[] { 7, 3, 5, 2 });
+			out.println("    -1");
+			out.close();
+
+			UNVParser parser = new UNVParser(unv);
+			parser.parse(2);
+			assertArrayEquals(new int[] { 50, 40, 30, 20, 10 }, parser.getNodeLabels());
+			assertEquals(3, parser.getNumberOfTriangles());
+			assertArrayEquals(new int[] { 0, 1, 2, 0, 2, 3, 4, 2, 0 }, parser.getTriangles());
+			assertArrayEquals(new int[] { 4, 3 }, parser.getBeams());
+			assertEquals(15, parser.getNodes().length);
+			assertEquals(3.0, parser.getNodes()[5], 0.0);
+			assertEquals(1, parser.getGroups().size());
+			UNVParser.Group g = parser.getGroups().get(0);
+			assertEquals("all", g.getName());
+			assertArrayEquals(new int[] { 0, 1, 2 }, g.getTriangles());
+			assertArrayEquals(new int[] { 0 }, g.getBeams());
+		}
+		finally
+		{
+			TestUtils.delete(dir);
+		}
+	}
+}
@@ -22,6 +22,7 @@ package org.jcae.mesh;
 import org.jcae.mesh.oemm.OEMM;
 import org.jcae.mesh.oemm.Storage;
 import org.jcae.mesh.oemm.MeshReader;
+import org.jcae.mesh.oemm.OctantCache;
 import org.jcae.mesh.oemm.TraversalProcedure;
 import org.jcae.mesh.oemm.OEMM.Node;
 import org.jcae.mesh.amibe.ds.Mesh;
@@ -30,9 +31,19 @@ import org.jcae.mesh.amibe.algos3d.QEMDecimateHalfEdge;
 import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
 import org.jcae.mesh.amibe.traits.TriangleTraitsBuilder;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import gnu.trove.TIntHashSet;
+import gnu.trove.TIntIterator;
+import gnu.trove.TObjectIntHashMap;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -41,7 +52,12 @@ import java.io.IOException;
 import java.util.logging.Logger;
 
 /**
- * Decimates all cells of an OEMM.
+ * Decimates all cells of an OEMM.  Cells are decimated by as many threads
+ * as available processors, unless
+ * <code>org.jcae.mesh.MeshOEMMDecimate.threads</code> property is set.
+ * Property <code>org.jcae.mesh.MeshOEMMDecimate.maxLoadedOctants</code>
+ * sets the maximal number of leaves loaded at the same time by all threads,
+ * it defaults to 4 times the number of threads.
  */
 public class MeshOEMMDecimate
 {
@@ -76,15 +92,103 @@ public class MeshOEMMDecimate
 			new MeshOEMMDecimate().copyFiles(new File(args[0]), decDir);
 		}
 		
+		int nrThreads = Runtime.getRuntime().availableProcessors();
+		String threadsProp = System.getProperty("org.jcae.mesh.MeshOEMMDecimate.threads");
+		if (threadsProp != null)
+			nrThreads = Integer.valueOf(threadsProp).intValue();
+		int maxLoadedOctants = 4 * nrThreads;
+		String maxLoadedProp = System.getProperty("org.jcae.mesh.MeshOEMMDecimate.maxLoadedOctants");
+		if (maxLoadedProp != null)
+			maxLoadedOctants = Integer.valueOf(maxLoadedProp).intValue();
+		
 		logger.info("Read OEMM structure");
 		OEMM oemm = Storage.readOEMMStructure(dir);
+		compute(oemm, scale, minimalNumberOfTriangles, nrThreads, maxLoadedOctants);
+	}
+	
+	/**
+	 * Decimates all cells of an OEMM.  Leaves are decimated first, and
+	 * then internal nodes, whose meshes are composed of all leaves below
+	 * them.  Cells containing less than <code>minimalNumberOfTriangles</code>
+	 * triangles are not decimated.
+	 *
+	 * @param oemm  OEMM instance
+	 * @param scale  each cell is decimated so that its number of triangles
+	 *    is divided by this factor
+	 * @param minimalNumberOfTriangles  minimal number of triangles for
+	 *    decimation
+	 * @param nrThreads  number of threads
+	 * @param maxLoadedOctants  maximal number of leaves loaded at the same
+	 *    time when <code>nrThreads</code> is greater than 1
+	 */
+	public static void compute(OEMM oemm, int scale, int minimalNumberOfTriangles, int nrThreads, int maxLoadedOctants)
+	{
 		// Count triangles in non-leaf nodes
 		CountProcedure c_proc = new CountProcedure();
 		oemm.walk(c_proc);
 		logger.info("Decimate all octree nodes");
-		MeshReader reader = new MeshReader(oemm);
-		DecimateProcedure d_proc = new DecimateProcedure(reader, scale, minimalNumberOfTriangles);
-		oemm.walk(d_proc);
+		// Octants adjacent to a cell are read in background while
+		// this cell is decimated
+		OctantCache cache = new OctantCache(oemm);
+		try
+		{
+			if (nrThreads > 1)
+			{
+				new ParallelDecimation(oemm, cache, scale, minimalNumberOfTriangles, nrThreads, maxLoadedOctants).compute();
+			}
+			else
+			{
+				MeshReader reader = new MeshReader(oemm);
+				reader.setOctantCache(cache);
+				DecimateProcedure d_proc = new DecimateProcedure(reader, scale, minimalNumberOfTriangles);
+				oemm.walk(d_proc);
+			}
+		}
+		finally
+		{
+			cache.shutdown();
+		}
+		logger.info("Octant cache: "+cache);
+	}
+	
+	private static MeshTraitsBuilder createMeshTraitsBuilder()
+	{
+		MeshTraitsBuilder mtb = new MeshTraitsBuilder();
+		TriangleTraitsBuilder ttb = new TriangleTraitsBuilder();
+		ttb.addHalfEdge();
+		mtb.add(ttb);
+		mtb.addTriangleSet();
+		mtb.addNodeSet();
+		return mtb;
+	}
+	
+	private static void decimate(OEMM oemm, MeshReader reader, MeshTraitsBuilder mtb, TIntHashSet leaves, int scale)
+	{
+		Mesh amesh = reader.buildMesh(mtb, leaves);
+		int nrT = AbstractAlgoHalfEdge.countInnerTriangles(amesh);
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("maxtriangles", ""+(nrT / scale));
+		new QEMDecimateHalfEdge(amesh, options).compute();
+		// Storage.saveNodes also writes the OEMM structure, which
+		// contains all leaves, so meshes are stored one at a time
+		synchronized (oemm)
+		{
+			Storage.saveNodes(oemm, amesh, leaves);
+		}
+	}
+	
+	private static void getChildLeaves(Node current, TIntHashSet leaves)
+	{
+		for (OEMM.Node node: current.child)
+		{
+			if (node == null)
+				continue;
+			if (node.isLeaf) {
+				leaves.add(node.leafIndex);
+			} else {
+				getChildLeaves(node, leaves);
+			}
+		}
 	}
 	
 	private static void deleteFiles(File decDir)
@@ -145,19 +249,13 @@ public class MeshOEMMDecimate
 		private final int scale;
 		private final int minTN;
 		private final TIntHashSet leaves = new TIntHashSet();
-		private final Map<String, String> options = new HashMap<String, String>();
-		private final MeshTraitsBuilder mtb = new MeshTraitsBuilder();
+		private final MeshTraitsBuilder mtb = createMeshTraitsBuilder();
 		
 		public DecimateProcedure(MeshReader mr, int s, int minimalNumberOfTriangles)
 		{
 			reader = mr;
 			scale = s;
 			minTN = minimalNumberOfTriangles;
-			TriangleTraitsBuilder ttb = new TriangleTraitsBuilder();
-			ttb.addHalfEdge();
-			mtb.add(ttb);
-			mtb.addTriangleSet();
-			mtb.addNodeSet();
 		}
 
 		@Override
@@ -185,32 +283,209 @@ public class MeshOEMMDecimate
 				return OK;
 			
 			leaves.clear();
-			getChildLeaves(current);
+			getChildLeaves(current, leaves);
 			process(oemm);
 			return OK;
 		}
-		private void getChildLeaves(Node current)
+		private void process(OEMM oemm)
 		{
-			for (OEMM.Node node: current.child)
+			decimate(oemm, reader, mtb, leaves, scale);
+		}
+	}
+
+	/**
+	 * Decimates cells on several threads.  Cells are processed by height,
+	 * leaves first, so that children are decimated before their parent as
+	 * with {@link DecimateProcedure}.  Storing a mesh modifies leaves
+	 * adjacent to stored leaves, thus two cells can be processed
+	 * concurrently only if their leaves and adjacent leaves (as given by
+	 * <code>OEMM.Node.adjLeaves</code>) are disjoint.  Cells of a given
+	 * height are colored into independent sets by a greedy algorithm, and
+	 * each set is decimated by a thread pool.  A semaphore bounds the number
+	 * of loaded leaves.  Meshes are read and decimated concurrently, but
+	 * they are stored one at a time.
+	 */
+	static final class ParallelDecimation
+	{
+		private final OEMM oemm;
+		private final OctantCache cache;
+		private final int scale;
+		private final int minTN;
+		private final int nrThreads;
+		private final int maxLoadedOctants;
+		private final Semaphore loadedOctants;
+		
+		ParallelDecimation(OEMM o, OctantCache c, int s, int minimalNumberOfTriangles, int threads, int maxLoaded)
+		{
+			oemm = o;
+			cache = c;
+			scale = s;
+			minTN = minimalNumberOfTriangles;
+			nrThreads = threads;
+			maxLoadedOctants = Math.max(1, maxLoaded);
+			loadedOctants = new Semaphore(maxLoadedOctants);
+		}
+		
+		void compute()
+		{
+			// Sort cells by height, in tree traversal order
+			final List<List<OEMM.Node>> cellsByHeight = new ArrayList<List<OEMM.Node>>();
+			final TObjectIntHashMap<OEMM.Node> height = new TObjectIntHashMap<OEMM.Node>();
+			oemm.walk(new TraversalProcedure()
 			{
-				if (node == null)
-					continue;
-				if (node.isLeaf) {
-					leaves.add(node.leafIndex);
-				} else {
-					getChildLeaves(node);
+				@Override
+				public final int action(OEMM o, OEMM.Node current, int octant, int visit)
+				{
+					if (visit != POSTORDER && visit != LEAF)
+						return OK;
+					int h = 0;
+					if (visit == POSTORDER)
+					{
+						for (OEMM.Node node: current.child)
+						{
+							if (node != null)
+								h = Math.max(h, 1 + height.get(node));
+						}
+					}
+					height.put(current, h);
+					while (cellsByHeight.size() <= h)
+						cellsByHeight.add(new ArrayList<OEMM.Node>());
+					cellsByHeight.get(h).add(current);
+					return OK;
 				}
-			}
+			});
 			
+			ExecutorService pool = Executors.newFixedThreadPool(nrThreads);
+			try
+			{
+				for (int h = 0; h < cellsByHeight.size(); h++)
+				{
+					List<TIntHashSet> cells = new ArrayList<TIntHashSet>();
+					for (OEMM.Node current : cellsByHeight.get(h))
+					{
+						// Initial number of triangles of this cell and
+						// its children are lower than minTN
+						if (current.tn <= minTN)
+							continue;
+						TIntHashSet leaves = new TIntHashSet();
+						if (current.isLeaf)
+							leaves.add(current.leafIndex);
+						else
+						{
+							// Children may have been decimated, update current.tn
+							current.tn = 0;
+							for (OEMM.Node node: current.child)
+							{
+								if (node != null)
+									current.tn += node.tn;
+							}
+							if (current.tn <= minTN)
+								continue;
+							getChildLeaves(current, leaves);
+						}
+						cells.add(leaves);
+					}
+					for (List<TIntHashSet> independentSet : color(oemm, cells))
+						decimate(pool, independentSet);
+				}
+			}
+			finally
+			{
+				pool.shutdown();
+			}
 		}
-		private void process(OEMM oemm)
+		
+		/**
+		 * Splits cells into sets of cells which can be processed
+		 * concurrently.
+		 *
+		 * @param oemm  OEMM instance
+		 * @param cells  list of cells, each cell is given by its set of leaves
+		 * @return  list of independent sets of cells
+		 */
+		static List<List<TIntHashSet>> color(OEMM oemm, List<TIntHashSet> cells)
 		{
-			Mesh amesh = reader.buildMesh(mtb, leaves);
-			int nrT = AbstractAlgoHalfEdge.countInnerTriangles(amesh);
-			options.clear();
-			options.put("maxtriangles", ""+(nrT / scale));
-			new QEMDecimateHalfEdge(amesh, options).compute();
-			Storage.saveNodes(oemm, amesh, leaves);
+			List<List<TIntHashSet>> ret = new ArrayList<List<TIntHashSet>>();
+			// Leaves used by each set
+			List<TIntHashSet> used = new ArrayList<TIntHashSet>();
+			TIntHashSet footprint = new TIntHashSet();
+			for (TIntHashSet leaves : cells)
+			{
+				footprint.clear();
+				for (TIntIterator it = leaves.iterator(); it.hasNext(); )
+				{
+					int l = it.next();
+					footprint.add(l);
+					footprint.addAll(oemm.leaves[l].adjLeaves.toNativeArray());
+				}
+				int c = 0;
+				for (; c < ret.size(); c++)
+				{
+					if (!intersects(used.get(c), footprint))
+						break;
+				}
+				if (c == ret.size())
+				{
+					ret.add(new ArrayList<TIntHashSet>());
+					used.add(new TIntHashSet());
+				}
+				ret.get(c).add(leaves);
+				used.get(c).addAll(footprint.toArray());
+			}
+			logger.fine("Number of cells: "+cells.size()+"  independent sets: "+ret.size());
+			return ret;
+		}
+		
+		private static boolean intersects(TIntHashSet set, TIntHashSet other)
+		{
+			for (TIntIterator it = other.iterator(); it.hasNext(); )
+			{
+				if (set.contains(it.next()))
+					return true;
+			}
+			return false;
+		}
+		
+		private void decimate(ExecutorService pool, List<TIntHashSet> independentSet)
+		{
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(independentSet.size());
+			for (final TIntHashSet leaves : independentSet)
+			{
+				tasks.add(new Callable<Object>()
+				{
+					public Object call() throws InterruptedException
+					{
+						int permits = Math.min(leaves.size(), maxLoadedOctants);
+						loadedOctants.acquire(permits);
+						try
+						{
+							MeshTraitsBuilder mtb = createMeshTraitsBuilder();
+							MeshReader reader = new MeshReader(oemm);
+							reader.setOctantCache(cache);
+							MeshOEMMDecimate.decimate(oemm, reader, mtb, leaves, scale);
+						}
+						finally
+						{
+							loadedOctants.release(permits);
+						}
+						return null;
+					}
+				});
+			}
+			try
+			{
+				for (Future<Object> f : pool.invokeAll(tasks))
+					f.get();
+			}
+			catch (InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(ex);
+			}
+			catch (ExecutionException ex)
+			{
+				throw new RuntimeException(ex.getCause());
+			}
 		}
 	}
 }
@@ -46,23 +46,33 @@ public class MeshOEMMIndex
 			oemm.setBoundingBox(bbox);
 		}
 		String soupFile = soupDir+File.separator+"soup";
-		if (!RawStorage.countTriangles(oemm, soupFile))
+		int nrThreads = Runtime.getRuntime().availableProcessors();
+		String threadsProp = System.getProperty("org.jcae.mesh.MeshOEMMIndex.threads");
+		if (threadsProp != null)
+			nrThreads = Integer.valueOf(threadsProp).intValue();
+		if (!RawStorage.countTriangles(oemm, soupFile, true, nrThreads))
 		{
 			// Bounding box was invalid and has been fixed
 			// in RawStorage.countTriangles(), we need to
 			// count triangles against the new OEMM.
 			logger.info("Invalid bounding box has been detected");
-			if (!RawStorage.countTriangles(oemm, soupFile))
+			if (!RawStorage.countTriangles(oemm, soupFile, true, nrThreads))
 				throw new RuntimeException("Fatal error... aborting");
 		}
 		Aggregate.compute(oemm, triangles_max);
-		RawStorage.dispatch(oemm, soupFile, "dispatched", "dispatched.data");
-		RawStorage.indexOEMM("dispatched", outDir);
+		RawStorage.dispatch(oemm, soupFile, "dispatched", "dispatched.data", nrThreads);
+		boolean compress = Boolean.getBoolean("org.jcae.mesh.MeshOEMMIndex.compress");
+		RawStorage.indexOEMM("dispatched", outDir, compress);
 		logger.info("End processing");
 	}
 	
 	/**
-	 * Main method, reads 4 arguments and calls mesh() method
+	 * Main method, reads 4 arguments and calls mesh() method.  Triangle
+	 * soup is read by as many threads as available processors, unless
+	 * <code>org.jcae.mesh.MeshOEMMIndex.threads</code> property is set.
+	 * Octants are written in compressed format if
+	 * <code>org.jcae.mesh.MeshOEMMIndex.compress</code> property is
+	 * set to <code>true</code>.
 	 * @param args  an array of String, soup directory, OEMM output directory, max level and maximal numbre of triangles by octant.
 	 */
 	public static void main(String args[])
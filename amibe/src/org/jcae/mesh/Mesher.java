@@ -28,9 +28,16 @@ import java.io.PrintStream;
 import java.io.InputStream;
 import java.io.FileInputStream;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.text.SimpleDateFormat;
 
 import org.jcae.mesh.amibe.patch.InitialTriangulationException;
@@ -97,6 +104,7 @@ public class Mesher
 	private int minFace=0;
 	private int maxFace=0;
 	private int numFace=0;
+	private int nrThreads=1;
 		
 	/**
 	 * Read system properties which affect the meshing behavior.
@@ -215,6 +223,16 @@ public class Mesher
 			System.setProperty("org.jcae.mesh.Mesher.quadrangles", quadranglesProp);
 		}
 		quadrangles=quadranglesProp.equals("true");
+		
+		String threadsProp = System.getProperty("org.jcae.mesh.Mesher.threads");
+		if (threadsProp == null)
+		{
+			threadsProp = "1";
+			System.setProperty("org.jcae.mesh.Mesher.threads", threadsProp);
+		}
+		nrThreads=Integer.parseInt(threadsProp);
+		if (nrThreads <= 0)
+			nrThreads = Runtime.getRuntime().availableProcessors();
 	}
 	
 	/**
@@ -286,6 +304,8 @@ public class Mesher
 			new CheckDelaunay(mesh).compute();
 			if (mp.hasDeflection() && !mp.hasRelativeDeflection())
 				new EnforceAbsDeflection(mesh).compute();
+			if (mesh.getMetricField() != null)
+				logger.fine("Face "+iFace+": "+mesh.getMetricField());
 		}
 		else
 		{
@@ -303,6 +323,79 @@ public class Mesher
 		return toReturn;
 	}
 	
+	/**
+	 * Compute 2D meshes with a pool of {@link #nrThreads} threads.  Faces
+	 * are independent once the 1D mesh is computed; each face gets its
+	 * own {@link Mesh2D}, {@link MeshParameters} and CAD surface instance,
+	 * and is written into its own files.  Faces which cannot be meshed
+	 * are appended to <code>badGroups</code> in face order, as with the
+	 * sequential loop.
+	 *
+	 * @param faceIds  face numbers
+	 * @param faces  faces to mesh
+	 * @param nrFaces  total number of faces, for logging purpose
+	 * @param mesh1D  the boundary mesh, it is only read by threads
+	 * @param options2d  options to create MeshParameters instances
+	 * @param brepFile  basename of the BRep file
+	 * @param mtb  container for 2D mesh traits
+	 * @param badGroups  list of faces which cannot be meshed
+	 */
+	private void mesh2D(final TIntArrayList faceIds, final List<CADFace> faces,
+		final int nrFaces, final MMesh1D mesh1D, final HashMap<String, String> options2d,
+		final String brepFile, final MeshTraitsBuilder mtb, TIntArrayList badGroups)
+	{
+		logger.info("Meshing "+faces.size()+" faces with "+nrThreads+" threads");
+		ExecutorService pool = Executors.newFixedThreadPool(nrThreads);
+		try
+		{
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(faces.size());
+			for (int i = 0; i < faces.size(); i++)
+			{
+				final int index = i;
+				results.add(pool.submit(new Callable<Boolean>()
+				{
+					public Boolean call()
+					{
+						int iFace = faceIds.get(index);
+						logger.info("Meshing face " + iFace+"/"+nrFaces);
+						MeshParameters mp = new MeshParameters(options2d);
+						return Boolean.valueOf(mesh2D(iFace, faces.get(index), mesh1D, mp, brepFile, mtb));
+					}
+				}));
+			}
+			for (int i = 0; i < faces.size(); i++)
+			{
+				boolean done;
+				try
+				{
+					done = results.get(i).get().booleanValue();
+				}
+				catch (InterruptedException ex)
+				{
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(ex);
+				}
+				catch (ExecutionException ex)
+				{
+					//  Rethrow errors as they would have been thrown by
+					//  the sequential loop
+					Throwable cause = ex.getCause();
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					if (cause instanceof Error)
+						throw (Error) cause;
+					throw new RuntimeException(cause);
+				}
+				if (!done)
+					badGroups.add(faceIds.get(i));
+			}
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	}
+	
 	/**
 	 * Export the created mesh to various format
 	 */
@@ -426,6 +519,8 @@ public class Mesher
 				seen.add(expF.current());
 			nrFaces = seen.size();			
 			seen.clear();
+			TIntArrayList faceIds = new TIntArrayList();
+			List<CADFace> faces = new ArrayList<CADFace>();
 			for (expF.init(shape, CADShapeEnum.FACE); expF.more(); expF.next())
 			{
 				CADFace face = (CADFace) expF.current();
@@ -440,10 +535,20 @@ public class Mesher
 				if (seen.contains(face))
 					continue;
 				seen.add(face);
-				logger.info("Meshing face " + iFace+"/"+nrFaces);
-				MeshParameters mp = new MeshParameters(options2d);
-				if(!mesh2D(iFace, face, mesh1D, mp, brepFile, mtb))
-					badGroups.add(iFace);
+				faceIds.add(iFace);
+				faces.add(face);
+			}
+			if (nrThreads > 1 && faces.size() > 1)
+				mesh2D(faceIds, faces, nrFaces, mesh1D, options2d, brepFile, mtb, badGroups);
+			else
+			{
+				for (int i = 0; i < faces.size(); i++)
+				{
+					logger.info("Meshing face " + faceIds.get(i)+"/"+nrFaces);
+					MeshParameters mp = new MeshParameters(options2d);
+					if(!mesh2D(faceIds.get(i), faces.get(i), mesh1D, mp, brepFile, mtb))
+						badGroups.add(faceIds.get(i));
+				}
 			}
 		}
 
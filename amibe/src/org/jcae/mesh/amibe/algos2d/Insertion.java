@@ -22,6 +22,7 @@
 package org.jcae.mesh.amibe.algos2d;
 
 import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.TriangleVH;
 import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
 import org.jcae.mesh.amibe.ds.Vertex;
 import org.jcae.mesh.amibe.patch.Mesh2D;
@@ -32,7 +33,7 @@ import org.jcae.mesh.amibe.metrics.Metric;
 
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
-import java.util.HashSet;
+import java.util.Random;
 import gnu.trove.PrimeFinder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -77,20 +78,45 @@ import java.util.logging.Logger;
  * means that this edge is small.  If either an half-edge ot its symmetric
  * half-edge is tagged, this edge has already been processed.
  * </p>
+ *
+ * <p>
+ * In bulk mode, nodes of each iteration are sorted in a biased randomized
+ * insertion order, see {@link SpatialSort}, and the triangle containing a
+ * node is found by walking from the previous node instead of querying
+ * the <code>KdTree</code>.  Sets of modified triangles are then swapped
+ * between iterations, their insertion order is deterministic and they
+ * do not have to be rebuilt from the whole list of triangles.  This mode
+ * is enabled by setting the
+ * <code>org.jcae.mesh.amibe.algos2d.Insertion.bulk</code> property to
+ * <code>true</code>, or by calling {@link #setBulk}.  Meshes are slightly
+ * different from those computed in the default mode.
+ * </p>
  */
 public class Insertion
 {
 	private static final Logger LOGGER=Logger.getLogger(Insertion.class.getName());
 	private static final double ONE_PLUS_SQRT2 = 1.0 + Math.sqrt(2.0);
+	private static final boolean defaultBulk;
 	private final Mesh2D mesh;
 	private final KdTree<Vertex> kdTree;
 	
 	private final double minlen;
 	private final double maxlen;
+	private boolean bulk = defaultBulk;
 
 	// useful to see if addCandidatePoints() does its job
 	private int nrInterpolations;
 	private int nrFailedInterpolations;
+
+	static {
+		String bulkProp = System.getProperty("org.jcae.mesh.amibe.algos2d.Insertion.bulk");
+		if (bulkProp == null)
+		{
+			bulkProp = "false";
+			System.setProperty("org.jcae.mesh.amibe.algos2d.Insertion.bulk", bulkProp);
+		}
+		defaultBulk = bulkProp.equals("true");
+	}
 	
 	/**
 	 * Creates a <code>Insertion</code> instance.
@@ -104,6 +130,16 @@ public class Insertion
 		this.minlen = minlen;
 		this.maxlen = maxlen;
 	}
+
+	/**
+	 * Enables or disables bulk mode.
+	 *
+	 * @param b  <code>true</code> to insert nodes in bulk mode
+	 */
+	public final void setBulk(boolean b)
+	{
+		bulk = b;
+	}
 	
 	/**
 	 * Iteratively insert inner nodes.
@@ -117,7 +153,8 @@ public class Insertion
 		ArrayList<Vertex2D> triNodes = new ArrayList<Vertex2D>();
 		AbstractHalfEdge sym = null;
 		AbstractHalfEdge ot = null;
-		HashSet<Triangle> trianglesToCheck = new HashSet<Triangle>(mesh.getTriangles().size());
+		Random rand = null;
+		LinkedHashSet<Triangle> trianglesToCheck = new LinkedHashSet<Triangle>(mesh.getTriangles().size());
 		double curMinlen = minlen;
 		// We use a LinkedHashSet instance below to keep triangle order
 		LinkedHashSet<Triangle> oldTrianglesToCheck = new LinkedHashSet<Triangle>(mesh.getTriangles().size());
@@ -305,30 +342,57 @@ public class Insertion
 				kdTree.remove(v);
 			}
 			LOGGER.fine("Try to insert "+nodes.size()+" nodes");
-			//  Process in pseudo-random order.  There is at most maxNodes nodes
-			//  on an edge, we choose an increment step greater than this value
-			//  to try to split all edges.
-			int prime = PrimeFinder.nextPrime(maxNodes);
 			int imax = nodes.size();
-			while (imax % prime == 0)
-				prime = PrimeFinder.nextPrime(prime+1);
-			if (prime >= imax)
-				prime = 1;
-			int index = imax / 2;
 			int skippedNodes = 0;
 			int totNrSwap = 0;
-			for (int i = 0; i < imax; i++)
+			if (bulk)
 			{
-				Vertex2D v = nodes.get(index);
-				VirtualHalfEdge2D vt = v.getSurroundingOTriangle(mesh);
-				int nrSwap = vt.split3(mesh, v, trianglesToCheck, false);
-				if (0 == nrSwap)
-					skippedNodes++;
-				else
-					totNrSwap += nrSwap;
-				index += prime;
-				if (index >= imax)
-					index -= imax;
+				if (rand == null)
+					rand = new Random(139L);
+				SpatialSort.brio(nodes, rand);
+				//  Walk from the previous node, it is linked to the
+				//  triangle where it had been inserted, or to the one
+				//  containing it when insertion failed.
+				TriangleVH start = null;
+				for (Vertex2D v : nodes)
+				{
+					VirtualHalfEdge2D vt;
+					if (start == null)
+						vt = v.getSurroundingOTriangle(mesh);
+					else
+						vt = v.getSurroundingOTriangle(mesh, start);
+					int nrSwap = vt.split3(mesh, v, trianglesToCheck, false);
+					if (0 == nrSwap)
+						skippedNodes++;
+					else
+						totNrSwap += nrSwap;
+					start = (TriangleVH) v.getLink();
+				}
+			}
+			else
+			{
+				//  Process in pseudo-random order.  There is at most maxNodes nodes
+				//  on an edge, we choose an increment step greater than this value
+				//  to try to split all edges.
+				int prime = PrimeFinder.nextPrime(maxNodes);
+				while (imax % prime == 0)
+					prime = PrimeFinder.nextPrime(prime+1);
+				if (prime >= imax)
+					prime = 1;
+				int index = imax / 2;
+				for (int i = 0; i < imax; i++)
+				{
+					Vertex2D v = nodes.get(index);
+					VirtualHalfEdge2D vt = v.getSurroundingOTriangle(mesh);
+					int nrSwap = vt.split3(mesh, v, trianglesToCheck, false);
+					if (0 == nrSwap)
+						skippedNodes++;
+					else
+						totNrSwap += nrSwap;
+					index += prime;
+					if (index >= imax)
+						index -= imax;
+				}
 			}
 			if (LOGGER.isLoggable(Level.FINE))
 			{
@@ -349,14 +413,24 @@ public class Insertion
 			if (skippedNodes == nodes.size())
 				break;
 
-			// Copy trianglesToCheck into oldTrianglesToCheck and keep original
-			// order from mesh.getTriangles().  This is to make sure that this
-			// use of trianglesToCheck does not modify result.
-			oldTrianglesToCheck.clear();
-			for(Triangle t : mesh.getTriangles())
+			if (bulk)
 			{
-				if (trianglesToCheck.contains(t))
-					oldTrianglesToCheck.add(t);
+				// Order of trianglesToCheck is deterministic, swap sets
+				LinkedHashSet<Triangle> temp = oldTrianglesToCheck;
+				oldTrianglesToCheck = trianglesToCheck;
+				trianglesToCheck = temp;
+			}
+			else
+			{
+				// Copy trianglesToCheck into oldTrianglesToCheck and keep original
+				// order from mesh.getTriangles().  This is to make sure that this
+				// use of trianglesToCheck does not modify result.
+				oldTrianglesToCheck.clear();
+				for(Triangle t : mesh.getTriangles())
+				{
+					if (trianglesToCheck.contains(t))
+						oldTrianglesToCheck.add(t);
+				}
 			}
 		}
 		LOGGER.fine("Number of iterations to insert all nodes: "+nrIter);
@@ -0,0 +1,125 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.algos2d;
+
+import org.jcae.mesh.amibe.patch.Vertex2D;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Sort vertices in a biased randomized insertion order (BRIO).  Vertices
+ * are shuffled and split into rounds of geometrically increasing sizes:
+ * the last round contains half of the vertices, the previous one a
+ * quarter, and so on.  Each round is then sorted along a Hilbert curve,
+ * so that consecutive vertices are near from each other and point
+ * location can walk from the previously inserted vertex, while rounds
+ * keep enough randomness to avoid pathological insertion orders.
+ * See Amenta, Choi and Rote, "Incremental constructions con BRIO",
+ * SoCG 2003.
+ */
+final class SpatialSort
+{
+	//  Rounds with less vertices are not split further
+	private static final int MIN_ROUND = 64;
+	//  Number of bits of grid coordinates
+	private static final int ORDER = 16;
+	private static final int GRID_SIZE = 1 << ORDER;
+
+	private SpatialSort()
+	{
+	}
+
+	/**
+	 * Sort vertices in a biased randomized insertion order.
+	 *
+	 * @param nodes  vertices to sort, this list is modified
+	 * @param rand   pseudo-random generator used to shuffle vertices
+	 */
+	static void brio(List<Vertex2D> nodes, Random rand)
+	{
+		int n = nodes.size();
+		if (n < 2)
+			return;
+		Collections.shuffle(nodes, rand);
+		double [] bbox = { Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+		for (Vertex2D v : nodes)
+		{
+			double [] uv = v.getUV();
+			for (int k = 0; k < 2; k++)
+			{
+				bbox[k] = Math.min(bbox[k], uv[k]);
+				bbox[k+2] = Math.max(bbox[k+2], uv[k]);
+			}
+		}
+		double scaleU = (GRID_SIZE - 1) / Math.max(bbox[2] - bbox[0], Double.MIN_VALUE);
+		double scaleV = (GRID_SIZE - 1) / Math.max(bbox[3] - bbox[1], Double.MIN_VALUE);
+		//  Hilbert index has 2*ORDER bits, and is stored in upper
+		//  bits so that sorting these values sorts indices
+		long [] keys = new long[n];
+		for (int i = 0; i < n; i++)
+		{
+			double [] uv = nodes.get(i).getUV();
+			int x = (int) ((uv[0] - bbox[0]) * scaleU);
+			int y = (int) ((uv[1] - bbox[1]) * scaleV);
+			keys[i] = (hilbertIndex(x, y) << 31) | i;
+		}
+		int end = n;
+		while (end > 0)
+		{
+			int start = (end > 2 * MIN_ROUND ? end / 2 : 0);
+			Arrays.sort(keys, start, end);
+			end = start;
+		}
+		Vertex2D [] sorted = nodes.toArray(new Vertex2D[n]);
+		for (int i = 0; i < n; i++)
+			nodes.set(i, sorted[(int) (keys[i] & Integer.MAX_VALUE)]);
+	}
+
+	/**
+	 * Returns the position of a grid point along the Hilbert curve.
+	 */
+	static long hilbertIndex(int x, int y)
+	{
+		long ret = 0L;
+		for (int s = GRID_SIZE / 2; s > 0; s /= 2)
+		{
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			ret += (long) s * s * ((3 * rx) ^ ry);
+			//  Rotate quadrant
+			if (ry == 0)
+			{
+				if (rx == 1)
+				{
+					x = GRID_SIZE - 1 - x;
+					y = GRID_SIZE - 1 - y;
+				}
+				int temp = x;
+				x = y;
+				y = temp;
+			}
+		}
+		return ret;
+	}
+}
@@ -30,6 +30,8 @@ import org.jcae.mesh.amibe.ds.Vertex;
 import org.jcae.mesh.amibe.projection.MeshLiaison;
 import org.jcae.mesh.amibe.util.QSortedTree;
 import org.jcae.mesh.amibe.util.PAVLSortedTree;
+import org.jcae.mesh.amibe.util.PIndexedHeap;
+import org.jcae.mesh.amibe.util.QualityQueue;
 import java.util.Stack;
 import java.util.Iterator;
 import java.io.ObjectOutputStream;
@@ -57,7 +59,7 @@ public abstract class AbstractAlgoHalfEdge
 	private boolean noSwapAfterProcessing = false;
 	double minCos = 0.95;
 	boolean moreTriangles = false;
-	QSortedTree<HalfEdge> tree = new PAVLSortedTree<HalfEdge>();
+	QualityQueue<HalfEdge> tree = new PAVLSortedTree<HalfEdge>();
 	
 	protected abstract void preProcessAllHalfEdges();
 	protected abstract void postProcessAllHalfEdges();
@@ -330,6 +332,37 @@ public abstract class AbstractAlgoHalfEdge
 		this.noSwapAfterProcessing = noSwapAfterProcessing;
 	}
 
+	/**
+	 * Selects the priority queue used to sort edges.  By default edges
+	 * are stored into a {@link PAVLSortedTree}, an indexed heap
+	 * ({@link PIndexedHeap}) is used instead if argument is
+	 * <code>true</code>.  This method must be called before
+	 * {@link #compute}.
+	 *
+	 * @param indexedHeap  <code>true</code> to use an indexed heap
+	 */
+	public final void setIndexedHeap(boolean indexedHeap)
+	{
+		assert tree.isEmpty();
+		if (indexedHeap)
+			tree = new PIndexedHeap<HalfEdge>();
+		else
+			tree = new PAVLSortedTree<HalfEdge>();
+	}
+
+	/**
+	 * Sets the priority queue used to sort edges.  This method must be
+	 * called before {@link #compute}, with an empty queue.
+	 *
+	 * @param queue  priority queue
+	 */
+	public final void setQualityQueue(QualityQueue<HalfEdge> queue)
+	{
+		assert tree.isEmpty();
+		assert queue.isEmpty();
+		tree = queue;
+	}
+
 	final void dumpState()
 	{
 		ObjectOutputStream out = null;
@@ -362,7 +395,7 @@ public abstract class AbstractAlgoHalfEdge
 			ObjectInputStream q = new ObjectInputStream(istream);
 			System.out.println("Loading restored state");
 			mesh = (Mesh) q.readObject();
-			tree = (QSortedTree<HalfEdge>) q.readObject();
+			tree = (QualityQueue<HalfEdge>) q.readObject();
 			appendRestoreState(q);
 			System.out.println("... Done.");
 			q.close();
@@ -100,13 +100,14 @@ public class Fuse
 			bbox[i+3] = bmax[i];
 		}
 		KdTree<Vertex> octree = new KdTree<Vertex>(bbox);
+		KdTree<Vertex>.SearchBuffer search = octree.createSearchBuffer();
 		HashMap<Vertex, Vertex> map = new HashMap<Vertex, Vertex>();
 		int nSubst = 0;
 		for (Vertex n: mesh.getNodes())
 		{
 			if (n.getRef() <= 0)
 				continue;
-			Vertex p = octree.getNearestVertex(mesh.getMetric(n), n.getUV());
+			Vertex p = octree.getNearestVertex(mesh.getMetric(n), n.getUV(), search);
 			if (p == null || p.getRef() <= 0 || n.sqrDistance3D(p) > tolerance)
 				octree.add(n);
 			else
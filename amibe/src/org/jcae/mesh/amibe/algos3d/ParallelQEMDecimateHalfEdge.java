@@ -0,0 +1,472 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+package org.jcae.mesh.amibe.algos3d;
+
+import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
+import org.jcae.mesh.amibe.ds.HalfEdge;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Decimates a mesh on several threads.  The mesh is split into spatial
+ * partitions by recursive coordinate bisection of triangle centroids.
+ * Each partition is copied into its own {@link Mesh} instance, vertices
+ * shared by several partitions are frozen (they are not writable), and
+ * partitions are decimated concurrently by {@link QEMDecimateHalfEdge}.
+ * As each worker owns its mesh, no locking is needed.  Edge attributes,
+ * like <code>IMMUTABLE</code> or <code>SHARP</code>, are copied into
+ * partitions and back into the merged mesh.
+ *
+ * <p>
+ * Partitions are then merged back into the original mesh, and a final
+ * sequential {@link QEMDecimateHalfEdge} pass is run on partition borders
+ * only: vertices which are neither frozen nor adjacent to a frozen vertex
+ * are temporarily marked as not writable, so that only edges along
+ * borders are processed.
+ * </p>
+ *
+ * <p>
+ * Quadrics are recomputed on the partially decimated mesh during the
+ * final pass, so geometric deviation near partition borders is bounded by
+ * twice the <code>size</code> tolerance instead of once for sequential
+ * decimation.  Output is manifold wherever input is, and checked by
+ * {@link Mesh#checkNoInvertedTriangles} when assertions are enabled.
+ * </p>
+ *
+ * <p>
+ * Valid options are those of {@link QEMDecimateHalfEdge}, plus
+ * <code>threads</code> (number of worker threads, defaults to the number
+ * of available processors) and <code>partitions</code> (number of
+ * partitions, rounded up to a power of two, defaults to twice the number
+ * of threads).  <code>maxtriangles</code> target is distributed among
+ * partitions proportionally to their size.
+ * </p>
+ */
+public class ParallelQEMDecimateHalfEdge
+{
+	private static final Logger LOGGER=Logger.getLogger(ParallelQEMDecimateHalfEdge.class.getName());
+	// Attributes which are recomputed when building adjacency relations
+	private static final int TOPOLOGY_ATTRIBUTES = AbstractHalfEdge.BOUNDARY
+		| AbstractHalfEdge.OUTER | AbstractHalfEdge.NONMANIFOLD;
+	private final Mesh mesh;
+	private final Map<String, String> qemOptions = new HashMap<String, String>();
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int partitions = -1;
+	private int nrFinal = 0;
+
+	/**
+	 * Creates a <code>ParallelQEMDecimateHalfEdge</code> instance.
+	 *
+	 * @param m  the <code>Mesh</code> instance to decimate.
+	 * @param options  map containing key-value pairs to modify algorithm
+	 *        behaviour.  Valid keys are <code>threads</code>,
+	 *        <code>partitions</code> and all keys accepted by
+	 *        {@link QEMDecimateHalfEdge}.
+	 */
+	public ParallelQEMDecimateHalfEdge(final Mesh m, final Map<String, String> options)
+	{
+		mesh = m;
+		for (final Map.Entry<String, String> opt: options.entrySet())
+		{
+			final String key = opt.getKey();
+			final String val = opt.getValue();
+			if (key.equals("threads"))
+			{
+				threads = Integer.valueOf(val).intValue();
+				LOGGER.fine("Threads: "+threads);
+			}
+			else if (key.equals("partitions"))
+			{
+				partitions = Integer.valueOf(val).intValue();
+				LOGGER.fine("Partitions: "+partitions);
+			}
+			else
+			{
+				if (key.equals("maxtriangles"))
+					nrFinal = Integer.valueOf(val).intValue();
+				qemOptions.put(key, val);
+			}
+		}
+		if (threads < 1)
+			threads = 1;
+		if (partitions < 1)
+			partitions = 2 * threads;
+	}
+
+	/**
+	 * Decimates the mesh.  Writable triangles are decimated concurrently,
+	 * then partition borders are decimated sequentially.  Triangles which
+	 * are not writable and isolated nodes are left unchanged.
+	 */
+	public final void compute()
+	{
+		assert mesh.checkNoDegeneratedTriangles();
+		assert mesh.checkNoInvertedTriangles();
+		LOGGER.info("Run "+getClass().getName());
+		List<Triangle> triangles = new ArrayList<Triangle>(mesh.getTriangles().size());
+		// Inner triangles which are not writable are not decimated,
+		// their vertices are frozen.
+		List<Triangle> kept = new ArrayList<Triangle>();
+		Set<Vertex> frozen = new HashSet<Vertex>();
+		for (Triangle t: mesh.getTriangles())
+		{
+			if (t.isWritable())
+				triangles.add(t);
+			else if (!t.hasAttributes(AbstractHalfEdge.OUTER))
+			{
+				kept.add(t);
+				frozen.addAll(Arrays.asList(t.vertex));
+			}
+		}
+		int nrTriangles = triangles.size();
+		LOGGER.info("Initial number of triangles: "+nrTriangles);
+		if (nrTriangles == 0)
+			return;
+		List<Vertex> isolated = new ArrayList<Vertex>();
+		if (mesh.hasNodes())
+		{
+			for (Vertex v: mesh.getNodes())
+			{
+				if (v.getLink() == null)
+					isolated.add(v);
+			}
+		}
+
+		// Split triangles into partitions
+		Triangle [] array = triangles.toArray(new Triangle[nrTriangles]);
+		triangles = null;
+		int levels = 0;
+		while ((1 << levels) < partitions)
+			levels++;
+		int nrParts = 1 << levels;
+		int [] bounds = new int[nrParts + 1];
+		bisect(array, 0, nrTriangles, levels, bounds, 0);
+		bounds[nrParts] = nrTriangles;
+
+		// Vertices shared by several partitions are frozen
+		Map<Vertex, Integer> owner = new HashMap<Vertex, Integer>(nrTriangles / 2);
+		for (int p = 0; p < nrParts; p++)
+		{
+			Integer part = Integer.valueOf(p);
+			for (int i = bounds[p]; i < bounds[p+1]; i++)
+			{
+				for (Vertex v: array[i].vertex)
+				{
+					Integer old = owner.put(v, part);
+					if (old != null && old.intValue() != p)
+						frozen.add(v);
+				}
+			}
+		}
+		owner = null;
+		LOGGER.fine("Number of vertices on partition borders: "+frozen.size());
+
+		// Decimate partitions concurrently
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<Partition>> results = new ArrayList<Future<Partition>>(nrParts);
+		for (int p = 0; p < nrParts; p++)
+		{
+			if (bounds[p] == bounds[p+1])
+				continue;
+			Map<String, String> opts = new HashMap<String, String>(qemOptions);
+			if (nrFinal > 0)
+				opts.put("maxtriangles", ""+Math.max(1, (int) ((long) nrFinal * (bounds[p+1] - bounds[p]) / nrTriangles)));
+			results.add(pool.submit(new Partition(mesh.getTraitsBuilder(), array, bounds[p], bounds[p+1], frozen, opts)));
+		}
+		array = null;
+		List<Partition> parts = new ArrayList<Partition>(results.size());
+		try
+		{
+			for (Future<Partition> f: results)
+				parts.add(f.get());
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		}
+		catch (ExecutionException ex)
+		{
+			throw new RuntimeException(ex.getCause());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		// Merge partitions into original mesh
+		mesh.getTriangles().clear();
+		if (mesh.hasNodes())
+			mesh.getNodes().clear();
+		// Triangles of partitions and triangles which are not writable are
+		// copied, edge attributes are copied from their sources once
+		// adjacency relations have been built.
+		Set<Vertex> nodes = new LinkedHashSet<Vertex>();
+		List<Triangle> sources = new ArrayList<Triangle>(nrTriangles + kept.size());
+		List<Triangle> copies = new ArrayList<Triangle>(nrTriangles + kept.size());
+		for (Partition part: parts)
+			part.merge(mesh, nodes, sources, copies);
+		parts = null;
+		for (Triangle t: kept)
+		{
+			Triangle c = mesh.createTriangle(t.vertex[0], t.vertex[1], t.vertex[2]);
+			c.setGroupId(t.getGroupId());
+			c.setReadable(t.isReadable());
+			c.setWritable(false);
+			mesh.add(c);
+			sources.add(t);
+			copies.add(c);
+			nodes.addAll(Arrays.asList(t.vertex));
+		}
+		kept = null;
+		if (mesh.hasNodes())
+		{
+			mesh.getNodes().addAll(nodes);
+			mesh.getNodes().addAll(isolated);
+		}
+		mesh.buildAdjacency();
+		copyAttributes(sources, copies);
+		sources = null;
+		copies = null;
+
+		// Sequential pass on partition borders
+		Set<Vertex> border = new HashSet<Vertex>(frozen);
+		for (Vertex v: frozen)
+		{
+			for (Iterator<Vertex> it = v.getNeighbourIteratorVertex(); it.hasNext(); )
+				border.add(it.next());
+		}
+		List<Vertex> locked = new ArrayList<Vertex>();
+		for (Vertex v: nodes)
+		{
+			if (v.isWritable() && !border.contains(v))
+			{
+				v.setWritable(false);
+				locked.add(v);
+			}
+		}
+		nodes = null;
+		LOGGER.info("Decimate partition borders");
+		new QEMDecimateHalfEdge(mesh, qemOptions).compute();
+		for (Vertex v: locked)
+			v.setWritable(true);
+		LOGGER.info("Final number of triangles: "+AbstractAlgoHalfEdge.countInnerTriangles(mesh));
+		assert mesh.checkNoDegeneratedTriangles();
+		assert mesh.checkNoInvertedTriangles();
+	}
+
+	/**
+	 * Copies edge attributes between triangles of two lists, which have
+	 * the same vertices in the same order.  Attributes depending on
+	 * adjacency relations have been recomputed by {@link Mesh#buildAdjacency}
+	 * and are not copied.
+	 */
+	private static void copyAttributes(List<Triangle> from, List<Triangle> to)
+	{
+		AbstractHalfEdge os = null;
+		AbstractHalfEdge ot = null;
+		for (int i = 0, n = from.size(); i < n; i++)
+		{
+			os = from.get(i).getAbstractHalfEdge(os);
+			ot = to.get(i).getAbstractHalfEdge(ot);
+			for (int j = 0; j < 3; j++)
+			{
+				os = os.next();
+				ot = ot.next();
+				int attr = ((HalfEdge) os).getAttributes() & ~TOPOLOGY_ATTRIBUTES;
+				if (attr != 0)
+					ot.setAttributes(attr);
+			}
+		}
+	}
+
+	/**
+	 * Recursive coordinate bisection.  Triangles between <code>start</code>
+	 * and <code>end</code> are sorted along the longest axis of the bounding
+	 * box of their centroids, and split in two halves.
+	 */
+	static void bisect(Triangle [] array, int start, int end, int level, int [] bounds, int part)
+	{
+		if (level == 0)
+		{
+			bounds[part] = start;
+			return;
+		}
+		if (end - start > 1)
+		{
+			double [] bbmin = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+			double [] bbmax = { -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+			for (int i = start; i < end; i++)
+			{
+				for (int k = 0; k < 3; k++)
+				{
+					double c = centroid(array[i], k);
+					if (c < bbmin[k])
+						bbmin[k] = c;
+					if (c > bbmax[k])
+						bbmax[k] = c;
+				}
+			}
+			int axis = 0;
+			for (int k = 1; k < 3; k++)
+			{
+				if (bbmax[k] - bbmin[k] > bbmax[axis] - bbmin[axis])
+					axis = k;
+			}
+			Arrays.sort(array, start, end, new CentroidComparator(axis));
+		}
+		int middle = (start + end) / 2;
+		bisect(array, start, middle, level - 1, bounds, 2 * part);
+		bisect(array, middle, end, level - 1, bounds, 2 * part + 1);
+	}
+
+	private static double centroid(Triangle t, int axis)
+	{
+		return t.vertex[0].getUV()[axis] + t.vertex[1].getUV()[axis] + t.vertex[2].getUV()[axis];
+	}
+
+	private static class CentroidComparator implements Comparator<Triangle>
+	{
+		private final int axis;
+		CentroidComparator(int axis)
+		{
+			this.axis = axis;
+		}
+		public int compare(Triangle t1, Triangle t2)
+		{
+			return Double.compare(centroid(t1, axis), centroid(t2, axis));
+		}
+	}
+
+	/**
+	 * Copy of a partition into a separate mesh, decimated by a worker thread.
+	 */
+	private static class Partition implements Callable<Partition>
+	{
+		private final Mesh subMesh;
+		private final Map<Vertex, Vertex> subToOrig = new HashMap<Vertex, Vertex>();
+		private final Map<String, String> options;
+		// Original triangles and their copies in subMesh, to copy edge
+		// attributes once adjacency relations have been built
+		private List<Triangle> sources;
+		private List<Triangle> copies;
+
+		Partition(MeshTraitsBuilder mtb, Triangle [] array, int start, int end, Set<Vertex> frozen, Map<String, String> opts)
+		{
+			options = opts;
+			subMesh = new Mesh(mtb);
+			subMesh.ensureCapacity(end - start);
+			sources = new ArrayList<Triangle>(Arrays.asList(array).subList(start, end));
+			copies = new ArrayList<Triangle>(end - start);
+			Map<Vertex, Vertex> origToSub = new HashMap<Vertex, Vertex>();
+			Vertex [] v = new Vertex[3];
+			for (int i = start; i < end; i++)
+			{
+				Triangle t = array[i];
+				for (int j = 0; j < 3; j++)
+				{
+					Vertex o = t.vertex[j];
+					v[j] = origToSub.get(o);
+					if (v[j] == null)
+					{
+						v[j] = subMesh.createVertex(o.getUV());
+						v[j].setRef(o.getRef());
+						v[j].setLabel(o.getLabel());
+						v[j].setMutable(o.isMutable());
+						v[j].setReadable(o.isReadable());
+						v[j].setWritable(o.isWritable() && !frozen.contains(o));
+						origToSub.put(o, v[j]);
+						if (subMesh.hasNodes())
+							subMesh.add(v[j]);
+						// Frozen and immutable vertices are never
+						// removed, they are replaced by original
+						// vertices when merging.
+						if (!v[j].isWritable() || !v[j].isMutable())
+							subToOrig.put(v[j], o);
+					}
+				}
+				Triangle s = subMesh.createTriangle(v[0], v[1], v[2]);
+				s.setGroupId(t.getGroupId());
+				subMesh.add(s);
+				copies.add(s);
+			}
+		}
+
+		public Partition call()
+		{
+			subMesh.buildAdjacency();
+			// Original mesh is not modified while partitions are
+			// decimated, its triangles can be read concurrently.
+			copyAttributes(sources, copies);
+			sources = null;
+			copies = null;
+			new QEMDecimateHalfEdge(subMesh, options).compute();
+			return this;
+		}
+
+		/**
+		 * Adds triangles of this partition to a mesh.  Frozen and immutable
+		 * vertices are replaced by original vertices, other vertices are
+		 * moved into target mesh.  Triangles of this partition and their
+		 * copies are appended to <code>from</code> and <code>to</code>.
+		 */
+		void merge(Mesh target, Collection<Vertex> nodes, List<Triangle> from, List<Triangle> to)
+		{
+			Vertex [] v = new Vertex[3];
+			for (Triangle s: subMesh.getTriangles())
+			{
+				if (!s.isWritable())
+					continue;
+				for (int j = 0; j < 3; j++)
+				{
+					Vertex o = subToOrig.get(s.vertex[j]);
+					if (o == null)
+						o = s.vertex[j];
+					v[j] = o;
+					nodes.add(o);
+				}
+				Triangle t = target.createTriangle(v[0], v[1], v[2]);
+				t.setGroupId(s.getGroupId());
+				target.add(t);
+				from.add(s);
+				to.add(t);
+			}
+		}
+	}
+}
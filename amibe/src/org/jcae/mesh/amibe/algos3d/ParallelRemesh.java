@@ -0,0 +1,668 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.algos3d;
+
+import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
+import org.jcae.mesh.amibe.ds.HalfEdge;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.Vertex;
+import org.jcae.mesh.amibe.metrics.EuclidianMetric3D;
+import org.jcae.mesh.amibe.projection.MeshLiaison;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntObjectHashMap;
+import gnu.trove.TIntObjectIterator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Remeshes a surface on several threads.  Triangles of the current mesh
+ * are split into spatial partitions by recursive coordinate bisection of
+ * their centroids, as in {@link ParallelQEMDecimateHalfEdge}.  Each
+ * partition is copied into its own {@link Mesh} instance, and remeshed by
+ * {@link Remesh} against a {@link MeshLiaison} which shares the background
+ * mesh of the original liaison; background mesh is only read, so workers
+ * do not need any locking.
+ *
+ * <p>
+ * Edges on partition borders are immutable, and no vertex is inserted
+ * near them.  Once all partitions are processed, triangles around
+ * partition borders are gathered into a band, which is remeshed by a
+ * sequential {@link Remesh} pass.  Band limits are immutable, and metrics
+ * computed in partitions are reused.  Edges of the band are then swapped
+ * by {@link SwapEdge} and the band is remeshed again, so that edges which
+ * could not be split because of nearby partition vertices are removed.
+ * Partitions and band are finally merged back into the original mesh.
+ * </p>
+ *
+ * <p>
+ * Valid options are those of {@link Remesh}, plus <code>threads</code>
+ * (number of worker threads, defaults to the number of available
+ * processors) and <code>partitions</code> (number of partitions, rounded
+ * up to a power of two, defaults to twice the number of threads).
+ * With a single thread, {@link Remesh} is run directly.  Decimation
+ * requested by <code>decimateSize</code> or <code>decimateTarget</code>
+ * is performed sequentially before partitioning.  Analytic metrics are
+ * called concurrently and must be thread-safe.
+ * </p>
+ */
+public class ParallelRemesh
+{
+	private static final Logger LOGGER=Logger.getLogger(ParallelRemesh.class.getName());
+	// Attributes which are recomputed when building adjacency relations
+	private static final int TOPOLOGY_ATTRIBUTES = AbstractHalfEdge.BOUNDARY
+		| AbstractHalfEdge.OUTER | AbstractHalfEdge.NONMANIFOLD
+		| AbstractHalfEdge.MARKED | AbstractHalfEdge.SWAPPED;
+	// Partitions insert no vertex nearer from their borders than this
+	// ratio of minimal length, so that border edges can be split when
+	// the band is remeshed.
+	private static final double BORDER_MARGIN = 1.5;
+	// Maximal number of edge swapping and remeshing passes on the band
+	private static final int BAND_PASSES = 2;
+	private final MeshLiaison liaison;
+	private final Mesh mesh;
+	private final Map<String, String> remeshOptions = new HashMap<String, String>();
+	private final Map<String, String> decimateOptions = new HashMap<String, String>();
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int partitions = -1;
+	private Remesh.AnalyticMetricInterface analyticMetric;
+	private final TIntObjectHashMap<Remesh.AnalyticMetricInterface> metricsPartitionMap = new TIntObjectHashMap<Remesh.AnalyticMetricInterface>();
+	// Immutable edges of the original mesh, stored by their end points
+	private final Map<Vertex, Collection<Vertex>> immutableEdges = new HashMap<Vertex, Collection<Vertex>>();
+
+	/**
+	 * Creates a <code>ParallelRemesh</code> instance.
+	 *
+	 * @param liaison  the <code>MeshLiaison</code> instance whose current
+	 *        mesh is remeshed.
+	 * @param options  map containing key-value pairs to modify algorithm
+	 *        behaviour.  Valid keys are <code>threads</code>,
+	 *        <code>partitions</code> and all keys accepted by
+	 *        {@link Remesh}.
+	 */
+	public ParallelRemesh(final MeshLiaison liaison, final Map<String, String> options)
+	{
+		this.liaison = liaison;
+		mesh = liaison.getMesh();
+		for (final Map.Entry<String, String> opt: options.entrySet())
+		{
+			final String key = opt.getKey();
+			final String val = opt.getValue();
+			if (key.equals("threads"))
+			{
+				threads = Integer.valueOf(val).intValue();
+				LOGGER.fine("Threads: "+threads);
+			}
+			else if (key.equals("partitions"))
+			{
+				partitions = Integer.valueOf(val).intValue();
+				LOGGER.fine("Partitions: "+partitions);
+			}
+			else if (key.equals("decimateSize"))
+				decimateOptions.put("size", val);
+			else if (key.equals("decimateTarget"))
+				decimateOptions.put("maxtriangles", val);
+			else
+				remeshOptions.put(key, val);
+		}
+		if (threads < 1)
+			threads = 1;
+		if (partitions < 1)
+			partitions = 2 * threads;
+	}
+
+	/**
+	 * Sets the analytic metric of all groups, as with
+	 * {@link Remesh#setAnalyticMetric(Remesh.AnalyticMetricInterface)}.
+	 * It is called concurrently by worker threads.
+	 *
+	 * @param m  thread-safe analytic metric
+	 */
+	public void setAnalyticMetric(Remesh.AnalyticMetricInterface m)
+	{
+		analyticMetric = m;
+	}
+
+	/**
+	 * Sets the analytic metric of a group, as with
+	 * {@link Remesh#setAnalyticMetric(int, Remesh.AnalyticMetricInterface)}.
+	 * It is called concurrently by worker threads.
+	 *
+	 * @param groupId  group identifier
+	 * @param m  thread-safe analytic metric
+	 */
+	public void setAnalyticMetric(int groupId, Remesh.AnalyticMetricInterface m)
+	{
+		metricsPartitionMap.put(groupId, m);
+	}
+
+	public final Mesh getOutputMesh()
+	{
+		return mesh;
+	}
+
+	public final ParallelRemesh compute()
+	{
+		LOGGER.info("Run "+getClass().getName());
+		if (threads == 1)
+		{
+			// Partitioning has no benefit on a single thread
+			Map<String, String> opts = new HashMap<String, String>(remeshOptions);
+			if (decimateOptions.containsKey("size"))
+				opts.put("decimateSize", decimateOptions.get("size"));
+			if (decimateOptions.containsKey("maxtriangles"))
+				opts.put("decimateTarget", decimateOptions.get("maxtriangles"));
+			Remesh remesh = new Remesh(liaison, opts);
+			setAnalyticMetrics(remesh);
+			remesh.compute();
+			return this;
+		}
+		liaison.buildSkeleton();
+		if (!decimateOptions.isEmpty())
+			new QEMDecimateHalfEdge(liaison, decimateOptions).compute();
+
+		List<Triangle> triangles = new ArrayList<Triangle>(mesh.getTriangles().size());
+		AbstractHalfEdge ot = null;
+		for (Triangle t: mesh.getTriangles())
+		{
+			if (t.hasAttributes(AbstractHalfEdge.OUTER))
+				continue;
+			triangles.add(t);
+			ot = t.getAbstractHalfEdge(ot);
+			for (int i = 0; i < 3; i++)
+			{
+				ot = ot.next();
+				if (ot.hasAttributes(AbstractHalfEdge.IMMUTABLE))
+					addEdge(immutableEdges, ot.origin(), ot.destination());
+			}
+		}
+		int nrTriangles = triangles.size();
+		LOGGER.info("Initial number of triangles: "+nrTriangles);
+		if (nrTriangles == 0)
+			return this;
+
+		// Split triangles into partitions
+		Triangle [] array = triangles.toArray(new Triangle[nrTriangles]);
+		int levels = 0;
+		while ((1 << levels) < partitions)
+			levels++;
+		int nrParts = 1 << levels;
+		int [] bounds = new int[nrParts + 1];
+		ParallelQEMDecimateHalfEdge.bisect(array, 0, nrTriangles, levels, bounds, 0);
+		bounds[nrParts] = nrTriangles;
+		// Remesh inserts more vertices when triangles are spatially
+		// sorted, so keep original order inside partitions.
+		if (levels > 0)
+		{
+			Map<Triangle, Integer> owner = new HashMap<Triangle, Integer>(2 * nrTriangles);
+			for (int p = 0; p < nrParts; p++)
+			{
+				Integer part = Integer.valueOf(p);
+				for (int i = bounds[p]; i < bounds[p+1]; i++)
+					owner.put(array[i], part);
+			}
+			int [] index = new int[nrParts];
+			System.arraycopy(bounds, 0, index, 0, nrParts);
+			for (Triangle t: triangles)
+				array[index[owner.get(t).intValue()]++] = t;
+		}
+		triangles = null;
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try
+		{
+			remeshPartitions(pool, array, bounds);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		LOGGER.info("Final number of triangles: "+AbstractAlgoHalfEdge.countInnerTriangles(mesh));
+		return this;
+	}
+
+	private void remeshPartitions(ExecutorService pool, Triangle [] array, int [] bounds)
+	{
+		// Remesh partitions concurrently
+		List<Partition> parts = new ArrayList<Partition>(bounds.length - 1);
+		for (int p = 0; p < bounds.length - 1; p++)
+		{
+			if (bounds[p] != bounds[p+1])
+				parts.add(new Partition(array, bounds[p], bounds[p+1]));
+		}
+		invokeAll(pool, parts);
+
+		// Register vertices inserted in partitions into original liaison
+		for (Partition part: parts)
+			part.addVertices();
+
+		// Remesh band around partition borders
+		Mesh band = new Mesh(MeshTraitsBuilder.getDefault3D());
+		List<Triangle> bandSources = new ArrayList<Triangle>();
+		List<Triangle> bandCopies = new ArrayList<Triangle>();
+		Map<Vertex, Vertex> identity = new HashMap<Vertex, Vertex>();
+		Map<Vertex, EuclidianMetric3D> bandMetrics = new HashMap<Vertex, EuclidianMetric3D>();
+		for (Partition part: parts)
+			part.copyBand(band, bandSources, bandCopies, identity, bandMetrics);
+		band.buildAdjacency();
+		copyAttributes(bandSources, bandCopies, true);
+		LOGGER.info("Remesh partition borders: "+bandCopies.size()+" triangles");
+		bandSources = null;
+		bandCopies = null;
+		MeshLiaison bandLiaison = new MeshLiaison(liaison, band, identity);
+		Map<String, String> opts = new HashMap<String, String>(remeshOptions);
+		// Vertices inserted in partitions have no label, reuse metrics
+		// computed in partitions instead
+		opts.remove("metricsFile");
+		Remesh remesh = new Remesh(bandLiaison, opts);
+		remesh.putMetrics(bandMetrics);
+		bandMetrics = null;
+		setAnalyticMetrics(remesh);
+		remesh.compute();
+		// Band edges which run along partition borders can be too near
+		// from vertices of both partitions to be split.  Swap edges and
+		// remesh again, so that these long edges are removed.
+		Map<String, String> swapOptions = new HashMap<String, String>();
+		if (remeshOptions.containsKey("coplanarity"))
+			swapOptions.put("coplanarity", remeshOptions.get("coplanarity"));
+		for (int pass = 0; pass < BAND_PASSES; pass++)
+		{
+			SwapEdge swap = new SwapEdge(bandLiaison, swapOptions);
+			swap.compute();
+			if (swap.processed == 0)
+				break;
+			Map<Vertex, EuclidianMetric3D> metrics = remesh.getMetrics();
+			remesh = new Remesh(bandLiaison, opts);
+			remesh.putMetrics(metrics);
+			setAnalyticMetrics(remesh);
+			remesh.compute();
+		}
+
+		// Merge partitions and band into original mesh
+		List<Callable<Partition>> tasks = new ArrayList<Callable<Partition>>(parts.size());
+		for (final Partition part: parts)
+		{
+			tasks.add(new Callable<Partition>() {
+				public Partition call()
+				{
+					part.createTriangles();
+					return part;
+				}
+			});
+		}
+		invokeAll(pool, tasks);
+		mesh.getTriangles().clear();
+		for (Partition part: parts)
+		{
+			for (Triangle t: part.merged)
+				mesh.add(t);
+		}
+		List<Triangle> sources = new ArrayList<Triangle>();
+		List<Triangle> merged = new ArrayList<Triangle>();
+		Vertex [] v = new Vertex[3];
+		for (Triangle b: band.getTriangles())
+		{
+			if (b.hasAttributes(AbstractHalfEdge.OUTER))
+				continue;
+			for (int j = 0; j < 3; j++)
+			{
+				v[j] = b.vertex[j];
+				if (!identity.containsKey(v[j]))
+				{
+					identity.put(v[j], v[j]);
+					liaison.addVertex(v[j], bandLiaison);
+					if (mesh.hasNodes())
+						mesh.add(v[j]);
+				}
+			}
+			Triangle t = createTriangle(b, v);
+			mesh.add(t);
+			sources.add(b);
+			merged.add(t);
+		}
+		band = null;
+		mesh.buildAdjacency(0, threads);
+		tasks.clear();
+		for (final Partition part: parts)
+		{
+			tasks.add(new Callable<Partition>() {
+				public Partition call()
+				{
+					copyAttributes(part.sources, part.merged, false);
+					return part;
+				}
+			});
+		}
+		invokeAll(pool, tasks);
+		copyAttributes(sources, merged, false);
+	}
+
+	private static <T> void invokeAll(ExecutorService pool, Collection<? extends Callable<T>> tasks)
+	{
+		List<Future<T>> results = new ArrayList<Future<T>>(tasks.size());
+		for (Callable<T> task: tasks)
+			results.add(pool.submit(task));
+		try
+		{
+			for (Future<T> f: results)
+				f.get();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		}
+		catch (ExecutionException ex)
+		{
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+
+	private static void addEdge(Map<Vertex, Collection<Vertex>> edges, Vertex o, Vertex d)
+	{
+		Collection<Vertex> ends = edges.get(o);
+		if (ends == null)
+		{
+			ends = new ArrayList<Vertex>(2);
+			edges.put(o, ends);
+		}
+		ends.add(d);
+	}
+
+	/**
+	 * Copies attributes of <code>from</code> edge into <code>to</code> edge,
+	 * except topological attributes.  <code>IMMUTABLE</code> attribute is set
+	 * only if original mesh had this edge tagged as immutable, temporary
+	 * tags on partition borders are thus removed.
+	 */
+	private void copyAttributes(AbstractHalfEdge from, AbstractHalfEdge to)
+	{
+		int attr = ((HalfEdge) from).getAttributes() & ~(TOPOLOGY_ATTRIBUTES | AbstractHalfEdge.IMMUTABLE);
+		if (attr != 0)
+			to.setAttributes(attr);
+		if (immutableEdges.isEmpty())
+			return;
+		Collection<Vertex> ends = immutableEdges.get(to.origin());
+		if (ends != null && ends.contains(to.destination()))
+			to.setAttributes(AbstractHalfEdge.IMMUTABLE);
+	}
+
+	/**
+	 * Copies edge attributes between triangles of two lists.  If
+	 * <code>freezeLimits</code> is true, edges which are on boundary in
+	 * <code>to</code> list but not in <code>from</code> list are tagged
+	 * as immutable.
+	 */
+	private void copyAttributes(List<Triangle> from, List<Triangle> to, boolean freezeLimits)
+	{
+		AbstractHalfEdge os = null;
+		AbstractHalfEdge ot = null;
+		for (int i = 0, n = from.size(); i < n; i++)
+		{
+			os = from.get(i).getAbstractHalfEdge(os);
+			ot = to.get(i).getAbstractHalfEdge(ot);
+			for (int j = 0; j < 3; j++)
+			{
+				os = os.next();
+				ot = ot.next();
+				copyAttributes(os, ot);
+				if (freezeLimits &&
+				    ot.hasAttributes(AbstractHalfEdge.BOUNDARY | AbstractHalfEdge.NONMANIFOLD) &&
+				    !os.hasAttributes(AbstractHalfEdge.BOUNDARY | AbstractHalfEdge.NONMANIFOLD))
+					ot.setAttributes(AbstractHalfEdge.IMMUTABLE);
+			}
+		}
+	}
+
+	private Triangle createTriangle(Triangle from, Vertex [] v)
+	{
+		Triangle t = mesh.createTriangle(v[0], v[1], v[2]);
+		t.setGroupId(from.getGroupId());
+		t.setReadable(from.isReadable());
+		t.setWritable(from.isWritable());
+		return t;
+	}
+
+	private void setAnalyticMetrics(Remesh remesh)
+	{
+		if (analyticMetric != null)
+			remesh.setAnalyticMetric(analyticMetric);
+		for (TIntObjectIterator<Remesh.AnalyticMetricInterface> it = metricsPartitionMap.iterator(); it.hasNext(); )
+		{
+			it.advance();
+			remesh.setAnalyticMetric(it.key(), it.value());
+		}
+	}
+
+	/**
+	 * Copy of a partition into a separate mesh, remeshed by a worker thread.
+	 */
+	private class Partition implements Callable<Partition>
+	{
+		private final Triangle [] array;
+		private final int start;
+		private final int end;
+		// Map between copied vertices and original vertices.  Vertices
+		// inserted by Remesh are not copied, they are moved into original
+		// mesh when merging.
+		private final Map<Vertex, Vertex> subToOrig = new HashMap<Vertex, Vertex>();
+		private final Set<Triangle> band = new LinkedHashSet<Triangle>();
+		// Triangles added to original mesh, and their source in subMesh
+		private final List<Triangle> merged = new ArrayList<Triangle>();
+		private final List<Triangle> sources = new ArrayList<Triangle>();
+		private Mesh subMesh;
+		private MeshLiaison subLiaison;
+		private Map<Vertex, EuclidianMetric3D> subMetrics;
+
+		Partition(Triangle [] array, int start, int end)
+		{
+			this.array = array;
+			this.start = start;
+			this.end = end;
+		}
+
+		public Partition call()
+		{
+			subMesh = new Mesh(MeshTraitsBuilder.getDefault3D());
+			subMesh.ensureCapacity(end - start);
+			Map<Vertex, Vertex> origToSub = new HashMap<Vertex, Vertex>();
+			Triangle [] copies = new Triangle[end - start];
+			Vertex [] v = new Vertex[3];
+			for (int i = start; i < end; i++)
+			{
+				Triangle t = array[i];
+				for (int j = 0; j < 3; j++)
+				{
+					Vertex o = t.vertex[j];
+					v[j] = origToSub.get(o);
+					if (v[j] == null)
+					{
+						v[j] = subMesh.createVertex(o.getUV());
+						v[j].setRef(o.getRef());
+						v[j].setLabel(o.getLabel());
+						v[j].setMutable(o.isMutable());
+						v[j].setReadable(o.isReadable());
+						v[j].setWritable(o.isWritable());
+						origToSub.put(o, v[j]);
+						subToOrig.put(v[j], o);
+					}
+				}
+				Triangle s = subMesh.createTriangle(v[0], v[1], v[2]);
+				s.setGroupId(t.getGroupId());
+				s.setReadable(t.isReadable());
+				s.setWritable(t.isWritable());
+				subMesh.add(s);
+				copies[i - start] = s;
+			}
+			origToSub = null;
+			subMesh.buildAdjacency();
+
+			// Copy edge attributes, and freeze partition borders
+			AbstractHalfEdge ot = null;
+			AbstractHalfEdge os = null;
+			// Border edges, stored by their end points, and their group
+			List<Vertex> borders = new ArrayList<Vertex>();
+			TIntArrayList borderGroups = new TIntArrayList();
+			for (int i = start; i < end; i++)
+			{
+				ot = array[i].getAbstractHalfEdge(ot);
+				os = copies[i - start].getAbstractHalfEdge(os);
+				for (int j = 0; j < 3; j++)
+				{
+					ot = ot.next();
+					os = os.next();
+					int attr = ((HalfEdge) ot).getAttributes() & ~TOPOLOGY_ATTRIBUTES;
+					if (attr != 0)
+						os.setAttributes(attr);
+					if (os.hasAttributes(AbstractHalfEdge.BOUNDARY | AbstractHalfEdge.NONMANIFOLD) &&
+					    !ot.hasAttributes(AbstractHalfEdge.BOUNDARY))
+					{
+						os.setAttributes(AbstractHalfEdge.IMMUTABLE);
+						borders.add(os.origin());
+						borders.add(os.destination());
+						borderGroups.add(os.getTri().getGroupId());
+					}
+				}
+			}
+			copies = null;
+
+			// No vertex is inserted near partition borders, this
+			// area is remeshed afterwards.
+			subLiaison = new MeshLiaison(liaison, subMesh, subToOrig);
+			for (int i = 0, n = borderGroups.size(); i < n; i++)
+				subLiaison.addSkeletonEdge(borderGroups.get(i), borders.get(2*i), borders.get(2*i+1));
+			Remesh remesh = new Remesh(subLiaison, remeshOptions);
+			remesh.setSkeletonMargin(BORDER_MARGIN);
+			setAnalyticMetrics(remesh);
+			remesh.compute();
+			subMetrics = remesh.getMetrics();
+
+			// Band contains triangles incident to border vertices
+			// and to their neighbours.
+			Set<Vertex> bandVertices = new LinkedHashSet<Vertex>(borders);
+			for (Vertex b: borders)
+			{
+				for (Iterator<Vertex> it = b.getNeighbourIteratorVertex(); it.hasNext(); )
+					bandVertices.add(it.next());
+			}
+			for (Vertex b: bandVertices)
+			{
+				for (Iterator<Triangle> it = b.getNeighbourIteratorTriangle(); it.hasNext(); )
+				{
+					Triangle t = it.next();
+					if (!t.hasAttributes(AbstractHalfEdge.OUTER))
+						band.add(t);
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * Registers vertices inserted in this partition into original
+		 * liaison and adds them to the original mesh.
+		 */
+		void addVertices()
+		{
+			Set<Vertex> newVertices = new HashSet<Vertex>();
+			for (Triangle s: subMesh.getTriangles())
+			{
+				if (s.hasAttributes(AbstractHalfEdge.OUTER))
+					continue;
+				for (Vertex n: s.vertex)
+				{
+					if (!subToOrig.containsKey(n) && newVertices.add(n))
+					{
+						liaison.addVertex(n, subLiaison);
+						if (mesh.hasNodes())
+							mesh.add(n);
+					}
+				}
+			}
+		}
+
+		private Vertex getVertex(Vertex n)
+		{
+			Vertex o = subToOrig.get(n);
+			return o == null ? n : o;
+		}
+
+		/**
+		 * Copies band triangles into <code>target</code> mesh, by using
+		 * vertices of original mesh.
+		 */
+		void copyBand(Mesh target, List<Triangle> sources, List<Triangle> copies,
+			Map<Vertex, Vertex> vertices, Map<Vertex, EuclidianMetric3D> metrics)
+		{
+			Vertex [] v = new Vertex[3];
+			for (Triangle s: band)
+			{
+				for (int j = 0; j < 3; j++)
+				{
+					v[j] = getVertex(s.vertex[j]);
+					vertices.put(v[j], v[j]);
+					EuclidianMetric3D m = subMetrics.get(s.vertex[j]);
+					if (m != null)
+						metrics.put(v[j], m);
+				}
+				Triangle t = target.createTriangle(v[0], v[1], v[2]);
+				t.setGroupId(s.getGroupId());
+				t.setReadable(s.isReadable());
+				t.setWritable(s.isWritable());
+				target.add(t);
+				sources.add(s);
+				copies.add(t);
+			}
+		}
+
+		/**
+		 * Creates triangles of original mesh from triangles of this
+		 * partition which are not in band.  They are not added to the
+		 * mesh, so that this method can be called concurrently.
+		 */
+		void createTriangles()
+		{
+			Vertex [] v = new Vertex[3];
+			for (Triangle s: subMesh.getTriangles())
+			{
+				if (s.hasAttributes(AbstractHalfEdge.OUTER) || band.contains(s))
+					continue;
+				for (int j = 0; j < 3; j++)
+					v[j] = getVertex(s.vertex[j]);
+				merged.add(createTriangle(s, v));
+				sources.add(s);
+			}
+		}
+	}
+}
@@ -67,6 +67,7 @@ public class Remesh
 	private final MeshLiaison liaison;
 	// Octree to find nearest Vertex in current mesh
 	private final KdTree<Vertex> kdTree;
+	private final KdTree<Vertex>.SearchBuffer kdSearch;
 	private Map<Vertex, Vertex> neighborBgMap = new HashMap<Vertex, Vertex>();
 	private DoubleFileReader dfrMetrics;
 	private final double minlen;
@@ -84,6 +85,8 @@ public class Remesh
 	private final boolean hasFeatureEdges;
 	private final double coplanarity;
 	private final boolean allowNearNodes;
+	// No vertex is inserted nearer from skeleton than this ratio of minlen
+	private double skeletonMargin = 0.9;
 	private final boolean remeshOnlyFeatureEdges;
 	private AnalyticMetricInterface analyticMetric = LATER_BINDING;
 	private final Map<Vertex, EuclidianMetric3D> metrics;
@@ -252,9 +255,8 @@ public class Remesh
 			}
 		}
 		LOGGER.fine("Bounding box: lower("+bbox[0]+", "+bbox[1]+", "+bbox[2]+"), upper("+bbox[3]+", "+bbox[4]+", "+bbox[5]+")");
-		kdTree = new KdTree<Vertex>(bbox);
-		for (Vertex v : nodeset)
-			kdTree.add(v);
+		kdTree = new KdTree<Vertex>(bbox, nodeset.toArray(new Vertex[nodeset.size()]), 1);
+		kdSearch = kdTree.createSearchBuffer();
 
 		for (Vertex v : nodeset)
 		{
@@ -303,11 +305,42 @@ public class Remesh
 		metricsPartitionMap.put(groupId, m);
 	}
 
+	/**
+	 * Sets the distance to skeleton below which no vertex is inserted,
+	 * relative to the minimal length between vertices.  Default is 0.9.
+	 *
+	 * @param margin  ratio of the minimal length between vertices
+	 */
+	final void setSkeletonMargin(double margin)
+	{
+		skeletonMargin = margin;
+	}
+
 	public final Mesh getOutputMesh()
 	{
 		return mesh;
 	}
 
+	/**
+	 * Returns metrics computed at vertices.  Used by {@link ParallelRemesh}
+	 * to transfer metrics from partitions to the final pass.
+	 */
+	final Map<Vertex, EuclidianMetric3D> getMetrics()
+	{
+		return metrics;
+	}
+
+	/**
+	 * Sets metrics at vertices.  If no metrics had been specified by
+	 * options, these metrics are used instead of an analytic metric.
+	 */
+	final void putMetrics(Map<Vertex, EuclidianMetric3D> m)
+	{
+		metrics.putAll(m);
+		if (analyticMetric == LATER_BINDING)
+			analyticMetric = null;
+	}
+
         // Can be extended by subclasses
 	protected void afterSplitHook()
 	{
@@ -587,7 +620,7 @@ public class Remesh
 						}
 						if (!validCandidate)
 						{
-							Vertex n = kdTree.getNearestVertex(metric, uv);
+							Vertex n = kdTree.getNearestVertex(metric, uv, kdSearch);
 							validCandidate = interpolatedDistance(v, metric, n, metrics.get(n)) > minlen;
 						}
 						if (validCandidate)
@@ -869,7 +902,7 @@ public class Remesh
 					if (!border)
 					{
 						// Check that point is not near of a border
-						double localSize = 0.9 * minlen * m.getUnitBallBBox()[0];
+						double localSize = skeletonMargin * minlen * m.getUnitBallBBox()[0];
 						double localSize2 = localSize * localSize;
 						if (liaison.isNearSkeleton(np, borderGroup, localSize2))
 						{
@@ -360,6 +360,7 @@ public class SmoothNodes3D
 				return false;
 			}
 		}
+		mesh.notifyVertexMoved(n);
 		return true;
 	}
 	
@@ -0,0 +1,840 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+package org.jcae.mesh.amibe.ds;
+
+import gnu.trove.TObjectIntHashMap;
+import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.logging.Logger;
+
+/**
+ * Structure-of-arrays representation of a 3D triangle mesh.
+ *
+ * <p>
+ * {@link Mesh} stores one {@link Vertex} object per node and, with
+ * {@link org.jcae.mesh.amibe.traits.TriangleTraitsBuilder#addHalfEdge},
+ * one {@link TriangleHE} and three {@link HalfEdge} objects per triangle.
+ * On very large meshes, object headers and references dominate heap usage.
+ * This class stores the same information in flat primitive arrays:
+ * </p>
+ * <ul>
+ *   <li>vertex coordinates are stored in a <code>double[]</code> array,
+ *       3 values per vertex;</li>
+ *   <li>vertex references and links to an incident half-edge are stored
+ *       in <code>int[]</code> arrays;</li>
+ *   <li>triangle vertices are stored in an <code>int[]</code> array,
+ *       3 values per triangle, and group ids in another <code>int[]</code>
+ *       array;</li>
+ *   <li>half-edge <code>3*t+l</code> is edge <code>l</code> of triangle
+ *       <code>t</code>; its symmetric half-edge and its attributes are
+ *       stored in <code>int[]</code> and <code>byte[]</code> arrays.</li>
+ * </ul>
+ *
+ * <p>
+ * Local numbering follows {@link HalfEdge} conventions: edge <code>l</code>
+ * is opposite to vertex <code>l</code>, its origin is vertex
+ * <code>(l+1)%3</code> and its destination is vertex <code>(l+2)%3</code>.
+ * There are no virtual outer triangles; boundary and non-manifold edges
+ * have no symmetric edge and are tagged with {@link AbstractHalfEdge#BOUNDARY}
+ * or {@link AbstractHalfEdge#NONMANIFOLD} attributes.
+ * </p>
+ *
+ * <p>
+ * Vertices are plain <code>int</code> indices, and half-edges are traversed
+ * with {@link Cursor} instances, which are lightweight objects holding a
+ * single half-edge index and providing the same navigation methods as
+ * {@link AbstractHalfEdge}.  Algorithms which modify mesh topology work on
+ * {@link Mesh} instances; {@link #createFromMesh} and {@link #toMesh}
+ * convert between both representations, and
+ * {@link org.jcae.mesh.xmldata.MeshReader#readCompactObject3D} loads
+ * Amibe files without creating the object graph.
+ * </p>
+ */
+public class CompactMesh
+{
+	private static final Logger logger=Logger.getLogger(CompactMesh.class.getName());
+
+	private static final int [] next3 = { 1, 2, 0 };
+	private static final int [] prev3 = { 2, 0, 1 };
+
+	// Vertex arrays
+	private double [] coord;
+	private int [] vertexRef;
+	private int [] vertexLink;
+	private int nrVertices;
+
+	// Triangle arrays
+	private int [] triangleVertices;
+	private int [] triangleGroup;
+	private int nrTriangles;
+
+	// Half-edge arrays
+	private int [] sym;
+	private byte [] edgeAttributes;
+
+	private boolean adjacency;
+
+	/**
+	 * Creates an empty mesh.
+	 *
+	 * @param vertices  initial capacity of vertex arrays
+	 * @param triangles  initial capacity of triangle arrays
+	 */
+	public CompactMesh(int vertices, int triangles)
+	{
+		vertices = Math.max(vertices, 1);
+		triangles = Math.max(triangles, 1);
+		coord = new double[3*vertices];
+		vertexRef = new int[vertices];
+		triangleVertices = new int[3*triangles];
+		triangleGroup = new int[triangles];
+	}
+
+	/**
+	 * Returns the number of vertices.
+	 *
+	 * @return the number of vertices
+	 */
+	public final int getNumberOfVertices()
+	{
+		return nrVertices;
+	}
+
+	/**
+	 * Returns the number of triangles.
+	 *
+	 * @return the number of triangles
+	 */
+	public final int getNumberOfTriangles()
+	{
+		return nrTriangles;
+	}
+
+	/**
+	 * Adds a vertex.
+	 *
+	 * @param x  first coordinate
+	 * @param y  second coordinate
+	 * @param z  third coordinate
+	 * @return index of this new vertex
+	 */
+	public final int addVertex(double x, double y, double z)
+	{
+		if (nrVertices == vertexRef.length)
+			ensureVertexCapacity(2*nrVertices);
+		coord[3*nrVertices]   = x;
+		coord[3*nrVertices+1] = y;
+		coord[3*nrVertices+2] = z;
+		adjacency = false;
+		return nrVertices++;
+	}
+
+	/**
+	 * Adds a triangle.  Adjacency relations are invalidated, and
+	 * {@link #buildAdjacency} must be called again before traversing
+	 * the mesh.
+	 *
+	 * @param v0  index of first vertex
+	 * @param v1  index of second vertex
+	 * @param v2  index of third vertex
+	 * @param group  group id
+	 * @return index of this new triangle
+	 */
+	public final int addTriangle(int v0, int v1, int v2, int group)
+	{
+		assert v0 < nrVertices && v1 < nrVertices && v2 < nrVertices;
+		if (nrTriangles == triangleGroup.length)
+			ensureTriangleCapacity(2*nrTriangles);
+		triangleVertices[3*nrTriangles]   = v0;
+		triangleVertices[3*nrTriangles+1] = v1;
+		triangleVertices[3*nrTriangles+2] = v2;
+		triangleGroup[nrTriangles] = group;
+		adjacency = false;
+		return nrTriangles++;
+	}
+
+	/**
+	 * Resizes vertex arrays.
+	 *
+	 * @param vertices  desired number of vertices
+	 */
+	public final void ensureVertexCapacity(int vertices)
+	{
+		if (vertices <= vertexRef.length)
+			return;
+		double [] newCoord = new double[3*vertices];
+		System.arraycopy(coord, 0, newCoord, 0, 3*nrVertices);
+		coord = newCoord;
+		int [] newRef = new int[vertices];
+		System.arraycopy(vertexRef, 0, newRef, 0, nrVertices);
+		vertexRef = newRef;
+	}
+
+	/**
+	 * Resizes triangle arrays.
+	 *
+	 * @param triangles  desired number of triangles
+	 */
+	public final void ensureTriangleCapacity(int triangles)
+	{
+		if (triangles <= triangleGroup.length)
+			return;
+		int [] newVertices = new int[3*triangles];
+		System.arraycopy(triangleVertices, 0, newVertices, 0, 3*nrTriangles);
+		triangleVertices = newVertices;
+		int [] newGroup = new int[triangles];
+		System.arraycopy(triangleGroup, 0, newGroup, 0, nrTriangles);
+		triangleGroup = newGroup;
+	}
+
+	/**
+	 * Copies vertex coordinates into an array.
+	 *
+	 * @param v  vertex index
+	 * @param xyz  array of size 3 which is updated
+	 */
+	public final void getCoordinates(int v, double [] xyz)
+	{
+		System.arraycopy(coord, 3*v, xyz, 0, 3);
+	}
+
+	/**
+	 * Returns a coordinate of a vertex.
+	 *
+	 * @param v  vertex index
+	 * @param i  coordinate index, between 0 and 2
+	 * @return  coordinate <code>i</code> of vertex <code>v</code>
+	 */
+	public final double getCoordinate(int v, int i)
+	{
+		return coord[3*v+i];
+	}
+
+	/**
+	 * Sets vertex coordinates.
+	 *
+	 * @param v  vertex index
+	 * @param x  first coordinate of the new position
+	 * @param y  second coordinate of the new position
+	 * @param z  third coordinate of the new position
+	 */
+	public final void moveTo(int v, double x, double y, double z)
+	{
+		coord[3*v]   = x;
+		coord[3*v+1] = y;
+		coord[3*v+2] = z;
+	}
+
+	/**
+	 * Gets 1D reference of a vertex.
+	 *
+	 * @param v  vertex index
+	 * @return 1D reference of this vertex
+	 */
+	public final int getRef(int v)
+	{
+		return vertexRef[v];
+	}
+
+	/**
+	 * Sets 1D reference of a vertex.
+	 *
+	 * @param v  vertex index
+	 * @param ref  1D reference of this vertex
+	 */
+	public final void setRef(int v, int ref)
+	{
+		vertexRef[v] = ref;
+	}
+
+	/**
+	 * Returns a vertex of a triangle.
+	 *
+	 * @param t  triangle index
+	 * @param i  local vertex number, between 0 and 2
+	 * @return index of vertex <code>i</code> of triangle <code>t</code>
+	 */
+	public final int getTriangleVertex(int t, int i)
+	{
+		return triangleVertices[3*t+i];
+	}
+
+	/**
+	 * Returns the group id of a triangle.
+	 *
+	 * @param t  triangle index
+	 * @return the group id of this triangle
+	 */
+	public final int getGroupId(int t)
+	{
+		return triangleGroup[t];
+	}
+
+	/**
+	 * Sets the group id of a triangle.
+	 *
+	 * @param t  triangle index
+	 * @param g  group id
+	 */
+	public final void setGroupId(int t, int g)
+	{
+		triangleGroup[t] = g;
+	}
+
+	/**
+	 * Tells whether adjacency relations are up to date.
+	 *
+	 * @return <code>true</code> if {@link #buildAdjacency} had been called
+	 *         after last modification, <code>false</code> otherwise.
+	 */
+	public final boolean hasAdjacency()
+	{
+		return adjacency;
+	}
+
+	/**
+	 * Builds adjacency relations between triangles.  Half-edges are sorted
+	 * by their highest vertex index and then by their lowest vertex index
+	 * with two counting sorts, so that half-edges of the same edge are
+	 * contiguous and only primitive arrays are allocated.  Each edge shared
+	 * by exactly two triangles with compatible orientations is glued; other
+	 * edges are tagged as {@link AbstractHalfEdge#BOUNDARY} (one incident
+	 * triangle) or {@link AbstractHalfEdge#NONMANIFOLD} (three or more
+	 * incident triangles, or incompatible orientations).
+	 */
+	public final void buildAdjacency()
+	{
+		int nrHalfEdges = 3*nrTriangles;
+		sym = new int[nrHalfEdges];
+		edgeAttributes = new byte[nrHalfEdges];
+		vertexLink = new int[nrVertices];
+		Arrays.fill(sym, -1);
+		Arrays.fill(vertexLink, -1);
+
+		// Counting sort of half-edges by their highest vertex
+		int [] offset = new int[nrVertices+1];
+		for (int he = 0; he < nrHalfEdges; he++)
+			offset[highVertex(he)+1]++;
+		for (int v = 0; v < nrVertices; v++)
+			offset[v+1] += offset[v];
+		int [] byHigh = new int[nrHalfEdges];
+		for (int he = 0; he < nrHalfEdges; he++)
+		{
+			int v = highVertex(he);
+			byHigh[offset[v]] = he;
+			offset[v]++;
+		}
+		// Stable counting sort by their lowest vertex
+		Arrays.fill(offset, 0);
+		for (int he = 0; he < nrHalfEdges; he++)
+			offset[lowVertex(he)+1]++;
+		for (int v = 0; v < nrVertices; v++)
+			offset[v+1] += offset[v];
+		int [] bucket = new int[nrHalfEdges];
+		for (int i = 0; i < nrHalfEdges; i++)
+		{
+			int he = byHigh[i];
+			int v = lowVertex(he);
+			bucket[offset[v]] = he;
+			offset[v]++;
+		}
+		byHigh = null;
+		offset = null;
+
+		int nrBoundary = 0;
+		int nrNonManifold = 0;
+		for (int i = 0; i < nrHalfEdges; )
+		{
+			int he = bucket[i];
+			int low = lowVertex(he);
+			int high = highVertex(he);
+			int end = i + 1;
+			while (end < nrHalfEdges && highVertex(bucket[end]) == high && lowVertex(bucket[end]) == low)
+				end++;
+			if (end == i + 1)
+			{
+				edgeAttributes[he] |= AbstractHalfEdge.BOUNDARY;
+				nrBoundary++;
+			}
+			else if (end == i + 2 && originIndex(he) == destinationIndex(bucket[i+1]))
+			{
+				int other = bucket[i+1];
+				sym[he] = other;
+				sym[other] = he;
+			}
+			else
+			{
+				// Tag all half-edges of this non-manifold edge
+				for (int j = i; j < end; j++)
+					edgeAttributes[bucket[j]] |= AbstractHalfEdge.NONMANIFOLD;
+				nrNonManifold++;
+			}
+			i = end;
+		}
+
+		// Vertex links; boundary half-edges are preferred so that
+		// nextOriginLoop starts from a boundary.
+		for (int he = 0; he < nrHalfEdges; he++)
+		{
+			int o = originIndex(he);
+			if (vertexLink[o] < 0 || sym[he] < 0)
+				vertexLink[o] = he;
+		}
+		adjacency = true;
+		logger.fine("Adjacency built: "+nrBoundary+" boundary edges, "+nrNonManifold+" non-manifold edges");
+	}
+
+	private int lowVertex(int he)
+	{
+		return Math.min(originIndex(he), destinationIndex(he));
+	}
+
+	private int highVertex(int he)
+	{
+		return Math.max(originIndex(he), destinationIndex(he));
+	}
+
+	private int originIndex(int he)
+	{
+		int t = he / 3;
+		return triangleVertices[3*t+next3[he - 3*t]];
+	}
+
+	private int destinationIndex(int he)
+	{
+		int t = he / 3;
+		return triangleVertices[3*t+prev3[he - 3*t]];
+	}
+
+	/**
+	 * Returns a new <code>Cursor</code> instance bound to the first
+	 * half-edge of a triangle.
+	 *
+	 * @param t  triangle index
+	 * @return a new <code>Cursor</code> instance
+	 */
+	public final Cursor getCursor(int t)
+	{
+		Cursor ret = new Cursor();
+		ret.bind(t);
+		return ret;
+	}
+
+	/**
+	 * Binds a cursor to a half-edge whose origin is a given vertex.
+	 *
+	 * @param v  vertex index
+	 * @param that  either <code>null</code> or an existing <code>Cursor</code>
+	 *              instance which is modified
+	 * @return  a <code>Cursor</code> instance bound to an half-edge whose
+	 *          origin is <code>v</code>, or <code>null</code> if this vertex
+	 *          is not connected to any triangle
+	 */
+	public final Cursor getIncidentCursor(int v, Cursor that)
+	{
+		assert adjacency;
+		if (vertexLink[v] < 0)
+			return null;
+		if (that == null)
+			that = new Cursor();
+		that.he = vertexLink[v];
+		return that;
+	}
+
+	/**
+	 * Tells which vertices are manifold.  As with {@link Vertex#isManifold},
+	 * a vertex is manifold when its incident triangles form a single fan
+	 * and none of its incident edges is non-manifold.  Vertices which are
+	 * not connected to any triangle are not manifold.
+	 *
+	 * @return  an array of booleans indexed by vertex, set to <code>true</code>
+	 *          for manifold vertices
+	 */
+	public final boolean [] computeManifoldVertices()
+	{
+		assert adjacency;
+		// Vertices are first tagged when they are non-manifold
+		boolean [] ret = new boolean[nrVertices];
+		int [] count = new int[nrVertices];
+		int nrHalfEdges = 3*nrTriangles;
+		for (int he = 0; he < nrHalfEdges; he++)
+		{
+			count[originIndex(he)]++;
+			if ((edgeAttributes[he] & AbstractHalfEdge.NONMANIFOLD) != 0)
+			{
+				ret[originIndex(he)] = true;
+				ret[destinationIndex(he)] = true;
+			}
+		}
+		Cursor ot = new Cursor();
+		for (int v = 0; v < nrVertices; v++)
+		{
+			if (ret[v] || vertexLink[v] < 0)
+			{
+				ret[v] = false;
+				continue;
+			}
+			// Count half-edges of the fan containing vertexLink[v]
+			int start = vertexLink[v];
+			ot.he = start;
+			int n = 0;
+			do
+			{
+				ot.nextOriginLoop();
+				n++;
+			}
+			while (ot.he != start && n <= count[v]);
+			ret[v] = (n == count[v]);
+		}
+		return ret;
+	}
+
+	/**
+	 * Lightweight half-edge cursor.  It only contains a half-edge index,
+	 * and navigation methods update this index in place, like
+	 * {@link VirtualHalfEdge} does.
+	 */
+	public final class Cursor
+	{
+		private int he;
+
+		private Cursor()
+		{
+		}
+
+		/**
+		 * Binds this cursor to the first edge of a triangle.
+		 *
+		 * @param t  triangle index
+		 */
+		public void bind(int t)
+		{
+			he = 3*t;
+		}
+
+		/**
+		 * Binds this cursor to an edge of a triangle.
+		 *
+		 * @param t  triangle index
+		 * @param l  local number of this edge
+		 */
+		public void bind(int t, int l)
+		{
+			he = 3*t + l;
+		}
+
+		/**
+		 * Makes this cursor a copy of another one.
+		 *
+		 * @param that  cursor to copy
+		 */
+		public void copy(Cursor that)
+		{
+			he = that.he;
+		}
+
+		/**
+		 * Returns half-edge index.
+		 *
+		 * @return half-edge index
+		 */
+		public int getIndex()
+		{
+			return he;
+		}
+
+		/**
+		 * Returns triangle tied to this edge.
+		 *
+		 * @return triangle index
+		 */
+		public int getTri()
+		{
+			return he / 3;
+		}
+
+		/**
+		 * Returns edge local number.
+		 *
+		 * @return edge local number
+		 */
+		public int getLocalNumber()
+		{
+			return he % 3;
+		}
+
+		/**
+		 * Returns start vertex of this edge.
+		 *
+		 * @return start vertex index
+		 */
+		public int origin()
+		{
+			return originIndex(he);
+		}
+
+		/**
+		 * Returns end vertex of this edge.
+		 *
+		 * @return end vertex index
+		 */
+		public int destination()
+		{
+			return destinationIndex(he);
+		}
+
+		/**
+		 * Returns apex of this edge.
+		 *
+		 * @return apex index
+		 */
+		public int apex()
+		{
+			return triangleVertices[he];
+		}
+
+		/**
+		 * Moves counterclockwise to following edge.
+		 *
+		 * @return  current instance after its transformation
+		 */
+		public Cursor next()
+		{
+			int t = he / 3;
+			he = 3*t + next3[he - 3*t];
+			return this;
+		}
+
+		/**
+		 * Moves counterclockwise to previous edge.
+		 *
+		 * @return  current instance after its transformation
+		 */
+		public Cursor prev()
+		{
+			int t = he / 3;
+			he = 3*t + prev3[he - 3*t];
+			return this;
+		}
+
+		/**
+		 * Tells whether edge is connected to a symmetric edge.
+		 *
+		 * @return <code>true</code> if edge has a symmetric edge, <code>false</code> otherwise.
+		 */
+		public boolean hasSymmetricEdge()
+		{
+			return sym[he] >= 0;
+		}
+
+		/**
+		 * Moves to symmetric edge.  This method must not be called on
+		 * boundary or non-manifold edges.
+		 *
+		 * @return  current instance after its transformation
+		 */
+		public Cursor sym()
+		{
+			assert sym[he] >= 0;
+			he = sym[he];
+			return this;
+		}
+
+		/**
+		 * Moves counterclockwise to the following edge which has the same origin.
+		 * This method must not be called if previous edge has no symmetric edge.
+		 *
+		 * @return  current instance after its transformation
+		 */
+		public Cursor nextOrigin()
+		{
+			return prev().sym();
+		}
+
+		/**
+		 * Moves counterclockwise to the following edge which has the same origin.
+		 * If a boundary is reached, loop backward until another
+		 * boundary is found and start again from there.
+		 *
+		 * @return  current instance after its transformation
+		 */
+		public Cursor nextOriginLoop()
+		{
+			int p = prevIndex(he);
+			if (sym[p] >= 0)
+			{
+				he = sym[p];
+				return this;
+			}
+			// Loop clockwise to another boundary
+			int start = he;
+			while (sym[he] >= 0)
+			{
+				he = nextIndex(sym[he]);
+				if (he == start)
+					break;
+			}
+			return this;
+		}
+
+		/**
+		 * Checks if some attributes of this edge are set.
+		 *
+		 * @param attr  attributes to check
+		 * @return <code>true</code> if this edge has one of
+		 * these attributes set, <code>false</code> otherwise
+		 */
+		public boolean hasAttributes(int attr)
+		{
+			return (edgeAttributes[he] & attr) != 0;
+		}
+
+		/**
+		 * Sets attributes of this edge.
+		 *
+		 * @param attr  attributes of this edge
+		 */
+		public void setAttributes(int attr)
+		{
+			edgeAttributes[he] |= attr;
+		}
+
+		/**
+		 * Resets attributes of this edge.
+		 *
+		 * @param attr   attributes of this edge to clear out
+		 */
+		public void clearAttributes(int attr)
+		{
+			edgeAttributes[he] &= ~attr;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Edge "+he+" ("+origin()+","+destination()+","+apex()+")";
+		}
+	}
+
+	private static int nextIndex(int he)
+	{
+		int t = he / 3;
+		return 3*t + next3[he - 3*t];
+	}
+
+	private static int prevIndex(int he)
+	{
+		int t = he / 3;
+		return 3*t + prev3[he - 3*t];
+	}
+
+	/**
+	 * Returns the number of bytes used by internal arrays.  Unused capacity
+	 * is counted, but array headers are not since their size depends on
+	 * the JVM.
+	 *
+	 * @return the number of bytes used by internal arrays
+	 */
+	public final long getMemoryUsage()
+	{
+		long ret = 8L * coord.length + 4L * vertexRef.length +
+			4L * triangleVertices.length + 4L * triangleGroup.length;
+		if (adjacency)
+			ret += 4L * vertexLink.length + 4L * sym.length + edgeAttributes.length;
+		return ret;
+	}
+
+	/**
+	 * Creates a compact mesh from a {@link Mesh} instance.  Outer triangles
+	 * and triangles which are not writable are skipped.
+	 *
+	 * @param mesh  mesh
+	 * @return  a new <code>CompactMesh</code> instance, with adjacency
+	 *          relations if <code>mesh</code> has adjacency relations
+	 */
+	public static CompactMesh createFromMesh(Mesh mesh)
+	{
+		Collection<Triangle> triangles = mesh.getTriangles();
+		CompactMesh ret = new CompactMesh(triangles.size() / 2 + 2, triangles.size());
+		TObjectIntHashMap<Vertex> index = new TObjectIntHashMap<Vertex>(triangles.size() / 2 + 2);
+		if (mesh.hasNodes())
+		{
+			for (Vertex v : mesh.getNodes())
+				addVertex(ret, index, v);
+		}
+		int [] vIndex = new int[3];
+		for (Triangle t : triangles)
+		{
+			if (!t.isWritable())
+				continue;
+			for (int i = 0; i < 3; i++)
+			{
+				Vertex v = t.vertex[i];
+				if (!index.containsKey(v))
+					addVertex(ret, index, v);
+				vIndex[i] = index.get(v);
+			}
+			ret.addTriangle(vIndex[0], vIndex[1], vIndex[2], t.getGroupId());
+		}
+		if (mesh.hasAdjacency())
+			ret.buildAdjacency();
+		return ret;
+	}
+
+	private static void addVertex(CompactMesh mesh, TObjectIntHashMap<Vertex> index, Vertex v)
+	{
+		double [] xyz = v.getUV();
+		int i = mesh.addVertex(xyz[0], xyz[1], xyz[2]);
+		mesh.setRef(i, v.getRef());
+		index.put(v, i);
+	}
+
+	/**
+	 * Creates a {@link Mesh} instance from this compact mesh.
+	 * Adjacency relations are built if <code>mtb</code> requires them.
+	 *
+	 * @param mtb  mesh traits builder
+	 * @return  a new <code>Mesh</code> instance
+	 */
+	public final Mesh toMesh(MeshTraitsBuilder mtb)
+	{
+		Mesh ret = new Mesh(mtb);
+		ret.ensureCapacity(nrTriangles);
+		Vertex [] vertices = new Vertex[nrVertices];
+		for (int i = 0; i < nrVertices; i++)
+		{
+			vertices[i] = ret.createVertex(coord[3*i], coord[3*i+1], coord[3*i+2]);
+			vertices[i].setRef(vertexRef[i]);
+			if (ret.hasNodes())
+				ret.add(vertices[i]);
+		}
+		for (int i = 0; i < nrTriangles; i++)
+		{
+			Triangle t = ret.createTriangle(vertices[triangleVertices[3*i]],
+				vertices[triangleVertices[3*i+1]], vertices[triangleVertices[3*i+2]]);
+			t.setGroupId(triangleGroup[i]);
+			ret.add(t);
+		}
+		if (ret.hasAdjacency())
+			ret.buildAdjacency();
+		return ret;
+	}
+}
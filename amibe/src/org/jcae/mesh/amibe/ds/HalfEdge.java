@@ -22,6 +22,7 @@ package org.jcae.mesh.amibe.ds;
 
 import org.jcae.mesh.amibe.traits.HalfEdgeTraitsBuilder;
 import org.jcae.mesh.amibe.metrics.Matrix3D;
+import org.jcae.mesh.amibe.util.PIndexedHeap;
 import java.util.Collection;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -39,7 +40,7 @@ import java.util.logging.Logger;
  * (between 0 and 2) and a triangle.  It has a link to the next edge in the
  * same triangle, and to its symmetric edge.
  */
-public class HalfEdge extends AbstractHalfEdge implements Serializable
+public class HalfEdge extends AbstractHalfEdge implements Serializable, PIndexedHeap.Indexed
 {
 	private static final long serialVersionUID = -2460993797089718106L;
 	private static final Logger logger=Logger.getLogger(HalfEdge.class.getName());
@@ -48,6 +49,8 @@ public class HalfEdge extends AbstractHalfEdge implements Serializable
 	private byte attributes;
 	private HalfEdge sym;
 	private HalfEdge next;
+	// Position into a PIndexedHeap
+	private int heapSlot = -1;
 
 	private static final int [] next3 = { 1, 2, 0 };
 	private static final int [] prev3 = { 2, 0, 1 };
@@ -86,6 +89,16 @@ public class HalfEdge extends AbstractHalfEdge implements Serializable
 	{
 		return attributes;
 	}
+
+	public final int getHeapSlot()
+	{
+		return heapSlot;
+	}
+
+	public final void setHeapSlot(int slot)
+	{
+		heapSlot = slot;
+	}
 	
 	/**
 	 * Sets the edge tied to this object.
@@ -1072,14 +1085,17 @@ public class HalfEdge extends AbstractHalfEdge implements Serializable
 	
 	private void replaceEndpointsSameFan(Vertex n)
 	{
+		// Loop until this edge is reached again; checking destination
+		// is not enough at the end of a ridge, because sharp edges are
+		// bound to virtual triangles and destination appears twice
+		// around origin.
 		HalfEdge e = this;
-		Vertex d = destination();
 		do
 		{
 			e.setOrigin(n);
 			e = e.nextOriginLoop();
 		}
-		while (e.destination() != d);
+		while (e != this);
 	}
 	private static void replaceEndpointsNonManifold(Vertex o, Vertex n)
 	{
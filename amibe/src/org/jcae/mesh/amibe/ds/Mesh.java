@@ -152,6 +152,9 @@ public class Mesh implements Serializable
 	private TIntArrayList beamGroups = new TIntArrayList();
 	private Map<Integer, String> groupNames = new HashMap<Integer, String>();
 
+	// Listeners notified of mesh modifications, null if there is none
+	private transient MeshListener [] listeners;
+
 	// Utility class to improve debugging output
 	private static class OuterVertex extends Vertex
 	{
@@ -214,6 +217,16 @@ public class Mesh implements Serializable
 	{
 		return meshParameters;
 	}
+
+	/**
+	 * Returns the traits builder this mesh was created with.
+	 *
+	 * @return the traits builder this mesh was created with.
+	 */
+	public final MeshTraitsBuilder getTraitsBuilder()
+	{
+		return traitsBuilder;
+	}
 	
 	/**
 	 * Adds an existing triangle to triangle list.
@@ -307,6 +320,70 @@ public class Mesh implements Serializable
 		return traitsBuilder.hasNodes();
 	}
 
+	/**
+	 * Registers a listener which is notified of mesh modifications
+	 * performed by {@link #edgeSwap}, {@link #edgeCollapse} and
+	 * {@link #vertexSplit}, and of vertex moves notified by
+	 * {@link #notifyVertexMoved}.
+	 *
+	 * @param l  listener
+	 */
+	public final void addListener(MeshListener l)
+	{
+		if (listeners == null)
+			listeners = new MeshListener[] { l };
+		else
+		{
+			MeshListener [] newListeners = new MeshListener[listeners.length + 1];
+			System.arraycopy(listeners, 0, newListeners, 0, listeners.length);
+			newListeners[listeners.length] = l;
+			listeners = newListeners;
+		}
+	}
+
+	/**
+	 * Unregisters a listener.
+	 *
+	 * @param l  listener
+	 */
+	public final void removeListener(MeshListener l)
+	{
+		if (listeners == null)
+			return;
+		int n = listeners.length;
+		for (int i = 0; i < n; i++)
+		{
+			if (listeners[i] == l)
+			{
+				if (n == 1)
+				{
+					listeners = null;
+					return;
+				}
+				MeshListener [] newListeners = new MeshListener[n - 1];
+				System.arraycopy(listeners, 0, newListeners, 0, i);
+				System.arraycopy(listeners, i + 1, newListeners, i, n - i - 1);
+				listeners = newListeners;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Notifies listeners that a vertex has been moved.  Algorithms which
+	 * move vertices must call this method.
+	 *
+	 * @param v  vertex which has been moved
+	 */
+	public final void notifyVertexMoved(Vertex v)
+	{
+		if (listeners != null)
+		{
+			for (MeshListener l : listeners)
+				l.vertexMoved(v);
+		}
+	}
+
 	/**
 	 * Returns the Trace instance associated with this mesh.
 	 *
@@ -503,6 +580,30 @@ public class Mesh implements Serializable
 		this.persistentReferences = persistentReferences;
 	}
 
+	/**
+	 * Returns the highest reference set on boundary and junction vertices
+	 * by {@link #buildAdjacency(int)} and {@link #setRefVertexOnBoundary}.
+	 *
+	 * @return the highest reference in use
+	 */
+	public final int getMaxLabel()
+	{
+		return maxLabel;
+	}
+
+	/**
+	 * Sets the highest reference in use.  This method is meant to be
+	 * called when adjacency relations are restored without calling
+	 * {@link #buildAdjacency(int)}, new references are greater than
+	 * this value.
+	 *
+	 * @param maxLabel  highest reference in use
+	 */
+	public final void setMaxLabel(int maxLabel)
+	{
+		this.maxLabel = maxLabel;
+	}
+
 	/**
 	 * Move a Vertex to a triangle centroid.
 	 *
@@ -559,23 +660,51 @@ public class Mesh implements Serializable
 		buildAdjacency(0);
 	}
 	public final void buildAdjacency(int currentMaxLabel)
+	{
+		buildAdjacency(currentMaxLabel, 0);
+	}
+
+	/**
+	 * Build adjacency relations between triangles with several threads.
+	 * Half-edges are sorted in primitive arrays and glued by concurrent
+	 * tasks, this is much faster and requires much less memory than
+	 * sequential algorithm on large meshes, even with a single thread.
+	 * Resulting topology is exactly the same.  Parallel algorithm is only
+	 * available for meshes with {@link HalfEdge} instances and without
+	 * adjacency relations, otherwise sequential algorithm is run.
+	 *
+	 * @param currentMaxLabel  max reference already in use
+	 * @param nrThreads  number of threads, sequential algorithm is run if
+	 *        it is 0
+	 */
+	public final void buildAdjacency(int currentMaxLabel, int nrThreads)
 	{
 		//  Connect all edges together
 		logger.fine("Connect triangles");
 		ArrayList<Triangle> newTri = new ArrayList<Triangle>();
-		//  For each vertex, build the list of triangles
-		//  connected to this vertex.
-		Map<Vertex, ArrayList<Triangle>> tVertList = getMapVertexLinks();
-		//  Connect all edges together
-		glueSymmetricHalfEdges(tVertList, newTri);
-
-		//  Mark boundary edges and bind them to virtual triangles.
-		logger.fine("Connect boundary triangles");
-		connectBoundaryTriangles(newTri);
-
-		//  Fix links for junctions
-		logger.fine("Fix vertex links");
-		rebuildVertexLinks(tVertList);
+		Collection<Vertex> vertices = null;
+		if (nrThreads > 0)
+			vertices = new ParallelAdjacencyBuilder(this, nrThreads).build(newTri);
+		if (vertices == null)
+		{
+			//  For each vertex, build the list of triangles
+			//  connected to this vertex.
+			Map<Vertex, ArrayList<Triangle>> tVertList = getMapVertexLinks();
+			//  Connect all edges together
+			glueSymmetricHalfEdges(tVertList, newTri);
+
+			//  Mark boundary edges and bind them to virtual triangles.
+			logger.fine("Connect boundary triangles");
+			connectBoundaryTriangles(triangleList, newTri);
+
+			//  Fix links for junctions
+			logger.fine("Fix vertex links");
+			rebuildVertexLinks(tVertList);
+			//  Remove all references to help the garbage collector.
+			for (ArrayList<Triangle> list : tVertList.values())
+				list.clear();
+			vertices = tVertList.keySet();
+		}
 		
 		//  Find the list of vertices which are on mesh boundary
 		logger.fine("Build the list of nodes on boundaries and non-manifold edges");
@@ -607,7 +736,7 @@ public class Mesh implements Serializable
 		}
 
 		int nrJunctionPoints = 0;
-		for (Vertex v: tVertList.keySet())
+		for (Vertex v: vertices)
 		{
 			if (bndNodes.contains(v))
 				continue;
@@ -625,9 +754,6 @@ public class Mesh implements Serializable
 			logger.info("Found "+nrJunctionPoints+" junction points");
 		if (maxLabel != currentMaxLabel)
 			logger.fine("Created "+(maxLabel - currentMaxLabel)+" more references");
-		//  Remove all references to help the garbage collector.
-		for (ArrayList<Triangle> list : tVertList.values())
-			list.clear();
 		// Add outer triangles
 		triangleList.addAll(newTri);
 		if (traitsBuilder.hasTrace())
@@ -684,57 +810,64 @@ public class Mesh implements Serializable
 	private void rebuildVertexLinks(Map<Vertex, ArrayList<Triangle>> tVertList)
 	{
 		for (Map.Entry<Vertex, ArrayList<Triangle>> entry : tVertList.entrySet())
+			rebuildVertexLinks(entry.getKey(), entry.getValue());
+	}
+
+	/**
+	 * Sets links of a vertex to all its fans if it is non-manifold.
+	 *
+	 * @param v  vertex
+	 * @param list  triangles incident to this vertex
+	 */
+	static void rebuildVertexLinks(Vertex v, Collection<Triangle> list)
+	{
+		int cnt = 0;
+		AbstractHalfEdge ot = null;
+		if (null == v.getLink())
+			return;
+		ot = v.getIncidentAbstractHalfEdge((Triangle) v.getLink(), ot);
+		Vertex d = ot.destination();
+		do
 		{
-			Vertex v = entry.getKey();
-			ArrayList<Triangle> list = entry.getValue();
-			int cnt = 0;
-			AbstractHalfEdge ot = null;
-			if (null == v.getLink())
-				continue;
-			ot = v.getIncidentAbstractHalfEdge((Triangle) v.getLink(), ot);
-			Vertex d = ot.destination();
+			if (!ot.hasAttributes(AbstractHalfEdge.OUTER))
+				cnt++;
+			if (ot.hasAttributes(AbstractHalfEdge.NONMANIFOLD))
+			{
+				cnt = 0;
+				break;
+			}
+			ot = ot.nextOriginLoop();
+		}
+		while (ot.destination() != d);
+		if (cnt == list.size())
+			return;
+		// Non-manifold vertex
+		LinkedHashSet<Triangle> neighbours = new LinkedHashSet<Triangle>(list);
+		ArrayList<Triangle> fans = new ArrayList<Triangle>();
+		while (!neighbours.isEmpty())
+		{
+			ot = v.getIncidentAbstractHalfEdge(neighbours.iterator().next(), ot);
+			d = ot.destination();
+			fans.add(ot.getTri());
 			do
 			{
 				if (!ot.hasAttributes(AbstractHalfEdge.OUTER))
-					cnt++;
-				if (ot.hasAttributes(AbstractHalfEdge.NONMANIFOLD))
-				{
-					cnt = 0;
-					break;
-				}
+					neighbours.remove(ot.getTri());
 				ot = ot.nextOriginLoop();
 			}
 			while (ot.destination() != d);
-			if (cnt == list.size())
-				continue;
-			// Non-manifold vertex
-			LinkedHashSet<Triangle> neighbours = new LinkedHashSet<Triangle>(list);
-			ArrayList<Triangle> fans = new ArrayList<Triangle>();
-			while (!neighbours.isEmpty())
-			{
-				ot = v.getIncidentAbstractHalfEdge(neighbours.iterator().next(), ot);
-				d = ot.destination();
-				fans.add(ot.getTri());
-				do
-				{
-					if (!ot.hasAttributes(AbstractHalfEdge.OUTER))
-						neighbours.remove(ot.getTri());
-					ot = ot.nextOriginLoop();
-				}
-				while (ot.destination() != d);
-			}
-			Triangle[] links = new Triangle[fans.size()];
-			fans.toArray(links);
-			v.setLink(links);
-			logger.fine("Non-manifold vertex has "+fans.size()+" fans");
 		}
+		Triangle[] links = new Triangle[fans.size()];
+		fans.toArray(links);
+		v.setLink(links);
+		logger.fine("Non-manifold vertex has "+fans.size()+" fans");
 	}
 
-	private void connectBoundaryTriangles(ArrayList<Triangle> newTri)
+	final void connectBoundaryTriangles(Iterable<Triangle> triangles, ArrayList<Triangle> newTri)
 	{
 		AbstractHalfEdge ot = null;
 		AbstractHalfEdge sym = null;
-		for (Triangle t: triangleList)
+		for (Triangle t: triangles)
 		{
 			ot = t.getAbstractHalfEdge(ot);
 			for (int i = 0; i < 3; i++)
@@ -836,7 +969,7 @@ public class Mesh implements Serializable
 		}
 	}
 
-	private void glueNonManifoldHalfEdges(Vertex v, Vertex v2, AbstractHalfEdge ot, AbstractHalfEdge ot2, AbstractHalfEdge [] work, ArrayList<Triangle> newTri)
+	final void glueNonManifoldHalfEdges(Vertex v, Vertex v2, AbstractHalfEdge ot, AbstractHalfEdge ot2, AbstractHalfEdge [] work, ArrayList<Triangle> newTri)
 	{
 		assert v == ot.origin() && v2 == ot.destination();
 		assert (v == ot2.origin() && v2 == ot2.destination()) || (v2 == ot2.origin() && v == ot2.destination());
@@ -1417,6 +1550,11 @@ public class Mesh implements Serializable
 	{
 		if (traitsBuilder.hasTrace())
 			traitsBuilder.getTrace(traits).edgeCollapse(e, v);
+		if (listeners != null)
+		{
+			for (MeshListener l : listeners)
+				l.beforeEdgeCollapse(e, v);
+		}
 		return e.collapse(this, v);
 	}
 	
@@ -1430,6 +1568,11 @@ public class Mesh implements Serializable
 	{
 		if (traitsBuilder.hasTrace())
 			traitsBuilder.getTrace(traits).vertexSplitBefore(e, v);
+		if (listeners != null)
+		{
+			for (MeshListener l : listeners)
+				l.beforeVertexSplit(e, v);
+		}
 		AbstractHalfEdge ret = e.split(this, v);
 		if (traitsBuilder.hasTrace())
 			traitsBuilder.getTrace(traits).vertexSplitAfter(ret, v);
@@ -1447,6 +1590,11 @@ public class Mesh implements Serializable
 	{
 		if (traitsBuilder.hasTrace())
 			traitsBuilder.getTrace(traits).edgeSwap(e);
+		if (listeners != null)
+		{
+			for (MeshListener l : listeners)
+				l.beforeEdgeSwap(e);
+		}
 		return e.swap(this);
 	}
 
@@ -1931,6 +2079,10 @@ public class Mesh implements Serializable
 		{
 			if (t.hasAttributes(AbstractHalfEdge.OUTER))
 				continue;
+			// Vertices which are not readable have no coordinates,
+			// for instance when only some OEMM leaves are loaded.
+			if (!t.vertex[0].isReadable() || !t.vertex[1].isReadable() || !t.vertex[2].isReadable())
+				continue;
 			double[] t0 = t.vertex[0].getUV();
 			double[] t1 = t.vertex[1].getUV();
 			double[] t2 = t.vertex[2].getUV();
@@ -0,0 +1,62 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.ds;
+
+/**
+ * Receives notifications of mesh modifications.  Listeners are
+ * registered by {@link Mesh#addListener}.  Topological changes are
+ * notified before being performed, so that listeners can inspect
+ * elements which are going to be modified or removed.  Vertex moves
+ * are notified by {@link Mesh#notifyVertexMoved} after vertex has been
+ * moved.
+ */
+public interface MeshListener
+{
+	/**
+	 * Called before an edge is swapped.
+	 *
+	 * @param h  edge being swapped
+	 */
+	void beforeEdgeSwap(AbstractHalfEdge h);
+
+	/**
+	 * Called before an edge is collapsed.
+	 *
+	 * @param h  edge being collapsed
+	 * @param v  resulting vertex
+	 */
+	void beforeEdgeCollapse(AbstractHalfEdge h, Vertex v);
+
+	/**
+	 * Called before a vertex is inserted on an edge.
+	 *
+	 * @param h  edge being split
+	 * @param v  inserted vertex
+	 */
+	void beforeVertexSplit(AbstractHalfEdge h, Vertex v);
+
+	/**
+	 * Called after a vertex has been moved.
+	 *
+	 * @param v  vertex which has been moved
+	 */
+	void vertexMoved(Vertex v);
+}
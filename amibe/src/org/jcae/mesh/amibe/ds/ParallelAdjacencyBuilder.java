@@ -0,0 +1,499 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.ds;
+
+import gnu.trove.TObjectIntHashMap;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Multi-threaded computation of adjacency relations, see
+ * {@link Mesh#buildAdjacency(int, int)}.
+ *
+ * <p>
+ * Instead of building a map between vertices and their incident triangles,
+ * vertices and triangles are numbered and half-edges are stored into
+ * primitive arrays.  Half-edges are bucket sorted by their lowest vertex
+ * index, each bucket is then sorted by the other vertex index, so that all
+ * half-edges with the same end points are contiguous.  Buckets are processed
+ * by concurrent tasks; manifold edges are glued immediately, and non-manifold
+ * edges are glued afterwards in the very same order as
+ * <code>Mesh.glueSymmetricHalfEdges</code> does, so that resulting topology
+ * is identical.
+ * </p>
+ */
+final class ParallelAdjacencyBuilder
+{
+	private static final Logger LOGGER=Logger.getLogger(ParallelAdjacencyBuilder.class.getName());
+	private static final int [] next3 = { 1, 2, 0 };
+	private static final int [] prev3 = { 2, 0, 1 };
+	// Number of tasks per thread, to balance work load
+	private static final int TASKS_PER_THREAD = 4;
+
+	private final Mesh mesh;
+	private final int nrThreads;
+	private Triangle [] triangles;
+	private Vertex [] vertices;
+	// Vertex indices of triangles, -1 for vertices which are not readable
+	private int [] triVertex;
+	// Triangles incident to vertex i are
+	// incident[incStart[i]], ..., incident[incStart[i+1]-1]
+	private int [] incStart;
+	private int [] incident;
+	// Half-edges whose lowest vertex index is i are
+	// halfEdges[heStart[i]], ..., halfEdges[heStart[i+1]-1].
+	// A half-edge is encoded as 3 * triangle index + local number.
+	private int [] heStart;
+	private int [] halfEdges;
+
+	ParallelAdjacencyBuilder(Mesh m, int threads)
+	{
+		mesh = m;
+		nrThreads = threads;
+	}
+
+	/**
+	 * Builds adjacency relations.
+	 *
+	 * @param newTri  list where virtual triangles are added
+	 * @return  the collection of vertices found in mesh, in the same order
+	 *   as <code>Mesh.getMapVertexLinks</code>, or <code>null</code> if
+	 *   this mesh cannot be processed by this class.
+	 */
+	Collection<Vertex> build(ArrayList<Triangle> newTri)
+	{
+		Collection<Triangle> triangleList = mesh.getTriangles();
+		for (Triangle t : triangleList)
+		{
+			if (!(t instanceof TriangleHE) || t.hasAttributes(AbstractHalfEdge.OUTER))
+				return null;
+			HalfEdge e = ((TriangleHE) t).getAbstractHalfEdge();
+			for (int i = 0; i < 3; i++)
+			{
+				if (e.hasSymmetricEdge())
+					return null;
+				e = e.next();
+			}
+		}
+		Collection<Vertex> vertexList;
+		if (mesh.hasNodes())
+			vertexList = mesh.getNodes();
+		else
+		{
+			vertexList = new LinkedHashSet<Vertex>(triangleList.size()/2);
+			for (Triangle t: triangleList)
+			{
+				if (!t.isWritable())
+					continue;
+				for (Vertex v: t.vertex)
+					vertexList.add(v);
+			}
+		}
+		triangles = triangleList.toArray(new Triangle[triangleList.size()]);
+		vertices = vertexList.toArray(new Vertex[vertexList.size()]);
+		if (!computeIncidentTriangles())
+			return null;
+		sortHalfEdges();
+
+		ExecutorService pool = Executors.newFixedThreadPool(nrThreads);
+		try
+		{
+			int nrTasks = TASKS_PER_THREAD * nrThreads;
+			// Glue manifold edges and collect non-manifold edges
+			List<Callable<List<NonManifoldEdge>>> glueTasks = new ArrayList<Callable<List<NonManifoldEdge>>>(nrTasks);
+			for (int i = 0; i < nrTasks; i++)
+			{
+				final int start = (int) ((long) i * vertices.length / nrTasks);
+				final int end = (int) ((long) (i + 1) * vertices.length / nrTasks);
+				glueTasks.add(new Callable<List<NonManifoldEdge>>()
+				{
+					public List<NonManifoldEdge> call()
+					{
+						return glueBuckets(start, end);
+					}
+				});
+			}
+			ArrayList<NonManifoldEdge> nmEdges = new ArrayList<NonManifoldEdge>();
+			for (List<NonManifoldEdge> l : invokeAll(pool, glueTasks))
+				nmEdges.addAll(l);
+			LOGGER.fine("Found "+nmEdges.size()+" non-manifold edges");
+
+			// Glue non-manifold edges in the same order as sequential algorithm
+			Collections.sort(nmEdges);
+			final NonManifoldEdge [] nmArray = nmEdges.toArray(new NonManifoldEdge[nmEdges.size()]);
+			nmEdges = null;
+			List<Callable<ArrayList<Triangle>>> nmTasks = new ArrayList<Callable<ArrayList<Triangle>>>(nrTasks);
+			for (int i = 0; i < nrTasks; i++)
+			{
+				final int start = (int) ((long) i * nmArray.length / nrTasks);
+				final int end = (int) ((long) (i + 1) * nmArray.length / nrTasks);
+				nmTasks.add(new Callable<ArrayList<Triangle>>()
+				{
+					public ArrayList<Triangle> call()
+					{
+						return glueNonManifoldEdges(nmArray, start, end);
+					}
+				});
+			}
+			for (ArrayList<Triangle> l : invokeAll(pool, nmTasks))
+				newTri.addAll(l);
+
+			//  Mark boundary edges and bind them to virtual triangles.
+			LOGGER.fine("Connect boundary triangles");
+			final List<Triangle> triangleArray = Arrays.asList(triangles);
+			List<Callable<ArrayList<Triangle>>> boundaryTasks = new ArrayList<Callable<ArrayList<Triangle>>>(nrTasks);
+			for (int i = 0; i < nrTasks; i++)
+			{
+				final int start = (int) ((long) i * triangles.length / nrTasks);
+				final int end = (int) ((long) (i + 1) * triangles.length / nrTasks);
+				boundaryTasks.add(new Callable<ArrayList<Triangle>>()
+				{
+					public ArrayList<Triangle> call()
+					{
+						ArrayList<Triangle> ret = new ArrayList<Triangle>();
+						mesh.connectBoundaryTriangles(triangleArray.subList(start, end), ret);
+						return ret;
+					}
+				});
+			}
+			for (ArrayList<Triangle> l : invokeAll(pool, boundaryTasks))
+				newTri.addAll(l);
+
+			//  Fix links for junctions
+			LOGGER.fine("Fix vertex links");
+			List<Callable<Object>> linkTasks = new ArrayList<Callable<Object>>(nrTasks);
+			for (int i = 0; i < nrTasks; i++)
+			{
+				final int start = (int) ((long) i * vertices.length / nrTasks);
+				final int end = (int) ((long) (i + 1) * vertices.length / nrTasks);
+				linkTasks.add(new Callable<Object>()
+				{
+					public Object call()
+					{
+						for (int v = start; v < end; v++)
+							Mesh.rebuildVertexLinks(vertices[v], new IncidentTriangles(v));
+						return null;
+					}
+				});
+			}
+			invokeAll(pool, linkTasks);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		return vertexList;
+	}
+
+	private static <T> List<T> invokeAll(ExecutorService pool, List<Callable<T>> tasks)
+	{
+		List<T> ret = new ArrayList<T>(tasks.size());
+		try
+		{
+			for (Future<T> f : pool.invokeAll(tasks))
+				ret.add(f.get());
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		}
+		catch (ExecutionException ex)
+		{
+			throw new RuntimeException(ex.getCause());
+		}
+		return ret;
+	}
+
+	/**
+	 * Numbers vertices, sets vertex links and computes triangles incident to
+	 * each vertex, like <code>Mesh.getMapVertexLinks</code>.
+	 *
+	 * @return <code>false</code> if a readable vertex has not been found
+	 *   in vertex list, if vertex list contains duplicates or if a triangle
+	 *   is degenerated
+	 */
+	private boolean computeIncidentTriangles()
+	{
+		TObjectIntHashMap<Vertex> index = new TObjectIntHashMap<Vertex>(vertices.length);
+		for (int i = 0; i < vertices.length; i++)
+		{
+			if (index.put(vertices[i], i + 1) != 0)
+				return false;
+		}
+		triVertex = new int[3 * triangles.length];
+		incStart = new int[vertices.length + 1];
+		for (int i = 0; i < triangles.length; i++)
+		{
+			Triangle t = triangles[i];
+			for (int j = 0; j < 3; j++)
+			{
+				Vertex v = t.vertex[j];
+				int idx = -1;
+				if (v.isReadable())
+				{
+					idx = index.get(v) - 1;
+					if (idx < 0)
+						return false;
+					incStart[idx + 1]++;
+				}
+				triVertex[3 * i + j] = idx;
+				v.setLink(t);
+			}
+			int i0 = triVertex[3 * i];
+			int i1 = triVertex[3 * i + 1];
+			int i2 = triVertex[3 * i + 2];
+			if ((i0 >= 0 && (i0 == i1 || i0 == i2)) || (i1 >= 0 && i1 == i2))
+				return false;
+		}
+		for (int i = 0; i < vertices.length; i++)
+			incStart[i + 1] += incStart[i];
+		incident = new int[incStart[vertices.length]];
+		int [] pos = new int[vertices.length];
+		System.arraycopy(incStart, 0, pos, 0, vertices.length);
+		for (int i = 0; i < triVertex.length; i++)
+		{
+			int v = triVertex[i];
+			if (v >= 0)
+			{
+				incident[pos[v]] = i / 3;
+				pos[v]++;
+			}
+		}
+		return true;
+	}
+
+	private int origin(int he)
+	{
+		int t = he / 3;
+		return triVertex[3 * t + next3[he - 3 * t]];
+	}
+
+	private int destination(int he)
+	{
+		int t = he / 3;
+		return triVertex[3 * t + prev3[he - 3 * t]];
+	}
+
+	private HalfEdge getHalfEdge(int he)
+	{
+		int t = he / 3;
+		int l = he - 3 * t;
+		HalfEdge ret = ((TriangleHE) triangles[t]).getAbstractHalfEdge();
+		while (ret.getLocalNumber() != l)
+			ret = ret.next();
+		return ret;
+	}
+
+	/**
+	 * Bucket sorts half-edges according to their lowest vertex index.
+	 * Half-edges with a non readable end point are skipped, they are
+	 * never glued by sequential algorithm.  Sort is stable, half-edges
+	 * are sorted by triangle index within each bucket.
+	 */
+	private void sortHalfEdges()
+	{
+		heStart = new int[vertices.length + 1];
+		int nr = 0;
+		for (int he = 0; he < triVertex.length; he++)
+		{
+			int o = origin(he);
+			int d = destination(he);
+			if (o < 0 || d < 0)
+				continue;
+			heStart[Math.min(o, d) + 1]++;
+			nr++;
+		}
+		for (int i = 0; i < vertices.length; i++)
+			heStart[i + 1] += heStart[i];
+		halfEdges = new int[nr];
+		int [] pos = new int[vertices.length];
+		System.arraycopy(heStart, 0, pos, 0, vertices.length);
+		for (int he = 0; he < triVertex.length; he++)
+		{
+			int o = origin(he);
+			int d = destination(he);
+			if (o < 0 || d < 0)
+				continue;
+			int v = Math.min(o, d);
+			halfEdges[pos[v]] = he;
+			pos[v]++;
+		}
+	}
+
+	private int other(int he, int v)
+	{
+		int o = origin(he);
+		return o == v ? destination(he) : o;
+	}
+
+	/**
+	 * Glues manifold edges whose lowest vertex index is in
+	 * <code>[start, end)</code>, and returns non-manifold edges.
+	 */
+	private List<NonManifoldEdge> glueBuckets(int start, int end)
+	{
+		List<NonManifoldEdge> ret = new ArrayList<NonManifoldEdge>();
+		for (int v = start; v < end; v++)
+		{
+			int first = heStart[v];
+			int last = heStart[v + 1];
+			// Stable insertion sort on the other end point, buckets
+			// are very small.
+			for (int i = first + 1; i < last; i++)
+			{
+				int he = halfEdges[i];
+				int key = other(he, v);
+				int j = i;
+				for (; j > first && other(halfEdges[j - 1], v) > key; j--)
+					halfEdges[j] = halfEdges[j - 1];
+				halfEdges[j] = he;
+			}
+			for (int i = first; i < last; )
+			{
+				int v2 = other(halfEdges[i], v);
+				int j = i + 1;
+				while (j < last && other(halfEdges[j], v) == v2)
+					j++;
+				if (j - i == 2 && origin(halfEdges[i]) != origin(halfEdges[i + 1]))
+					getHalfEdge(halfEdges[i]).glue(getHalfEdge(halfEdges[i + 1]));
+				else if (j - i > 1)
+					ret.add(newNonManifoldEdge(v, v2, i, j));
+				i = j;
+			}
+		}
+		return ret;
+	}
+
+	private NonManifoldEdge newNonManifoldEdge(int v, int v2, int start, int end)
+	{
+		// Sequential algorithm processes this edge when looping over
+		// triangles incident to the first vertex of vertex list which
+		// is the origin of one of these half-edges.  Edge is processed
+		// when the first triangle containing this outgoing half-edge is
+		// found.
+		int first = -1;
+		for (int i = start; i < end && first < 0; i++)
+		{
+			if (origin(halfEdges[i]) == v)
+				first = i;
+		}
+		if (first < 0)
+		{
+			int temp = v;
+			v = v2;
+			v2 = temp;
+			first = start;
+		}
+		return new NonManifoldEdge(((long) v << 32) | (halfEdges[first] / 3), v, v2, start, end, first);
+	}
+
+	private ArrayList<Triangle> glueNonManifoldEdges(NonManifoldEdge [] edges, int start, int end)
+	{
+		ArrayList<Triangle> ret = new ArrayList<Triangle>();
+		AbstractHalfEdge [] work = new AbstractHalfEdge[3];
+		for (int i = start; i < end; i++)
+		{
+			NonManifoldEdge nm = edges[i];
+			Vertex v = vertices[nm.v];
+			Vertex v2 = vertices[nm.v2];
+			HalfEdge ot = getHalfEdge(halfEdges[nm.first]);
+			work[0] = ot;
+			work[1] = ot;
+			boolean manifold = true;
+			for (int j = nm.start; j < nm.end; j++)
+			{
+				if (j == nm.first)
+					continue;
+				HalfEdge ot2 = getHalfEdge(halfEdges[j]);
+				if (manifold && ot2.destination() == v && !ot.hasSymmetricEdge() && !ot2.hasSymmetricEdge())
+				{
+					ot.glue(ot2);
+					continue;
+				}
+				manifold = false;
+				mesh.glueNonManifoldHalfEdges(v, v2, ot, ot2, work, ret);
+			}
+		}
+		return ret;
+	}
+
+	private static class NonManifoldEdge implements Comparable<NonManifoldEdge>
+	{
+		// Processing order of sequential algorithm
+		private final long order;
+		private final int v;
+		private final int v2;
+		private final int start;
+		private final int end;
+		private final int first;
+		private NonManifoldEdge(long order, int v, int v2, int start, int end, int first)
+		{
+			this.order = order;
+			this.v = v;
+			this.v2 = v2;
+			this.start = start;
+			this.end = end;
+			this.first = first;
+		}
+		public int compareTo(NonManifoldEdge that)
+		{
+			if (order < that.order)
+				return -1;
+			else if (order > that.order)
+				return 1;
+			return 0;
+		}
+	}
+
+	// Triangles incident to a vertex, sorted by their index
+	private class IncidentTriangles extends AbstractList<Triangle>
+	{
+		private final int start;
+		private final int size;
+		private IncidentTriangles(int v)
+		{
+			start = incStart[v];
+			size = incStart[v + 1] - start;
+		}
+		@Override
+		public Triangle get(int i)
+		{
+			return triangles[incident[start + i]];
+		}
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+}
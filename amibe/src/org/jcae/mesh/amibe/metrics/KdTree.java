@@ -22,6 +22,14 @@ package org.jcae.mesh.amibe.metrics;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -126,6 +134,18 @@ import java.util.logging.Logger;
  *       calculus.  Using the real ellipsis could be tested though, it should
  *       also speed up this processing.</li>
  * </ul>
+ *
+ * <p>
+ * When many vertices are known in advance, {@link #addAll(Location[], int)}
+ * builds the tree much faster than successive calls to {@link #add}, and
+ * can use several threads.  By default, this class is not thread-safe.
+ * If {@link #setConcurrentAccess(boolean)} is called, subtrees rooted at
+ * a fixed depth are guarded by their own read-write locks: adding or
+ * removing a vertex only blocks queries which visit the subtree containing
+ * this vertex, other queries run at the same time.  The whole tree is
+ * locked only when cells above this depth are modified, which seldom
+ * happens once the tree contains enough vertices.
+ * </p>
  */
 public class KdTree<T extends Location>
 {
@@ -184,7 +204,23 @@ public class KdTree<T extends Location>
 			return (T) subCell[i];
 		}
 	}
-	
+
+	/**
+	 * Casts an object into a cell.  Cells and vertices are both stored
+	 * into untyped {@link Cell#subCell} arrays, and <code>Cell</code> is
+	 * an inner class of a generic class, so this cast cannot be checked.
+	 * Procedures passed to {@link #walk} can call this method to get
+	 * typed cells.
+	 *
+	 * @param o  cell passed to {@link KdTreeProcedure#action}
+	 * @return this cell
+	 */
+	@SuppressWarnings("unchecked")
+	public final Cell asCell(Object o)
+	{
+		return (Cell) o;
+	}
+
 	private final int dimension;
 	private final int nrSub;
 
@@ -213,6 +249,37 @@ public class KdTree<T extends Location>
 	 */
 	public final K2DInterface k2D;
 
+	/**
+	 * Lock protecting cells above {@link #STRIPE_LEVEL} when concurrent
+	 * access is enabled.  Queries hold its read lock, modifications of
+	 * these cells hold its write lock, and other modifications hold its
+	 * read lock and the lock of their stripe.
+	 */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Locks protecting subtrees rooted at cells of depth
+	 * {@link #STRIPE_LEVEL}, indexed by {@link #stripeIndex}.  They are
+	 * created by {@link #setConcurrentAccess}.
+	 */
+	private ReentrantReadWriteLock [] stripeLocks;
+
+	/**
+	 * Lock serializing modifications when concurrent access is enabled.
+	 */
+	private final ReentrantLock modificationLock = new ReentrantLock();
+
+	/**
+	 * Tells whether locks are used.
+	 */
+	private volatile boolean concurrent;
+
+	// Depth of cells which have their own lock
+	private static final int STRIPE_LEVEL = 2;
+
+	// Minimal number of vertices in subtrees built by concurrent tasks
+	private static final int MIN_TASK_SIZE = 10000;
+
 	/**
 	 * Dummy constructor.  This instance must be properly initialised by calling
 	 * {@link #setup} before putting elements into it.
@@ -261,6 +328,157 @@ public class KdTree<T extends Location>
 		root = new Cell();
 		setup(bbox);
 	}
+
+	/**
+	 * Create a new <code>KdTree</code> of the desired size and put vertices
+	 * into it.
+	 *
+	 * @param bbox   coordinates of bottom-left vertex and upper-right vertices
+	 * @param vertices  vertices to add
+	 * @param nrThreads  number of threads
+	 * @see #addAll(Location[], int)
+	 */
+	public KdTree(double [] bbox, T [] vertices, int nrThreads)
+	{
+		this(bbox, 10);
+		addAll(vertices, nrThreads);
+	}
+
+	/**
+	 * Enables or disables concurrent access.  When enabled, queries can be
+	 * run by several threads at the same time, and modifications are
+	 * serialized.  Adding or removing a vertex only waits for queries
+	 * which visit the subtree of depth {@link #STRIPE_LEVEL} containing
+	 * this vertex, and only blocks queries which visit this subtree.  If
+	 * cells above this depth have to be modified, the whole tree is locked.
+	 * A query which runs during a modification sees this subtree either
+	 * before or after this modification.
+	 * When disabled (this is the default), no synchronization is performed.
+	 * This method must not be called while other threads access this
+	 * instance.  Procedures passed to {@link #walk} must not modify this
+	 * tree when concurrent access is enabled.
+	 *
+	 * @param concurrent  <code>true</code> to enable concurrent access
+	 */
+	public final void setConcurrentAccess(boolean concurrent)
+	{
+		if (concurrent && stripeLocks == null)
+		{
+			int n = 1;
+			for (int l = 0; l < STRIPE_LEVEL; l++)
+				n *= nrSub;
+			stripeLocks = new ReentrantReadWriteLock[n];
+			for (int i = 0; i < n; i++)
+				stripeLocks[i] = new ReentrantReadWriteLock();
+		}
+		this.concurrent = concurrent;
+	}
+
+	private void beginRead()
+	{
+		if (concurrent)
+			lock.readLock().lock();
+	}
+
+	private void endRead()
+	{
+		if (concurrent)
+			lock.readLock().unlock();
+	}
+
+	/**
+	 * Locks this tree before adding or removing a vertex.  If cells above
+	 * {@link #STRIPE_LEVEL} are not modified, only the subtree containing
+	 * this vertex is locked, otherwise the whole tree is locked.
+	 *
+	 * @param v  vertex being added or removed
+	 * @param removal  <code>true</code> if this vertex is removed
+	 * @return index of the locked stripe, or <code>-1</code> if the
+	 *   whole tree is locked
+	 */
+	private int beginWrite(T v, boolean removal)
+	{
+		modificationLock.lock();
+		int [] ij = new int[dimension];
+		double2int(v.getUV(), ij);
+		// Other modifications are blocked, cells can be read without
+		// locking them.  Cells above STRIPE_LEVEL are only modified if
+		// the cell at this level on the path of v is missing, or if it
+		// is removed with v.
+		Cell current = root;
+		int s = gridSize;
+		for (int l = 0; l < STRIPE_LEVEL && null != current; l++)
+		{
+			if (current.nItems >= 0)
+			{
+				current = null;
+				break;
+			}
+			s >>= 1;
+			current = asCell(current.subCell[indexSubCell(ij, s)]);
+		}
+		if (null != current && (!removal || current.count() > 1))
+		{
+			// Counters of cells above STRIPE_LEVEL are modified while
+			// queries are running, but they remain negative and queries
+			// only check their sign.
+			lock.readLock().lock();
+			int stripe = stripeIndex(ij);
+			stripeLocks[stripe].writeLock().lock();
+			return stripe;
+		}
+		lock.writeLock().lock();
+		return -1;
+	}
+
+	private void endWrite(int stripe)
+	{
+		if (stripe >= 0)
+		{
+			stripeLocks[stripe].writeLock().unlock();
+			lock.readLock().unlock();
+		}
+		else
+			lock.writeLock().unlock();
+		modificationLock.unlock();
+	}
+
+	/**
+	 * Returns the index of the stripe containing given integer
+	 * coordinates.  Child indices of cells on the path from root down to
+	 * {@link #STRIPE_LEVEL} are digits of this index in base
+	 * <code>nrSub</code>.
+	 */
+	private int stripeIndex(int [] ijk)
+	{
+		int ret = 0;
+		int s = gridSize;
+		for (int l = 0; l < STRIPE_LEVEL; l++)
+		{
+			s >>= 1;
+			ret = ret * nrSub + indexSubCell(ijk, s);
+		}
+		return ret;
+	}
+
+	/**
+	 * Read-locks another stripe during a query.
+	 *
+	 * @param locked  index of the stripe currently locked, or <code>-1</code>
+	 * @param stripe  index of the stripe to lock, or <code>-1</code>
+	 * @return <code>stripe</code>
+	 */
+	private int switchStripe(int locked, int stripe)
+	{
+		if (locked != stripe)
+		{
+			if (locked >= 0)
+				stripeLocks[locked].readLock().unlock();
+			if (stripe >= 0)
+				stripeLocks[stripe].readLock().lock();
+		}
+		return stripe;
+	}
 	
 	/**
 	 * Computes {@link #x0} adapted to this bounding box.
@@ -358,13 +576,18 @@ public class KdTree<T extends Location>
 	 * @return the index of the child node containing this vertex.
 	 */
 	private int indexSubCell(int [] ijk, int size)
+	{
+		return indexSubCell(ijk, 0, size);
+	}
+
+	private int indexSubCell(int [] ijk, int offset, int size)
 	{
 		int ret = 0;
 		if (size == 0)
 			throw new RuntimeException("Exceeded maximal number of levels for kd-trees... Aborting");
 		for (int k = 0; k < dimension; k++)
 		{
-			if ((ijk[k] & size) != 0)
+			if ((ijk[offset+k] & size) != 0)
 				ret |= 1 << k;
 		}
 		return ret;
@@ -380,6 +603,21 @@ public class KdTree<T extends Location>
 	{
 		if (nCells == 0)
 			throw new RuntimeException("KdTree.setup() must be called before KdTree.add()");
+		if (!concurrent)
+			return addVertex(v);
+		int stripe = beginWrite(v, false);
+		try
+		{
+			return addVertex(v);
+		}
+		finally
+		{
+			endWrite(stripe);
+		}
+	}
+
+	private boolean addVertex(T v)
+	{
 		boolean ret = false;
 		Cell current = root;
 		int s = gridSize;
@@ -400,7 +638,7 @@ public class KdTree<T extends Location>
 				current.subCell[ind] = new Cell();
 				nCells++;
 			}
-			current = (Cell) current.subCell[ind];
+			current = asCell(current.subCell[ind]);
 		}
 		
 		//  If current box is full, split it into subcells
@@ -416,7 +654,7 @@ public class KdTree<T extends Location>
 				T p = current.getVertex(i);
 				double2int(p.getUV(), oldij);
 				int ind = indexSubCell(oldij, s);
-				Cell target = (Cell) newSubQuads[ind];
+				Cell target = asCell(newSubQuads[ind]);
 				if (null == target)
 				{
 					target = new Cell();
@@ -436,7 +674,7 @@ public class KdTree<T extends Location>
 				current.subCell[ind] = new Cell();
 				nCells++;
 			}
-			current = (Cell) current.subCell[ind];
+			current = asCell(current.subCell[ind]);
 		}
 		//  Eventually insert the new point
 		if (current.nItems == 0)
@@ -445,6 +683,230 @@ public class KdTree<T extends Location>
 		current.nItems++;
 		return ret;
 	}
+
+	/**
+	 * Add vertices to the kd-tree.  If tree is empty, it is built top-down:
+	 * vertices are sorted into children cells by a stable counting sort on
+	 * integer coordinates, and subtrees are built by concurrent tasks.
+	 * Resulting tree is the same as if vertices had been added one by one
+	 * by {@link #add}.  If tree is not empty, vertices are added one by one.
+	 *
+	 * @param vertices  vertices to add
+	 * @param nrThreads  number of threads
+	 */
+	public final void addAll(final T [] vertices, int nrThreads)
+	{
+		if (nCells == 0)
+			throw new RuntimeException("KdTree.setup() must be called before KdTree.addAll()");
+		boolean locked = concurrent;
+		if (locked)
+		{
+			modificationLock.lock();
+			lock.writeLock().lock();
+		}
+		try
+		{
+			if (root.nItems != 0)
+			{
+				for (T v : vertices)
+					addVertex(v);
+				return;
+			}
+			if (vertices.length == 0)
+				return;
+			bulkLoad(vertices, nrThreads);
+		}
+		finally
+		{
+			if (locked)
+				endWrite(-1);
+		}
+	}
+
+	private void bulkLoad(final T [] vertices, int nrThreads)
+	{
+		final int n = vertices.length;
+		final int [] coords = new int[dimension * n];
+		final int [] perm = new int[n];
+		final int [] work = new int[n];
+		ExecutorService pool = null;
+		if (nrThreads > 1 && n > MIN_TASK_SIZE)
+			pool = Executors.newFixedThreadPool(nrThreads);
+		try
+		{
+			List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+			int nrChunks = (pool == null ? 1 : 4 * nrThreads);
+			for (int c = 0; c < nrChunks; c++)
+			{
+				final int start = (int) ((long) c * n / nrChunks);
+				final int end = (int) ((long) (c + 1) * n / nrChunks);
+				tasks.add(new Callable<Integer>()
+				{
+					public Integer call()
+					{
+						int [] ijk = new int[dimension];
+						for (int i = start; i < end; i++)
+						{
+							double2int(vertices[i].getUV(), ijk);
+							System.arraycopy(ijk, 0, coords, dimension * i, dimension);
+							perm[i] = i;
+						}
+						return 0;
+					}
+				});
+			}
+			invokeAll(pool, tasks);
+
+			// Top of the tree is built by current thread, subtrees
+			// are deferred and built by concurrent tasks.
+			List<Subtree> deferred = null;
+			if (pool != null)
+				deferred = new ArrayList<Subtree>();
+			int threshold = Math.max(MIN_TASK_SIZE, n / (8 * nrThreads));
+			nCells += buildSubtree(root, gridSize, vertices, coords, perm, work, 0, n, threshold, deferred);
+			if (deferred == null || deferred.isEmpty())
+				return;
+			tasks.clear();
+			for (final Subtree sub : deferred)
+			{
+				tasks.add(new Callable<Integer>()
+				{
+					public Integer call()
+					{
+						return buildSubtree(sub.cell, sub.size, vertices, coords, perm, work, sub.start, sub.end, 0, null);
+					}
+				});
+			}
+			for (int cells : invokeAll(pool, tasks))
+				nCells += cells;
+		}
+		finally
+		{
+			if (pool != null)
+				pool.shutdown();
+		}
+	}
+
+	private static List<Integer> invokeAll(ExecutorService pool, List<Callable<Integer>> tasks)
+	{
+		List<Integer> ret = new ArrayList<Integer>(tasks.size());
+		try
+		{
+			if (pool == null)
+			{
+				for (Callable<Integer> c : tasks)
+					ret.add(c.call());
+			}
+			else
+			{
+				for (Future<Integer> f : pool.invokeAll(tasks))
+					ret.add(f.get());
+			}
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		}
+		catch (ExecutionException ex)
+		{
+			throw new RuntimeException(ex.getCause());
+		}
+		catch (RuntimeException ex)
+		{
+			throw ex;
+		}
+		catch (Exception ex)
+		{
+			throw new RuntimeException(ex);
+		}
+		return ret;
+	}
+
+	/**
+	 * Subtree whose construction is deferred.
+	 */
+	private final class Subtree
+	{
+		private final Cell cell;
+		private final int size;
+		private final int start;
+		private final int end;
+		private Subtree(Cell cell, int size, int start, int end)
+		{
+			this.cell = cell;
+			this.size = size;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * Stores vertices <code>perm[start]</code>, ...,
+	 * <code>perm[end-1]</code> into <code>current</code> cell.
+	 *
+	 * @param current  cell, it must be empty
+	 * @param s  cell size
+	 * @param vertices  all vertices
+	 * @param coords  integer coordinates of all vertices
+	 * @param perm  indices of vertices, this array is modified
+	 * @param work  work array
+	 * @param start  first index in <code>perm</code>
+	 * @param end  last index (exclusive) in <code>perm</code>
+	 * @param threshold  subtrees with less vertices are added to
+	 *   <code>deferred</code> list instead of being built
+	 * @param deferred  list of deferred subtrees, or <code>null</code>
+	 * @return number of cells created
+	 */
+	private int buildSubtree(Cell current, int s, T [] vertices, int [] coords,
+		int [] perm, int [] work, int start, int end, int threshold, List<Subtree> deferred)
+	{
+		int count = end - start;
+		if (count <= BUCKETSIZE)
+		{
+			current.subCell = new Object[BUCKETSIZE];
+			for (int i = 0; i < count; i++)
+				current.subCell[i] = vertices[perm[start + i]];
+			current.nItems = count;
+			return 0;
+		}
+		if (deferred != null && count < threshold)
+		{
+			deferred.add(new Subtree(current, s, start, end));
+			return 0;
+		}
+		s >>= 1;
+		// Stable counting sort on child index
+		int [] offset = new int[nrSub + 1];
+		for (int i = start; i < end; i++)
+			offset[indexSubCell(coords, dimension * perm[i], s) + 1]++;
+		for (int i = 0; i < nrSub; i++)
+			offset[i + 1] += offset[i];
+		int [] pos = new int[nrSub];
+		System.arraycopy(offset, 0, pos, 0, nrSub);
+		for (int i = start; i < end; i++)
+		{
+			int ind = indexSubCell(coords, dimension * perm[i], s);
+			work[start + pos[ind]] = perm[i];
+			pos[ind]++;
+		}
+		System.arraycopy(work, start, perm, start, count);
+
+		int ret = 0;
+		current.subCell = new Object[nrSub];
+		current.nItems = - count;
+		for (int i = 0; i < nrSub; i++)
+		{
+			if (offset[i] == offset[i + 1])
+				continue;
+			Cell child = new Cell();
+			current.subCell[i] = child;
+			ret++;
+			ret += buildSubtree(child, s, vertices, coords, perm, work,
+				start + offset[i], start + offset[i + 1], threshold, deferred);
+		}
+		return ret;
+	}
 	
 	/**
 	 * Remove a vertex from the kd-tree.
@@ -455,6 +917,24 @@ public class KdTree<T extends Location>
 	{
 		if (nCells == 0)
 			throw new RuntimeException("KdTree.setup() must be called before KdTree.remove()");
+		if (!concurrent)
+		{
+			removeVertex(v);
+			return;
+		}
+		int stripe = beginWrite(v, true);
+		try
+		{
+			removeVertex(v);
+		}
+		finally
+		{
+			endWrite(stripe);
+		}
+	}
+
+	private void removeVertex(T v)
+	{
 		Cell current = root;
 		Cell last = root;
 		Cell next;
@@ -471,7 +951,7 @@ public class KdTree<T extends Location>
 			s >>= 1;
 			assert s > 0;
 			int ind = indexSubCell(ij, s);
-			next = (Cell) current.subCell[ind];
+			next = asCell(current.subCell[ind]);
 			if (null == next)
 				throw new RuntimeException("Vertex "+v+" is not present and can not be deleted");
 			last = current;
@@ -506,7 +986,7 @@ public class KdTree<T extends Location>
 		}
 		public int action(Object o, int s, final int [] i0)
 		{
-			Cell self = (Cell) o;
+			Cell self = asCell(o);
 			if (self.nItems > 0)
 			{
 				for (int i = 0; i < self.nItems; i++)
@@ -525,7 +1005,15 @@ public class KdTree<T extends Location>
 	public final Collection<T> getAllVertices(int capacity)
 	{
 		GetAllVerticesProcedure gproc = new GetAllVerticesProcedure(capacity);
-		walk(gproc);
+		beginRead();
+		try
+		{
+			walkCells(gproc);
+		}
+		finally
+		{
+			endRead();
+		}
 		return gproc.nodelist;
 	}
 	
@@ -543,72 +1031,103 @@ public class KdTree<T extends Location>
 	 */
 	public final boolean walk(KdTreeProcedure proc)
 	{
-		int s = gridSize;
-		int l = 0;
-		int [] i0 = new int[dimension];
-		int [] posStack = new int[MAXLEVEL];
-		posStack[l] = 0;
-		Object [] cellStack = new Object[MAXLEVEL];
-		cellStack[l] = root;
-		while (true)
-		{
-			int res = proc.action(cellStack[l], s, i0);
-			if (res == KdTreeProcedure.ABORT)
-				return false;
-			Cell current = (Cell) cellStack[l];
-			if (current.nItems < 0 && res == KdTreeProcedure.OK)
+		beginRead();
+		try
+		{
+			return walkCells(proc);
+		}
+		finally
+		{
+			endRead();
+		}
+	}
+
+	private boolean walkCells(KdTreeProcedure proc)
+	{
+		return walkCells(proc, new int[dimension], new int[MAXLEVEL], new Object[MAXLEVEL]);
+	}
+
+	private boolean walkCells(KdTreeProcedure proc, int [] i0, int [] posStack, Object [] cellStack)
+	{
+		boolean locking = concurrent;
+		// Subtrees are visited one after another, so at most one stripe
+		// is locked at a time
+		int stripe = -1;
+		try
+		{
+			int s = gridSize;
+			int l = 0;
+			for (int k = 0; k < dimension; k++)
+				i0[k] = 0;
+			posStack[l] = 0;
+			cellStack[l] = root;
+			while (true)
 			{
-				s >>= 1;
-				assert s > 0;
-				l++;
-				assert l <= MAXLEVEL;
-				for (int i = 0; i < nrSub; i++)
+				if (locking && l <= STRIPE_LEVEL)
+					stripe = switchStripe(stripe, l == STRIPE_LEVEL ? stripeIndex(i0) : -1);
+				int res = proc.action(cellStack[l], s, i0);
+				if (res == KdTreeProcedure.ABORT)
+					return false;
+				Cell current = asCell(cellStack[l]);
+				if (current.nItems < 0 && res == KdTreeProcedure.OK)
 				{
-					Object target = current.subCell[i];
-					if (null != target)
+					s >>= 1;
+					assert s > 0;
+					l++;
+					assert l <= MAXLEVEL;
+					for (int i = 0; i < nrSub; i++)
 					{
-						cellStack[l] = target;
-						posStack[l] = i;
-						break;
+						Object target = current.subCell[i];
+						if (null != target)
+						{
+							cellStack[l] = target;
+							posStack[l] = i;
+							break;
+						}
 					}
+					for (int k = 0; k < dimension; k++)
+						if ((posStack[l] & (1 << k)) != 0)
+							i0[k] += s;
 				}
-				for (int k = 0; k < dimension; k++)
-					if ((posStack[l] & (1 << k)) != 0)
-						i0[k] += s;
-			}
-			else
-			{
-				while (l > 0)
+				else
 				{
-					posStack[l]++;
-					if (posStack[l] == nrSub)
-					{
-						for (int k = 0; k < dimension; k++)
-							i0[k] -= s;
-						s <<= 1;
-						l--;
-					}
-					else
+					while (l > 0)
 					{
-						for (int k = 0; k < dimension; k++)
+						posStack[l]++;
+						if (posStack[l] == nrSub)
 						{
-							if ((posStack[l] & (1 << k)) != 0)
+							for (int k = 0; k < dimension; k++)
+								i0[k] -= s;
+							s <<= 1;
+							l--;
+						}
+						else
+						{
+							for (int k = 0; k < dimension; k++)
 							{
-								i0[k] += s;
-								break;
+								if ((posStack[l] & (1 << k)) != 0)
+								{
+									i0[k] += s;
+									break;
+								}
+								i0[k] -= s;
 							}
-							i0[k] -= s;
+							if (null != asCell(cellStack[l-1]).subCell[posStack[l]])
+								break;
 						}
-						if (null != ((Cell) cellStack[l-1]).subCell[posStack[l]])
-							break;
 					}
+					if (l == 0)
+						break;
+					cellStack[l] = asCell(cellStack[l-1]).subCell[posStack[l]];
 				}
-				if (l == 0)
-					break;
-				cellStack[l] = ((Cell) cellStack[l-1]).subCell[posStack[l]];
 			}
+			return true;
+		}
+		finally
+		{
+			if (locking)
+				switchStripe(stripe, -1);
 		}
-		return true;
 	}
 
 	// Called in log messages
@@ -633,6 +1152,19 @@ public class KdTree<T extends Location>
 	 * @return a near vertex.
 	 */
 	public final T getNearVertex(Metric metric, double[] uv)
+	{
+		beginRead();
+		try
+		{
+			return getNearVertexInCells(metric, uv);
+		}
+		finally
+		{
+			endRead();
+		}
+	}
+
+	private T getNearVertexInCells(Metric metric, double[] uv)
 	{
 		if (root.nItems == 0)
 			return null;
@@ -644,36 +1176,58 @@ public class KdTree<T extends Location>
 		int searchedCells = 0;
 		if (logger.isLoggable(Level.FINE))
 			logger.fine("Near point: "+coordinatesToString(uv));
-		while (null != current && current.nItems < 0)
+		boolean locking = concurrent;
+		int stripe = -1;
+		try
 		{
-			last = current;
-			s >>= 1;
-			assert s > 0;
-			searchedCells++;
-			current = (Cell) current.subCell[indexSubCell(ijk, s)];
-		}
-		if (null == current)
-			return getNearVertexInSubCells(last, metric, uv, searchedCells);
-		
-		T vQ = current.getVertex(0);
-		T ret = vQ;
-		double retdist = metric.distance2(uv, vQ.getUV());
-		for (int i = 1; i < current.nItems; i++)
-		{
-			vQ = current.getVertex(i);
-			double d = metric.distance2(uv, vQ.getUV());
-			if (d < retdist)
+			int depth = 0;
+			while (true)
 			{
-				retdist = d;
-				ret = vQ;
+				if (locking && depth == STRIPE_LEVEL)
+					stripe = switchStripe(stripe, stripeIndex(ijk));
+				if (current.nItems >= 0)
+					break;
+				last = current;
+				s >>= 1;
+				assert s > 0;
+				searchedCells++;
+				current = asCell(current.subCell[indexSubCell(ijk, s)]);
+				if (null == current)
+				{
+					// Siblings of this cell are searched, other
+					// stripes may have to be locked
+					if (depth < STRIPE_LEVEL)
+						stripe = switchStripe(stripe, -1);
+					return getNearVertexInSubCells(last, depth, locking && depth < STRIPE_LEVEL, metric, uv, searchedCells);
+				}
+				depth++;
 			}
+
+			T vQ = current.getVertex(0);
+			T ret = vQ;
+			double retdist = metric.distance2(uv, vQ.getUV());
+			for (int i = 1; i < current.nItems; i++)
+			{
+				vQ = current.getVertex(i);
+				double d = metric.distance2(uv, vQ.getUV());
+				if (d < retdist)
+				{
+					retdist = d;
+					ret = vQ;
+				}
+			}
+			if (logger.isLoggable(Level.FINE))
+				logger.fine("  search in "+searchedCells+"/"+nCells+" cells");
+			return ret;
+		}
+		finally
+		{
+			if (locking)
+				switchStripe(stripe, -1);
 		}
-		if (logger.isLoggable(Level.FINE))
-			logger.fine("  search in "+searchedCells+"/"+nCells+" cells");
-		return ret;
 	}
 	
-	private T getNearVertexInSubCells(Cell current, Metric metric, double [] uv, int searchedCells)
+	private T getNearVertexInSubCells(Cell current, int depth, boolean locking, Metric metric, double [] uv, int searchedCells)
 	{
 		T ret = null;
 		int [] ijk = new int[dimension];
@@ -684,56 +1238,84 @@ public class KdTree<T extends Location>
 		posStack[l] = 0;
 		Object [] cellStack = new Object[MAXLEVEL];
 		cellStack[l] = current;
-		while (true)
+		// Stripe indices are computed from child indices on the path
+		// from root, see stripeIndex
+		int path = 0;
+		if (locking)
 		{
-			searchedCells++;
-			Cell s = (Cell) cellStack[l];
-			if (s.nItems < 0)
+			for (int i = 0, size = gridSize >> 1; i < depth; i++, size >>= 1)
+				path = path * nrSub + indexSubCell(ijk, size);
+		}
+		int stripe = -1;
+		try
+		{
+			while (true)
 			{
-				l++;
-				assert l <= MAXLEVEL;
-				for (int i = 0; i < 8; i++)
+				if (locking && depth + l <= STRIPE_LEVEL)
 				{
-					if (null != s.subCell[i])
+					int index = -1;
+					if (depth + l == STRIPE_LEVEL)
 					{
-						cellStack[l] = s.subCell[i];
-						posStack[l] = i;
-						break;
+						index = path;
+						for (int i = 1; i <= l; i++)
+							index = index * nrSub + posStack[i];
 					}
+					stripe = switchStripe(stripe, index);
 				}
-			}
-			else
-			{
-				for (int i = 0; i < s.nItems; i++)
+				searchedCells++;
+				Cell s = asCell(cellStack[l]);
+				if (s.nItems < 0)
 				{
-					T vQ = s.getVertex(i);
-					double d = metric.distance2(uv, vQ.getUV());
-					if (d < dist || dist < 0.0)
+					l++;
+					assert l <= MAXLEVEL;
+					for (int i = 0; i < 8; i++)
 					{
-						dist = d;
-						ret = vQ;
+						if (null != s.subCell[i])
+						{
+							cellStack[l] = s.subCell[i];
+							posStack[l] = i;
+							break;
+						}
 					}
 				}
-				if (null != ret)
-				{
-					if (logger.isLoggable(Level.FINE))
-						logger.fine("  search in "+searchedCells+"/"+nCells+" cells");
-					return ret;
-				}
-				//  Search in siblings
-				while (l > 0)
+				else
 				{
-					posStack[l]++;
-					if (posStack[l] == 8)
-						l--;
-					else if (null != ((Cell) cellStack[l-1]).subCell[posStack[l]])
+					for (int i = 0; i < s.nItems; i++)
+					{
+						T vQ = s.getVertex(i);
+						double d = metric.distance2(uv, vQ.getUV());
+						if (d < dist || dist < 0.0)
+						{
+							dist = d;
+							ret = vQ;
+						}
+					}
+					if (null != ret)
+					{
+						if (logger.isLoggable(Level.FINE))
+							logger.fine("  search in "+searchedCells+"/"+nCells+" cells");
+						return ret;
+					}
+					//  Search in siblings
+					while (l > 0)
+					{
+						posStack[l]++;
+						if (posStack[l] == 8)
+							l--;
+						else if (null != asCell(cellStack[l-1]).subCell[posStack[l]])
+							break;
+					}
+					if (l == 0)
 						break;
+					cellStack[l] = asCell(cellStack[l-1]).subCell[posStack[l]];
 				}
-				if (l == 0)
-					break;
-				cellStack[l] = ((Cell) cellStack[l-1]).subCell[posStack[l]];
 			}
 		}
+		finally
+		{
+			if (locking)
+				switchStripe(stripe, -1);
+		}
 		throw new RuntimeException("Near vertex not found");
 	}
 	
@@ -768,7 +1350,7 @@ public class KdTree<T extends Location>
 			for (int k = 0; k < dimension; k++)
 				if ((ijk[k] < i0[k] - idist[k]) || (ijk[k] > i0[k] + s + idist[k]))
 					return KdTreeProcedure.SKIPCHILD;
-			Cell self = (Cell) o;
+			Cell self = asCell(o);
 			searchedCells++;
 			if (self.nItems > 0)
 			{
@@ -805,15 +1387,28 @@ public class KdTree<T extends Location>
 	 * @return the nearest vertex.
 	 */
 	public final T getNearestVertex(Metric metric, double[] uv)
+	{
+		beginRead();
+		try
+		{
+			return getNearestVertexInCells(metric, uv);
+		}
+		finally
+		{
+			endRead();
+		}
+	}
+
+	private T getNearestVertexInCells(Metric metric, double[] uv)
 	{
 		if (root.nItems == 0)
 			return null;
-		T near = getNearVertex(metric, uv);
+		T near = getNearVertexInCells(metric, uv);
 		if (logger.isLoggable(Level.FINE))
 			logger.fine("Nearest point of "+coordinatesToString(uv));
 		
 		GetNearestVertexProcedure gproc = new GetNearestVertexProcedure(metric, uv, near);
-		walk(gproc);
+		walkCells(gproc);
 		T ret = gproc.nearestVertex;
 		if (logger.isLoggable(Level.FINE))
 		{
@@ -841,7 +1436,7 @@ public class KdTree<T extends Location>
 		}
 		public int action(Object o, int s, final int [] i0)
 		{
-			Cell self = (Cell) o;
+			Cell self = asCell(o);
 			searchedCells++;
 			if (self.nItems > 0)
 			{
@@ -868,16 +1463,29 @@ public class KdTree<T extends Location>
 	 * @return the nearest vertex.
 	 */
 	public final T getNearestVertexDebug(Metric metric, double[] uv)
+	{
+		beginRead();
+		try
+		{
+			return getNearestVertexDebugInCells(metric, uv);
+		}
+		finally
+		{
+			endRead();
+		}
+	}
+
+	private T getNearestVertexDebugInCells(Metric metric, double[] uv)
 	{
 		if (root.nItems == 0)
 			return null;
-		T ret = getNearVertex(metric, uv);
+		T ret = getNearVertexInCells(metric, uv);
 		assert ret != null;
 		if (logger.isLoggable(Level.FINE))
 			logger.fine("(debug) Nearest point of "+coordinatesToString(uv));
 		
 		GetNearestVertexDebugProcedure gproc = new GetNearestVertexDebugProcedure(metric, uv, ret);
-		walk(gproc);
+		walkCells(gproc);
 		ret = gproc.nearestVertex;
 		if (logger.isLoggable(Level.FINE))
 		{
@@ -887,6 +1495,287 @@ public class KdTree<T extends Location>
 		return ret;
 	}
 	
+	/**
+	 * Work area for queries which do not allocate memory, see
+	 * {@link #getNearestVertices} and {@link #getVerticesInRadius}.
+	 * Such buffers are created by {@link #createSearchBuffer}, and can
+	 * only be used with the tree which created them.  A buffer must not
+	 * be shared between threads, but each thread can have its own buffer.
+	 */
+	public final class SearchBuffer implements KdTreeProcedure
+	{
+		private final int [] i0 = new int[dimension];
+		private final int [] posStack = new int[MAXLEVEL];
+		private final Object [] cellStack = new Object[MAXLEVEL];
+		private final int [] ijk = new int[dimension];
+		private final int [] idist = new int[dimension];
+		private final double [] i2d = new double[dimension];
+		private final Object [] nearest = new Object[1];
+		private final double [] nearestDist2 = new double[1];
+		// Current query
+		private Metric metric;
+		private double [] fromPosition;
+		private Object [] result;
+		private double [] dist2;
+		private boolean sorted;
+		private double maxDist2;
+		private int count;
+		private Cell skip;
+
+		private SearchBuffer()
+		{
+		}
+
+		private KdTree<T> getTree()
+		{
+			return KdTree.this;
+		}
+
+		private void init(Metric m, double [] uv, Object [] res, double [] d2, boolean knn, double radius2)
+		{
+			metric = m;
+			fromPosition = uv;
+			result = res;
+			dist2 = d2;
+			sorted = knn;
+			maxDist2 = radius2;
+			count = 0;
+			skip = null;
+			double2int(uv, ijk);
+			double [] r = metric.getUnitBallBBox();
+			for (int k = 0; k < dimension; k++)
+				i2d[k] = 1.005 * x0[dimension] * r[k];
+			updateDistance();
+		}
+
+		private void clear()
+		{
+			metric = null;
+			fromPosition = null;
+			result = null;
+			dist2 = null;
+			skip = null;
+		}
+
+		private void updateDistance()
+		{
+			for (int k = 0; k < dimension; k++)
+			{
+				if (maxDist2 == Double.MAX_VALUE)
+					idist[k] = Integer.MAX_VALUE/2;
+				else
+				{
+					idist[k] = (int) (Math.sqrt(maxDist2) * i2d[k]);
+					if (idist[k] > Integer.MAX_VALUE/2)
+						idist[k] = Integer.MAX_VALUE/2;
+				}
+			}
+		}
+
+		private void search()
+		{
+			if (sorted)
+			{
+				// Start with the leaf containing this point, or a leaf
+				// near from this point like in getNearVertex, this gives
+				// a good upper bound of distances.
+				boolean locking = concurrent;
+				int stripe = -1;
+				try
+				{
+					Cell current = root;
+					int s = gridSize;
+					int depth = 0;
+					int path = 0;
+					boolean follow = true;
+					while (true)
+					{
+						if (locking && depth == STRIPE_LEVEL)
+							stripe = switchStripe(stripe, path);
+						if (current.nItems >= 0)
+							break;
+						s >>= 1;
+						int ind = -1;
+						if (follow)
+						{
+							ind = indexSubCell(ijk, s);
+							if (null == current.subCell[ind])
+								follow = false;
+						}
+						if (!follow)
+						{
+							for (ind = 0; ind < nrSub; ind++)
+								if (null != current.subCell[ind])
+									break;
+						}
+						depth++;
+						if (depth <= STRIPE_LEVEL)
+							path = path * nrSub + ind;
+						current = asCell(current.subCell[ind]);
+					}
+					addVertices(current);
+					skip = current;
+				}
+				finally
+				{
+					if (locking)
+						switchStripe(stripe, -1);
+				}
+			}
+			walkCells(this, i0, posStack, cellStack);
+		}
+
+		public int action(Object o, int s, final int [] i0)
+		{
+			if (o == skip)
+				return KdTreeProcedure.SKIPCHILD;
+			for (int k = 0; k < dimension; k++)
+				if ((ijk[k] < i0[k] - idist[k]) || (ijk[k] > i0[k] + s + idist[k]))
+					return KdTreeProcedure.SKIPCHILD;
+			Cell self = asCell(o);
+			if (self.nItems > 0)
+				addVertices(self);
+			return KdTreeProcedure.OK;
+		}
+
+		private void addVertices(Cell self)
+		{
+			for (int i = 0; i < self.nItems; i++)
+			{
+				Object v = self.subCell[i];
+				double d = metric.distance2(fromPosition, ((Location) v).getUV());
+				if (sorted)
+					insertSorted(v, d);
+				else if (d <= maxDist2)
+				{
+					if (count < result.length)
+					{
+						result[count] = v;
+						dist2[count] = d;
+					}
+					count++;
+				}
+			}
+		}
+
+		private void insertSorted(Object v, double d)
+		{
+			int n = result.length;
+			if (count == n && d >= dist2[n - 1])
+				return;
+			int i = (count < n ? count : n - 1);
+			for (; i > 0 && dist2[i - 1] > d; i--)
+			{
+				result[i] = result[i - 1];
+				dist2[i] = dist2[i - 1];
+			}
+			result[i] = v;
+			dist2[i] = d;
+			if (count < n)
+				count++;
+			if (count == n)
+			{
+				maxDist2 = dist2[n - 1];
+				updateDistance();
+			}
+		}
+	}
+
+	/**
+	 * Creates a buffer for queries which do not allocate memory.
+	 *
+	 * @return a new buffer
+	 */
+	public final SearchBuffer createSearchBuffer()
+	{
+		return new SearchBuffer();
+	}
+
+	/**
+	 * Finds the <code>k</code> nearest vertices of a point, where
+	 * <code>k</code> is the length of <code>result</code> array.  Vertices
+	 * are sorted by increasing distance.  Memory is not allocated during
+	 * this query.
+	 *
+	 * @param metric  metric used to compute distances
+	 * @param uv  coordinates
+	 * @param result  array filled with nearest vertices
+	 * @param dist2  array filled with square distances of these vertices,
+	 *   its length must be at least the length of <code>result</code>
+	 * @param buffer  work area created by {@link #createSearchBuffer}
+	 * @return the number of vertices found, which is lower than the length of
+	 *   <code>result</code> only if tree does not contain enough vertices
+	 */
+	public final int getNearestVertices(Metric metric, double[] uv, T [] result, double [] dist2, SearchBuffer buffer)
+	{
+		if (result.length == 0)
+			return 0;
+		return search(metric, uv, result, dist2, true, Double.MAX_VALUE, buffer);
+	}
+
+	/**
+	 * Return the nearest vertex stored in this <code>KdTree</code>.  This
+	 * method is similar to {@link #getNearestVertex(Metric, double[])}
+	 * but does not allocate memory.
+	 *
+	 * @param metric  metric used to compute distances
+	 * @param uv  coordinates
+	 * @param buffer  work area created by {@link #createSearchBuffer}
+	 * @return the nearest vertex, or <code>null</code> if tree is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public final T getNearestVertex(Metric metric, double[] uv, SearchBuffer buffer)
+	{
+		int nr = search(metric, uv, buffer.nearest, buffer.nearestDist2, true, Double.MAX_VALUE, buffer);
+		T ret = (nr == 0 ? null : (T) buffer.nearest[0]);
+		buffer.nearest[0] = null;
+		return ret;
+	}
+
+	/**
+	 * Finds vertices at a distance lower than or equal to a given radius.
+	 * Vertices are stored in no particular order.  If <code>result</code>
+	 * array is too small, only the first vertices found are stored, and
+	 * the query can be run again with larger arrays.  Memory is not
+	 * allocated during this query.
+	 *
+	 * @param metric  metric used to compute distances
+	 * @param uv  coordinates
+	 * @param radius2  square radius
+	 * @param result  array filled with vertices
+	 * @param dist2  array filled with square distances of these vertices,
+	 *   its length must be at least the length of <code>result</code>
+	 * @param buffer  work area created by {@link #createSearchBuffer}
+	 * @return the number of vertices found, which may be larger than the
+	 *   length of <code>result</code>
+	 */
+	public final int getVerticesInRadius(Metric metric, double[] uv, double radius2, T [] result, double [] dist2, SearchBuffer buffer)
+	{
+		return search(metric, uv, result, dist2, false, radius2, buffer);
+	}
+
+	private int search(Metric metric, double[] uv, Object [] result, double [] dist2, boolean knn, double radius2, SearchBuffer buffer)
+	{
+		if (buffer.getTree() != this)
+			throw new IllegalArgumentException("SearchBuffer has been created by another KdTree");
+		if (dist2.length < result.length)
+			throw new IllegalArgumentException("Distance array is too small");
+		beginRead();
+		try
+		{
+			if (root.nItems == 0)
+				return 0;
+			buffer.init(metric, uv, result, dist2, knn, radius2);
+			buffer.search();
+			return buffer.count;
+		}
+		finally
+		{
+			buffer.clear();
+			endRead();
+		}
+	}
+
 	private static final class GetMinSizeProcedure implements KdTreeProcedure
 	{
 		private int searchedCells;
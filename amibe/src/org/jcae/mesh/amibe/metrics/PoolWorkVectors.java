@@ -20,6 +20,8 @@
 
 package org.jcae.mesh.amibe.metrics;
 
+import org.jcae.mesh.cad.CADSurfaceEvaluator;
+
 /**
  * Pool of temporary vectors.
  */
@@ -33,4 +35,5 @@ public class PoolWorkVectors
 	public final double [] t9 = new double[9];
 	public final double [][] tt32 = new double[3][2];
 	public final double [][] tt22 = new double[2][2];
+	public final double [] tSurface = new double[CADSurfaceEvaluator.SIZE];
 }
@@ -31,6 +31,8 @@ import org.jcae.mesh.amibe.metrics.KdTreeProcedure;
 import org.jcae.mesh.amibe.metrics.Location;
 import org.jcae.mesh.cad.CADFace;
 import org.jcae.mesh.cad.CADGeomSurface;
+import org.jcae.mesh.cad.CADGeomSurfaceEvaluator;
+import org.jcae.mesh.cad.CADSurfaceEvaluator;
 import org.jcae.mesh.cad.CADShape;
 
 import java.util.Stack;
@@ -55,6 +57,9 @@ public class Mesh2D extends Mesh
 	//  The geometrical surface describing the topological face, stored for
 	//  efficiency reason
 	private transient final CADGeomSurface surface;
+
+	//  Stateless evaluation of the same surface, used to compute metrics
+	private transient final CADSurfaceEvaluator evaluator;
 	
 	//  Stack of methods to compute geometrical values
 	private transient final Stack<Integer> compGeomStack = new Stack<Integer>();
@@ -62,6 +67,9 @@ public class Mesh2D extends Mesh
 	//  Current top value of compGeomStack
 	private transient int compGeomCurrent;
 
+	//  Background metric field, or null if metrics are computed at each point
+	private transient MetricField2D metricField;
+
 	// 2D euclidian metric
 	private transient final EuclidianMetric2D euclidian_metric2d = new EuclidianMetric2D();
 
@@ -74,6 +82,7 @@ public class Mesh2D extends Mesh
 	private static final int level_max = 10;
 	private static final Integer [] intArray = new Integer[level_max+1];
 	private static final boolean accurateDistance;
+	private static final boolean useMetricField;
 
 	static {
 		String accurateDistanceProp = System.getProperty("org.jcae.mesh.amibe.patch.Mesh2D.accurateDistance");
@@ -83,6 +92,13 @@ public class Mesh2D extends Mesh
 			System.setProperty("org.jcae.mesh.amibe.patch.Mesh2D.accurateDistance", accurateDistanceProp);
 		}
 		accurateDistance = accurateDistanceProp.equals("true");
+		String metricFieldProp = System.getProperty("org.jcae.mesh.amibe.patch.Mesh2D.metricField");
+		if (metricFieldProp == null)
+		{
+			metricFieldProp = "false";
+			System.setProperty("org.jcae.mesh.amibe.patch.Mesh2D.metricField", metricFieldProp);
+		}
+		useMetricField = metricFieldProp.equals("true");
 		for (int i = 0; i <= level_max; i++)
 			intArray[i] = Integer.valueOf(i);
 	}
@@ -141,12 +157,15 @@ public class Mesh2D extends Mesh
 		factory = new ElementPatchFactory(traitsBuilder);
 		face = f;
 		if (face == null)
+		{
 			surface = null;
+			evaluator = null;
+		}
 		else
 		{
 			surface = ((CADFace) face).getGeomSurface();
 			surface.dinit(2);
-
+			evaluator = CADGeomSurfaceEvaluator.getEvaluator(surface);
 		}
 		init();
 	}
@@ -425,6 +444,35 @@ public class Mesh2D extends Mesh
 		quadtree.walk(gproc);
 	}
 
+	/**
+	 * Creates a background metric field on a parametric bounding box.
+	 * Metrics of points inside this box are then interpolated from this
+	 * field instead of being computed from surface derivatives, and
+	 * they are not lost when vertex metrics are cleared.  This method
+	 * does nothing unless the
+	 * <code>org.jcae.mesh.amibe.patch.Mesh2D.metricField</code> property
+	 * is set to <code>true</code>.
+	 *
+	 * @param bbmin  lower left corner of parametric bounding box
+	 * @param bbmax  upper right corner of parametric bounding box
+	 */
+	public final void resetMetricField(double [] bbmin, double [] bbmax)
+	{
+		if (useMetricField && evaluator != null)
+			metricField = new MetricField2D(evaluator, meshParameters, temp, bbmin, bbmax);
+	}
+
+	/**
+	 * Returns the background metric field.
+	 *
+	 * @return the background metric field, or <code>null</code> if there
+	 * is none
+	 */
+	public final MetricField2D getMetricField()
+	{
+		return metricField;
+	}
+
 	@Override
 	public final Metric2D getMetric(Location pt)
 	{
@@ -434,11 +482,15 @@ public class Mesh2D extends Mesh
 		{
 			if (compGeomCurrent == 2)
 				m2 = euclidian_metric2d;
+			else if (metricField != null)
+			{
+				double uv[] = pt.getUV();
+				m2 = metricField.getMetric(uv[0], uv[1]);
+			}
 			else
 			{
 				double uv[] = pt.getUV();
-				surface.setParameter(uv[0], uv[1]);
-				MetricBuilder mb = new MetricBuilder(surface, meshParameters, temp);
+				MetricBuilder mb = new MetricBuilder(evaluator, uv[0], uv[1], meshParameters, temp);
 				m2 = mb.computeMetricOnSurface();
 			}
 			v2.metric = m2;
@@ -21,7 +21,7 @@
 
 package org.jcae.mesh.amibe.patch;
 
-import org.jcae.mesh.cad.CADGeomSurface;
+import org.jcae.mesh.cad.CADSurfaceEvaluator;
 import org.jcae.mesh.amibe.metrics.Matrix3D;
 import org.jcae.mesh.amibe.metrics.Matrix2D;
 import org.jcae.mesh.amibe.metrics.PoolWorkVectors;
@@ -81,21 +81,33 @@ class MetricBuilder
 	private static final Logger LOGGER=Logger.getLogger(MetricBuilder.class.getName());
 
 	private final PoolWorkVectors temp;
-	private final CADGeomSurface surf;
+	//  Surface properties at current point, see CADSurfaceEvaluator
+	private final double [] surf;
 	private final MeshParameters mp;
 
-	MetricBuilder(CADGeomSurface surf, MeshParameters mp, PoolWorkVectors temp)
+	/**
+	 * Creates a builder at a given point.
+	 *
+	 * @param evaluator  geometrical surface
+	 * @param u  first parameter
+	 * @param v  second parameter
+	 * @param mp    mesh parameters
+	 * @param temp  temporary vectors, <code>temp.tSurface</code> is overwritten
+	 */
+	MetricBuilder(CADSurfaceEvaluator evaluator, double u, double v, MeshParameters mp, PoolWorkVectors temp)
 	{
-		this.surf = surf;
 		this.mp = mp;
 		this.temp = temp;
+		surf = temp.tSurface;
+		//  Curvatures are only needed by deflection metrics
+		int properties = CADSurfaceEvaluator.FIRST_DERIVATIVES;
+		if (mp.hasDeflection())
+			properties |= CADSurfaceEvaluator.CURVATURES;
+		evaluator.evaluate(u, v, properties, surf, 0);
 	}
 
 	/**
-	 * Creates a <code>MetricOnSurface</code> instance at a given point.
-	 *
-	 * @param surf  geometrical surface
-	 * @param mp    mesh parameters
+	 * Creates a <code>MetricOnSurface</code> instance at this point.
 	 */
 	MetricOnSurface computeMetricOnSurface()
 	{
@@ -142,8 +154,8 @@ class MetricBuilder
 
 	private Matrix3D getRelativeDeflectionMetric()
 	{
-		double cmin = Math.abs(surf.minCurvature());
-		double cmax = Math.abs(surf.maxCurvature());
+		double cmin = Math.abs(surf[CADSurfaceEvaluator.MIN_CURVATURE]);
+		double cmax = Math.abs(surf[CADSurfaceEvaluator.MAX_CURVATURE]);
 		if (Double.isNaN(cmin) || Double.isNaN(cmax))
 		{
 			LOGGER.fine("Undefined curvature");
@@ -154,21 +166,20 @@ class MetricBuilder
 			LOGGER.fine("Infinite curvature");
 			return null;
 		}
-		double [] dcurv = surf.curvatureDirections();
 		double [] dcurvmax = temp.t3_0;
 		double [] dcurvmin = temp.t3_1;
 		if (cmin < cmax)
 		{
-			System.arraycopy(dcurv, 0, dcurvmax, 0, 3);
-			System.arraycopy(dcurv, 3, dcurvmin, 0, 3);
+			System.arraycopy(surf, CADSurfaceEvaluator.MAX_DIRECTION, dcurvmax, 0, 3);
+			System.arraycopy(surf, CADSurfaceEvaluator.MIN_DIRECTION, dcurvmin, 0, 3);
 		}
 		else
 		{
 			double tmp = cmin;
 			cmin = cmax;
 			cmax = tmp;
-			System.arraycopy(dcurv, 0, dcurvmin, 0, 3);
-			System.arraycopy(dcurv, 3, dcurvmax, 0, 3);
+			System.arraycopy(surf, CADSurfaceEvaluator.MAX_DIRECTION, dcurvmin, 0, 3);
+			System.arraycopy(surf, CADSurfaceEvaluator.MIN_DIRECTION, dcurvmax, 0, 3);
 		}
 		Matrix3D.prodVect3D(dcurvmax, dcurvmin, temp.t3_2);
 		Matrix3D A = new Matrix3D(dcurvmax, dcurvmin, temp.t3_2);
@@ -199,8 +210,8 @@ class MetricBuilder
 	
 	private Matrix3D getAbsoluteDeflectionMetric()
 	{
-		double cmin = Math.abs(surf.minCurvature());
-		double cmax = Math.abs(surf.maxCurvature());
+		double cmin = Math.abs(surf[CADSurfaceEvaluator.MIN_CURVATURE]);
+		double cmax = Math.abs(surf[CADSurfaceEvaluator.MAX_CURVATURE]);
 		if (Double.isNaN(cmin) || Double.isNaN(cmax))
 		{
 			LOGGER.fine("Undefined curvature");
@@ -217,21 +228,20 @@ class MetricBuilder
 			LOGGER.fine("Curvature too large");
 			return null;
 		}
-		double [] dcurv = surf.curvatureDirections();
 		double [] dcurvmax = temp.t3_0;
 		double [] dcurvmin = temp.t3_1;
 		if (cmin < cmax)
 		{
-			System.arraycopy(dcurv, 0, dcurvmax, 0, 3);
-			System.arraycopy(dcurv, 3, dcurvmin, 0, 3);
+			System.arraycopy(surf, CADSurfaceEvaluator.MAX_DIRECTION, dcurvmax, 0, 3);
+			System.arraycopy(surf, CADSurfaceEvaluator.MIN_DIRECTION, dcurvmin, 0, 3);
 		}
 		else
 		{
 			double tmp = cmin;
 			cmin = cmax;
 			cmax = tmp;
-			System.arraycopy(dcurv, 0, dcurvmin, 0, 3);
-			System.arraycopy(dcurv, 3, dcurvmax, 0, 3);
+			System.arraycopy(surf, CADSurfaceEvaluator.MAX_DIRECTION, dcurvmin, 0, 3);
+			System.arraycopy(surf, CADSurfaceEvaluator.MIN_DIRECTION, dcurvmax, 0, 3);
 		}
 		Matrix3D.prodVect3D(dcurvmax, dcurvmin, temp.t3_2);
 		Matrix3D A = new Matrix3D(dcurvmax, dcurvmin, temp.t3_2);
@@ -264,13 +274,12 @@ class MetricBuilder
 	/**
 	 * Compute the metric induced to the tangent plane.
 	 */
-	private static Matrix2D restrict2D(Matrix3D m, CADGeomSurface surf, PoolWorkVectors temp)
+	private static Matrix2D restrict2D(Matrix3D m, double [] surf, PoolWorkVectors temp)
 	{
-		double d1U[] = surf.d1U();
-		double d1V[] = surf.d1V();
+		final int u = CADSurfaceEvaluator.D1U;
+		final int v = CADSurfaceEvaluator.D1V;
 		// Check whether there is a tangent plane
-		Matrix3D.prodVect3D(d1U, d1V, temp.t3_0);
-		if (Matrix3D.norm(temp.t3_0) <= 0.0)
+		if (Double.isNaN(surf[CADSurfaceEvaluator.NORMAL]))
 			LOGGER.fine("Unable to compute normal vector");
 
 		m.getValues(temp.t9);
@@ -279,15 +288,15 @@ class MetricBuilder
 		// temp32 = M3 * B
 		for (int i = 0; i < 3; i++)
 		{
-			temp.tt32[i][0] = temp.t9[i] * d1U[0] + temp.t9[i+3] * d1U[1] + temp.t9[i+6] * d1U[2];
-			temp.tt32[i][1] = temp.t9[i] * d1V[0] + temp.t9[i+3] * d1V[1] + temp.t9[i+6] * d1V[2];
+			temp.tt32[i][0] = temp.t9[i] * surf[u] + temp.t9[i+3] * surf[u+1] + temp.t9[i+6] * surf[u+2];
+			temp.tt32[i][1] = temp.t9[i] * surf[v] + temp.t9[i+3] * surf[v+1] + temp.t9[i+6] * surf[v+2];
 		}
 		//  ret = tB * temp32
 		return new Matrix2D(
-			d1U[0] * temp.tt32[0][0] + d1U[1] * temp.tt32[1][0] + d1U[2] * temp.tt32[2][0],
-			d1U[0] * temp.tt32[0][1] + d1U[1] * temp.tt32[1][1] + d1U[2] * temp.tt32[2][1],
-			d1V[0] * temp.tt32[0][0] + d1V[1] * temp.tt32[1][0] + d1V[2] * temp.tt32[2][0],
-			d1V[0] * temp.tt32[0][1] + d1V[1] * temp.tt32[1][1] + d1V[2] * temp.tt32[2][1]
+			surf[u] * temp.tt32[0][0] + surf[u+1] * temp.tt32[1][0] + surf[u+2] * temp.tt32[2][0],
+			surf[u] * temp.tt32[0][1] + surf[u+1] * temp.tt32[1][1] + surf[u+2] * temp.tt32[2][1],
+			surf[v] * temp.tt32[0][0] + surf[v+1] * temp.tt32[1][0] + surf[v+2] * temp.tt32[2][0],
+			surf[v] * temp.tt32[0][1] + surf[v+1] * temp.tt32[1][1] + surf[v+2] * temp.tt32[2][1]
 		);
 	}
 	
@@ -0,0 +1,314 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.patch;
+
+import org.jcae.mesh.amibe.ds.MeshParameters;
+import org.jcae.mesh.amibe.metrics.PoolWorkVectors;
+import org.jcae.mesh.cad.CADSurfaceEvaluator;
+
+import gnu.trove.TLongObjectHashMap;
+
+/**
+ * Background metric field on a parametric domain.  Computing a
+ * {@link MetricOnSurface} requires surface derivatives and curvatures,
+ * which is expensive, and the same neighbourhoods are evaluated again and
+ * again by 2D algorithms.  This class samples metrics on a quadtree
+ * covering the parametric bounding box, and interpolates them
+ * bilinearly inside its cells.
+ *
+ * <p>
+ * Cells are created lazily when queried.  A cell is accepted when it is
+ * not larger than 1/8th of the bounding box, and when metrics
+ * interpolated at its center and at the middle of its edges differ from
+ * exact metrics by less than a relative tolerance, otherwise it is split
+ * into 4 children.  The error is the largest eigenvalue of
+ * <code>inv(M) (M' - M)</code>, where <code>M</code> is the exact metric
+ * and <code>M'</code> the interpolated one, it bounds the relative error
+ * on squared edge lengths.  Samples lie on a regular grid and are shared
+ * between neighbouring cells, center and edge middles of a cell being
+ * corners of its children.  When the finest level is reached, or when
+ * queried point is outside of the bounding box, the exact metric is
+ * computed.
+ * </p>
+ *
+ * <p>
+ * The tolerance is set by the
+ * <code>org.jcae.mesh.amibe.patch.MetricField2D.tolerance</code> property,
+ * its default value is 0.1.  This class is not thread-safe, a field belongs
+ * to a single {@link Mesh2D} instance.
+ * </p>
+ */
+public final class MetricField2D
+{
+	private static final double tolerance;
+	//  Coarsest level of accepted cells, sampling errors are only checked
+	//  at few points and would otherwise be missed on large cells
+	private static final int LEVEL_MIN = 3;
+	//  Finest subdivision level
+	private static final int LEVEL_MAX = 12;
+	private static final int GRID_SIZE = 1 << LEVEL_MAX;
+
+	static {
+		String toleranceProp = System.getProperty("org.jcae.mesh.amibe.patch.MetricField2D.tolerance");
+		if (toleranceProp == null)
+		{
+			toleranceProp = "0.1";
+			System.setProperty("org.jcae.mesh.amibe.patch.MetricField2D.tolerance", toleranceProp);
+		}
+		tolerance = Double.parseDouble(toleranceProp);
+	}
+
+	private final CADSurfaceEvaluator evaluator;
+	private final MeshParameters mp;
+	private final PoolWorkVectors temp;
+	//  Lower left corner and grid spacing
+	private final double u0, v0, du, dv;
+	//  Metric coefficients (E, F, G) of grid samples
+	private final TLongObjectHashMap<double []> samples = new TLongObjectHashMap<double []>();
+	private final Cell root;
+	private final double [] efg = new double[3];
+
+	private long nrQueries;
+	private long nrInterpolations;
+	private long nrEvaluations;
+	private int nrCells;
+
+	private final class Cell
+	{
+		//  Lower left corner and size, in grid units
+		private final int i, j, size;
+		private final double [] c00, c10, c01, c11;
+		private final boolean accurate;
+		private Cell [] children;
+
+		private Cell(int i, int j, int size)
+		{
+			this.i = i;
+			this.j = j;
+			this.size = size;
+			c00 = sample(i, j);
+			c10 = sample(i + size, j);
+			c01 = sample(i, j + size);
+			c11 = sample(i + size, j + size);
+			int half = size / 2;
+			accurate = size > 1 && size <= GRID_SIZE >> LEVEL_MIN &&
+				isValid(c00) && isValid(c10) && isValid(c01) && isValid(c11) &&
+				check(i + half, j + half, c00, c10, c01, c11) &&
+				check(i + half, j, c00, c10, c00, c10) &&
+				check(i + half, j + size, c01, c11, c01, c11) &&
+				check(i, j + half, c00, c01, c00, c01) &&
+				check(i + size, j + half, c10, c11, c10, c11);
+			nrCells++;
+		}
+
+		//  Compares the sample at (si, sj) with the mean value of 4 metrics
+		private boolean check(int si, int sj, double [] m0, double [] m1, double [] m2, double [] m3)
+		{
+			double [] m = sample(si, sj);
+			if (!isValid(m))
+				return false;
+			for (int k = 0; k < 3; k++)
+				efg[k] = 0.25 * (m0[k] + m1[k] + m2[k] + m3[k]);
+			return relativeError(m, efg) < tolerance;
+		}
+
+		private Cell child(double x, double y)
+		{
+			int half = size / 2;
+			int k = 0;
+			if (x >= i + half)
+				k++;
+			if (y >= j + half)
+				k += 2;
+			if (children == null)
+				children = new Cell[4];
+			if (children[k] == null)
+				children[k] = new Cell(i + (k & 1) * half, j + (k >> 1) * half, half);
+			return children[k];
+		}
+
+		private MetricOnSurface interpolate(double x, double y)
+		{
+			double s = Math.min(1.0, Math.max(0.0, (x - i) / size));
+			double t = Math.min(1.0, Math.max(0.0, (y - j) / size));
+			double w00 = (1.0 - s) * (1.0 - t);
+			double w10 = s * (1.0 - t);
+			double w01 = (1.0 - s) * t;
+			double w11 = s * t;
+			return new MetricOnSurface(
+				w00 * c00[0] + w10 * c10[0] + w01 * c01[0] + w11 * c11[0],
+				w00 * c00[1] + w10 * c10[1] + w01 * c01[1] + w11 * c11[1],
+				w00 * c00[2] + w10 * c10[2] + w01 * c01[2] + w11 * c11[2]);
+		}
+	}
+
+	/**
+	 * Creates a metric field on a parametric bounding box.
+	 *
+	 * @param evaluator  surface evaluator
+	 * @param mp    mesh parameters
+	 * @param temp  temporary vectors, <code>temp.tSurface</code> is overwritten
+	 * @param bbmin  lower left corner of parametric bounding box
+	 * @param bbmax  upper right corner of parametric bounding box
+	 */
+	MetricField2D(CADSurfaceEvaluator evaluator, MeshParameters mp, PoolWorkVectors temp,
+		double [] bbmin, double [] bbmax)
+	{
+		this.evaluator = evaluator;
+		this.mp = mp;
+		this.temp = temp;
+		u0 = bbmin[0];
+		v0 = bbmin[1];
+		du = (bbmax[0] - bbmin[0]) / GRID_SIZE;
+		dv = (bbmax[1] - bbmin[1]) / GRID_SIZE;
+		root = new Cell(0, 0, GRID_SIZE);
+	}
+
+	/**
+	 * Returns the metric at a given point.
+	 *
+	 * @param u  first parameter
+	 * @param v  second parameter
+	 * @return a new metric instance
+	 */
+	public MetricOnSurface getMetric(double u, double v)
+	{
+		nrQueries++;
+		double x = (u - u0) / du;
+		double y = (v - v0) / dv;
+		//  This test is also false if x or y is NaN
+		if (!(x >= 0.0 && x <= GRID_SIZE && y >= 0.0 && y <= GRID_SIZE))
+			return evaluate(u, v);
+		Cell c = root;
+		while (!c.accurate)
+		{
+			if (c.size == 1)
+				return evaluate(u, v);
+			c = c.child(x, y);
+		}
+		nrInterpolations++;
+		return c.interpolate(x, y);
+	}
+
+	/**
+	 * Returns the number of calls to {@link #getMetric}.
+	 *
+	 * @return the number of calls to {@link #getMetric}
+	 */
+	public long getNumberOfQueries()
+	{
+		return nrQueries;
+	}
+
+	/**
+	 * Returns the number of queries answered by interpolation.
+	 *
+	 * @return the number of queries answered by interpolation
+	 */
+	public long getNumberOfInterpolations()
+	{
+		return nrInterpolations;
+	}
+
+	/**
+	 * Returns the number of metrics computed on the surface, either
+	 * to sample this field or to answer queries.
+	 *
+	 * @return the number of metrics computed on the surface
+	 */
+	public long getNumberOfEvaluations()
+	{
+		return nrEvaluations;
+	}
+
+	/**
+	 * Returns the number of surface evaluations saved by this field.
+	 * Without this field, each query computes a metric.  This number
+	 * is negative as long as sampling costs more than queries.
+	 *
+	 * @return the number of saved surface evaluations
+	 */
+	public long getNumberOfSavedEvaluations()
+	{
+		return nrQueries - nrEvaluations;
+	}
+
+	/**
+	 * Returns the number of quadtree cells.
+	 *
+	 * @return the number of quadtree cells
+	 */
+	public int getNumberOfCells()
+	{
+		return nrCells;
+	}
+
+	private double [] sample(int i, int j)
+	{
+		long key = ((long) i << 32) | j;
+		double [] ret = samples.get(key);
+		if (ret == null)
+		{
+			ret = new double[3];
+			evaluate(u0 + i * du, v0 + j * dv).getCoefficients(ret);
+			samples.put(key, ret);
+		}
+		return ret;
+	}
+
+	private MetricOnSurface evaluate(double u, double v)
+	{
+		nrEvaluations++;
+		MetricBuilder mb = new MetricBuilder(evaluator, u, v, mp, temp);
+		return mb.computeMetricOnSurface();
+	}
+
+	private static boolean isValid(double [] m)
+	{
+		//  Also false if a coefficient is NaN
+		return m[0] > 0.0 && m[2] > 0.0 && m[0] * m[2] - m[1] * m[1] > 0.0;
+	}
+
+	/**
+	 * Returns the largest absolute eigenvalue of inv(M) (M' - M).
+	 * They are roots of det(D - x M) = 0, with D = M' - M, which is
+	 * det(M) x^2 - b x + det(D) = 0.
+	 */
+	private static double relativeError(double [] m, double [] interpolated)
+	{
+		double d0 = interpolated[0] - m[0];
+		double d1 = interpolated[1] - m[1];
+		double d2 = interpolated[2] - m[2];
+		double a = m[0] * m[2] - m[1] * m[1];
+		double b = d0 * m[2] + d2 * m[0] - 2.0 * d1 * m[1];
+		double c = d0 * d2 - d1 * d1;
+		double delta = Math.sqrt(Math.max(0.0, b * b - 4.0 * a * c));
+		return 0.5 * (Math.abs(b) + delta) / a;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "MetricField2D: queries="+nrQueries+" interpolations="+nrInterpolations+
+			" evaluations="+nrEvaluations+" saved="+getNumberOfSavedEvaluations()+
+			" cells="+nrCells;
+	}
+}
@@ -62,6 +62,14 @@ public class MetricOnSurface implements Metric2D
 		this.G = G;
 	}
 
+	// Called by MetricField2D
+	final void getCoefficients(double [] result)
+	{
+		result[0] = E;
+		result[1] = F;
+		result[2] = G;
+	}
+
 	/**
 	 * Return the determinant of this matrix.
 	 *
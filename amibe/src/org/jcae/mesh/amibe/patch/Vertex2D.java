@@ -47,7 +47,6 @@ public class Vertex2D extends Vertex
 {
 	private static final long serialVersionUID = -6099275818186028566L;
 	private static final Logger logger=Logger.getLogger(Vertex2D.class.getName());
-	private static final Vertex2D circumcenter = new Vertex2D(null, 0.0, 0.0);
 
 	/**
 	 * Metric at this Vertex.  It is managed by Mesh2D.
@@ -163,12 +162,28 @@ public class Vertex2D extends Vertex
 	 * @see VirtualHalfEdge2D#split3
 	 */
 	public final VirtualHalfEdge2D getSurroundingOTriangle(Mesh2D mesh)
+	{
+		KdTree<Vertex> kdTree = mesh.getKdTree();
+		TriangleVH t = (TriangleVH) kdTree.getNearVertex(mesh.getMetric(this), param).getLink();
+		return getSurroundingOTriangle(mesh, t);
+	}
+
+	/**
+	 * Return a triangle containing this point, by walking from a given
+	 * triangle.  This is faster than {@link #getSurroundingOTriangle(Mesh2D)}
+	 * when the start triangle is known to be near this point, for instance
+	 * when inserting points sorted along a space filling curve.
+	 *
+	 * @param start  triangle where walk starts
+	 * @return a triangle containing this point.
+	 * @see #getSurroundingOTriangle(Mesh2D)
+	 */
+	public final VirtualHalfEdge2D getSurroundingOTriangle(Mesh2D mesh, TriangleVH start)
 	{
 		if (logger.isLoggable(Level.FINE))
 			logger.fine("Searching for the triangle surrounding "+this);
 		KdTree<Vertex> kdTree = mesh.getKdTree();
-		TriangleVH t = (TriangleVH) kdTree.getNearVertex(mesh.getMetric(this), param).getLink();
-		VirtualHalfEdge2D current = new VirtualHalfEdge2D(t, 0);
+		VirtualHalfEdge2D current = new VirtualHalfEdge2D(start, 0);
 		boolean redo = false;
 		Vertex2D o = (Vertex2D) current.origin();
 		Vertex2D d = (Vertex2D) current.destination();
@@ -317,7 +332,7 @@ public class Vertex2D extends Vertex
 	     ==> x orth(M,V12) - y orth(M,V13) = 0.5 V23
 	         x = <V23, V13> / (2 <orth(M,V12), V13>)
 	*/
-	private static Vertex2D circumcenter(Metric2D m2d, Vertex2D v1, Vertex2D v2, Vertex2D v3, double[] po)
+	private static double [] circumcenter(Metric2D m2d, Vertex2D v1, Vertex2D v2, Vertex2D v3, double[] po, double[] center)
 		throws RuntimeException
 	{
 		double [] p1 = v1.getUV();
@@ -341,9 +356,9 @@ public class Vertex2D extends Vertex
 		//     <=> num * num * det(M) < 1000000 * den * den
 		if (den != 0.0 && num * num * m2d.det() < 1000000.0 * den * den)
 		{
-			circumcenter.param[0] = 0.5*(p1[0]+p2[0]) + po[0] * num / den;
-			circumcenter.param[1] = 0.5*(p1[1]+p2[1]) + po[1] * num / den;
-			return circumcenter;
+			center[0] = 0.5*(p1[0]+p2[0]) + po[0] * num / den;
+			center[1] = 0.5*(p1[1]+p2[1]) + po[1] * num / den;
+			return center;
 		}
 		throw new RuntimeException("Circumcenter cannot be computed");
 	}
@@ -379,17 +394,20 @@ public class Vertex2D extends Vertex
 			return false;
 
 		double [] orth = new double[2];
+		//  Circumcenters are not shared so that faces can be meshed
+		//  concurrently
+		double [] center = new double[2];
 		try {
 			Metric2D mA = mesh.getMetric(this);
 			Metric2D mB = mesh.getMetric(va3);
-			Vertex2D C3 = circumcenter(mB, vc1, vc2, va3, orth);
+			double [] C3 = circumcenter(mB, vc1, vc2, va3, orth, center);
 			double ret = Math.sqrt(
-				mB.distance2(C3.param, param) /
-				mB.distance2(C3.param, va3.param));
-			Vertex2D C0 = circumcenter(mA, vc1, vc2, va3, orth);
+				mB.distance2(C3, param) /
+				mB.distance2(C3, va3.param));
+			double [] C0 = circumcenter(mA, vc1, vc2, va3, orth, center);
 			ret += Math.sqrt(
-				mA.distance2(C0.param, param) /
-				mA.distance2(C0.param, va3.param));
+				mA.distance2(C0, param) /
+				mA.distance2(C0, va3.param));
 			return (ret < 2.0);
 		}
 		catch (RuntimeException ex)
@@ -400,17 +418,17 @@ public class Vertex2D extends Vertex
 			// this -> vc2   vc1 -> this   vc2 -> va3  va3 -> vc1
 			Metric2D mA = mesh.getMetric(vc2);
 			Metric2D mB = mesh.getMetric(vc1);
-			Vertex2D C3 = circumcenter(mB, this, va3, vc1, orth);
+			double [] C3 = circumcenter(mB, this, va3, vc1, orth, center);
 			double ret = Math.sqrt(
-				mB.distance2(C3.param, vc2.param) /
-				mB.distance2(C3.param, vc1.param));
+				mB.distance2(C3, vc2.param) /
+				mB.distance2(C3, vc1.param));
 			// FIXME: mesh.getMetric(this) gives better results than mA,
 			// see for instance sphere.brep with an edge length of 0.005
 			// That sounds wrong, it needs to be investigated.
-			Vertex2D C0 = circumcenter(mesh.getMetric(this), this, va3, vc1, orth);
+			double [] C0 = circumcenter(mesh.getMetric(this), this, va3, vc1, orth, center);
 			ret += Math.sqrt(
-				mA.distance2(C0.param, vc2.param) /
-				mA.distance2(C0.param, vc1.param));
+				mA.distance2(C0, vc2.param) /
+				mA.distance2(C0, vc1.param));
 			return (ret > 2.0);
 		}
 		catch (RuntimeException ex)
@@ -0,0 +1,364 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.projection;
+
+import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
+import org.jcae.mesh.amibe.ds.Triangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Bounding volume hierarchy of triangles, to find the nearest triangle
+ * of a point.  Nodes are axis-aligned bounding boxes, triangles are split
+ * at the median of their centroids along the largest dimension, so the
+ * tree is balanced and queries visit a logarithmic number of nodes on
+ * usual meshes.
+ *
+ * <p>
+ * This tree is never modified after its creation, and queries do not
+ * modify triangles, so it can be used concurrently by several threads.
+ * Triangles must not be moved or removed while this tree is in use.
+ * Query counters are shared by all threads, so they are only updated
+ * after {@link #setCountQueries(boolean)} has been called.
+ * </p>
+ */
+public class AABBTree
+{
+	private static final Logger LOGGER = Logger.getLogger(AABBTree.class.getName());
+	// Maximal number of triangles in a leaf
+	private static final int BUCKETSIZE = 8;
+	private final Triangle [] triangles;
+	// Bounding boxes of nodes: lower corner and upper corner
+	private final double [] bounds;
+	// For leaves, index of their first triangle.  For internal nodes,
+	// index of their first child, the second child is stored next.
+	private final int [] first;
+	// Number of triangles in leaves, 0 for internal nodes
+	private final int [] count;
+	private int nrNodes;
+	private int depth;
+	// Counters are only updated if this flag is set
+	private volatile boolean countQueries;
+	private final AtomicLong nrQueries = new AtomicLong();
+	private final AtomicLong nrVisitedNodes = new AtomicLong();
+	private final AtomicLong nrDistances = new AtomicLong();
+
+	/**
+	 * Creates a tree containing triangles of a collection.  Outer
+	 * triangles are skipped.
+	 *
+	 * @param collection  triangles
+	 */
+	public AABBTree(Collection<Triangle> collection)
+	{
+		ArrayList<Triangle> list = new ArrayList<Triangle>(collection.size());
+		for (Triangle t : collection)
+		{
+			if (!t.hasAttributes(AbstractHalfEdge.OUTER))
+				list.add(t);
+		}
+		triangles = list.toArray(new Triangle[list.size()]);
+		list = null;
+		int n = triangles.length;
+		int maxNodes = countNodes(n);
+		bounds = new double[6 * maxNodes];
+		first = new int[maxNodes];
+		count = new int[maxNodes];
+		double [] centroids = new double[3 * n];
+		for (int i = 0; i < n; i++)
+		{
+			for (int k = 0; k < 3; k++)
+				centroids[3*i+k] = triangles[i].vertex[0].getUV()[k] +
+					triangles[i].vertex[1].getUV()[k] +
+					triangles[i].vertex[2].getUV()[k];
+		}
+		nrNodes = 1;
+		if (n > 0)
+			build(0, 0, n, centroids, 1);
+		assert nrNodes == maxNodes;
+		LOGGER.fine("AABB tree: "+n+" triangles, "+nrNodes+" nodes, depth "+depth);
+	}
+
+	private static int countNodes(int n)
+	{
+		if (n <= BUCKETSIZE)
+			return 1;
+		return 1 + countNodes(n / 2) + countNodes(n - n / 2);
+	}
+
+	private void build(int node, int start, int end, double [] centroids, int level)
+	{
+		if (level > depth)
+			depth = level;
+		double [] box = new double[6];
+		box[0] = box[1] = box[2] = Double.MAX_VALUE;
+		box[3] = box[4] = box[5] = - Double.MAX_VALUE;
+		for (int i = start; i < end; i++)
+		{
+			for (int j = 0; j < 3; j++)
+			{
+				double [] xyz = triangles[i].vertex[j].getUV();
+				for (int k = 0; k < 3; k++)
+				{
+					if (xyz[k] < box[k])
+						box[k] = xyz[k];
+					if (xyz[k] > box[3+k])
+						box[3+k] = xyz[k];
+				}
+			}
+		}
+		System.arraycopy(box, 0, bounds, 6*node, 6);
+		if (end - start <= BUCKETSIZE)
+		{
+			first[node] = start;
+			count[node] = end - start;
+			return;
+		}
+		// Split along the largest dimension of centroids
+		double [] cmin = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+		double [] cmax = { -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+		for (int i = start; i < end; i++)
+		{
+			for (int k = 0; k < 3; k++)
+			{
+				double c = centroids[3*i+k];
+				if (c < cmin[k])
+					cmin[k] = c;
+				if (c > cmax[k])
+					cmax[k] = c;
+			}
+		}
+		int axis = 0;
+		for (int k = 1; k < 3; k++)
+		{
+			if (cmax[k] - cmin[k] > cmax[axis] - cmin[axis])
+				axis = k;
+		}
+		int middle = start + (end - start) / 2;
+		select(start, end, middle, axis, centroids);
+		int child = nrNodes;
+		nrNodes += 2;
+		first[node] = child;
+		count[node] = 0;
+		build(child, start, middle, centroids, level + 1);
+		build(child + 1, middle, end, centroids, level + 1);
+	}
+
+	/**
+	 * Partially sorts triangles between <code>start</code> and
+	 * <code>end</code> so that triangle at <code>nth</code> position has
+	 * its centroid at the right place along <code>axis</code>.
+	 */
+	private void select(int start, int end, int nth, int axis, double [] centroids)
+	{
+		int left = start;
+		int right = end - 1;
+		while (right > left)
+		{
+			double pivot = centroids[3*((left + right) >>> 1)+axis];
+			int i = left;
+			int j = right;
+			while (i <= j)
+			{
+				while (centroids[3*i+axis] < pivot)
+					i++;
+				while (centroids[3*j+axis] > pivot)
+					j--;
+				if (i <= j)
+				{
+					swap(i, j, centroids);
+					i++;
+					j--;
+				}
+			}
+			if (nth <= j)
+				right = j;
+			else if (nth >= i)
+				left = i;
+			else
+				break;
+		}
+	}
+
+	private void swap(int i, int j, double [] centroids)
+	{
+		Triangle t = triangles[i];
+		triangles[i] = triangles[j];
+		triangles[j] = t;
+		for (int k = 0; k < 3; k++)
+		{
+			double c = centroids[3*i+k];
+			centroids[3*i+k] = centroids[3*j+k];
+			centroids[3*j+k] = c;
+		}
+	}
+
+	private double sqrDistanceBox(int node, double [] pos)
+	{
+		double ret = 0.0;
+		int offset = 6 * node;
+		for (int k = 0; k < 3; k++)
+		{
+			double d = bounds[offset+k] - pos[k];
+			if (d < 0.0)
+			{
+				d = pos[k] - bounds[offset+3+k];
+				if (d < 0.0)
+					continue;
+			}
+			ret += d * d;
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the nearest triangle of a point.
+	 *
+	 * @param pos  point coordinates
+	 * @return  nearest triangle, or <code>null</code> if tree is empty
+	 */
+	public final Triangle getNearestTriangle(double [] pos)
+	{
+		return getNearestTriangle(pos, null);
+	}
+
+	/**
+	 * Returns the nearest triangle of a point.  A triangle near this
+	 * point may be given as a hint, it bounds the search distance.
+	 *
+	 * @param pos  point coordinates
+	 * @param hint  triangle near <code>pos</code>, or <code>null</code>
+	 * @return  nearest triangle, or <code>null</code> if tree is empty
+	 */
+	public final Triangle getNearestTriangle(double [] pos, Triangle hint)
+	{
+		if (triangles.length == 0)
+			return null;
+		int [] index = new int[2];
+		Triangle ret = hint;
+		double dmin = Double.MAX_VALUE;
+		int nrDist = 0;
+		if (hint != null)
+		{
+			dmin = MeshLiaison.sqrDistanceVertexTriangle(pos, hint, index);
+			nrDist++;
+		}
+		int [] stack = new int[2 * depth + 2];
+		int top = 0;
+		stack[top++] = 0;
+		int visited = 0;
+		while (top > 0)
+		{
+			int node = stack[--top];
+			if (sqrDistanceBox(node, pos) >= dmin)
+				continue;
+			visited++;
+			if (count[node] > 0)
+			{
+				for (int i = first[node], end = first[node] + count[node]; i < end; i++)
+				{
+					double d = MeshLiaison.sqrDistanceVertexTriangle(pos, triangles[i], index);
+					if (d < dmin)
+					{
+						dmin = d;
+						ret = triangles[i];
+					}
+				}
+				nrDist += count[node];
+				continue;
+			}
+			// Push farthest child first, so that nearest child is
+			// processed first
+			int child = first[node];
+			double d0 = sqrDistanceBox(child, pos);
+			double d1 = sqrDistanceBox(child + 1, pos);
+			if (d0 < d1)
+			{
+				if (d1 < dmin)
+					stack[top++] = child + 1;
+				stack[top++] = child;
+			}
+			else
+			{
+				if (d0 < dmin)
+					stack[top++] = child;
+				stack[top++] = child + 1;
+			}
+		}
+		if (countQueries)
+		{
+			nrQueries.incrementAndGet();
+			nrVisitedNodes.addAndGet(visited);
+			nrDistances.addAndGet(nrDist);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of triangles in this tree.
+	 */
+	public final int size()
+	{
+		return triangles.length;
+	}
+
+	/**
+	 * Enables or disables query counters.  They are disabled by default,
+	 * because updating them slows down concurrent queries.  Counters are
+	 * not reset when this method is called.
+	 *
+	 * @param countQueries  <code>true</code> to update query counters
+	 */
+	public final void setCountQueries(boolean countQueries)
+	{
+		this.countQueries = countQueries;
+	}
+
+	/**
+	 * Returns the number of queries performed on this tree while query
+	 * counters were enabled by {@link #setCountQueries(boolean)}.
+	 */
+	public final long getNumberOfQueries()
+	{
+		return nrQueries.get();
+	}
+
+	/**
+	 * Returns the number of nodes visited by queries while query
+	 * counters were enabled by {@link #setCountQueries(boolean)}.
+	 */
+	public final long getNumberOfVisitedNodes()
+	{
+		return nrVisitedNodes.get();
+	}
+
+	/**
+	 * Returns the number of point to triangle distances computed by
+	 * queries while query counters were enabled by
+	 * {@link #setCountQueries(boolean)}.
+	 */
+	public final long getNumberOfDistances()
+	{
+		return nrDistances.get();
+	}
+}
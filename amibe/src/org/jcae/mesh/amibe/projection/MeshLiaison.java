@@ -26,13 +26,16 @@ import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
 import org.jcae.mesh.amibe.metrics.Matrix3D;
 import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
 import gnu.trove.TIntObjectHashMap;
+import gnu.trove.TIntObjectIterator;
 import java.io.FileNotFoundException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
@@ -47,6 +50,14 @@ public class MeshLiaison
 	// Map between vertices of currentMesh and their projection on backgroundMesh
 	private final Map<Vertex, ProjectedLocation> mapCurrentVertexProjection;
 	private Skeleton skeleton;
+	// True if backgroundMesh is shared with another liaison
+	private final boolean sharedBackground;
+	// Optional index of background triangles
+	private AABBTree backgroundIndex;
+	// Statistics about walks on background mesh
+	private long nrWalks;
+	private long nrWalkSteps;
+	private long nrWalkMisses;
 	
 	private final double [] work1 = new double[3];
 	private final double [] work2 = new double[3];
@@ -61,6 +72,7 @@ public class MeshLiaison
 	public MeshLiaison(Mesh backgroundMesh, MeshTraitsBuilder mtb)
 	{
 		this.backgroundMesh = backgroundMesh;
+		this.sharedBackground = false;
 		
 		// Adjacency relations are needed on backgroundMesh
 		if (!this.backgroundMesh.hasAdjacency())
@@ -135,6 +147,39 @@ public class MeshLiaison
 		this.currentMesh.setPersistentReferences(this.backgroundMesh.hasPersistentReferences());
 	}
 
+	/**
+	 * Creates a liaison between the background mesh of another liaison
+	 * and a mesh built from a part of its current mesh.  Background mesh
+	 * is shared and must not be modified, so that several such liaisons
+	 * can be used concurrently by different threads.  Skeleton is copied
+	 * from parent liaison, edges can then be added by
+	 * {@link #addSkeletonEdge}.
+	 *
+	 * @param parent  liaison whose background mesh is shared
+	 * @param mesh  current mesh of this liaison
+	 * @param parentVertices  map between vertices of <code>mesh</code> and
+	 *        vertices of <code>parent</code> current mesh; projections of
+	 *        the latter are copied
+	 */
+	public MeshLiaison(MeshLiaison parent, Mesh mesh, Map<Vertex, Vertex> parentVertices)
+	{
+		this.backgroundMesh = parent.backgroundMesh;
+		this.sharedBackground = true;
+		this.backgroundIndex = parent.backgroundIndex;
+		if (parent.skeleton == null)
+			this.skeleton = new Skeleton(backgroundMesh);
+		else
+			this.skeleton = new Skeleton(parent.skeleton);
+		this.currentMesh = mesh;
+		this.mapCurrentVertexProjection = new HashMap<Vertex, ProjectedLocation>(parentVertices.size());
+		for (Map.Entry<Vertex, Vertex> entry : parentVertices.entrySet())
+		{
+			ProjectedLocation location = new ProjectedLocation();
+			location.copy(parent.mapCurrentVertexProjection.get(entry.getValue()));
+			this.mapCurrentVertexProjection.put(entry.getKey(), location);
+		}
+	}
+
 	private void cloneBeams(Mesh backgroundMesh, Mesh currentMesh, Map<Vertex, Vertex> map) {
 		List<Vertex> beams = backgroundMesh.getBeams();
 
@@ -173,7 +218,10 @@ public class MeshLiaison
 		if (restore)
 			location.copy(savedProjectedLocation);
 		else
+		{
 			currentMesh.getTrace().moveVertex(v);
+			currentMesh.notifyVertexMoved(v);
+		}
 		location.isCached = false;
 	}
 
@@ -217,6 +265,8 @@ public class MeshLiaison
 			ot = ot.next();
 		lf.walkAroundOrigin(ot);
 		lf.walkFlipFlop();
+		nrWalks++;
+		nrWalkSteps += lf.steps;
 		// Now lf contains the new location.
 		// Update location
 		location.updateTriangle(lf.current);
@@ -228,22 +278,34 @@ public class MeshLiaison
 		location.projectOnTriangle(target, newPosition);
 		if (!location.computeBarycentricCoordinates(newPosition))
 		{
-			int[] index = new int[2];
-			double maxError = sqrDistanceVertexTriangle(target, lf.current, index);
-			AbstractHalfEdge newEdge = ot;
-			do
+			nrWalkMisses++;
+			if (backgroundIndex != null)
 			{
-				ot = newEdge;
-				newEdge = findBetterTriangleInNeighborhood(target, ot, maxError);
-				maxError *= 0.5;
-			} while (newEdge != null);
-			if (ot != null)
-			{
-				location.updateTriangle(ot.getTri());
+				// Nearest triangle is given by background index
+				lf.walkIndex(backgroundIndex);
+				location.updateTriangle(lf.current);
 				location.updateVertexIndex(target);
+				location.projectOnTriangle(target, newPosition);
+			}
+			else
+			{
+				int[] index = new int[2];
+				double maxError = sqrDistanceVertexTriangle(target, lf.current, index);
+				AbstractHalfEdge newEdge = ot;
+				do
+				{
+					ot = newEdge;
+					newEdge = findBetterTriangleInNeighborhood(target, ot, maxError);
+					maxError *= 0.5;
+				} while (newEdge != null);
+				if (ot != null)
+				{
+					location.updateTriangle(ot.getTri());
+					location.updateVertexIndex(target);
+				}
 			}
 		}
-		if (!location.computeBarycentricCoordinates(newPosition))
+		if (backgroundIndex == null && !location.computeBarycentricCoordinates(newPosition))
 		{
 			/* FIXME: this should not happen. Try all triangles to find the best projection */
 			LOGGER.log(Level.CONFIG, "Position found outside triangle: "+newPosition[0]+" "+newPosition[1]+" "+newPosition[2]+"; checking all triangles, this may be slow");
@@ -276,7 +338,10 @@ public class MeshLiaison
 		}
 		v.moveTo(newPosition[0], newPosition[1], newPosition[2]);
 		if (!backup)
+		{
 			currentMesh.getTrace().moveVertex(v);
+			currentMesh.notifyVertexMoved(v);
+		}
 
 		if (LOGGER.isLoggable(Level.FINER))
 			LOGGER.log(Level.FINER, "Final position: "+v);
@@ -314,6 +379,21 @@ public class MeshLiaison
 		mapCurrentVertexProjection.put(v, new ProjectedLocation(v.getUV(), bgT));
 	}
 
+	/**
+	 * Add a Vertex whose projection is copied from another liaison.
+	 * Both liaisons must share the same background mesh.
+	 *
+	 * @param v vertex in current mesh
+	 * @param that liaison containing projection of v
+	 */
+	public final void addVertex(Vertex v, MeshLiaison that)
+	{
+		assert that.backgroundMesh == backgroundMesh;
+		ProjectedLocation location = new ProjectedLocation();
+		location.copy(that.mapCurrentVertexProjection.get(v));
+		mapCurrentVertexProjection.put(v, location);
+	}
+
 	/**
 	 * Remove a Vertex.
 	 *
@@ -336,12 +416,7 @@ public class MeshLiaison
 	{
 		LocationFinder lf = new LocationFinder(v.getUV());
 		lf.walkDebug(mesh);
-		AbstractHalfEdge ret = lf.current.getAbstractHalfEdge();
-		if (ret.origin() == lf.current.vertex[lf.localEdgeIndex])
-			ret = ret.next();
-		else if (ret.destination() == lf.current.vertex[lf.localEdgeIndex])
-			ret = ret.prev();
-		return ret;
+		return lf.getEdge();
 	}
 
 	public static AbstractHalfEdge findNearestEdge(Vertex v, Triangle t)
@@ -370,10 +445,22 @@ public class MeshLiaison
 		}
 		if (t != null)
 		{
-			AbstractHalfEdge ret = findSurroundingTriangle(v, t, maxError);
+			LocationFinder lf = new LocationFinder(v.getUV());
+			// Background index is faster than a search in neighborhood
+			boolean redo = !background || backgroundIndex == null;
+			AbstractHalfEdge ret = findSurroundingTriangle(lf, t, maxError, redo);
+			nrWalks++;
+			nrWalkSteps += lf.steps;
 			if (ret != null)
 				return ret;
 		}
+		nrWalkMisses++;
+		if (background && backgroundIndex != null)
+		{
+			LocationFinder lf = new LocationFinder(v.getUV());
+			lf.walkIndex(backgroundIndex);
+			return lf.getEdge();
+		}
 		// We were not able to find a valid triangle.
 		// Iterate over all triangles to find the best one.
 		// FIXME: This is obviously very slow!
@@ -414,9 +501,12 @@ public class MeshLiaison
 	 */
 	public static AbstractHalfEdge findSurroundingTriangle(Vertex v, Triangle start, double maxError)
 	{
-		double[] pos = v.getUV();
-		boolean redo = true;
-		LocationFinder lf = new LocationFinder(pos);
+		return findSurroundingTriangle(new LocationFinder(v.getUV()), start, maxError, true);
+	}
+
+	private static AbstractHalfEdge findSurroundingTriangle(LocationFinder lf, Triangle start, double maxError, boolean redo)
+	{
+		double[] pos = lf.target;
 		Triangle t = start;
 		AbstractHalfEdge ot = t.getAbstractHalfEdge();
 		while(true)
@@ -459,7 +549,9 @@ public class MeshLiaison
 	private static AbstractHalfEdge findBetterTriangleInNeighborhood(double[] pos, AbstractHalfEdge ot, double maxError)
 	{
 		int[] index = new int[2];
-		Triangle.List seen = new Triangle.List();
+		// Background mesh may be shared between threads, do not use
+		// Triangle.List which modifies triangles
+		Set<Triangle> seen = new HashSet<Triangle>();
 		LinkedList<Triangle> queue = new LinkedList<Triangle>();
 		queue.add(ot.origin().getNeighbourIteratorTriangle().next());
 		while (!queue.isEmpty())
@@ -470,7 +562,6 @@ public class MeshLiaison
 			double dist = sqrDistanceVertexTriangle(pos, t, index);
 			if (dist < maxError)
 			{
-				seen.clear();
 				int i = index[0];
 				ot = t.getAbstractHalfEdge(ot);
 				if (ot.origin() == t.vertex[i])
@@ -508,15 +599,76 @@ public class MeshLiaison
 				}
 			}
 		}
-		seen.clear();
 		return null;
 	}
 
 	public final void buildSkeleton()
 	{
+		// Shared background mesh is not modified, skeleton is still valid
+		// and may contain additional edges
+		if (sharedBackground && skeleton != null)
+			return;
 		skeleton = new Skeleton(backgroundMesh);
 	}
 
+	/**
+	 * Adds an edge to the skeleton of a group.  Vertices of this group
+	 * near this edge are then considered as being near the skeleton.
+	 *
+	 * @param groupId  group identifier
+	 * @param v1  first end point
+	 * @param v2  second end point
+	 */
+	public final void addSkeletonEdge(int groupId, Vertex v1, Vertex v2)
+	{
+		if (skeleton == null)
+			buildSkeleton();
+		skeleton.addLine(groupId, v1, v2);
+	}
+
+	/**
+	 * Builds a spatial index of background triangles.  When this index
+	 * exists, it is used to locate vertices on background mesh when
+	 * walking through adjacent triangles fails, instead of checking all
+	 * triangles.  Background mesh must not be modified afterwards.
+	 */
+	public final void buildBackgroundIndex()
+	{
+		backgroundIndex = new AABBTree(backgroundMesh.getTriangles());
+	}
+
+	public final AABBTree getBackgroundIndex()
+	{
+		return backgroundIndex;
+	}
+
+	/**
+	 * Returns the number of walks performed to locate vertices on
+	 * background mesh.
+	 */
+	public final long getNumberOfWalks()
+	{
+		return nrWalks;
+	}
+
+	/**
+	 * Returns the total number of triangles visited by walks.
+	 */
+	public final long getNumberOfWalkSteps()
+	{
+		return nrWalkSteps;
+	}
+
+	/**
+	 * Returns the number of walks which did not find a valid location, and
+	 * thus required either a query on background index or a slower
+	 * search.
+	 */
+	public final long getNumberOfWalkMisses()
+	{
+		return nrWalkMisses;
+	}
+
 	public final boolean isNearSkeleton(Vertex v, int groupId, double distance2)
 	{
 		return skeleton.isNearer(v, groupId, distance2);
@@ -532,7 +684,7 @@ public class MeshLiaison
 	 * Compute squared distance between a point and a triangle.  See
 	 *   http://www.geometrictools.com/Documentation/DistancePoint3Triangle3.pdf
 	 */
-	private static double sqrDistanceVertexTriangle(double[] pos, Triangle tri, int[] index)
+	static double sqrDistanceVertexTriangle(double[] pos, Triangle tri, int[] index)
 	{
 		double[] t0 = tri.vertex[0].getUV();
 		double[] t1 = tri.vertex[1].getUV();
@@ -965,6 +1117,8 @@ public class MeshLiaison
 		int localEdgeIndex = -1;
 		int region = -1;
 		int[] index = new int[2];
+		// Number of visited triangles
+		int steps;
 
 		LocationFinder(double[] pos)
 		{
@@ -973,6 +1127,7 @@ public class MeshLiaison
 
 		boolean walkOnTriangle(Triangle t)
 		{
+			steps++;
 			double dist = sqrDistanceVertexTriangle(target, t, index);
 			if (dist < dmin)
 			{
@@ -1053,6 +1208,7 @@ public class MeshLiaison
 					break;
 				AbstractHalfEdge sym = ot.sym();
 				Triangle t = sym.getTri();
+				steps++;
 				double dist = sqrDistanceVertexTriangle(target, t, index);
 				if (dist >= dmin)
 					break;
@@ -1098,6 +1254,33 @@ public class MeshLiaison
 			LOGGER2.fine("Minimum squared distance after walkDebug(): "+dmin);
 		}
 
+		// Find nearest triangle with a spatial index
+		void walkIndex(AABBTree tree)
+		{
+			Triangle t = tree.getNearestTriangle(target, current);
+			if (t == null)
+				return;
+			double dist = sqrDistanceVertexTriangle(target, t, index);
+			if (current == null || dist < dmin)
+			{
+				dmin = dist;
+				current = t;
+				localEdgeIndex = index[0];
+				region = index[1];
+			}
+		}
+
+		// Edge of current triangle whose origin is the nearest vertex
+		AbstractHalfEdge getEdge()
+		{
+			AbstractHalfEdge ret = current.getAbstractHalfEdge();
+			if (ret.origin() == current.vertex[localEdgeIndex])
+				ret = ret.next();
+			else if (ret.destination() == current.vertex[localEdgeIndex])
+				ret = ret.prev();
+			return ret;
+		}
+
 		@Override
 		public String toString()
 		{
@@ -1146,6 +1329,26 @@ public class MeshLiaison
 			}
 		}
 	
+		Skeleton(Skeleton that)
+		{
+			for (TIntObjectIterator<Collection<Line>> it = that.mapGroupBorder.iterator(); it.hasNext(); )
+			{
+				it.advance();
+				mapGroupBorder.put(it.key(), new ArrayList<Line>(it.value()));
+			}
+		}
+
+		void addLine(int groupId, Vertex v1, Vertex v2)
+		{
+			Collection<Line> borders = mapGroupBorder.get(groupId);
+			if (borders == null)
+			{
+				borders = new ArrayList<Line>();
+				mapGroupBorder.put(groupId, borders);
+			}
+			borders.add(new Line(v1, v2));
+		}
+
 		double getSqrDistance(Vertex v, int groupId)
 		{
 			Collection<Line> borders = mapGroupBorder.get(groupId);
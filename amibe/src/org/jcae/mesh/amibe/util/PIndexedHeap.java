@@ -0,0 +1,410 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Indexed d-ary heap to store quality factors.
+ * This class implements {@link QualityQueue} like {@link PAVLSortedTree}, but
+ * objects and their quality factors are stored into two parallel arrays
+ * which form a heap, instead of nodes of a linked binary tree, so no object
+ * is allocated when inserting.  Each object knows its position into these
+ * arrays (see {@link Indexed}), so {@link #remove} and {@link #update} do
+ * not need any hash lookup and do not have to rebalance a tree.  The price to pay is that
+ * walking through objects in sorted order is more expensive, but algorithms
+ * from {@link org.jcae.mesh.amibe.algos3d} usually only look at the very
+ * first objects.
+ *
+ * An object can be stored into a single <code>PIndexedHeap</code> at a time,
+ * since there is only one slot per object.
+ */
+public class PIndexedHeap<E extends PIndexedHeap.Indexed> implements QualityQueue<E>
+{
+	private static final long serialVersionUID = 5328519375937496415L;
+	private static final Logger logger=Logger.getLogger(PIndexedHeap.class.getName());
+	private static final int DEFAULT_CAPACITY = 64;
+	// Number of samples used by getRootValue()
+	private static final int NR_SAMPLES = 9;
+
+	/**
+	 * Interface implemented by objects stored into a {@link PIndexedHeap}.
+	 * Slot is <code>-1</code> when object is not stored into a heap.
+	 */
+	public interface Indexed
+	{
+		/**
+		 * Returns the position of this object into a heap.
+		 *
+		 * @return  position of this object into a heap, or <code>-1</code>
+		 */
+		int getHeapSlot();
+
+		/**
+		 * Sets the position of this object into a heap.
+		 *
+		 * @param slot  position of this object into a heap, or <code>-1</code>
+		 */
+		void setHeapSlot(int slot);
+	}
+
+	private final int arity;
+	// Objects and their quality factors, indexed by heap slot
+	private Object [] elements;
+	private double [] values;
+	private int nrElements = 0;
+
+	/**
+	 * Creates an empty 4-ary heap.
+	 */
+	public PIndexedHeap()
+	{
+		this(4);
+	}
+
+	/**
+	 * Creates an empty heap.
+	 *
+	 * @param d  number of children of each heap node, 2 gives a binary heap
+	 */
+	public PIndexedHeap(int d)
+	{
+		if (d < 2)
+			throw new IllegalArgumentException("Heap arity must be at least 2: "+d);
+		arity = d;
+		elements = new Object[DEFAULT_CAPACITY];
+		values = new double[DEFAULT_CAPACITY];
+	}
+
+	/**
+	 * Returns the object at a given slot.  Only instances of E are stored
+	 * into <code>elements</code>, so this cast is safe.
+	 */
+	@SuppressWarnings("unchecked")
+	private E elementAt(int slot)
+	{
+		return (E) elements[slot];
+	}
+
+	private void set(int slot, Object o, double v)
+	{
+		elements[slot] = o;
+		values[slot] = v;
+		((Indexed) o).setHeapSlot(slot);
+	}
+
+	private void ensureCapacity(int n)
+	{
+		if (n <= elements.length)
+			return;
+		int newCapacity = Math.max(n, elements.length + (elements.length >> 1));
+		Object [] newData = new Object[newCapacity];
+		System.arraycopy(elements, 0, newData, 0, nrElements);
+		elements = newData;
+		double [] newValues = new double[newCapacity];
+		System.arraycopy(values, 0, newValues, 0, nrElements);
+		values = newValues;
+	}
+
+	// Move object at position slot towards heap root
+	private void siftUp(int slot)
+	{
+		Object o = elements[slot];
+		double v = values[slot];
+		while (slot > 0)
+		{
+			int parent = (slot - 1) / arity;
+			if (v >= values[parent])
+				break;
+			set(slot, elements[parent], values[parent]);
+			slot = parent;
+		}
+		set(slot, o, v);
+	}
+
+	// Move object at position slot towards heap leaves
+	private void siftDown(int slot)
+	{
+		Object o = elements[slot];
+		double v = values[slot];
+		while (true)
+		{
+			int first = arity * slot + 1;
+			if (first >= nrElements)
+				break;
+			int last = Math.min(first + arity, nrElements);
+			int best = first;
+			for (int c = first + 1; c < last; c++)
+			{
+				if (values[c] < values[best])
+					best = c;
+			}
+			if (values[best] >= v)
+				break;
+			set(slot, elements[best], values[best]);
+			slot = best;
+		}
+		set(slot, o, v);
+	}
+
+	private int slotOf(E o)
+	{
+		int slot = o.getHeapSlot();
+		if (slot < 0 || slot >= nrElements || elements[slot] != o)
+			return -1;
+		return slot;
+	}
+
+	public final boolean isEmpty()
+	{
+		return nrElements == 0;
+	}
+
+	public final void insert(E o, double value)
+	{
+		assert slotOf(o) < 0 : "Object already in heap: "+o;
+		if (logger.isLoggable(Level.FINE))
+			logger.fine("Insert "+o+" value: "+value);
+		ensureCapacity(nrElements + 1);
+		set(nrElements, o, value);
+		nrElements++;
+		siftUp(nrElements - 1);
+	}
+
+	public final boolean remove(E o)
+	{
+		int slot = slotOf(o);
+		if (logger.isLoggable(Level.FINE))
+			logger.fine("Remove "+o+" at slot "+slot);
+		if (slot < 0)
+			return false;
+		nrElements--;
+		o.setHeapSlot(-1);
+		if (slot < nrElements)
+		{
+			// Move last object into this slot
+			double oldValue = values[slot];
+			set(slot, elements[nrElements], values[nrElements]);
+			if (values[slot] < oldValue)
+				siftUp(slot);
+			else
+				siftDown(slot);
+		}
+		elements[nrElements] = null;
+		return true;
+	}
+
+	public final boolean update(E o, double value)
+	{
+		int slot = slotOf(o);
+		if (logger.isLoggable(Level.FINE))
+			logger.fine("Update "+o+" at slot "+slot+" content to "+value);
+		if (slot < 0)
+			return false;
+		double oldValue = values[slot];
+		values[slot] = value;
+		if (value < oldValue)
+			siftUp(slot);
+		else
+			siftDown(slot);
+		return true;
+	}
+
+	public final void clear()
+	{
+		for (int i = 0; i < nrElements; i++)
+		{
+			((Indexed) elements[i]).setHeapSlot(-1);
+			elements[i] = null;
+		}
+		nrElements = 0;
+	}
+
+	public final boolean contains(E o)
+	{
+		return slotOf(o) >= 0;
+	}
+
+	public final int size()
+	{
+		return nrElements;
+	}
+
+	/**
+	 * Returns an approximation of the median value.  There is no
+	 * equivalent of a root value for heaps, so this method returns
+	 * the median of values sampled uniformly in heap array.
+	 * @return an approximation of the median value
+	 */
+	public final double getRootValue()
+	{
+		if (nrElements == 0)
+			throw new NoSuchElementException();
+		int n = Math.min(NR_SAMPLES, nrElements);
+		double [] samples = new double[n];
+		for (int i = 0; i < n; i++)
+		{
+			// Insertion sort
+			double v = values[n == 1 ? 0 : (int) ((long) i * (nrElements - 1) / (n - 1))];
+			int j = i;
+			for (; j > 0 && samples[j-1] > v; j--)
+				samples[j] = samples[j-1];
+			samples[j] = v;
+		}
+		return samples[n / 2];
+	}
+
+	/**
+	 * Returns an iterator over objects sorted by increasing values.
+	 * A secondary heap is used to walk through candidates, so the first
+	 * <code>k</code> objects are returned in <code>O(k log k)</code>.
+	 * Nodes are created by this iterator, they are not stored by the heap.
+	 * Heap must not be modified when walked through.
+	 */
+	public final Iterator<QSortedTree.Node<E>> iterator()
+	{
+		if (nrElements == 0)
+			return Collections.<QSortedTree.Node<E>>emptyList().iterator();
+		return new Iterator<QSortedTree.Node<E>>()
+		{
+			// Binary heap of candidate slots, ordered by values
+			private int [] candidates = new int[16];
+			private int nrCandidates = 1;
+			public boolean hasNext()
+			{
+				return nrCandidates > 0;
+			}
+			public QSortedTree.Node<E> next()
+			{
+				if (nrCandidates == 0)
+					throw new NoSuchElementException();
+				int slot = candidates[0];
+				nrCandidates--;
+				if (nrCandidates > 0)
+				{
+					candidates[0] = candidates[nrCandidates];
+					down(0);
+				}
+				int first = arity * slot + 1;
+				int last = Math.min(first + arity, nrElements);
+				for (int c = first; c < last; c++)
+					push(c);
+				return new QSortedTree.Node<E>(elementAt(slot), values[slot]);
+			}
+			public void remove()
+			{
+				// Not supported yet!
+				throw new RuntimeException();
+			}
+			private void push(int slot)
+			{
+				if (nrCandidates == candidates.length)
+				{
+					int [] temp = new int[2*candidates.length];
+					System.arraycopy(candidates, 0, temp, 0, nrCandidates);
+					candidates = temp;
+				}
+				int i = nrCandidates;
+				nrCandidates++;
+				double v = values[slot];
+				while (i > 0)
+				{
+					int parent = (i - 1) / 2;
+					if (v >= values[candidates[parent]])
+						break;
+					candidates[i] = candidates[parent];
+					i = parent;
+				}
+				candidates[i] = slot;
+			}
+			private void down(int i)
+			{
+				int slot = candidates[i];
+				double v = values[slot];
+				while (true)
+				{
+					int c = 2 * i + 1;
+					if (c >= nrCandidates)
+						break;
+					if (c + 1 < nrCandidates && values[candidates[c+1]] < values[candidates[c]])
+						c++;
+					if (values[candidates[c]] >= v)
+						break;
+					candidates[i] = candidates[c];
+					i = c;
+				}
+				candidates[i] = slot;
+			}
+		};
+	}
+
+	/**
+	 * Returns an iterator over objects sorted by decreasing values.
+	 * All objects are sorted when this method is called, this is an
+	 * <code>O(n log n)</code> operation.
+	 */
+	public final Iterator<QSortedTree.Node<E>> backwardIterator()
+	{
+		if (nrElements == 0)
+			return Collections.<QSortedTree.Node<E>>emptyList().iterator();
+		Integer [] slots = new Integer[nrElements];
+		for (int i = 0; i < nrElements; i++)
+			slots[i] = Integer.valueOf(i);
+		Arrays.sort(slots, new Comparator<Integer>()
+		{
+			public int compare(Integer o1, Integer o2)
+			{
+				return Double.compare(values[o2.intValue()], values[o1.intValue()]);
+			}
+		});
+		final int [] sorted = new int[nrElements];
+		for (int i = 0; i < nrElements; i++)
+			sorted[i] = slots[i].intValue();
+		return new Iterator<QSortedTree.Node<E>>()
+		{
+			private int index = 0;
+			public boolean hasNext()
+			{
+				return index < sorted.length;
+			}
+			public QSortedTree.Node<E> next()
+			{
+				if (index >= sorted.length)
+					throw new NoSuchElementException();
+				int slot = sorted[index];
+				index++;
+				return new QSortedTree.Node<E>(elementAt(slot), values[slot]);
+			}
+			public void remove()
+			{
+				// Not supported yet!
+				throw new RuntimeException();
+			}
+		};
+	}
+
+}
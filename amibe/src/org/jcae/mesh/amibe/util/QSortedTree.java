@@ -36,7 +36,7 @@ import java.util.logging.Logger;
  * that duplicate quality factors are allowed.  See examples in algorithms from
  * {@link org.jcae.mesh.amibe.algos3d}.
  */
-public abstract class QSortedTree<E> implements Serializable
+public abstract class QSortedTree<E> implements QualityQueue<E>
 {
 	private static final long serialVersionUID = -2194224744257185278L;
 	private static final Logger logger=Logger.getLogger(QSortedTree.class.getName());	
@@ -101,8 +101,11 @@ public abstract class QSortedTree<E> implements Serializable
 			final E temp = that.data;
 			that.data = data;
 			data = temp;
-			// For now there is no reason to swap values
+			// Values must follow data, otherwise object moved into
+			// this node would keep a wrong quality factor
+			final double tempValue = that.value;
 			that.value = value;
+			value = tempValue;
 		}
 	
 		public final double getValue()
@@ -0,0 +1,110 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.util;
+
+import java.io.Serializable;
+import java.util.Iterator;
+
+/**
+ * Priority queue of objects sorted by quality factors.  Algorithms from
+ * {@link org.jcae.mesh.amibe.algos3d} process objects in increasing order
+ * of their quality factors, which are updated while the mesh is modified.
+ * This interface is implemented by binary trees ({@link QSortedTree}) and
+ * by an indexed heap ({@link PIndexedHeap}).
+ */
+public interface QualityQueue<E> extends Serializable
+{
+	/**
+	 * Tell whether this queue is empty.
+	 */
+	boolean isEmpty();
+
+	/**
+	 * Insert a new object.
+	 *
+	 * @param o      object
+	 * @param value  quality factor
+	 */
+	void insert(E o, double value);
+
+	/**
+	 * Remove an object.
+	 *
+	 * @param o  object to remove
+	 * @return  <code>true</code> if object was present in queue,
+	 * <code>false</code> otherwise.
+	 */
+	boolean remove(E o);
+
+	/**
+	 * Update the quality factor of an object.
+	 *
+	 * @param o      object being updated
+	 * @param value  new quality factor
+	 * @return <code>true</code> if object was present in queue,
+	 *         <code>false</code> otherwise.
+	 */
+	boolean update(E o, double value);
+
+	/**
+	 * Remove all objects.
+	 */
+	void clear();
+
+	/**
+	 * Tell whether this queue contains an object.
+	 *
+	 * @param o  object
+	 * @return <code>true</code> if this queue contains this object,
+	 *   <code>false</code> otherwise.
+	 */
+	boolean contains(E o);
+
+	/**
+	 * Return the number of objects.
+	 *
+	 * @return the number of objects.
+	 */
+	int size();
+
+	/**
+	 * Return an approximation of the median quality factor.
+	 *
+	 * @return an approximation of the median quality factor.
+	 */
+	double getRootValue();
+
+	/**
+	 * Return an iterator over nodes sorted by increasing quality factors.
+	 * Queue must not be modified when walked through.
+	 *
+	 * @return an iterator over nodes sorted by increasing quality factors.
+	 */
+	Iterator<QSortedTree.Node<E>> iterator();
+
+	/**
+	 * Return an iterator over nodes sorted by decreasing quality factors.
+	 * Queue must not be modified when walked through.
+	 *
+	 * @return an iterator over nodes sorted by decreasing quality factors.
+	 */
+	Iterator<QSortedTree.Node<E>> backwardIterator();
+}
@@ -25,11 +25,20 @@ import org.jcae.mesh.amibe.ds.Mesh;
 import org.jcae.mesh.amibe.ds.Triangle;
 import org.jcae.mesh.amibe.ds.Vertex;
 import org.jcae.mesh.amibe.ds.MGroup3D;
+import org.jcae.mesh.xmldata.UNVParser;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.util.StringTokenizer;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import gnu.trove.TIntObjectHashMap;
 import java.util.logging.Logger;
 
@@ -45,6 +54,8 @@ import java.util.logging.Logger;
 public class UNVReader
 {
 	private static final Logger logger=Logger.getLogger(UNVReader.class.getName());
+	// Number of vertices or triangles created by a task
+	private static final int CHUNK_SIZE = 65536;
 	
 	public static void readMesh(Mesh mesh, String file)
 	{
@@ -114,6 +125,122 @@ public class UNVReader
 		}
 	}
 
+	/**
+	 * Reads a UNV file with several threads.  File is parsed by
+	 * {@link UNVParser}, then vertices and triangles are created
+	 * concurrently.  Beams are discarded.
+	 *
+	 * @param mesh  mesh
+	 * @param file  UNV file
+	 * @param nrThreads  number of threads
+	 */
+	public static void readMesh(final Mesh mesh, String file, int nrThreads)
+		throws IOException
+	{
+		UNVParser parser = new UNVParser(new File(file));
+		parser.parse(nrThreads);
+		final double [] coords = parser.getNodes();
+		final int [] labels = parser.getNodeLabels();
+		final int [] indices = parser.getTriangles();
+		final int numberOfNodes = parser.getNumberOfNodes();
+		final int numberOfTriangles = parser.getNumberOfTriangles();
+		final Vertex [] nodelist = new Vertex[numberOfNodes];
+		final Triangle [] facelist = new Triangle[numberOfTriangles];
+		mesh.ensureCapacity(2 * numberOfNodes);
+		ExecutorService pool = Executors.newFixedThreadPool(nrThreads);
+		try
+		{
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for (int start = 0; start < numberOfNodes; start += CHUNK_SIZE)
+			{
+				final int first = start;
+				final int last = Math.min(numberOfNodes, start + CHUNK_SIZE);
+				tasks.add(new Callable<Object>()
+				{
+					public Object call()
+					{
+						for (int i = first; i < last; i++)
+						{
+							Vertex v = mesh.createVertex(coords[3*i], coords[3*i+1], coords[3*i+2]);
+							v.setLabel(labels[i]);
+							nodelist[i] = v;
+						}
+						return null;
+					}
+				});
+			}
+			invokeAll(pool, tasks);
+			if (mesh.hasNodes())
+			{
+				for (Vertex v : nodelist)
+					mesh.add(v);
+			}
+
+			tasks.clear();
+			for (int start = 0; start < numberOfTriangles; start += CHUNK_SIZE)
+			{
+				final int first = start;
+				final int last = Math.min(numberOfTriangles, start + CHUNK_SIZE);
+				tasks.add(new Callable<Object>()
+				{
+					public Object call()
+					{
+						for (int i = first; i < last; i++)
+							facelist[i] = mesh.createTriangle(nodelist[indices[3*i]],
+								nodelist[indices[3*i+1]], nodelist[indices[3*i+2]]);
+						return null;
+					}
+				});
+			}
+			invokeAll(pool, tasks);
+			for (Triangle t : facelist)
+				mesh.add(t);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		if (parser.getNumberOfBeams() > 0)
+		{
+			if (numberOfTriangles == 0)
+				logger.severe("Beams have been found but are discarded, and this mesh does not contain any triangle!");
+			else
+				logger.severe("Beams have been found but are discarded, only triangles are read.");
+		}
+
+		int groupId = 0;
+		for (UNVParser.Group g : parser.getGroups())
+		{
+			for (int i : g.getTriangles())
+				facelist[i].setGroupId(groupId);
+			groupId++;
+		}
+		if (mesh.hasAdjacency())
+		{
+			mesh.buildAdjacency(0, nrThreads);
+			if (groupId > 1)
+				mesh.buildGroupBoundaries();
+		}
+	}
+
+	private static void invokeAll(ExecutorService pool, List<Callable<Object>> tasks)
+		throws IOException
+	{
+		try
+		{
+			for (Future<Object> f : pool.invokeAll(tasks))
+				f.get();
+		}
+		catch (InterruptedException ex)
+		{
+			throw new IOException(ex);
+		}
+		catch (ExecutionException ex)
+		{
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+
 	private static double readUnit(BufferedReader rd)
 	{
 		double unit = 1.0;
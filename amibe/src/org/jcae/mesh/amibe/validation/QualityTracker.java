@@ -0,0 +1,482 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.amibe.validation;
+
+import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.MeshListener;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.Vertex;
+import gnu.trove.TObjectIntHashMap;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Keep quality statistics of a mesh up to date while it is modified.
+ *
+ * Unlike {@link QualityFloat}, which computes quality of all entities
+ * each time it is called, this class listens to mesh modifications and
+ * only recomputes quality of entities near modified vertices.  Values
+ * are stored in primitive arrays, together with an histogram which
+ * gives percentiles.  Statistics are updated lazily, when they are
+ * requested, so the cost of a report is proportional to the number of
+ * modifications since previous report.
+ *
+ * Only modifications performed by {@link Mesh#edgeSwap},
+ * {@link Mesh#edgeCollapse} and {@link Mesh#vertexSplit}, and vertex
+ * moves notified by {@link Mesh#notifyVertexMoved}, are seen.  Quality
+ * is recomputed on entities incident to vertices of modified
+ * triangles, so that quality procedures may depend on adjacent
+ * triangles, as {@link DihedralAngle} does.  {@link QualityProcedure#finish}
+ * is not called, procedures needing post-processing are not supported.
+ *
+ * Example:
+ * <pre>
+ *    QualityTracker tracker = new QualityTracker(mesh, new MinAngleFace(), 0.0f, (float) Math.PI, 180);
+ *    // Modify mesh
+ *    ...
+ *    System.out.println("Minimal angle: "+tracker.getMinValue());
+ *    tracker.printLayers();
+ *    tracker.detach();
+ * </pre>
+ */
+public class QualityTracker implements MeshListener
+{
+	private final Mesh mesh;
+	private final QualityProcedure qproc;
+	// Entity by slot, null if slot is free
+	private Object [] entities;
+	// Quality by slot
+	private float [] values;
+	// Slot by entity
+	private final TObjectIntHashMap<Object> slots = new TObjectIntHashMap<Object>();
+	// Stack of free slots
+	private int [] freeSlots;
+	private int nrFreeSlots;
+	private int nrSlots;
+	// Histogram: bins[0] contains values lower than vmin, bins[nrBins+1]
+	// values larger than or equal to vmax
+	private final int [] bins;
+	private final float vmin;
+	private final float delta;
+	private double sum, sum2;
+	private float qmin, qmax;
+	private boolean validMinMax;
+	// Vertices whose neighbourhood has been modified since last update
+	private final Set<Vertex> modified = new HashSet<Vertex>();
+	private long nrComputed;
+
+	/**
+	 * Computes quality of all mesh entities, and listens to mesh
+	 * modifications.
+	 *
+	 * @param mesh  mesh
+	 * @param qproc  quality procedure, of type {@link QualityProcedure#FACE}
+	 *   or {@link QualityProcedure#NODE}
+	 * @param v1  lower bound of histogram
+	 * @param v2  upper bound of histogram
+	 * @param nrBins  number of bins of histogram, percentiles are
+	 *   approximated by linear interpolation within bins
+	 */
+	public QualityTracker(Mesh mesh, QualityProcedure qproc, float v1, float v2, int nrBins)
+	{
+		if (qproc.getType() != QualityProcedure.FACE && qproc.getType() != QualityProcedure.NODE)
+			throw new IllegalArgumentException("Quality procedure must be computed on faces or nodes");
+		if (nrBins <= 0 || v2 <= v1)
+			throw new IllegalArgumentException("Invalid histogram bounds");
+		this.mesh = mesh;
+		this.qproc = qproc;
+		vmin = v1;
+		delta = (v2 - v1) / nrBins;
+		bins = new int[nrBins + 2];
+		int capacity = Math.max(16, mesh.getTriangles().size());
+		entities = new Object[capacity];
+		values = new float[capacity];
+		freeSlots = new int[16];
+		if (qproc.getType() == QualityProcedure.FACE)
+		{
+			for (Triangle t : mesh.getTriangles())
+			{
+				if (!t.hasAttributes(AbstractHalfEdge.OUTER))
+					compute(t);
+			}
+		}
+		else
+		{
+			// Node list is not always maintained by algorithms, vertices
+			// are retrieved from triangles
+			Collection<Vertex> nodes = new LinkedHashSet<Vertex>();
+			for (Triangle t : mesh.getTriangles())
+			{
+				if (t.hasAttributes(AbstractHalfEdge.OUTER))
+					continue;
+				for (Vertex v : t.vertex)
+					nodes.add(v);
+			}
+			for (Vertex v : nodes)
+				compute(v);
+		}
+		mesh.addListener(this);
+	}
+
+	/**
+	 * Stops listening to mesh modifications.
+	 */
+	public final void detach()
+	{
+		mesh.removeListener(this);
+	}
+
+	public final void beforeEdgeSwap(AbstractHalfEdge h)
+	{
+		modified.add(h.origin());
+		modified.add(h.destination());
+		modified.add(h.apex());
+		modified.add(h.sym().apex());
+	}
+
+	public final void beforeEdgeCollapse(AbstractHalfEdge h, Vertex v)
+	{
+		Vertex o = h.origin();
+		Vertex d = h.destination();
+		// Triangles around collapsed edge are removed
+		if (qproc.getType() == QualityProcedure.FACE)
+		{
+			if (h.hasAttributes(AbstractHalfEdge.NONMANIFOLD))
+			{
+				for (Iterator<AbstractHalfEdge> it = h.fanIterator(); it.hasNext(); )
+					remove(it.next().getTri());
+			}
+			else
+			{
+				remove(h.getTri());
+				remove(h.sym().getTri());
+			}
+		}
+		// Topology around end points becomes invalid, it is replaced
+		// by neighbourhood of v
+		if (o != v)
+		{
+			modified.remove(o);
+			if (qproc.getType() == QualityProcedure.NODE)
+				remove(o);
+		}
+		if (d != v)
+		{
+			modified.remove(d);
+			if (qproc.getType() == QualityProcedure.NODE)
+				remove(d);
+		}
+		modified.add(v);
+	}
+
+	public final void beforeVertexSplit(AbstractHalfEdge h, Vertex v)
+	{
+		modified.add(h.origin());
+		modified.add(h.destination());
+		modified.add(h.apex());
+		if (h.hasSymmetricEdge())
+			modified.add(h.sym().apex());
+		modified.add(v);
+	}
+
+	public final void vertexMoved(Vertex v)
+	{
+		modified.add(v);
+	}
+
+	/**
+	 * Recomputes quality of entities near modified vertices.  This
+	 * method is called by all methods returning statistics.
+	 */
+	public final void update()
+	{
+		if (modified.isEmpty())
+			return;
+		// Vertices of modified triangles
+		Set<Vertex> ring = new HashSet<Vertex>();
+		for (Vertex v : modified)
+		{
+			// Vertices may be moved before being inserted into mesh
+			if (v == mesh.outerVertex || v.getLink() == null)
+				continue;
+			ring.add(v);
+			for (Iterator<Vertex> it = v.getNeighbourIteratorVertex(); it.hasNext(); )
+			{
+				Vertex n = it.next();
+				if (n != mesh.outerVertex)
+					ring.add(n);
+			}
+		}
+		modified.clear();
+		if (qproc.getType() == QualityProcedure.NODE)
+		{
+			for (Vertex v : ring)
+				compute(v);
+			return;
+		}
+		Set<Triangle> triangles = new HashSet<Triangle>();
+		for (Vertex v : ring)
+		{
+			for (Iterator<Triangle> it = v.getNeighbourIteratorTriangle(); it.hasNext(); )
+			{
+				Triangle t = it.next();
+				if (!t.hasAttributes(AbstractHalfEdge.OUTER) && triangles.add(t))
+					compute(t);
+			}
+		}
+	}
+
+	private void compute(Object o)
+	{
+		float q = qproc.quality(o);
+		nrComputed++;
+		int slot;
+		if (slots.containsKey(o))
+		{
+			slot = slots.get(o);
+			removeValue(values[slot]);
+		}
+		else
+		{
+			if (nrFreeSlots > 0)
+				slot = freeSlots[--nrFreeSlots];
+			else
+			{
+				if (nrSlots == entities.length)
+				{
+					int capacity = 2 * nrSlots;
+					Object [] newEntities = new Object[capacity];
+					System.arraycopy(entities, 0, newEntities, 0, nrSlots);
+					entities = newEntities;
+					float [] newValues = new float[capacity];
+					System.arraycopy(values, 0, newValues, 0, nrSlots);
+					values = newValues;
+				}
+				slot = nrSlots++;
+			}
+			entities[slot] = o;
+			slots.put(o, slot);
+		}
+		values[slot] = q;
+		addValue(q);
+	}
+
+	private void remove(Object o)
+	{
+		if (!slots.containsKey(o))
+			return;
+		int slot = slots.remove(o);
+		removeValue(values[slot]);
+		entities[slot] = null;
+		if (nrFreeSlots == freeSlots.length)
+		{
+			int [] newFreeSlots = new int[2 * nrFreeSlots];
+			System.arraycopy(freeSlots, 0, newFreeSlots, 0, nrFreeSlots);
+			freeSlots = newFreeSlots;
+		}
+		freeSlots[nrFreeSlots++] = slot;
+	}
+
+	private int bin(float q)
+	{
+		if (q < vmin)
+			return 0;
+		int ret = 1 + (int) ((q - vmin) / delta);
+		if (ret >= bins.length)
+			ret = bins.length - 1;
+		return ret;
+	}
+
+	private void addValue(float q)
+	{
+		bins[bin(q)]++;
+		sum += q;
+		sum2 += (double) q * q;
+		if (validMinMax)
+		{
+			if (q < qmin)
+				qmin = q;
+			if (q > qmax)
+				qmax = q;
+		}
+	}
+
+	private void removeValue(float q)
+	{
+		bins[bin(q)]--;
+		sum -= q;
+		sum2 -= (double) q * q;
+		// Extremal values have to be searched again
+		if (q <= qmin || q >= qmax)
+			validMinMax = false;
+	}
+
+	private void computeMinMax()
+	{
+		qmin = Float.MAX_VALUE;
+		qmax = - Float.MAX_VALUE;
+		for (int i = 0; i < nrSlots; i++)
+		{
+			if (entities[i] == null)
+				continue;
+			float q = values[i];
+			if (q < qmin)
+				qmin = q;
+			if (q > qmax)
+				qmax = q;
+		}
+		validMinMax = true;
+	}
+
+	/**
+	 * Returns the number of quality values.
+	 */
+	public final int size()
+	{
+		update();
+		return slots.size();
+	}
+
+	/**
+	 * Returns the number of quality values computed since this instance
+	 * has been created, including the initial computation.
+	 */
+	public final long getNumberOfComputedValues()
+	{
+		return nrComputed;
+	}
+
+	/**
+	 * Returns minimal value.  When the entity having minimal or maximal
+	 * value is modified, stored values are scanned again.
+	 */
+	public final float getMinValue()
+	{
+		update();
+		if (!validMinMax)
+			computeMinMax();
+		return qmin;
+	}
+
+	/**
+	 * Returns maximal value.
+	 */
+	public final float getMaxValue()
+	{
+		update();
+		if (!validMinMax)
+			computeMinMax();
+		return qmax;
+	}
+
+	/**
+	 * Returns mean value.
+	 */
+	public final float getMeanValue()
+	{
+		update();
+		return (float) (sum / slots.size());
+	}
+
+	/**
+	 * Returns standard deviation.
+	 */
+	public final float getStandardDeviation()
+	{
+		update();
+		double avg = sum / slots.size();
+		return (float) Math.sqrt(Math.max(0.0, sum2 / slots.size() - avg * avg));
+	}
+
+	/**
+	 * Returns value by its distribution index.  Returned value is
+	 * such that there are approximately <code>p*N</code> values below
+	 * it, where <code>N</code> is the total number of values.
+	 * Approximation is given by linear interpolation within
+	 * histogram bins; values outside histogram bounds are replaced by
+	 * minimal or maximal value.
+	 *
+	 * @param p  number between 0 and 1
+	 * @return  value associated to this distribution index
+	 */
+	public final float getValueByPercent(double p)
+	{
+		update();
+		if (p <= 0.0)
+			return getMinValue();
+		if (p >= 1.0)
+			return getMaxValue();
+		double target = p * slots.size();
+		int cumul = 0;
+		for (int i = 0; i < bins.length; i++)
+		{
+			if (cumul + bins[i] >= target && bins[i] > 0)
+			{
+				if (i == 0)
+					return getMinValue();
+				if (i == bins.length - 1)
+					return getMaxValue();
+				float lower = vmin + (i - 1) * delta;
+				return lower + (float) ((target - cumul) / bins[i]) * delta;
+			}
+			cumul += bins[i];
+		}
+		return getMaxValue();
+	}
+
+	/**
+	 * Returns a copy of the histogram.  First (resp. last) value is the
+	 * number of values lower than (resp. greater than or equal to)
+	 * histogram bounds.
+	 */
+	public final int [] getHistogram()
+	{
+		update();
+		int [] ret = new int[bins.length];
+		System.arraycopy(bins, 0, ret, 0, bins.length);
+		return ret;
+	}
+
+	/**
+	 * Displays histogram and statistics about quality values.
+	 */
+	public final void printLayers()
+	{
+		update();
+		int nrTotal = slots.size();
+		int layers = bins.length - 2;
+		if (bins[0] > 0)
+			System.out.printf(" < %g %d (%.4g%%)%n", vmin, bins[0], (((float) 100.0 * bins[0])/nrTotal));
+		for (int i = 0; i < layers; i++)
+			System.out.printf(" %g ; %g %d (%.4g%%)%n", vmin + i * delta, vmin + (i+1) * delta, bins[i+1], (((float) 100.0 * bins[i+1])/nrTotal));
+		if (bins[layers+1] > 0)
+			System.out.printf(" > %g %d (%.4g%%)%n", vmin + layers * delta, bins[layers+1], (((float) 100.0 * bins[layers+1])/nrTotal));
+		System.out.println("total: "+nrTotal);
+		System.out.printf("qmin: %.6g%n", getMinValue());
+		System.out.printf("qmax: %.6g%n", getMaxValue());
+		System.out.printf("qavg: %.6g%n", getMeanValue());
+		System.out.printf("qdev: %.6g%n", getStandardDeviation());
+	}
+}
@@ -0,0 +1,150 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad;
+
+/**
+ * Evaluator built on top of a stateful {@link CADGeomSurface}, for CAD
+ * engines which do not provide a {@link CADSurfaceEvaluator}.  Calls are
+ * serialized on the wrapped surface, so this class is thread-safe but
+ * does not scale; it is only meant to let callers use a single API.
+ */
+public class CADGeomSurfaceEvaluator implements CADSurfaceEvaluator
+{
+	private final CADGeomSurface surface;
+
+	/**
+	 * Creates an evaluator.
+	 *
+	 * @param surface  surface, {@link CADGeomSurface#dinit} must have been
+	 *        called with an argument of 2
+	 */
+	public CADGeomSurfaceEvaluator(CADGeomSurface surface)
+	{
+		this.surface = surface;
+	}
+
+	/**
+	 * Returns an evaluator for a surface.  If this surface is a
+	 * {@link CADSurfaceEvaluatorAdapter}, its evaluator is returned,
+	 * otherwise surface is wrapped into a <code>CADGeomSurfaceEvaluator</code>.
+	 *
+	 * @param surface  surface
+	 * @return an evaluator for this surface
+	 */
+	public static CADSurfaceEvaluator getEvaluator(CADGeomSurface surface)
+	{
+		if (surface instanceof CADSurfaceEvaluatorAdapter)
+			return ((CADSurfaceEvaluatorAdapter) surface).getEvaluator();
+		return new CADGeomSurfaceEvaluator(surface);
+	}
+
+	public void evaluate(double u, double v, double [] result, int offset)
+	{
+		evaluate(u, v, ALL, result, offset);
+	}
+
+	/**
+	 * Computes some quantities at a given point.  Only requested
+	 * quantities are queried from the wrapped surface, in order to
+	 * reduce time spent while holding its lock.
+	 */
+	public void evaluate(double u, double v, int properties, double [] result, int offset)
+	{
+		synchronized(surface)
+		{
+			surface.setParameter(u, v);
+			System.arraycopy(surface.value(u, v), 0, result, offset + POINT, 3);
+			if ((properties & FIRST_DERIVATIVES) != 0)
+			{
+				System.arraycopy(surface.d1U(), 0, result, offset + D1U, 3);
+				System.arraycopy(surface.d1V(), 0, result, offset + D1V, 3);
+				//  CAD engines may throw exceptions when normal or
+				//  curvatures are undefined
+				try
+				{
+					System.arraycopy(surface.normal(), 0, result, offset + NORMAL, 3);
+				}
+				catch (RuntimeException ex)
+				{
+					fill(result, offset + NORMAL, 3);
+				}
+			}
+			if ((properties & SECOND_DERIVATIVES) != 0)
+			{
+				System.arraycopy(surface.d2U(), 0, result, offset + D2U, 3);
+				System.arraycopy(surface.d2V(), 0, result, offset + D2V, 3);
+				System.arraycopy(surface.dUV(), 0, result, offset + DUV, 3);
+			}
+			if ((properties & CURVATURES) != 0)
+			{
+				try
+				{
+					result[offset + MIN_CURVATURE] = surface.minCurvature();
+					result[offset + MAX_CURVATURE] = surface.maxCurvature();
+					result[offset + MEAN_CURVATURE] = surface.meanCurvature();
+					result[offset + GAUSSIAN_CURVATURE] = surface.gaussianCurvature();
+				}
+				catch (RuntimeException ex)
+				{
+					fill(result, offset + MIN_CURVATURE, 4);
+				}
+				try
+				{
+					System.arraycopy(surface.curvatureDirections(), 0, result, offset + MAX_DIRECTION, 6);
+				}
+				catch (RuntimeException ex)
+				{
+					fill(result, offset + MAX_DIRECTION, 6);
+				}
+			}
+		}
+	}
+
+	private static void fill(double [] result, int offset, int length)
+	{
+		for (int i = 0; i < length; i++)
+			result[offset + i] = Double.NaN;
+	}
+
+	public void evaluate(double [] uv, int nr, double [] result)
+	{
+		for (int i = 0; i < nr; i++)
+			evaluate(uv[2*i], uv[2*i+1], result, i * SIZE);
+	}
+
+	public void value(double u, double v, double [] xyz, int offset)
+	{
+		double [] p;
+		synchronized(surface)
+		{
+			p = surface.value(u, v);
+		}
+		System.arraycopy(p, 0, xyz, offset, 3);
+	}
+
+	public double lowerDistance(double [] p)
+	{
+		synchronized(surface)
+		{
+			return surface.lowerDistance(p);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad;
+
+/**
+ * Stateless evaluation of a geometrical surface.  Unlike
+ * {@link CADGeomSurface}, there is no current parameter: all quantities
+ * at a given (u, v) point are computed at once and written into a
+ * buffer provided by the caller, at offsets given by the constants of
+ * this interface.  Implementations must be thread-safe, so that a
+ * single instance can be shared by several threads without allocating
+ * temporary arrays.
+ *
+ * <p>
+ * Normal and curvatures are undefined where first derivatives are
+ * collinear, for instance at poles of a sphere; their values are then
+ * <code>Double.NaN</code>.
+ * </p>
+ */
+public interface CADSurfaceEvaluator
+{
+	/** Offset of 3D point. */
+	int POINT = 0;
+	/** Offset of first derivative along u. */
+	int D1U = 3;
+	/** Offset of first derivative along v. */
+	int D1V = 6;
+	/** Offset of second derivative along u. */
+	int D2U = 9;
+	/** Offset of second derivative along v. */
+	int D2V = 12;
+	/** Offset of cross derivative. */
+	int DUV = 15;
+	/** Offset of unit normal vector, oriented along D1U x D1V. */
+	int NORMAL = 18;
+	/** Offset of minimum curvature. */
+	int MIN_CURVATURE = 21;
+	/** Offset of maximum curvature. */
+	int MAX_CURVATURE = 22;
+	/** Offset of mean curvature. */
+	int MEAN_CURVATURE = 23;
+	/** Offset of Gaussian curvature. */
+	int GAUSSIAN_CURVATURE = 24;
+	/** Offset of unit direction of maximum curvature. */
+	int MAX_DIRECTION = 25;
+	/** Offset of unit direction of minimum curvature. */
+	int MIN_DIRECTION = 28;
+	/** Number of values computed at each point. */
+	int SIZE = 31;
+
+	/** Requests first derivatives and normal. */
+	int FIRST_DERIVATIVES = 1;
+	/** Requests second derivatives. */
+	int SECOND_DERIVATIVES = 2;
+	/** Requests curvatures and their directions. */
+	int CURVATURES = 4;
+	/** Requests all quantities. */
+	int ALL = FIRST_DERIVATIVES | SECOND_DERIVATIVES | CURVATURES;
+
+	/**
+	 * Computes all quantities at a given point.
+	 *
+	 * @param u  first parameter
+	 * @param v  second parameter
+	 * @param result  array receiving {@link #SIZE} values
+	 * @param offset  offset within <code>result</code>
+	 */
+	void evaluate(double u, double v, double [] result, int offset);
+
+	/**
+	 * Computes some quantities at a given point.  Point is always
+	 * computed, values of quantities which are not requested are
+	 * unspecified.  Implementations may compute more quantities
+	 * than requested.
+	 *
+	 * @param u  first parameter
+	 * @param v  second parameter
+	 * @param properties  bitwise OR of {@link #FIRST_DERIVATIVES},
+	 *        {@link #SECOND_DERIVATIVES} and {@link #CURVATURES}
+	 * @param result  array receiving {@link #SIZE} values
+	 * @param offset  offset within <code>result</code>
+	 */
+	void evaluate(double u, double v, int properties, double [] result, int offset);
+
+	/**
+	 * Computes all quantities at several points.
+	 *
+	 * @param uv  array of parameters {u0, v0, u1, v1, ...}
+	 * @param nr  number of points
+	 * @param result  array receiving <code>nr*SIZE</code> values, values
+	 *        at point <code>i</code> start at offset <code>i*SIZE</code>
+	 */
+	void evaluate(double [] uv, int nr, double [] result);
+
+	/**
+	 * Computes 3D coordinates of a point.
+	 *
+	 * @param u  first parameter
+	 * @param v  second parameter
+	 * @param xyz  array receiving coordinates
+	 * @param offset  offset within <code>xyz</code>
+	 */
+	void value(double u, double v, double [] xyz, int offset);
+
+	/**
+	 * Returns distance of a point to this surface.
+	 *
+	 * @param p  3D point
+	 * @return distance between this point and the surface
+	 */
+	double lowerDistance(double [] p);
+}
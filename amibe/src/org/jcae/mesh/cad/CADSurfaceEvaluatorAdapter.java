@@ -0,0 +1,145 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad;
+
+/**
+ * Adapter to use a {@link CADSurfaceEvaluator} through the stateful
+ * {@link CADGeomSurface} interface.  Each call to {@link #setParameter}
+ * evaluates the surface into a private buffer, and accessors return new
+ * arrays as required by <code>CADGeomSurface</code>.  An instance must
+ * not be shared between threads, but the underlying evaluator can be.
+ */
+public class CADSurfaceEvaluatorAdapter implements CADGeomSurface
+{
+	private final CADSurfaceEvaluator evaluator;
+	private final double [] values = new double[CADSurfaceEvaluator.SIZE];
+	private int properties = CADSurfaceEvaluator.ALL;
+
+	public CADSurfaceEvaluatorAdapter(CADSurfaceEvaluator evaluator)
+	{
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Returns the wrapped evaluator.
+	 *
+	 * @return the wrapped evaluator
+	 */
+	public final CADSurfaceEvaluator getEvaluator()
+	{
+		return evaluator;
+	}
+
+	private double [] copy(int offset, int length)
+	{
+		double [] ret = new double[length];
+		System.arraycopy(values, offset, ret, 0, length);
+		return ret;
+	}
+
+	/**
+	 * Sets quantities computed by {@link #setParameter}.  With a degree
+	 * of 0, only point is computed, with a degree of 1, first
+	 * derivatives and normal are also computed, otherwise all quantities
+	 * are computed.
+	 */
+	public void dinit(int degree)
+	{
+		if (degree <= 0)
+			properties = 0;
+		else if (degree == 1)
+			properties = CADSurfaceEvaluator.FIRST_DERIVATIVES;
+		else
+			properties = CADSurfaceEvaluator.ALL;
+	}
+
+	public void setParameter(double u, double v)
+	{
+		evaluator.evaluate(u, v, properties, values, 0);
+	}
+
+	public double [] d1U()
+	{
+		return copy(CADSurfaceEvaluator.D1U, 3);
+	}
+
+	public double [] d1V()
+	{
+		return copy(CADSurfaceEvaluator.D1V, 3);
+	}
+
+	public double [] d2U()
+	{
+		return copy(CADSurfaceEvaluator.D2U, 3);
+	}
+
+	public double [] d2V()
+	{
+		return copy(CADSurfaceEvaluator.D2V, 3);
+	}
+
+	public double [] dUV()
+	{
+		return copy(CADSurfaceEvaluator.DUV, 3);
+	}
+
+	public double [] normal()
+	{
+		return copy(CADSurfaceEvaluator.NORMAL, 3);
+	}
+
+	public double [] value(double u, double v)
+	{
+		double [] ret = new double[3];
+		evaluator.value(u, v, ret, 0);
+		return ret;
+	}
+
+	public double minCurvature()
+	{
+		return values[CADSurfaceEvaluator.MIN_CURVATURE];
+	}
+
+	public double maxCurvature()
+	{
+		return values[CADSurfaceEvaluator.MAX_CURVATURE];
+	}
+
+	public double gaussianCurvature()
+	{
+		return values[CADSurfaceEvaluator.GAUSSIAN_CURVATURE];
+	}
+
+	public double meanCurvature()
+	{
+		return values[CADSurfaceEvaluator.MEAN_CURVATURE];
+	}
+
+	public double [] curvatureDirections()
+	{
+		return copy(CADSurfaceEvaluator.MAX_DIRECTION, 6);
+	}
+
+	public double lowerDistance(double [] p)
+	{
+		return evaluator.lowerDistance(p);
+	}
+}
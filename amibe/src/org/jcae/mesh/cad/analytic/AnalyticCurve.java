@@ -0,0 +1,61 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+/**
+ * Base class of analytic 3D curves.  Instances are immutable and thus
+ * thread-safe.
+ */
+public abstract class AnalyticCurve
+{
+	/**
+	 * Computes a point.
+	 *
+	 * @param t  parameter
+	 * @param xyz  array receiving coordinates
+	 * @param offset  offset within <code>xyz</code>
+	 */
+	public abstract void value(double t, double [] xyz, int offset);
+
+	/**
+	 * Returns the length of the curve between two parameters.
+	 */
+	public abstract double length(double from, double to);
+
+	/**
+	 * Enlarges a bounding box so that it contains the curve between two
+	 * parameters.
+	 *
+	 * @param from  first parameter
+	 * @param to  last parameter
+	 * @param bbox  bounding box {xmin, ymin, zmin, xmax, ymax, zmax}
+	 */
+	public abstract void addToBoundingBox(double from, double to, double [] bbox);
+
+	static void addToBoundingBox(double [] xyz, double [] extent, double [] bbox)
+	{
+		for (int i = 0; i < 3; i++)
+		{
+			bbox[i] = Math.min(bbox[i], xyz[i] - extent[i]);
+			bbox[i+3] = Math.max(bbox[i+3], xyz[i] + extent[i]);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import org.jcae.mesh.cad.CADEdge;
+import org.jcae.mesh.cad.CADVertex;
+
+public class AnalyticEdge extends AnalyticShape implements CADEdge
+{
+	AnalyticEdge(TShape tshape, boolean reversed)
+	{
+		super(tshape, reversed);
+	}
+
+	final TShape.Edge getEdge()
+	{
+		return (TShape.Edge) tshape;
+	}
+
+	public boolean isDegenerated()
+	{
+		return getEdge().curve == null;
+	}
+
+	public double [] range()
+	{
+		TShape.Edge e = getEdge();
+		return new double[] { e.first, e.last };
+	}
+
+	/**
+	 * Returns vertices at the first and last parameters, edge
+	 * orientation is not taken into account.
+	 */
+	public CADVertex [] vertices()
+	{
+		AnalyticVertex [] V = new AnalyticVertex[2];
+		for (int i = 0; i < 2; i++)
+			V[i] = (AnalyticVertex) tshape.children.get(i);
+		return V;
+	}
+
+	/**
+	 * Returns the curve of this edge in the parameter space of a face.
+	 * As with OCC, when this edge is a seam of this face, the curve
+	 * depends on edge and face orientations.
+	 *
+	 * @return the curve, or <code>null</code> if this edge does not
+	 *         bound this face.
+	 */
+	final AnalyticCurve2D pcurve(AnalyticFace face)
+	{
+		for (TShape.PCurve pc : getEdge().pcurves)
+		{
+			if (pc.face != face.tshape)
+				continue;
+			if (pc.reversed != null && reversed != face.reversed)
+				return pc.reversed;
+			return pc.forward;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,87 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jcae.mesh.cad.CADExplorer;
+import org.jcae.mesh.cad.CADShape;
+import org.jcae.mesh.cad.CADShapeEnum;
+
+/**
+ * Explores sub-shapes of a given type, with the same semantics as
+ * TopExp_Explorer: shapes are visited in depth-first order, shared
+ * sub-shapes are returned each time they are met, and orientations are
+ * composed.
+ */
+public class AnalyticExplorer implements CADExplorer
+{
+	private final List<AnalyticShape> shapes = new ArrayList<AnalyticShape>();
+	private int index;
+
+	public void init(CADShape s, CADShapeEnum t)
+	{
+		AnalyticShape shape = (AnalyticShape) s;
+		int type = ((AnalyticShapeEnum) t).asType();
+		shapes.clear();
+		index = 0;
+		if (type == TShape.COMPOUND)
+			getCompounds(shape, shapes);
+		else
+			collect(shape, type, shapes);
+	}
+
+	public boolean more()
+	{
+		return index < shapes.size();
+	}
+
+	public void next()
+	{
+		index++;
+	}
+
+	public CADShape current()
+	{
+		return shapes.get(index);
+	}
+
+	private static void collect(AnalyticShape s, int type, List<AnalyticShape> result)
+	{
+		if (s.tshape.type == type)
+			result.add(s);
+		else if (s.tshape.type < type)
+		{
+			for (int i = 0, n = s.nrChildren(); i < n; i++)
+				collect(s.child(i), type, result);
+		}
+	}
+
+	private static void getCompounds(AnalyticShape root, List<AnalyticShape> result)
+	{
+		if (root.tshape.type == TShape.COMPOUND)
+		{
+			result.add(root);
+			for (int i = 0, n = root.nrChildren(); i < n; i++)
+				getCompounds(root.child(i), result);
+		}
+	}
+}
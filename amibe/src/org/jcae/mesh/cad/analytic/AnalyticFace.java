@@ -0,0 +1,43 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import org.jcae.mesh.cad.CADFace;
+import org.jcae.mesh.cad.CADGeomSurface;
+import org.jcae.mesh.cad.CADSurfaceEvaluatorAdapter;
+
+public class AnalyticFace extends AnalyticShape implements CADFace
+{
+	AnalyticFace(TShape tshape, boolean reversed)
+	{
+		super(tshape, reversed);
+	}
+
+	public final AnalyticSurface getSurface()
+	{
+		return ((TShape.Face) tshape).surface;
+	}
+
+	public CADGeomSurface getGeomSurface()
+	{
+		return new CADSurfaceEvaluatorAdapter(getSurface());
+	}
+}
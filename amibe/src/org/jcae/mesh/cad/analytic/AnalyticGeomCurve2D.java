@@ -0,0 +1,56 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import org.jcae.mesh.cad.CADEdge;
+import org.jcae.mesh.cad.CADFace;
+import org.jcae.mesh.cad.CADGeomCurve2D;
+
+public class AnalyticGeomCurve2D implements CADGeomCurve2D
+{
+	private final AnalyticCurve2D myCurve;
+	private final double [] range;
+
+	public AnalyticGeomCurve2D(CADEdge E, CADFace F)
+	{
+		if (!(E instanceof AnalyticEdge))
+			throw new IllegalArgumentException();
+		if (!(F instanceof AnalyticFace))
+			throw new IllegalArgumentException();
+		AnalyticEdge edge = (AnalyticEdge) E;
+		myCurve = edge.pcurve((AnalyticFace) F);
+		if (myCurve == null)
+			throw new IllegalArgumentException("Edge is not on face");
+		range = edge.range();
+	}
+
+	public double [] value(double p)
+	{
+		double [] uv = new double[2];
+		myCurve.value(p, uv, 0);
+		return uv;
+	}
+
+	public double [] getRange()
+	{
+		return range;
+	}
+}
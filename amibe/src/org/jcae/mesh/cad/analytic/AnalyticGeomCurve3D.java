@@ -0,0 +1,109 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import org.jcae.mesh.cad.CADEdge;
+import org.jcae.mesh.cad.CADGeomCurve3D;
+
+public class AnalyticGeomCurve3D implements CADGeomCurve3D
+{
+	private final AnalyticCurve myCurve;
+	private final double [] range;
+	private AnalyticDiscretizeCurve3D discret = null;
+
+	public AnalyticGeomCurve3D(CADEdge E)
+	{
+		if (!(E instanceof AnalyticEdge))
+			throw new IllegalArgumentException();
+		AnalyticEdge edge = (AnalyticEdge) E;
+		myCurve = edge.getEdge().curve;
+		if (myCurve == null)
+			throw new IllegalArgumentException("Edge is degenerated");
+		range = edge.range();
+	}
+
+	public double [] value(double p)
+	{
+		double [] xyz = new double[3];
+		myCurve.value(p, xyz, 0);
+		return xyz;
+	}
+
+	public double [] getRange()
+	{
+		return range;
+	}
+
+	private AnalyticDiscretizeCurve3D getDiscretization()
+	{
+		if (discret == null)
+			discret = new AnalyticDiscretizeCurve3D(myCurve, range[0], range[1]);
+		return discret;
+	}
+
+	public void discretize(double maxlen, double deflection, boolean relDefl)
+	{
+		AnalyticDiscretizeCurve3D d = getDiscretization();
+		d.discretizeMaxDeflection(deflection, relDefl);
+		if (maxlen > 0.0)
+		{
+			for (int i = 0; i < d.nbPoints()-1; i++)
+				d.discretizeSubsegmentMaxLength(i, maxlen);
+		}
+	}
+
+	public void discretize(double maxlen)
+	{
+		getDiscretization().discretizeMaxLength(maxlen);
+	}
+
+	public void discretize(int n)
+	{
+		getDiscretization().discretizeNrPoints(n);
+	}
+
+	public void splitSubsegment(int numseg, int nrsub)
+	{
+		getDiscretization().splitSubsegment(numseg, nrsub);
+	}
+
+	public void setDiscretization(double [] param)
+	{
+		getDiscretization().setDiscretization(param);
+	}
+
+	public int nbPoints()
+	{
+		assert discret != null;
+		return discret.nbPoints();
+	}
+
+	public double parameter(int index)
+	{
+		assert discret != null;
+		return discret.parameter(index);
+	}
+
+	public double length()
+	{
+		return myCurve.length(range[0], range[1]);
+	}
+}
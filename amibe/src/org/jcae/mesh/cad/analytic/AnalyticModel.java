@@ -0,0 +1,527 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Builds analytic B-rep models.  Primitives have the same topology as
+ * those created by OCC:
+ * <ul>
+ *   <li>a box has 6 planar faces, 12 straight edges and 8 vertices;</li>
+ *   <li>a cylinder has a lateral face with a seam edge, and two planar
+ *       faces bounded by circles;</li>
+ *   <li>a sphere has a single face bounded by a seam edge and two
+ *       degenerated edges at poles;</li>
+ *   <li>a torus has a single face bounded by two seam edges.</li>
+ * </ul>
+ * All faces are forward and their normals are oriented outwards.
+ *
+ * <p>
+ * Models can be read from text files, which contain one primitive per
+ * line; empty lines and lines starting with <code>#</code> are ignored:
+ * </p>
+ * <pre>
+ * box x y z dx dy dz
+ * cylinder x y z ax ay az radius height
+ * sphere x y z radius
+ * torus x y z ax ay az majorRadius minorRadius
+ * pattern nx ny nz tx ty tz
+ * </pre>
+ * <p>
+ * <code>(x,y,z)</code> is the lower corner of boxes, and the center
+ * of other primitives, <code>(ax,ay,az)</code> is the axis.  A
+ * <code>pattern</code> line replaces all primitives defined above by
+ * <code>nx*ny*nz</code> copies translated by <code>(i tx, j ty, k tz)</code>,
+ * this is how large models are built.  A file with a single primitive
+ * describes a solid, otherwise a compound of solids.
+ * </p>
+ */
+public final class AnalyticModel
+{
+	private static final double [] X = new double[] {1.0, 0.0, 0.0};
+	private static final double [] Y = new double[] {0.0, 1.0, 0.0};
+	private static final double [] Z = new double[] {0.0, 0.0, 1.0};
+
+	private AnalyticModel()
+	{
+	}
+
+	/**
+	 * Creates an empty compound.
+	 */
+	public static AnalyticCompound newCompound()
+	{
+		return new AnalyticCompound(new TShape(TShape.COMPOUND), false);
+	}
+
+	/**
+	 * Creates a box aligned with global axes.
+	 *
+	 * @param origin  lower corner
+	 * @param dx  size along X
+	 * @param dy  size along Y
+	 * @param dz  size along Z
+	 */
+	public static AnalyticSolid box(double [] origin, double dx, double dy, double dz)
+	{
+		if (dx <= 0.0 || dy <= 0.0 || dz <= 0.0)
+			throw new IllegalArgumentException("Invalid box dimensions");
+		double [] size = new double[] {dx, dy, dz};
+		TShape.Solid solid = new TShape.Solid("box "+origin[0]+" "+origin[1]+" "+origin[2]+" "+dx+" "+dy+" "+dz);
+		//  Bit k of vertex index is set if vertex is at the upper side
+		//  along axis k.
+		TShape.Vertex [] vertices = new TShape.Vertex[8];
+		for (int i = 0; i < 8; i++)
+		{
+			double [] p = new double[3];
+			for (int k = 0; k < 3; k++)
+				p[k] = origin[k] + ((i >> k) & 1) * size[k];
+			vertices[i] = new TShape.Vertex(p);
+		}
+		//  Edges go from lower to upper index
+		TShape.Edge [][] edges = new TShape.Edge[8][8];
+		for (int i = 0; i < 8; i++)
+		{
+			for (int k = 0; k < 3; k++)
+			{
+				if (((i >> k) & 1) != 0)
+					continue;
+				int j = i | (1 << k);
+				double [] dir = new double[3];
+				dir[k] = 1.0;
+				edges[i][j] = new TShape.Edge(new Line(vertices[i].point, dir), 0.0, size[k], vertices[i], vertices[j]);
+			}
+		}
+		TShape shell = new TShape(TShape.SHELL);
+		for (int k = 0; k < 3; k++)
+		{
+			int ki = (k + 1) % 3;
+			int kj = (k + 2) % 3;
+			for (int side = 0; side < 2; side++)
+			{
+				//  Plane X axis is chosen so that normal is outwards
+				int a = side == 1 ? ki : kj;
+				int b = side == 1 ? kj : ki;
+				int c0 = side << k;
+				int [] corners = new int[] { c0, c0 | (1 << a), c0 | (1 << a) | (1 << b), c0 | (1 << b) };
+				double [] normal = new double[3];
+				normal[k] = side == 1 ? 1.0 : -1.0;
+				double [] xDir = new double[3];
+				xDir[a] = 1.0;
+				Plane plane = new Plane(vertices[c0].point, normal, xDir);
+				double [] bbox = emptyBoundingBox();
+				for (int c : corners)
+					AnalyticCurve.addToBoundingBox(vertices[c].point, new double[3], bbox);
+				TShape.Face face = new TShape.Face(plane, bbox);
+				TShape wire = new TShape(TShape.WIRE);
+				for (int i = 0; i < 4; i++)
+				{
+					int from = corners[i];
+					int to = corners[(i + 1) % 4];
+					TShape.Edge e = from < to ? edges[from][to] : edges[to][from];
+					e.pcurves.add(new TShape.PCurve(face, planeCurve(plane, e.curve), null));
+					wire.add(e, from > to);
+				}
+				face.add(wire, false);
+				shell.add(face, false);
+			}
+		}
+		return newSolid(solid, shell);
+	}
+
+	/**
+	 * Creates a cylinder with planar caps.
+	 *
+	 * @param origin  center of bottom face
+	 * @param axis  axis direction
+	 * @param radius  radius
+	 * @param height  height
+	 */
+	public static AnalyticSolid cylinder(double [] origin, double [] axis, double radius, double height)
+	{
+		if (radius <= 0.0 || height <= 0.0)
+			throw new IllegalArgumentException("Invalid cylinder dimensions");
+		TShape.Solid solid = new TShape.Solid("cylinder "+origin[0]+" "+origin[1]+" "+origin[2]+" "+
+			axis[0]+" "+axis[1]+" "+axis[2]+" "+radius+" "+height);
+		double [] x = new double[3];
+		double [] y = new double[3];
+		double [] z = new double[3];
+		AnalyticSurface.frame(axis, perpendicular(axis), x, y, z);
+		double [] top = new double[3];
+		double [] p0 = new double[3];
+		double [] p1 = new double[3];
+		double [] down = new double[3];
+		for (int i = 0; i < 3; i++)
+		{
+			top[i] = origin[i] + height * z[i];
+			p0[i] = origin[i] + radius * x[i];
+			p1[i] = top[i] + radius * x[i];
+			down[i] = -z[i];
+		}
+		TShape.Vertex v0 = new TShape.Vertex(p0);
+		TShape.Vertex v1 = new TShape.Vertex(p1);
+		TShape.Edge bottomCircle = new TShape.Edge(new Circle(origin, z, x, radius), 0.0, 2.0 * Math.PI, v0, v0);
+		TShape.Edge topCircle = new TShape.Edge(new Circle(top, z, x, radius), 0.0, 2.0 * Math.PI, v1, v1);
+		TShape.Edge seam = new TShape.Edge(new Line(p0, z), 0.0, height, v0, v1);
+
+		double [] bbox = emptyBoundingBox();
+		bottomCircle.curve.addToBoundingBox(0.0, 2.0 * Math.PI, bbox);
+		topCircle.curve.addToBoundingBox(0.0, 2.0 * Math.PI, bbox);
+		TShape.Face lateral = new TShape.Face(new Cylinder(origin, z, x, radius), bbox);
+		bottomCircle.pcurves.add(new TShape.PCurve(lateral, new Line2D(0.0, 0.0, 1.0, 0.0), null));
+		topCircle.pcurves.add(new TShape.PCurve(lateral, new Line2D(0.0, height, 1.0, 0.0), null));
+		seam.pcurves.add(new TShape.PCurve(lateral,
+			new Line2D(2.0 * Math.PI, 0.0, 0.0, 1.0), new Line2D(0.0, 0.0, 0.0, 1.0)));
+		//  Counterclockwise in parameter space
+		TShape wire = new TShape(TShape.WIRE);
+		wire.add(bottomCircle, false);
+		wire.add(seam, false);
+		wire.add(topCircle, true);
+		wire.add(seam, true);
+		lateral.add(wire, false);
+
+		TShape.Face topFace = planarFace(new Plane(top, z, x), topCircle, false);
+		TShape.Face bottomFace = planarFace(new Plane(origin, down, x), bottomCircle, true);
+
+		TShape shell = new TShape(TShape.SHELL);
+		shell.add(lateral, false);
+		shell.add(topFace, false);
+		shell.add(bottomFace, false);
+		return newSolid(solid, shell);
+	}
+
+	/**
+	 * Creates a sphere, its poles are along Z axis.
+	 *
+	 * @param center  center
+	 * @param radius  radius
+	 */
+	public static AnalyticSolid sphere(double [] center, double radius)
+	{
+		if (radius <= 0.0)
+			throw new IllegalArgumentException("Invalid sphere radius");
+		TShape.Solid solid = new TShape.Solid("sphere "+center[0]+" "+center[1]+" "+center[2]+" "+radius);
+		double [] south = new double[3];
+		double [] north = new double[3];
+		double [] bbox = new double[6];
+		for (int i = 0; i < 3; i++)
+		{
+			south[i] = center[i] - radius * Z[i];
+			north[i] = center[i] + radius * Z[i];
+			bbox[i] = center[i] - radius;
+			bbox[i+3] = center[i] + radius;
+		}
+		TShape.Vertex vs = new TShape.Vertex(south);
+		TShape.Vertex vn = new TShape.Vertex(north);
+		//  Meridian at u=0, its parameter is the latitude
+		double [] meridianAxis = new double[] {0.0, -1.0, 0.0};
+		TShape.Edge seam = new TShape.Edge(new Circle(center, meridianAxis, X, radius), -0.5 * Math.PI, 0.5 * Math.PI, vs, vn);
+		TShape.Edge southPole = new TShape.Edge(null, 0.0, 2.0 * Math.PI, vs, vs);
+		TShape.Edge northPole = new TShape.Edge(null, 0.0, 2.0 * Math.PI, vn, vn);
+		TShape.Face face = new TShape.Face(new Sphere(center, Z, X, radius), bbox);
+		southPole.pcurves.add(new TShape.PCurve(face, new Line2D(0.0, -0.5 * Math.PI, 1.0, 0.0), null));
+		northPole.pcurves.add(new TShape.PCurve(face, new Line2D(0.0, 0.5 * Math.PI, 1.0, 0.0), null));
+		seam.pcurves.add(new TShape.PCurve(face,
+			new Line2D(2.0 * Math.PI, 0.0, 0.0, 1.0), new Line2D(0.0, 0.0, 0.0, 1.0)));
+		TShape wire = new TShape(TShape.WIRE);
+		wire.add(southPole, false);
+		wire.add(seam, false);
+		wire.add(northPole, true);
+		wire.add(seam, true);
+		face.add(wire, false);
+
+		TShape shell = new TShape(TShape.SHELL);
+		shell.add(face, false);
+		return newSolid(solid, shell);
+	}
+
+	/**
+	 * Creates a torus.
+	 *
+	 * @param center  center
+	 * @param axis  axis direction
+	 * @param majorRadius  distance between center and axis of the tube
+	 * @param minorRadius  radius of the tube
+	 */
+	public static AnalyticSolid torus(double [] center, double [] axis, double majorRadius, double minorRadius)
+	{
+		if (minorRadius <= 0.0 || majorRadius <= minorRadius)
+			throw new IllegalArgumentException("Invalid torus radii");
+		TShape.Solid solid = new TShape.Solid("torus "+center[0]+" "+center[1]+" "+center[2]+" "+
+			axis[0]+" "+axis[1]+" "+axis[2]+" "+majorRadius+" "+minorRadius);
+		double [] x = new double[3];
+		double [] y = new double[3];
+		double [] z = new double[3];
+		AnalyticSurface.frame(axis, perpendicular(axis), x, y, z);
+		double [] p = new double[3];
+		double [] tube = new double[3];
+		double [] tubeAxis = new double[3];
+		double [] bbox = new double[6];
+		for (int i = 0; i < 3; i++)
+		{
+			p[i] = center[i] + (majorRadius + minorRadius) * x[i];
+			tube[i] = center[i] + majorRadius * x[i];
+			tubeAxis[i] = -y[i];
+			double extent = majorRadius * Math.sqrt(Math.max(0.0, 1.0 - z[i] * z[i])) + minorRadius;
+			bbox[i] = center[i] - extent;
+			bbox[i+3] = center[i] + extent;
+		}
+		TShape.Vertex v = new TShape.Vertex(p);
+		//  Circles v=0 and u=0
+		TShape.Edge major = new TShape.Edge(new Circle(center, z, x, majorRadius + minorRadius), 0.0, 2.0 * Math.PI, v, v);
+		TShape.Edge minor = new TShape.Edge(new Circle(tube, tubeAxis, x, minorRadius), 0.0, 2.0 * Math.PI, v, v);
+		TShape.Face face = new TShape.Face(new Torus(center, z, x, majorRadius, minorRadius), bbox);
+		major.pcurves.add(new TShape.PCurve(face,
+			new Line2D(0.0, 0.0, 1.0, 0.0), new Line2D(0.0, 2.0 * Math.PI, 1.0, 0.0)));
+		minor.pcurves.add(new TShape.PCurve(face,
+			new Line2D(2.0 * Math.PI, 0.0, 0.0, 1.0), new Line2D(0.0, 0.0, 0.0, 1.0)));
+		TShape wire = new TShape(TShape.WIRE);
+		wire.add(major, false);
+		wire.add(minor, false);
+		wire.add(major, true);
+		wire.add(minor, true);
+		face.add(wire, false);
+
+		TShape shell = new TShape(TShape.SHELL);
+		shell.add(face, false);
+		return newSolid(solid, shell);
+	}
+
+	/**
+	 * Reads a model file.
+	 *
+	 * @param fileName  file name
+	 * @return a solid if file contains a single primitive, a compound
+	 *         otherwise
+	 * @throws IOException if file cannot be read or is invalid
+	 */
+	public static AnalyticShape read(String fileName) throws IOException
+	{
+		FileReader in = new FileReader(fileName);
+		try
+		{
+			return read(in);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a model, see {@link #read(String)}.
+	 */
+	public static AnalyticShape read(Reader reader) throws IOException
+	{
+		BufferedReader in = new BufferedReader(reader);
+		List<String> names = new ArrayList<String>();
+		List<double []> args = new ArrayList<double []>();
+		int lineNumber = 0;
+		for (String line = in.readLine(); line != null; line = in.readLine())
+		{
+			lineNumber++;
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#"))
+				continue;
+			String [] tokens = line.split("\\s+");
+			int nrArgs;
+			if (tokens[0].equals("box") || tokens[0].equals("pattern"))
+				nrArgs = 6;
+			else if (tokens[0].equals("cylinder") || tokens[0].equals("torus"))
+				nrArgs = 8;
+			else if (tokens[0].equals("sphere"))
+				nrArgs = 4;
+			else
+				throw new IOException("Line "+lineNumber+": unknown primitive "+tokens[0]);
+			if (tokens.length != nrArgs + 1)
+				throw new IOException("Line "+lineNumber+": "+nrArgs+" arguments expected");
+			double [] values = new double[nrArgs];
+			try
+			{
+				for (int i = 0; i < nrArgs; i++)
+					values[i] = Double.parseDouble(tokens[i+1]);
+			}
+			catch (NumberFormatException ex)
+			{
+				throw new IOException("Line "+lineNumber+": "+ex.getMessage());
+			}
+			if (tokens[0].equals("pattern"))
+				pattern(names, args, values);
+			else
+			{
+				names.add(tokens[0]);
+				args.add(values);
+			}
+		}
+		if (names.isEmpty())
+			throw new IOException("No primitive found");
+		if (names.size() == 1)
+			return newPrimitive(names.get(0), args.get(0));
+		AnalyticCompound compound = newCompound();
+		for (int i = 0; i < names.size(); i++)
+			compound.add(newPrimitive(names.get(i), args.get(i)));
+		return compound;
+	}
+
+	private static void pattern(List<String> names, List<double []> args, double [] values)
+		throws IOException
+	{
+		int [] nr = new int[3];
+		for (int k = 0; k < 3; k++)
+		{
+			nr[k] = (int) values[k];
+			if (nr[k] < 1)
+				throw new IOException("Invalid pattern size");
+		}
+		int size = names.size();
+		for (int i = 0; i < nr[0]; i++)
+		{
+			for (int j = 0; j < nr[1]; j++)
+			{
+				for (int k = 0; k < nr[2]; k++)
+				{
+					if (i == 0 && j == 0 && k == 0)
+						continue;
+					for (int n = 0; n < size; n++)
+					{
+						double [] a = args.get(n).clone();
+						a[0] += i * values[3];
+						a[1] += j * values[4];
+						a[2] += k * values[5];
+						names.add(names.get(n));
+						args.add(a);
+					}
+				}
+			}
+		}
+	}
+
+	private static AnalyticSolid newPrimitive(String name, double [] a)
+	{
+		double [] p = new double[] {a[0], a[1], a[2]};
+		if (name.equals("box"))
+			return box(p, a[3], a[4], a[5]);
+		else if (name.equals("sphere"))
+			return sphere(p, a[3]);
+		double [] axis = new double[] {a[3], a[4], a[5]};
+		if (name.equals("cylinder"))
+			return cylinder(p, axis, a[6], a[7]);
+		return torus(p, axis, a[6], a[7]);
+	}
+
+	static void write(Collection<TShape.Solid> primitives, String fileName)
+	{
+		try
+		{
+			PrintWriter out = new PrintWriter(fileName);
+			for (TShape.Solid s : primitives)
+				out.println(s.description);
+			out.close();
+			if (out.checkError())
+				throw new IOException();
+		}
+		catch (IOException ex)
+		{
+			throw new RuntimeException("Cannot write to "+fileName, ex);
+		}
+	}
+
+	private static TShape.Face planarFace(Plane plane, TShape.Edge circle, boolean reversed)
+	{
+		double [] bbox = emptyBoundingBox();
+		circle.curve.addToBoundingBox(circle.first, circle.last, bbox);
+		TShape.Face face = new TShape.Face(plane, bbox);
+		circle.pcurves.add(new TShape.PCurve(face, planeCurve(plane, circle.curve), null));
+		TShape wire = new TShape(TShape.WIRE);
+		wire.add(circle, reversed);
+		face.add(wire, false);
+		return face;
+	}
+
+	/**
+	 * Returns the curve in parameter space of a plane of a line or a
+	 * circle lying on this plane.
+	 */
+	static AnalyticCurve2D planeCurve(Plane plane, AnalyticCurve curve)
+	{
+		double [] o = new double[3];
+		double [] a = new double[3];
+		if (curve instanceof Line)
+		{
+			Line line = (Line) curve;
+			plane.toLocal(line.getOrigin(), 0, true, o);
+			plane.toLocal(line.getDirection(), 0, false, a);
+			return new Line2D(o[0], o[1], a[0], a[1]);
+		}
+		Circle circle = (Circle) curve;
+		double [] b = new double[3];
+		plane.toLocal(circle.getCenter(), 0, true, o);
+		plane.toLocal(circle.getXAxis(), 0, false, a);
+		plane.toLocal(circle.getYAxis(), 0, false, b);
+		return new Circle2D(o, a, b, circle.getRadius());
+	}
+
+	private static AnalyticSolid newSolid(TShape.Solid solid, TShape shell)
+	{
+		solid.add(shell, false);
+		setPrimitive(solid, solid);
+		return new AnalyticSolid(solid, false);
+	}
+
+	private static void setPrimitive(TShape t, TShape.Solid solid)
+	{
+		if (t.primitive != null)
+			return;
+		t.primitive = solid;
+		for (AnalyticShape s : t.children)
+			setPrimitive(s.tshape, solid);
+	}
+
+	/**
+	 * Returns a direction which is not collinear to the given axis.
+	 */
+	private static double [] perpendicular(double [] axis)
+	{
+		double ax = Math.abs(axis[0]);
+		double ay = Math.abs(axis[1]);
+		double az = Math.abs(axis[2]);
+		if (ax <= ay && ax <= az)
+			return X;
+		if (ay <= az)
+			return Y;
+		return Z;
+	}
+
+	static double [] emptyBoundingBox()
+	{
+		return new double[] {
+			Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE,
+			-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+	}
+}
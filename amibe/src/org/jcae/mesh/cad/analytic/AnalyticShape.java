@@ -0,0 +1,180 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import java.util.LinkedHashSet;
+import org.jcae.mesh.cad.CADShape;
+
+/**
+ * Oriented reference to a topological entity.  As with OCC, two shapes
+ * are equal if they reference the same entity, whatever their orientation
+ * is.
+ */
+public class AnalyticShape implements CADShape
+{
+	final TShape tshape;
+	final boolean reversed;
+
+	AnalyticShape(TShape tshape, boolean reversed)
+	{
+		this.tshape = tshape;
+		this.reversed = reversed;
+	}
+
+	static AnalyticShape newShape(TShape t, boolean reversed)
+	{
+		switch (t.type)
+		{
+			case TShape.COMPOUND:
+				return new AnalyticCompound(t, reversed);
+			case TShape.SOLID:
+				return new AnalyticSolid(t, reversed);
+			case TShape.SHELL:
+				return new AnalyticShell(t, reversed);
+			case TShape.FACE:
+				return new AnalyticFace(t, reversed);
+			case TShape.WIRE:
+				return new AnalyticWire(t, reversed);
+			case TShape.EDGE:
+				return new AnalyticEdge(t, reversed);
+			case TShape.VERTEX:
+				return new AnalyticVertex(t, reversed);
+			default:
+				return new AnalyticShape(t, reversed);
+		}
+	}
+
+	/**
+	 * Returns the number of sub-shapes.
+	 */
+	final int nrChildren()
+	{
+		return tshape.children.size();
+	}
+
+	/**
+	 * Returns a sub-shape, its orientation is composed with the
+	 * orientation of this shape.
+	 */
+	final AnalyticShape child(int index)
+	{
+		AnalyticShape c = tshape.children.get(index);
+		if (reversed)
+			return newShape(c.tshape, !c.reversed);
+		return c;
+	}
+
+	public double [] boundingBox()
+	{
+		double [] bbox = AnalyticModel.emptyBoundingBox();
+		addToBoundingBox(tshape, bbox);
+		return bbox;
+	}
+
+	private static void addToBoundingBox(TShape t, double [] bbox)
+	{
+		if (t instanceof TShape.Face)
+		{
+			double [] b = ((TShape.Face) t).bbox;
+			for (int i = 0; i < 3; i++)
+			{
+				bbox[i] = Math.min(bbox[i], b[i]);
+				bbox[i+3] = Math.max(bbox[i+3], b[i+3]);
+			}
+		}
+		else if (t instanceof TShape.Edge && ((TShape.Edge) t).curve != null)
+		{
+			TShape.Edge e = (TShape.Edge) t;
+			e.curve.addToBoundingBox(e.first, e.last, bbox);
+		}
+		else if (t instanceof TShape.Vertex)
+		{
+			double [] p = ((TShape.Vertex) t).point;
+			for (int i = 0; i < 3; i++)
+			{
+				bbox[i] = Math.min(bbox[i], p[i]);
+				bbox[i+3] = Math.max(bbox[i+3], p[i]);
+			}
+		}
+		else
+		{
+			for (AnalyticShape s : t.children)
+				addToBoundingBox(s.tshape, bbox);
+		}
+	}
+
+	public AnalyticShape reversed()
+	{
+		return newShape(tshape, !reversed);
+	}
+
+	public int orientation()
+	{
+		//  TopAbs_Orientation values
+		return reversed ? 1 : 0;
+	}
+
+	public boolean isOrientationForward()
+	{
+		return !reversed;
+	}
+
+	@Override
+	public final boolean equals(Object o)
+	{
+		if (!(o instanceof AnalyticShape))
+			return false;
+		return tshape == ((AnalyticShape) o).tshape;
+	}
+
+	public boolean isSame(Object o)
+	{
+		return equals(o);
+	}
+
+	/**
+	 * Writes the primitives which own this shape into a model file,
+	 * see {@link AnalyticModel}.
+	 */
+	public void writeNative(String filename)
+	{
+		LinkedHashSet<TShape.Solid> primitives = new LinkedHashSet<TShape.Solid>();
+		collectPrimitives(tshape, primitives);
+		AnalyticModel.write(primitives, filename);
+	}
+
+	private static void collectPrimitives(TShape t, LinkedHashSet<TShape.Solid> primitives)
+	{
+		if (t.primitive != null)
+			primitives.add(t.primitive);
+		else
+		{
+			for (AnalyticShape s : t.children)
+				collectPrimitives(s.tshape, primitives);
+		}
+	}
+
+	@Override
+	public final int hashCode()
+	{
+		return tshape.hashCode();
+	}
+}
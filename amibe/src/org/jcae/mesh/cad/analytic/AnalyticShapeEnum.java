@@ -0,0 +1,131 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import org.jcae.mesh.cad.*;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Typesafe enum of CAD types
+ */
+public abstract class AnalyticShapeEnum extends CADShapeEnum
+{
+	// See TShape constants
+	private final int type;
+	private AnalyticShapeEnum(String name, int t)
+	{
+		super(name);
+		type = t;
+	}
+	final int asType()
+	{
+		return type;
+	}
+
+	private static final AnalyticShapeEnum ANALYTIC_VERTEX = new AnalyticShapeEnum("vertex", 7) {
+		@Override
+		public Class<CADVertex> asClass() { return CADVertex.class; }
+	};
+	private static final AnalyticShapeEnum ANALYTIC_EDGE = new AnalyticShapeEnum("edge", 6) {
+		@Override
+		public Class<CADEdge> asClass() { return CADEdge.class; }
+	};
+	private static final AnalyticShapeEnum ANALYTIC_WIRE = new AnalyticShapeEnum("wire", 5) {
+		@Override
+		public Class<CADWire> asClass() { return CADWire.class; }
+	};
+	private static final AnalyticShapeEnum ANALYTIC_FACE = new AnalyticShapeEnum("face", 4) {
+		@Override
+		public Class<CADFace> asClass() { return CADFace.class; }
+	};
+	private static final AnalyticShapeEnum ANALYTIC_SHELL = new AnalyticShapeEnum("shell", 3) {
+		@Override
+		public Class<CADShell> asClass() { return CADShell.class; }
+	};
+	private static final AnalyticShapeEnum ANALYTIC_SOLID = new AnalyticShapeEnum("solid", 2) {
+		@Override
+		public Class<CADSolid> asClass() { return CADSolid.class; }
+	};
+	private static final AnalyticShapeEnum ANALYTIC_COMPSOLID = new AnalyticShapeEnum("compsolid", 1) {
+		@Override
+		public Class<CADCompSolid> asClass() { return CADCompSolid.class; }
+	};
+	private static final AnalyticShapeEnum ANALYTIC_COMPOUND = new AnalyticShapeEnum("compound", 0) {
+		@Override
+		public Class<CADCompound> asClass() { return CADCompound.class; }
+	};
+	// Note: VALUES must contain items in the same order as they
+	// have been declared in this file!
+	private static final AnalyticShapeEnum [] VALUES = {
+		ANALYTIC_VERTEX,
+		ANALYTIC_EDGE,
+		ANALYTIC_WIRE,
+		ANALYTIC_FACE,
+		ANALYTIC_SHELL,
+		ANALYTIC_SOLID,
+		ANALYTIC_COMPSOLID,
+		ANALYTIC_COMPOUND };
+
+	// Export ordinal to newShapeEnumIterator
+	final int getOrdinal()
+	{
+		return ordinal;
+	}
+	static Iterator<CADShapeEnum> newShapeEnumIterator(final AnalyticShapeEnum start, final AnalyticShapeEnum end)
+	{
+		final int iStep;
+		if (start.getOrdinal() > end.getOrdinal())
+			iStep = -1;
+		else
+			iStep = 1;
+		return new Iterator<CADShapeEnum>()
+		{
+			AnalyticShapeEnum current = null;
+			public boolean hasNext()
+			{
+				return current != end;
+			}
+			public CADShapeEnum next()
+			{
+				if (!hasNext())
+					throw new NoSuchElementException();
+				if (current == null)
+					current = start;
+				else
+					current = VALUES[current.getOrdinal()+iStep];
+				return current;
+			}
+			public void remove()
+			{
+			}
+		};
+	}
+	static AnalyticShapeEnum getSingleton(String name)
+	{
+		for (int i = 0; i < VALUES.length; i++)
+			if (VALUES[i].toString().equals(name))
+				return VALUES[i];
+		throw new IllegalArgumentException();
+	}
+
+}
@@ -0,0 +1,139 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import java.io.IOException;
+import java.util.Iterator;
+import org.jcae.mesh.cad.CADEdge;
+import org.jcae.mesh.cad.CADExplorer;
+import org.jcae.mesh.cad.CADFace;
+import org.jcae.mesh.cad.CADGeomCurve2D;
+import org.jcae.mesh.cad.CADGeomCurve3D;
+import org.jcae.mesh.cad.CADIterator;
+import org.jcae.mesh.cad.CADShape;
+import org.jcae.mesh.cad.CADShapeEnum;
+import org.jcae.mesh.cad.CADShapeFactory;
+import org.jcae.mesh.cad.CADWireExplorer;
+
+/**
+ * Pure Java CAD engine for analytic models, see {@link AnalyticModel}.
+ * It does not need native libraries, and is selected by setting the
+ * <code>org.jcae.mesh.cad</code> system property to
+ * <code>org.jcae.mesh.cad.analytic.AnalyticShapeFactory</code>.
+ *
+ * Note: this class is used only by reflection, see CADShapeFactory#factory
+ * initialization.
+ */
+public class AnalyticShapeFactory extends CADShapeFactory
+{
+	@Override
+	public final CADShape newShape(Object o)
+	{
+		if (!(o instanceof AnalyticShape))
+			throw new IllegalArgumentException();
+		return (AnalyticShape) o;
+	}
+
+	/**
+	 * Reads a model file, see {@link AnalyticModel#read(String)}.
+	 */
+	@Override
+	public CADShape newShape(String fileName)
+	{
+		try
+		{
+			return AnalyticModel.read(fileName);
+		}
+		catch (IOException ex)
+		{
+			throw new IllegalArgumentException("Cannot read "+fileName+": "+ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Boolean operations are not supported.
+	 *
+	 * @return <code>null</code>
+	 */
+	@Override
+	public CADShape newShape(CADShape o1, CADShape o2, char type)
+	{
+		return null;
+	}
+
+	@Override
+	public CADExplorer newExplorer()
+	{
+		return new AnalyticExplorer();
+	}
+
+	@Override
+	public CADWireExplorer newWireExplorer()
+	{
+		return new AnalyticWireExplorer();
+	}
+
+	@Override
+	public CADIterator newIterator()
+	{
+		return new AnalyticIterator();
+	}
+
+	@Override
+	protected Iterator<CADShapeEnum> newShapeEnumIterator(CADShapeEnum start, CADShapeEnum end)
+	{
+		return AnalyticShapeEnum.newShapeEnumIterator((AnalyticShapeEnum) start, (AnalyticShapeEnum) end);
+	}
+
+	@Override
+	protected CADShapeEnum getShapeEnumInstance(String name)
+	{
+		return AnalyticShapeEnum.getSingleton(name);
+	}
+
+	@Override
+	public CADGeomCurve2D newCurve2D(CADEdge E, CADFace F)
+	{
+		CADGeomCurve2D curve = null;
+		try
+		{
+			curve = new AnalyticGeomCurve2D(E, F);
+		}
+		catch (RuntimeException ex)
+		{
+		}
+		return curve;
+	}
+
+	@Override
+	public CADGeomCurve3D newCurve3D(CADEdge E)
+	{
+		CADGeomCurve3D curve = null;
+		try
+		{
+			curve = new AnalyticGeomCurve3D(E);
+		}
+		catch (RuntimeException ex)
+		{
+		}
+		return curve;
+	}
+}
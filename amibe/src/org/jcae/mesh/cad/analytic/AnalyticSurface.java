@@ -0,0 +1,318 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import org.jcae.mesh.cad.CADSurfaceEvaluator;
+
+/**
+ * Base class of analytic surfaces.  A surface is defined in a local
+ * orthonormal frame (origin, X, Y, Z); subclasses compute point and
+ * derivatives in this frame, and this class transforms them into global
+ * coordinates and computes normal and curvatures.  Instances are
+ * immutable and thus thread-safe.
+ */
+public abstract class AnalyticSurface implements CADSurfaceEvaluator
+{
+	private final double [] origin = new double[3];
+	private final double [] xAxis = new double[3];
+	private final double [] yAxis = new double[3];
+	private final double [] zAxis = new double[3];
+
+	/**
+	 * Creates a surface in the global frame.
+	 */
+	protected AnalyticSurface()
+	{
+		this(new double[] {0.0, 0.0, 0.0}, new double[] {0.0, 0.0, 1.0}, new double[] {1.0, 0.0, 0.0});
+	}
+
+	/**
+	 * Creates a surface in a local frame.
+	 *
+	 * @param origin  origin of local frame
+	 * @param zAxis  direction of Z axis, it is normalized
+	 * @param xDirection  direction of X axis, its component along Z is
+	 *        removed and it is normalized
+	 * @throws IllegalArgumentException if axes are null or collinear
+	 */
+	protected AnalyticSurface(double [] origin, double [] zAxis, double [] xDirection)
+	{
+		System.arraycopy(origin, 0, this.origin, 0, 3);
+		frame(zAxis, xDirection, xAxis, yAxis, this.zAxis);
+	}
+
+	/**
+	 * Computes a direct orthonormal frame.
+	 *
+	 * @param zDirection  direction of Z axis
+	 * @param xDirection  direction of X axis, its component along Z is
+	 *        removed
+	 * @param x  array receiving X axis
+	 * @param y  array receiving Y axis
+	 * @param z  array receiving Z axis
+	 * @throws IllegalArgumentException if axes are null or collinear
+	 */
+	static void frame(double [] zDirection, double [] xDirection, double [] x, double [] y, double [] z)
+	{
+		double n = norm(zDirection);
+		if (n == 0.0)
+			throw new IllegalArgumentException("Null Z axis");
+		for (int i = 0; i < 3; i++)
+			z[i] = zDirection[i] / n;
+		double dot = dot(xDirection, 0, z, 0);
+		for (int i = 0; i < 3; i++)
+			x[i] = xDirection[i] - dot * z[i];
+		n = norm(x);
+		if (n == 0.0)
+			throw new IllegalArgumentException("X direction is collinear to Z axis");
+		for (int i = 0; i < 3; i++)
+			x[i] /= n;
+		cross(z, 0, x, 0, y, 0);
+	}
+
+	/**
+	 * Computes point and derivatives in local frame.
+	 *
+	 * @param u  first parameter
+	 * @param v  second parameter
+	 * @param result  array receiving local coordinates of point, D1U,
+	 *        D1V, D2U, D2V and DUV at their usual offsets
+	 * @param offset  offset within <code>result</code>
+	 */
+	protected abstract void evaluateLocal(double u, double v, double [] result, int offset);
+
+	/**
+	 * Computes point in local frame.
+	 *
+	 * @param u  first parameter
+	 * @param v  second parameter
+	 * @param xyz  array receiving local coordinates
+	 * @param offset  offset within <code>xyz</code>
+	 */
+	protected abstract void valueLocal(double u, double v, double [] xyz, int offset);
+
+	/**
+	 * Returns the distance between a point given in local coordinates and
+	 * this surface.
+	 */
+	protected abstract double distanceLocal(double x, double y, double z);
+
+	public final void evaluate(double u, double v, double [] result, int offset)
+	{
+		evaluate(u, v, ALL, result, offset);
+	}
+
+	/**
+	 * Computes some quantities at a given point.  Derivatives are
+	 * always computed in local frame, only requested ones are
+	 * transformed into global coordinates.
+	 */
+	public final void evaluate(double u, double v, int properties, double [] result, int offset)
+	{
+		evaluateLocal(u, v, result, offset);
+		toGlobal(result, offset + POINT, true);
+		int last = POINT;
+		if ((properties & (SECOND_DERIVATIVES | CURVATURES)) != 0)
+			last = DUV;
+		else if ((properties & FIRST_DERIVATIVES) != 0)
+			last = D1V;
+		for (int k = D1U; k <= last; k += 3)
+			toGlobal(result, offset + k, false);
+		if ((properties & CURVATURES) != 0)
+			computeProperties(result, offset);
+		else if ((properties & FIRST_DERIVATIVES) != 0)
+			computeNormal(result, offset);
+	}
+
+	public final void evaluate(double [] uv, int nr, double [] result)
+	{
+		for (int i = 0; i < nr; i++)
+			evaluate(uv[2*i], uv[2*i+1], result, i * SIZE);
+	}
+
+	public final void value(double u, double v, double [] xyz, int offset)
+	{
+		valueLocal(u, v, xyz, offset);
+		toGlobal(xyz, offset, true);
+	}
+
+	public final double lowerDistance(double [] p)
+	{
+		double x = p[0] - origin[0];
+		double y = p[1] - origin[1];
+		double z = p[2] - origin[2];
+		return distanceLocal(
+			x * xAxis[0] + y * xAxis[1] + z * xAxis[2],
+			x * yAxis[0] + y * yAxis[1] + z * yAxis[2],
+			x * zAxis[0] + y * zAxis[1] + z * zAxis[2]);
+	}
+
+	/**
+	 * Transforms a point or a vector from global to local coordinates.
+	 *
+	 * @param a  array containing global coordinates
+	 * @param offset  offset within <code>a</code>
+	 * @param point  <code>true</code> if <code>a</code> is a point,
+	 *        <code>false</code> if it is a vector
+	 * @param local  array receiving local coordinates
+	 */
+	final void toLocal(double [] a, int offset, boolean point, double [] local)
+	{
+		double x = a[offset];
+		double y = a[offset+1];
+		double z = a[offset+2];
+		if (point)
+		{
+			x -= origin[0];
+			y -= origin[1];
+			z -= origin[2];
+		}
+		local[0] = x * xAxis[0] + y * xAxis[1] + z * xAxis[2];
+		local[1] = x * yAxis[0] + y * yAxis[1] + z * yAxis[2];
+		local[2] = x * zAxis[0] + y * zAxis[1] + z * zAxis[2];
+	}
+
+	private void toGlobal(double [] a, int offset, boolean point)
+	{
+		double x = a[offset];
+		double y = a[offset+1];
+		double z = a[offset+2];
+		for (int i = 0; i < 3; i++)
+			a[offset+i] = x * xAxis[i] + y * yAxis[i] + z * zAxis[i] + (point ? origin[i] : 0.0);
+	}
+
+	/**
+	 * Computes normal, curvatures and principal directions from first
+	 * and second derivatives.  Values are stored at their offsets defined
+	 * in {@link CADSurfaceEvaluator}, and are set to <code>Double.NaN</code>
+	 * if first derivatives are collinear or one of them vanishes.
+	 *
+	 * @param r  array containing derivatives
+	 * @param o  offset within <code>r</code>
+	 */
+	public static void computeProperties(double [] r, int o)
+	{
+		if (!computeNormal(r, o))
+		{
+			for (int i = NORMAL; i < SIZE; i++)
+				r[o + i] = Double.NaN;
+			return;
+		}
+		//  First fundamental form
+		double e = dot(r, o + D1U, r, o + D1U);
+		double f = dot(r, o + D1U, r, o + D1V);
+		double g = dot(r, o + D1V, r, o + D1V);
+		//  Second fundamental form
+		double l = dot(r, o + D2U, r, o + NORMAL);
+		double m = dot(r, o + DUV, r, o + NORMAL);
+		double nn = dot(r, o + D2V, r, o + NORMAL);
+		double det = e * g - f * f;
+		double gauss = (l * nn - m * m) / det;
+		double mean = 0.5 * (e * nn - 2.0 * f * m + g * l) / det;
+		double delta = mean * mean - gauss;
+		double s = delta > 0.0 ? Math.sqrt(delta) : 0.0;
+		double kmax = mean + s;
+		r[o + MIN_CURVATURE] = mean - s;
+		r[o + MAX_CURVATURE] = kmax;
+		r[o + MEAN_CURVATURE] = mean;
+		r[o + GAUSSIAN_CURVATURE] = gauss;
+
+		//  Direction (du, dv) of maximum curvature is in the kernel of
+		//  (II - kmax I), two candidates are considered to avoid
+		//  cancellations.
+		double a = l - kmax * e;
+		double b = m - kmax * f;
+		double c = nn - kmax * g;
+		double du, dv;
+		if (a * a + b * b >= b * b + c * c)
+		{
+			du = b;
+			dv = -a;
+		}
+		else
+		{
+			du = c;
+			dv = -b;
+		}
+		double scale = Math.abs(l) + Math.abs(m) + Math.abs(nn) + Math.abs(kmax) * (e + g);
+		if (Math.abs(du) + Math.abs(dv) <= 1.e-12 * scale)
+		{
+			//  Umbilic point, any direction is principal
+			du = 1.0;
+			dv = 0.0;
+		}
+		for (int i = 0; i < 3; i++)
+			r[o + MAX_DIRECTION + i] = du * r[o + D1U + i] + dv * r[o + D1V + i];
+		double n = Math.sqrt(dot(r, o + MAX_DIRECTION, r, o + MAX_DIRECTION));
+		for (int i = 0; i < 3; i++)
+			r[o + MAX_DIRECTION + i] /= n;
+		cross(r, o + NORMAL, r, o + MAX_DIRECTION, r, o + MIN_DIRECTION);
+	}
+
+	/**
+	 * Computes unit normal from first derivatives.  It is set to
+	 * <code>Double.NaN</code> if first derivatives are collinear or
+	 * one of them vanishes.
+	 *
+	 * @param r  array containing derivatives
+	 * @param o  offset within <code>r</code>
+	 * @return <code>true</code> if normal is defined
+	 */
+	private static boolean computeNormal(double [] r, int o)
+	{
+		cross(r, o + D1U, r, o + D1V, r, o + NORMAL);
+		double n = Math.sqrt(dot(r, o + NORMAL, r, o + NORMAL));
+		double e = dot(r, o + D1U, r, o + D1U);
+		double g = dot(r, o + D1V, r, o + D1V);
+		//  Compare with e+g so that result does not depend on scale;
+		//  this detects poles despite rounding errors in trigonometric
+		//  functions.
+		if (n <= 1.e-12 * (e + g))
+		{
+			for (int i = 0; i < 3; i++)
+				r[o + NORMAL + i] = Double.NaN;
+			return false;
+		}
+		for (int i = 0; i < 3; i++)
+			r[o + NORMAL + i] /= n;
+		return true;
+	}
+
+	private static double dot(double [] a, int i, double [] b, int j)
+	{
+		return a[i] * b[j] + a[i+1] * b[j+1] + a[i+2] * b[j+2];
+	}
+
+	private static void cross(double [] a, int i, double [] b, int j, double [] ret, int k)
+	{
+		double x = a[i+1] * b[j+2] - a[i+2] * b[j+1];
+		double y = a[i+2] * b[j] - a[i] * b[j+2];
+		double z = a[i] * b[j+1] - a[i+1] * b[j];
+		ret[k] = x;
+		ret[k+1] = y;
+		ret[k+2] = z;
+	}
+
+	private static double norm(double [] a)
+	{
+		return Math.sqrt(dot(a, 0, a, 0));
+	}
+}
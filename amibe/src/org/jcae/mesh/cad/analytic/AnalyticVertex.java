@@ -0,0 +1,69 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import org.jcae.mesh.cad.CADFace;
+import org.jcae.mesh.cad.CADVertex;
+
+public class AnalyticVertex extends AnalyticShape implements CADVertex
+{
+	AnalyticVertex(TShape tshape, boolean reversed)
+	{
+		super(tshape, reversed);
+	}
+
+	/**
+	 * Returns parameters of this vertex on a face.  They are computed
+	 * from the curve on this face of the first edge bounded by this
+	 * vertex.
+	 *
+	 * @throws IllegalArgumentException if this vertex is not on the face
+	 */
+	public double [] parameters(CADFace o)
+	{
+		AnalyticFace face = (AnalyticFace) o;
+		double [] uv = new double[2];
+		for (int w = 0; w < face.nrChildren(); w++)
+		{
+			AnalyticShape wire = face.child(w);
+			for (int i = 0; i < wire.nrChildren(); i++)
+			{
+				AnalyticEdge edge = (AnalyticEdge) wire.child(i);
+				TShape.Edge e = (TShape.Edge) edge.tshape;
+				double t;
+				if (e.children.get(0).tshape == tshape)
+					t = e.first;
+				else if (e.children.get(1).tshape == tshape)
+					t = e.last;
+				else
+					continue;
+				edge.pcurve(face).value(t, uv, 0);
+				return uv;
+			}
+		}
+		throw new IllegalArgumentException("Vertex is not on face");
+	}
+
+	public double [] pnt()
+	{
+		return ((TShape.Vertex) tshape).point.clone();
+	}
+}
@@ -0,0 +1,43 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import org.jcae.mesh.cad.CADWire;
+
+public class AnalyticWire extends AnalyticShape implements CADWire
+{
+	AnalyticWire(TShape tshape, boolean reversed)
+	{
+		super(tshape, reversed);
+	}
+
+	public double length()
+	{
+		double ret = 0.0;
+		for (AnalyticShape s : tshape.children)
+		{
+			TShape.Edge e = (TShape.Edge) s.tshape;
+			if (e.curve != null)
+				ret += e.curve.length(e.first, e.last);
+		}
+		return ret;
+	}
+}
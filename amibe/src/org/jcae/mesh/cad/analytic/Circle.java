@@ -0,0 +1,96 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+/**
+ * Circle <code>C(t) = O + R (cos(t) X + sin(t) Y)</code>.
+ */
+public class Circle extends AnalyticCurve
+{
+	private final double [] center = new double[3];
+	private final double [] xAxis = new double[3];
+	private final double [] yAxis = new double[3];
+	private final double [] extent = new double[3];
+	private final double radius;
+
+	/**
+	 * Creates a circle.
+	 *
+	 * @param center  center
+	 * @param axis  normal to the plane of the circle
+	 * @param xDirection  direction of point with t=0
+	 * @param radius  radius
+	 */
+	public Circle(double [] center, double [] axis, double [] xDirection, double radius)
+	{
+		System.arraycopy(center, 0, this.center, 0, 3);
+		double [] zAxis = new double[3];
+		AnalyticSurface.frame(axis, xDirection, xAxis, yAxis, zAxis);
+		this.radius = radius;
+		//  Half extent of the circle along each axis
+		for (int i = 0; i < 3; i++)
+			extent[i] = radius * Math.sqrt(Math.max(0.0, 1.0 - zAxis[i] * zAxis[i]));
+	}
+
+	public final double getRadius()
+	{
+		return radius;
+	}
+
+	final double [] getCenter()
+	{
+		return center;
+	}
+
+	final double [] getXAxis()
+	{
+		return xAxis;
+	}
+
+	final double [] getYAxis()
+	{
+		return yAxis;
+	}
+
+	@Override
+	public void value(double t, double [] xyz, int o)
+	{
+		double c = radius * Math.cos(t);
+		double s = radius * Math.sin(t);
+		for (int i = 0; i < 3; i++)
+			xyz[o+i] = center[i] + c * xAxis[i] + s * yAxis[i];
+	}
+
+	@Override
+	public double length(double from, double to)
+	{
+		return Math.abs(to - from) * radius;
+	}
+
+	/**
+	 * Enlarges a bounding box so that it contains the whole circle.
+	 */
+	@Override
+	public void addToBoundingBox(double from, double to, double [] bbox)
+	{
+		addToBoundingBox(center, extent, bbox);
+	}
+}
@@ -0,0 +1,52 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+/**
+ * Circle <code>C(t) = C + R (cos(t) A + sin(t) B)</code>, where
+ * <code>A</code> and <code>B</code> are orthonormal; the circle is
+ * clockwise when <code>B</code> is the opposite of the rotation of
+ * <code>A</code> by a right angle.
+ */
+public class Circle2D extends AnalyticCurve2D
+{
+	private final double cu, cv, au, av, bu, bv, radius;
+
+	public Circle2D(double [] center, double [] a, double [] b, double radius)
+	{
+		cu = center[0];
+		cv = center[1];
+		au = a[0];
+		av = a[1];
+		bu = b[0];
+		bv = b[1];
+		this.radius = radius;
+	}
+
+	@Override
+	public void value(double t, double [] uv, int o)
+	{
+		double c = radius * Math.cos(t);
+		double s = radius * Math.sin(t);
+		uv[o] = cu + c * au + s * bu;
+		uv[o+1] = cv + c * av + s * bv;
+	}
+}
@@ -0,0 +1,93 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+/**
+ * Cylinder <code>S(u,v) = O + R (cos(u) X + sin(u) Y) + v Z</code>.
+ */
+public class Cylinder extends AnalyticSurface
+{
+	private final double radius;
+
+	/**
+	 * Creates a cylinder around Z axis.
+	 *
+	 * @param radius  radius
+	 */
+	public Cylinder(double radius)
+	{
+		this.radius = radius;
+	}
+
+	/**
+	 * Creates a cylinder.
+	 *
+	 * @param origin  a point on the axis
+	 * @param axis  axis direction
+	 * @param xDirection  direction of points with u=0
+	 * @param radius  radius
+	 */
+	public Cylinder(double [] origin, double [] axis, double [] xDirection, double radius)
+	{
+		super(origin, axis, xDirection);
+		this.radius = radius;
+	}
+
+	public final double getRadius()
+	{
+		return radius;
+	}
+
+	@Override
+	protected void evaluateLocal(double u, double v, double [] r, int o)
+	{
+		double cu = radius * Math.cos(u);
+		double su = radius * Math.sin(u);
+		r[o+POINT] = cu;
+		r[o+POINT+1] = su;
+		r[o+POINT+2] = v;
+		r[o+D1U] = -su;
+		r[o+D1U+1] = cu;
+		r[o+D1U+2] = 0.0;
+		r[o+D1V] = 0.0;
+		r[o+D1V+1] = 0.0;
+		r[o+D1V+2] = 1.0;
+		r[o+D2U] = -cu;
+		r[o+D2U+1] = -su;
+		r[o+D2U+2] = 0.0;
+		for (int i = D2V; i < DUV + 3; i++)
+			r[o+i] = 0.0;
+	}
+
+	@Override
+	protected void valueLocal(double u, double v, double [] xyz, int o)
+	{
+		xyz[o] = radius * Math.cos(u);
+		xyz[o+1] = radius * Math.sin(u);
+		xyz[o+2] = v;
+	}
+
+	@Override
+	protected double distanceLocal(double x, double y, double z)
+	{
+		return Math.abs(Math.sqrt(x*x + y*y) - radius);
+	}
+}
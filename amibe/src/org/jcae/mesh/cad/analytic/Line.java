@@ -0,0 +1,81 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+/**
+ * Line <code>C(t) = O + t D</code>.
+ */
+public class Line extends AnalyticCurve
+{
+	private static final double [] NO_EXTENT = new double[3];
+	private final double [] origin = new double[3];
+	private final double [] direction = new double[3];
+	private final double speed;
+
+	/**
+	 * Creates a line.
+	 *
+	 * @param origin  point with parameter 0
+	 * @param direction  derivative, it is not normalized
+	 */
+	public Line(double [] origin, double [] direction)
+	{
+		System.arraycopy(origin, 0, this.origin, 0, 3);
+		System.arraycopy(direction, 0, this.direction, 0, 3);
+		speed = Math.sqrt(direction[0] * direction[0] +
+			direction[1] * direction[1] + direction[2] * direction[2]);
+		if (speed == 0.0)
+			throw new IllegalArgumentException("Null direction");
+	}
+
+	final double [] getOrigin()
+	{
+		return origin;
+	}
+
+	final double [] getDirection()
+	{
+		return direction;
+	}
+
+	@Override
+	public void value(double t, double [] xyz, int o)
+	{
+		for (int i = 0; i < 3; i++)
+			xyz[o+i] = origin[i] + t * direction[i];
+	}
+
+	@Override
+	public double length(double from, double to)
+	{
+		return Math.abs(to - from) * speed;
+	}
+
+	@Override
+	public void addToBoundingBox(double from, double to, double [] bbox)
+	{
+		double [] xyz = new double[3];
+		value(from, xyz, 0);
+		addToBoundingBox(xyz, NO_EXTENT, bbox);
+		value(to, xyz, 0);
+		addToBoundingBox(xyz, NO_EXTENT, bbox);
+	}
+}
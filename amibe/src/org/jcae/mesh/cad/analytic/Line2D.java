@@ -0,0 +1,44 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+/**
+ * Line <code>C(t) = (u0 + t du, v0 + t dv)</code>.
+ */
+public class Line2D extends AnalyticCurve2D
+{
+	private final double u0, v0, du, dv;
+
+	public Line2D(double u0, double v0, double du, double dv)
+	{
+		this.u0 = u0;
+		this.v0 = v0;
+		this.du = du;
+		this.dv = dv;
+	}
+
+	@Override
+	public void value(double t, double [] uv, int o)
+	{
+		uv[o] = u0 + t * du;
+		uv[o+1] = v0 + t * dv;
+	}
+}
@@ -0,0 +1,71 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+/**
+ * Plane <code>S(u,v) = O + u X + v Y</code>.
+ */
+public class Plane extends AnalyticSurface
+{
+	/**
+	 * Creates the plane z=0.
+	 */
+	public Plane()
+	{
+	}
+
+	/**
+	 * Creates a plane.
+	 *
+	 * @param origin  a point of this plane
+	 * @param normal  normal vector
+	 * @param xDirection  direction of u parameter
+	 */
+	public Plane(double [] origin, double [] normal, double [] xDirection)
+	{
+		super(origin, normal, xDirection);
+	}
+
+	@Override
+	protected void evaluateLocal(double u, double v, double [] r, int o)
+	{
+		for (int i = 0; i < 18; i++)
+			r[o+i] = 0.0;
+		r[o+POINT] = u;
+		r[o+POINT+1] = v;
+		r[o+D1U] = 1.0;
+		r[o+D1V+1] = 1.0;
+	}
+
+	@Override
+	protected void valueLocal(double u, double v, double [] xyz, int o)
+	{
+		xyz[o] = u;
+		xyz[o+1] = v;
+		xyz[o+2] = 0.0;
+	}
+
+	@Override
+	protected double distanceLocal(double x, double y, double z)
+	{
+		return Math.abs(z);
+	}
+}
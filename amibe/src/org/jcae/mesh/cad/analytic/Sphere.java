@@ -0,0 +1,101 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+/**
+ * Sphere <code>S(u,v) = O + R cos(v) (cos(u) X + sin(u) Y) + R sin(v) Z</code>,
+ * where <code>v</code> is the latitude.
+ */
+public class Sphere extends AnalyticSurface
+{
+	private final double radius;
+
+	/**
+	 * Creates a sphere centered at origin.
+	 *
+	 * @param radius  radius
+	 */
+	public Sphere(double radius)
+	{
+		this.radius = radius;
+	}
+
+	/**
+	 * Creates a sphere.
+	 *
+	 * @param center  center
+	 * @param axis  direction of north pole
+	 * @param xDirection  direction of points with u=0 on the equator
+	 * @param radius  radius
+	 */
+	public Sphere(double [] center, double [] axis, double [] xDirection, double radius)
+	{
+		super(center, axis, xDirection);
+		this.radius = radius;
+	}
+
+	public final double getRadius()
+	{
+		return radius;
+	}
+
+	@Override
+	protected void evaluateLocal(double u, double v, double [] r, int o)
+	{
+		double cu = Math.cos(u);
+		double su = Math.sin(u);
+		double rcv = radius * Math.cos(v);
+		double rsv = radius * Math.sin(v);
+		r[o+POINT] = rcv * cu;
+		r[o+POINT+1] = rcv * su;
+		r[o+POINT+2] = rsv;
+		r[o+D1U] = -rcv * su;
+		r[o+D1U+1] = rcv * cu;
+		r[o+D1U+2] = 0.0;
+		r[o+D1V] = -rsv * cu;
+		r[o+D1V+1] = -rsv * su;
+		r[o+D1V+2] = rcv;
+		r[o+D2U] = -rcv * cu;
+		r[o+D2U+1] = -rcv * su;
+		r[o+D2U+2] = 0.0;
+		r[o+D2V] = -rcv * cu;
+		r[o+D2V+1] = -rcv * su;
+		r[o+D2V+2] = -rsv;
+		r[o+DUV] = rsv * su;
+		r[o+DUV+1] = -rsv * cu;
+		r[o+DUV+2] = 0.0;
+	}
+
+	@Override
+	protected void valueLocal(double u, double v, double [] xyz, int o)
+	{
+		double rcv = radius * Math.cos(v);
+		xyz[o] = rcv * Math.cos(u);
+		xyz[o+1] = rcv * Math.sin(u);
+		xyz[o+2] = radius * Math.sin(v);
+	}
+
+	@Override
+	protected double distanceLocal(double x, double y, double z)
+	{
+		return Math.abs(Math.sqrt(x*x + y*y + z*z) - radius);
+	}
+}
@@ -0,0 +1,132 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Topological entity.  As in OCC, an entity is shared by all its
+ * occurrences in the model, and {@link AnalyticShape} instances are
+ * oriented references to an entity.
+ */
+class TShape
+{
+	// Same values as TopAbs_ShapeEnum
+	static final int COMPOUND = 0;
+	static final int COMPSOLID = 1;
+	static final int SOLID = 2;
+	static final int SHELL = 3;
+	static final int FACE = 4;
+	static final int WIRE = 5;
+	static final int EDGE = 6;
+	static final int VERTEX = 7;
+
+	final int type;
+	// Sub-shapes with their orientation relative to this entity
+	final List<AnalyticShape> children = new ArrayList<AnalyticShape>();
+	// Solid of the primitive which created this entity, null for
+	// compounds
+	Solid primitive;
+
+	TShape(int type)
+	{
+		this.type = type;
+	}
+
+	final void add(TShape child, boolean reversed)
+	{
+		children.add(AnalyticShape.newShape(child, reversed));
+	}
+
+	static final class Vertex extends TShape
+	{
+		final double [] point = new double[3];
+
+		Vertex(double [] p)
+		{
+			super(VERTEX);
+			System.arraycopy(p, 0, point, 0, 3);
+		}
+	}
+
+	static final class Edge extends TShape
+	{
+		// Null if edge is degenerated
+		final AnalyticCurve curve;
+		final double first, last;
+		final List<PCurve> pcurves = new ArrayList<PCurve>(2);
+
+		Edge(AnalyticCurve curve, double first, double last, Vertex v1, Vertex v2)
+		{
+			super(EDGE);
+			this.curve = curve;
+			this.first = first;
+			this.last = last;
+			add(v1, false);
+			add(v2, true);
+		}
+	}
+
+	/**
+	 * Curve of an edge in the parameter space of a face.  Seam edges
+	 * have two curves, the one which is used depends on edge
+	 * orientation.
+	 */
+	static final class PCurve
+	{
+		final Face face;
+		final AnalyticCurve2D forward;
+		final AnalyticCurve2D reversed;
+
+		PCurve(Face face, AnalyticCurve2D forward, AnalyticCurve2D reversed)
+		{
+			this.face = face;
+			this.forward = forward;
+			this.reversed = reversed;
+		}
+	}
+
+	static final class Face extends TShape
+	{
+		final AnalyticSurface surface;
+		final double [] bbox;
+
+		Face(AnalyticSurface surface, double [] bbox)
+		{
+			super(FACE);
+			this.surface = surface;
+			this.bbox = bbox;
+		}
+	}
+
+	static final class Solid extends TShape
+	{
+		// Line describing this primitive in model files
+		final String description;
+
+		Solid(String description)
+		{
+			super(SOLID);
+			this.description = description;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.cad.analytic;
+
+/**
+ * Torus <code>S(u,v) = O + (R + r cos(v)) (cos(u) X + sin(u) Y) + r sin(v) Z</code>,
+ * where <code>R</code> is the major radius and <code>r</code> the minor radius.
+ */
+public class Torus extends AnalyticSurface
+{
+	private final double majorRadius;
+	private final double minorRadius;
+
+	/**
+	 * Creates a torus around Z axis.
+	 *
+	 * @param majorRadius  distance between center and the center of the tube
+	 * @param minorRadius  radius of the tube
+	 */
+	public Torus(double majorRadius, double minorRadius)
+	{
+		this.majorRadius = majorRadius;
+		this.minorRadius = minorRadius;
+	}
+
+	/**
+	 * Creates a torus.
+	 *
+	 * @param center  center
+	 * @param axis  axis direction
+	 * @param xDirection  direction of points with u=0
+	 * @param majorRadius  distance between center and the center of the tube
+	 * @param minorRadius  radius of the tube
+	 */
+	public Torus(double [] center, double [] axis, double [] xDirection,
+		double majorRadius, double minorRadius)
+	{
+		super(center, axis, xDirection);
+		this.majorRadius = majorRadius;
+		this.minorRadius = minorRadius;
+	}
+
+	public final double getMajorRadius()
+	{
+		return majorRadius;
+	}
+
+	public final double getMinorRadius()
+	{
+		return minorRadius;
+	}
+
+	@Override
+	protected void evaluateLocal(double u, double v, double [] r, int o)
+	{
+		double cu = Math.cos(u);
+		double su = Math.sin(u);
+		double rcv = minorRadius * Math.cos(v);
+		double rsv = minorRadius * Math.sin(v);
+		double d = majorRadius + rcv;
+		r[o+POINT] = d * cu;
+		r[o+POINT+1] = d * su;
+		r[o+POINT+2] = rsv;
+		r[o+D1U] = -d * su;
+		r[o+D1U+1] = d * cu;
+		r[o+D1U+2] = 0.0;
+		r[o+D1V] = -rsv * cu;
+		r[o+D1V+1] = -rsv * su;
+		r[o+D1V+2] = rcv;
+		r[o+D2U] = -d * cu;
+		r[o+D2U+1] = -d * su;
+		r[o+D2U+2] = 0.0;
+		r[o+D2V] = -rcv * cu;
+		r[o+D2V+1] = -rcv * su;
+		r[o+D2V+2] = -rsv;
+		r[o+DUV] = rsv * su;
+		r[o+DUV+1] = -rsv * cu;
+		r[o+DUV+2] = 0.0;
+	}
+
+	@Override
+	protected void valueLocal(double u, double v, double [] xyz, int o)
+	{
+		double d = majorRadius + minorRadius * Math.cos(v);
+		xyz[o] = d * Math.cos(u);
+		xyz[o+1] = d * Math.sin(u);
+		xyz[o+2] = minorRadius * Math.sin(v);
+	}
+
+	@Override
+	protected double distanceLocal(double x, double y, double z)
+	{
+		double rho = Math.sqrt(x*x + y*y) - majorRadius;
+		return Math.abs(Math.sqrt(rho*rho + z*z) - minorRadius);
+	}
+}
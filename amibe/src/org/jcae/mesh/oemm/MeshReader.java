@@ -64,9 +64,15 @@ public class MeshReader extends Storage
 	// BUFFER_SIZE = 16128
 	
 	/**
-	 * Buffer to improve I/O efficiency.
+	 * Buffer to improve I/O efficiency.  It is not shared between
+	 * instances, so that distinct readers can be used by several threads.
 	 */
-	protected static final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	protected final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	
+	/**
+	 * Cache of decoded octants, if any.
+	 */
+	protected OctantCache cache = null;
 	
 	/**
 	 * Constructor.
@@ -78,6 +84,30 @@ public class MeshReader extends Storage
 		oemm = o;
 	}
 
+	/**
+	 * Reads octants through a cache.  A cache can be shared by several
+	 * readers of the same OEMM instance.  When a mesh is built, leaves
+	 * adjacent to loaded leaves are prefetched.
+	 *
+	 * @param c  octant cache, or <code>null</code> to read files directly
+	 */
+	public void setOctantCache(OctantCache c)
+	{
+		if (c != null && c.getOEMM() != oemm)
+			throw new IllegalArgumentException("Cache does not belong to this OEMM");
+		cache = c;
+	}
+
+	/**
+	 * Returns the octant cache used by this reader.
+	 *
+	 * @return the octant cache, or <code>null</code> if files are read directly
+	 */
+	public OctantCache getOctantCache()
+	{
+		return cache;
+	}
+
 	/**
 	 * Allows reading non-readable triangles.
 	 * On disk, a triangle is contained in one single leaf.  If it contains vertices from
@@ -203,6 +233,8 @@ public class MeshReader extends Storage
 		for (int i = 0, n = sortedLeaves.size(); i < n; i++) {
 			readTriangles(leaves, mesh, vertMap, oemm.leaves[sortedLeaves.get(i)]);
 		}
+		if (cache != null)
+			cache.prefetchAdjacent(leaves);
 		if (mapNodeToNonReadVertexList != null) {
 			loadVerticesFromUnloadedNodes();
 			for (TIntObjectIterator<List<FakeNonReadVertex>> it = mapNodeToNonReadVertexList.iterator(); it.hasNext(); )
@@ -228,6 +260,16 @@ public class MeshReader extends Storage
 	 */
 	private void readVertices(TIntHashSet leaves, Mesh mesh, TIntObjectHashMap<Vertex> vertMap, OEMM.Node current)
 	{
+		if (cache != null)
+		{
+			readVertices(leaves, mesh, vertMap, current, cache.get(current.leafIndex));
+			return;
+		}
+		if (OctantFormat.isCompressed(oemm, current))
+		{
+			readCompressedVertices(leaves, mesh, vertMap, current);
+			return;
+		}
 		try
 		{
 			logger.fine("Reading "+current.vn+" vertices from "+getVerticesFile(oemm, current));
@@ -273,11 +315,78 @@ public class MeshReader extends Storage
 		}
 	}
 	
+	private void readCompressedVertices(TIntHashSet leaves, Mesh mesh, TIntObjectHashMap<Vertex> vertMap, OEMM.Node current)
+	{
+		double [] coords;
+		try
+		{
+			coords = OctantFormat.readVertices(oemm, current);
+		}
+		catch (IOException ex)
+		{
+			logger.severe("I/O error when reading file "+getVerticesFile(oemm, current));
+			throw new RuntimeException(ex);
+		}
+		List<TIntArrayList> listAdjacentLeaves = readAdjacencyFile(oemm, current, leaves);
+		mesh.ensureCapacity(2*current.vn);
+		double [] xyz = new double[3];
+		for (int index = 0; index < current.vn; index++)
+		{
+			System.arraycopy(coords, 3*index, xyz, 0, 3);
+			Vertex v = mesh.createVertex(xyz);
+			v.setLabel(current.minIndex + index);
+			v.setReadable(true);
+			v.setWritable(listAdjacentLeaves.get(index).isEmpty());
+			vertMap.put(current.minIndex + index, v);
+			mesh.add(v);
+		}
+	}
+	
+	private static void readVertices(TIntHashSet leaves, Mesh mesh, TIntObjectHashMap<Vertex> vertMap, OEMM.Node current, OctantCache.Octant octant)
+	{
+		mesh.ensureCapacity(2*current.vn);
+		double [] xyz = new double[3];
+		for (int index = 0; index < current.vn; index++)
+		{
+			System.arraycopy(octant.coords, 3*index, xyz, 0, 3);
+			Vertex v = mesh.createVertex(xyz);
+			v.setLabel(current.minIndex + index);
+			v.setReadable(true);
+			boolean writable = true;
+			for (int i = octant.adjOffsets[index]; writable && i < octant.adjOffsets[index+1]; i++)
+			{
+				if (!leaves.contains(octant.adjLeaves[i]))
+					writable = false;
+			}
+			v.setWritable(writable);
+			vertMap.put(current.minIndex + index, v);
+			mesh.add(v);
+		}
+	}
+	
 	/**
 	 * Reads triangle file, create Triangle instances and store them into mesh.
 	 */
 	private void readTriangles(TIntHashSet leaves, Mesh mesh, TIntObjectHashMap<Vertex> vertMap, OEMM.Node current)
 	{
+		if (cache != null)
+		{
+			readTriangles(leaves, mesh, vertMap, current, cache.get(current.leafIndex).triangles);
+			return;
+		}
+		if (OctantFormat.isCompressed(getTrianglesFile(oemm, current)))
+		{
+			try
+			{
+				readTriangles(leaves, mesh, vertMap, current, OctantFormat.readTriangles(oemm, current));
+			}
+			catch (IOException ex)
+			{
+				logger.severe("I/O error when reading indexed file "+getTrianglesFile(oemm, current));
+				throw new RuntimeException(ex);
+			}
+			return;
+		}
 		try
 		{
 			logger.fine("Reading "+current.tn+" triangles from "+getTrianglesFile(oemm, current));
@@ -301,58 +410,11 @@ public class MeshReader extends Storage
 				remaining -= nf;
 				for(int nr = 0; nr < nf; nr ++)
 				{
-					boolean readable = true;
-					boolean writable = true;
 					bbI.get(leaf);
 					bbI.get(pointIndex);
-					for (int j = 0; j < 3; j++)
-					{
-						int globalIndex = oemm.leaves[leaf[j]].minIndex + pointIndex[j];
-						if (leaves.contains(leaf[j]))
-						{
-							vert[j] = vertMap.get(globalIndex);
-							assert vert[j] != null;
-						}
-						else
-						{
-							writable = false;
-							vert[j] = vertMap.get(globalIndex);
-							if (vert[j] == null) {
-								vert[j] = new FakeNonReadVertex(oemm, leaf[j], pointIndex[j]);
-								vertMap.put(globalIndex, vert[j]);
-								if (mapNodeToNonReadVertexList != null)
-								{
-									FakeNonReadVertex vertex = (FakeNonReadVertex) vert[j];
-									List<FakeNonReadVertex> vertices = mapNodeToNonReadVertexList.get(leaf[j]);
-									if (vertices == null) {
-										vertices = new ArrayList<FakeNonReadVertex>();
-										mapNodeToNonReadVertexList.put(leaf[j], vertices);
-									}
-									vertices.add(vertex);
-								}
-							}
-						}
-					}
 					// group number
 					int groupId = bbI.get();
-					createTriangle(groupId, vert, readable, writable, mesh);
-					// When called from buildMeshes(), cross boundary triangles are put into
-					// all crossed octants.
-					if (mapNodeToMesh != null && mapNodeToNonReadVertexList != null)
-					{
-						processedNode.clear();
-						for (int j = 0; j < 3; j++) {
-							if (vert[j] instanceof FakeNonReadVertex) {
-								FakeNonReadVertex fnrVertex = (FakeNonReadVertex) vert[j];
-								int leafIndex = fnrVertex.getOEMMIndex();
-								if (!processedNode.contains(leafIndex)) {
-									Mesh altMesh = mapNodeToMesh.get(leafIndex);
-									createTriangle(-leafIndex, vert, false, false, altMesh);
-									processedNode.add(leafIndex);
-								}
-							}
-						}
-					}
+					addTriangle(leaves, mesh, vertMap, leaf, pointIndex, groupId, vert, processedNode);
 				}
 			}
 			fc.close();
@@ -365,6 +427,76 @@ public class MeshReader extends Storage
 		}
 	}
 
+	private void readTriangles(TIntHashSet leaves, Mesh mesh, TIntObjectHashMap<Vertex> vertMap, OEMM.Node current, int [] triangles)
+	{
+		Vertex [] vert = new Vertex[3];
+		TIntHashSet processedNode = new TIntHashSet();
+		int [] leaf = new int[3];
+		int [] pointIndex = new int[3];
+		mesh.ensureCapacity(current.tn);
+		for (int offset = 0; offset < triangles.length; offset += 7)
+		{
+			System.arraycopy(triangles, offset, leaf, 0, 3);
+			System.arraycopy(triangles, offset + 3, pointIndex, 0, 3);
+			addTriangle(leaves, mesh, vertMap, leaf, pointIndex, triangles[offset + 6], vert, processedNode);
+		}
+	}
+
+	/**
+	 * Creates a triangle and stores it into mesh.
+	 */
+	private void addTriangle(TIntHashSet leaves, Mesh mesh, TIntObjectHashMap<Vertex> vertMap, int [] leaf, int [] pointIndex, int groupId, Vertex [] vert, TIntHashSet processedNode)
+	{
+		boolean readable = true;
+		boolean writable = true;
+		for (int j = 0; j < 3; j++)
+		{
+			int globalIndex = oemm.leaves[leaf[j]].minIndex + pointIndex[j];
+			if (leaves.contains(leaf[j]))
+			{
+				vert[j] = vertMap.get(globalIndex);
+				assert vert[j] != null;
+			}
+			else
+			{
+				writable = false;
+				vert[j] = vertMap.get(globalIndex);
+				if (vert[j] == null) {
+					vert[j] = new FakeNonReadVertex(oemm, leaf[j], pointIndex[j]);
+					vertMap.put(globalIndex, vert[j]);
+					if (mapNodeToNonReadVertexList != null)
+					{
+						FakeNonReadVertex vertex = (FakeNonReadVertex) vert[j];
+						List<FakeNonReadVertex> vertices = mapNodeToNonReadVertexList.get(leaf[j]);
+						if (vertices == null) {
+							vertices = new ArrayList<FakeNonReadVertex>();
+							mapNodeToNonReadVertexList.put(leaf[j], vertices);
+						}
+						vertices.add(vertex);
+					}
+				}
+			}
+		}
+		createTriangle(groupId, vert, readable, writable, mesh);
+		// When called from buildMeshes(), cross boundary triangles are put into
+		// all crossed octants.
+		if (mapNodeToMesh != null && mapNodeToNonReadVertexList != null)
+		{
+			processedNode.clear();
+			for (int j = 0; j < 3; j++) {
+				if (vert[j] instanceof FakeNonReadVertex) {
+					FakeNonReadVertex fnrVertex = (FakeNonReadVertex) vert[j];
+					int leafIndex = fnrVertex.getOEMMIndex();
+					if (!processedNode.contains(leafIndex)) {
+						Mesh altMesh = mapNodeToMesh.get(leafIndex);
+						createTriangle(-leafIndex, vert, false, false, altMesh);
+						processedNode.add(leafIndex);
+					}
+				}
+			}
+		}
+	}
+
 	private static void createTriangle(int groupId, Vertex[] vert, boolean readable, boolean writable, Mesh mesh)
 	{
 		Triangle t = mesh.createTriangle(vert[0], vert[1], vert[2]);
@@ -397,6 +529,26 @@ public class MeshReader extends Storage
 				OEMM.Node node = oemm.leaves[it.key()];
 				List<FakeNonReadVertex> list = it.value();
 				sortFakeNonReadVertexList(list);
+				if (cache != null || OctantFormat.isCompressed(oemm, node))
+				{
+					double [] coords;
+					if (cache != null)
+						coords = cache.get(node.leafIndex).coords;
+					else
+					{
+						try {
+							coords = OctantFormat.readVertices(oemm, node);
+						} catch (IOException e) {
+							logger.log(Level.SEVERE, "Cannot operate with file: " + getVerticesFile(oemm, node).getAbsolutePath(), e);
+							throw new RuntimeException(e);
+						}
+					}
+					for (FakeNonReadVertex vertex: list) {
+						System.arraycopy(coords, 3 * vertex.getLocalNumber(), vertex.getUV(), 0, 3);
+						vertex.setReadable(true);
+					}
+					continue;
+				}
 				FileChannel fch = null;
 				try {
 					fch = new FileInputStream(getVerticesFile(oemm, node)).getChannel();
@@ -203,6 +203,13 @@ public class OEMM implements Serializable
 		 * List of adjacent leaves.
 		 */
 		public transient TIntArrayList adjLeaves;
+
+		/**
+		 * Modification counter, incremented each time files of this leaf
+		 * are written.  It is used by {@link OctantCache} to detect
+		 * stale octants.
+		 */
+		public transient volatile int version = 0;
 		
 		/**
 		 * Creates a new leaf.
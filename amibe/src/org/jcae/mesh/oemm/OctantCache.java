@@ -0,0 +1,424 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.oemm;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntHashSet;
+import gnu.trove.TIntIterator;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache of decoded octants.  Vertex coordinates, adjacency and indexed
+ * triangles of OEMM leaves are kept in primitive arrays, so that
+ * successive calls to {@link MeshReader#buildMesh} do not read and parse
+ * the same files again.  Least recently used octants are evicted when
+ * memory used by cached octants exceeds a given limit.
+ *
+ * <p>
+ * Octants adjacent to loaded leaves are likely to be requested next, they
+ * can be read in advance by a background thread, see {@link #prefetch}.
+ * Entries are checked against {@link OEMM.Node#version}, which is
+ * incremented by {@link Storage} each time files of a leaf are written,
+ * so that a cache can be shared by several readers and writers working
+ * on the same OEMM instance, for instance a decimator and a viewer.
+ * This class is thread-safe.
+ * </p>
+ */
+public class OctantCache
+{
+	private static final Logger logger=Logger.getLogger(OctantCache.class.getName());
+
+	/**
+	 * Decoded content of a leaf.
+	 */
+	public static final class Octant
+	{
+		/**
+		 * Vertex coordinates, 3 values per vertex.
+		 */
+		public final double [] coords;
+		/**
+		 * Adjacent leaves of vertex <code>i</code> are
+		 * <code>adjLeaves[adjOffsets[i]]</code> to
+		 * <code>adjLeaves[adjOffsets[i+1]-1]</code>.
+		 */
+		public final int [] adjOffsets;
+		public final int [] adjLeaves;
+		/**
+		 * Indexed triangles, 7 values per triangle: leaf indices of its
+		 * 3 vertices, local indices of its 3 vertices and group number.
+		 */
+		public final int [] triangles;
+		private final int version;
+
+		private Octant(double [] coords, int [] adjOffsets, int [] adjLeaves, int [] triangles, int version)
+		{
+			this.coords = coords;
+			this.adjOffsets = adjOffsets;
+			this.adjLeaves = adjLeaves;
+			this.triangles = triangles;
+			this.version = version;
+		}
+
+		/**
+		 * Returns memory used by this octant, in bytes.
+		 */
+		public long getMemorySize()
+		{
+			return 8L * coords.length + 4L * (adjOffsets.length + adjLeaves.length + triangles.length);
+		}
+	}
+
+	private final OEMM oemm;
+	private final long maxBytes;
+	private long usedBytes = 0L;
+	// Access-ordered map, least recently used octants come first
+	private final LinkedHashMap<Integer, Octant> octants = new LinkedHashMap<Integer, Octant>(16, 0.75f, true);
+	// Octants being read by prefetch thread
+	private final Map<Integer, Future<Octant>> pending = new HashMap<Integer, Future<Octant>>();
+	private ExecutorService prefetchExecutor;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong prefetched = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+
+	/**
+	 * Creates a cache which uses at most a quarter of the maximal
+	 * amount of memory of the virtual machine.
+	 *
+	 * @param o  OEMM instance
+	 */
+	public OctantCache(OEMM o)
+	{
+		this(o, Runtime.getRuntime().maxMemory() / 4L);
+	}
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param o  OEMM instance
+	 * @param maxMemory  maximal memory used by cached octants, in bytes
+	 */
+	public OctantCache(OEMM o, long maxMemory)
+	{
+		oemm = o;
+		maxBytes = maxMemory;
+	}
+
+	/**
+	 * Returns the OEMM instance whose leaves are cached.
+	 */
+	public OEMM getOEMM()
+	{
+		return oemm;
+	}
+
+	/**
+	 * Returns the content of a leaf.  It is read from disk if it is not
+	 * found in the cache, or if leaf files have been modified since it
+	 * had been cached.
+	 *
+	 * @param leaf  leaf index
+	 * @return the content of this leaf
+	 */
+	public Octant get(int leaf)
+	{
+		Integer key = Integer.valueOf(leaf);
+		int version = oemm.leaves[leaf].version;
+		Future<Octant> future;
+		synchronized (this)
+		{
+			Octant ret = octants.get(key);
+			if (ret != null)
+			{
+				if (ret.version == version)
+				{
+					hits.incrementAndGet();
+					return ret;
+				}
+				remove(key);
+			}
+			future = pending.get(key);
+		}
+		if (future != null)
+		{
+			Octant ret = waitFor(future);
+			if (ret != null && ret.version == version)
+			{
+				hits.incrementAndGet();
+				return ret;
+			}
+		}
+		misses.incrementAndGet();
+		Octant ret = read(oemm.leaves[leaf]);
+		synchronized (this)
+		{
+			put(key, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Reads leaves adjacent to a set of leaves in a background thread, if
+	 * they are not already cached.
+	 *
+	 * @param leaves  set of leaf indices
+	 */
+	public void prefetchAdjacent(TIntHashSet leaves)
+	{
+		TIntHashSet adjacent = new TIntHashSet();
+		for (TIntIterator it = leaves.iterator(); it.hasNext(); )
+		{
+			TIntArrayList adj = oemm.leaves[it.next()].adjLeaves;
+			if (adj == null)
+				continue;
+			for (int i = 0, n = adj.size(); i < n; i++)
+			{
+				if (!leaves.contains(adj.get(i)))
+					adjacent.add(adj.get(i));
+			}
+		}
+		for (TIntIterator it = adjacent.iterator(); it.hasNext(); )
+			prefetch(it.next());
+	}
+
+	/**
+	 * Reads a leaf in a background thread, if it is not already cached.
+	 *
+	 * @param leaf  leaf index
+	 */
+	public synchronized void prefetch(final int leaf)
+	{
+		final Integer key = Integer.valueOf(leaf);
+		Octant octant = octants.get(key);
+		if ((octant != null && octant.version == oemm.leaves[leaf].version) || pending.containsKey(key))
+			return;
+		if (prefetchExecutor == null)
+			prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "OctantCache prefetch");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		FutureTask<Octant> task = new FutureTask<Octant>(new Callable<Octant>()
+		{
+			public Octant call()
+			{
+				Octant ret = null;
+				try
+				{
+					ret = read(oemm.leaves[leaf]);
+					prefetched.incrementAndGet();
+				}
+				catch (RuntimeException ex)
+				{
+					// Files may be written concurrently, leaf will be
+					// read again when requested.
+					logger.log(Level.FINE, "Cannot prefetch leaf "+leaf, ex);
+				}
+				synchronized (OctantCache.this)
+				{
+					pending.remove(key);
+					if (ret != null && !octants.containsKey(key))
+						put(key, ret);
+				}
+				return ret;
+			}
+		});
+		pending.put(key, task);
+		prefetchExecutor.execute(task);
+	}
+
+	/**
+	 * Removes a leaf from the cache.
+	 *
+	 * @param leaf  leaf index
+	 */
+	public synchronized void invalidate(int leaf)
+	{
+		remove(Integer.valueOf(leaf));
+	}
+
+	/**
+	 * Removes all leaves from the cache.
+	 */
+	public synchronized void clear()
+	{
+		octants.clear();
+		usedBytes = 0L;
+	}
+
+	/**
+	 * Stops prefetch thread.  Cache can still be used, but leaves are
+	 * then read by calling threads only.
+	 */
+	public synchronized void shutdown()
+	{
+		if (prefetchExecutor != null)
+			prefetchExecutor.shutdown();
+		prefetchExecutor = null;
+	}
+
+	/**
+	 * Returns the number of requests served from the cache.
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of requests which had to read leaf files.
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of leaves read by prefetch thread.
+	 */
+	public long getPrefetched()
+	{
+		return prefetched.get();
+	}
+
+	/**
+	 * Returns the number of bytes read from disk.
+	 */
+	public long getBytesRead()
+	{
+		return bytesRead.get();
+	}
+
+	/**
+	 * Returns memory used by cached octants, in bytes.
+	 */
+	public synchronized long getMemorySize()
+	{
+		return usedBytes;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "hits: "+hits.get()+" misses: "+misses.get()+" prefetched: "+prefetched.get()+
+			" bytes read: "+bytesRead.get()+" memory: "+getMemorySize();
+	}
+
+	private void put(Integer key, Octant octant)
+	{
+		remove(key);
+		octants.put(key, octant);
+		usedBytes += octant.getMemorySize();
+		// Evict least recently used octants, but keep the last one
+		for (Iterator<Octant> it = octants.values().iterator(); usedBytes > maxBytes && octants.size() > 1; )
+		{
+			Octant o = it.next();
+			it.remove();
+			usedBytes -= o.getMemorySize();
+		}
+	}
+
+	private void remove(Integer key)
+	{
+		Octant old = octants.remove(key);
+		if (old != null)
+			usedBytes -= old.getMemorySize();
+	}
+
+	private static Octant waitFor(Future<Octant> future)
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch (ExecutionException ex)
+		{
+			return null;
+		}
+	}
+
+	private Octant read(OEMM.Node node)
+	{
+		// Version must be read before files, files may be modified
+		// while they are read.
+		int version = node.version;
+		double [] coords;
+		int [] triangles;
+		try
+		{
+			coords = OctantFormat.readVertices(oemm, node);
+			triangles = OctantFormat.readTriangles(oemm, node);
+		}
+		catch (IOException ex)
+		{
+			logger.severe("I/O error when reading leaf "+node.leafIndex);
+			throw new RuntimeException(ex);
+		}
+		int vn = coords.length / 3;
+		List<TIntArrayList> adj = Storage.readAdjacencyFile(oemm, node, null);
+		int [] adjOffsets = new int[vn + 1];
+		int nrAdj = 0;
+		for (int i = 0; i < vn && i < adj.size(); i++)
+			nrAdj += adj.get(i).size();
+		int [] adjLeaves = new int[nrAdj];
+		nrAdj = 0;
+		for (int i = 0; i < vn; i++)
+		{
+			adjOffsets[i] = nrAdj;
+			if (i < adj.size())
+			{
+				TIntArrayList list = adj.get(i);
+				for (int j = 0, n = list.size(); j < n; j++)
+					adjLeaves[nrAdj++] = list.get(j);
+			}
+		}
+		adjOffsets[vn] = nrAdj;
+		bytesRead.addAndGet(Storage.getVerticesFile(oemm, node).length() +
+			Storage.getTrianglesFile(oemm, node).length() + vn + nrAdj);
+		return new Octant(coords, adjOffsets, adjLeaves, triangles, version);
+	}
+}
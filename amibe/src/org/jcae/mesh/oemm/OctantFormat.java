@@ -0,0 +1,508 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.oemm;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes vertex and triangle files of OEMM leaves.  Two formats
+ * are supported:
+ * <ul>
+ *  <li>the legacy format, where a vertex is stored as 3 doubles and a
+ *      triangle as 7 ints (see {@link Storage#VERTEX_SIZE} and
+ *      {@link Storage#TRIANGLE_SIZE}),</li>
+ *  <li>a compressed format, where vertex coordinates are quantized on
+ *      the OEMM integer grid and stored relative to the leaf origin, and
+ *      triangle indices are delta-coded.</li>
+ * </ul>
+ *
+ * <p>
+ * A compressed file starts with a header: {@link #MAGIC} (4 bytes),
+ * format version (1 byte), file kind (1 byte, 0 for vertices and 1 for
+ * triangles) and number of records (4 bytes).  Records are grouped into
+ * blocks of at most {@link #BLOCK_SIZE} records, each block is written as
+ * its number of records (4 bytes), payload length (4 bytes), payload and
+ * CRC32 checksum of payload (4 bytes).  Within a payload, integers are
+ * zigzag-encoded and written as varints (7 bits per byte, high bit set
+ * when more bytes follow):
+ * <ul>
+ *  <li>a vertex is written as the difference between its integer
+ *      coordinates and those of the previous vertex, or leaf origin for
+ *      the first vertex of a block;</li>
+ *  <li>a triangle is written as, for each vertex, the difference between
+ *      its leaf index and current leaf index, and the difference between
+ *      its local index and the previous local index; followed by the
+ *      difference between its group number and the previous one.</li>
+ * </ul>
+ * Magic number is read as NaN when interpreted as the first 4 bytes of a
+ * double, and is larger than any leaf index, so legacy files cannot be
+ * mistaken for compressed ones.  Readers check the magic number of each
+ * file, so both formats can be mixed within an OEMM.
+ * </p>
+ */
+public final class OctantFormat
+{
+	/**
+	 * First 4 bytes of compressed files.
+	 */
+	public static final int MAGIC = 0x7FFC4F5A;
+
+	/**
+	 * Current version of compressed format.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Maximal number of records per block.
+	 */
+	public static final int BLOCK_SIZE = 4096;
+
+	private static final int VERTICES = 0;
+	private static final int TRIANGLES = 1;
+	private static final int HEADER_SIZE = 10;
+
+	private OctantFormat()
+	{
+	}
+
+	/**
+	 * Tells whether a file is written in compressed format.
+	 *
+	 * @param file  vertex or triangle file
+	 * @return <code>true</code> if this file exists and is compressed
+	 */
+	public static boolean isCompressed(File file)
+	{
+		if (!file.exists() || file.length() < HEADER_SIZE)
+			return false;
+		try
+		{
+			FileInputStream in = new FileInputStream(file);
+			try
+			{
+				int magic = 0;
+				for (int i = 0; i < 4; i++)
+					magic = (magic << 8) | in.read();
+				return magic == MAGIC;
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch (IOException ex)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Tells whether vertex file of a leaf is written in compressed format.
+	 *
+	 * @param oemm  OEMM instance
+	 * @param node  leaf
+	 * @return <code>true</code> if vertex file is compressed
+	 */
+	public static boolean isCompressed(OEMM oemm, OEMM.Node node)
+	{
+		return isCompressed(Storage.getVerticesFile(oemm, node));
+	}
+
+	/**
+	 * Reads vertex coordinates of a leaf, in any format.
+	 *
+	 * @param oemm  OEMM instance
+	 * @param node  leaf
+	 * @return  vertex coordinates, 3 values per vertex
+	 * @throws IOException  if file cannot be read or is corrupted
+	 */
+	public static double [] readVertices(OEMM oemm, OEMM.Node node) throws IOException
+	{
+		File file = Storage.getVerticesFile(oemm, node);
+		ByteBuffer bb = readFile(file);
+		double [] ret = new double[3 * node.vn];
+		if (!hasMagic(bb))
+		{
+			if (bb.remaining() < ret.length * 8)
+				throw new IOException("Unexpected end of file "+file);
+			bb.asDoubleBuffer().get(ret);
+			return ret;
+		}
+		int n = readHeader(bb, file, VERTICES);
+		if (n != node.vn)
+			throw new IOException("Invalid number of vertices in "+file+": "+n+" != "+node.vn);
+		int [] ijk = new int[3];
+		int [] origin = new int[] { node.i0, node.j0, node.k0 };
+		double [] xyz = new double[3];
+		int offset = 0;
+		while (offset < ret.length)
+		{
+			int nr = checkBlock(bb, file);
+			System.arraycopy(origin, 0, ijk, 0, 3);
+			for (int r = 0; r < nr; r++)
+			{
+				for (int i = 0; i < 3; i++)
+					ijk[i] += readSigned(bb);
+				oemm.int2double(ijk, xyz);
+				System.arraycopy(xyz, 0, ret, offset, 3);
+				offset += 3;
+			}
+			// Checksum
+			bb.getInt();
+		}
+		return ret;
+	}
+
+	/**
+	 * Reads indexed triangles of a leaf, in any format.
+	 *
+	 * @param oemm  OEMM instance
+	 * @param node  leaf
+	 * @return  indexed triangles, 7 values per triangle: leaf indices of
+	 *    its 3 vertices, local indices of its 3 vertices and group number
+	 * @throws IOException  if file cannot be read or is corrupted
+	 */
+	public static int [] readTriangles(OEMM oemm, OEMM.Node node) throws IOException
+	{
+		File file = Storage.getTrianglesFile(oemm, node);
+		ByteBuffer bb = readFile(file);
+		int [] ret = new int[7 * node.tn];
+		if (!hasMagic(bb))
+		{
+			if (bb.remaining() < ret.length * 4)
+				throw new IOException("Unexpected end of file "+file);
+			bb.asIntBuffer().get(ret);
+			return ret;
+		}
+		int n = readHeader(bb, file, TRIANGLES);
+		if (n != node.tn)
+			throw new IOException("Invalid number of triangles in "+file+": "+n+" != "+node.tn);
+		int offset = 0;
+		while (offset < ret.length)
+		{
+			int nr = checkBlock(bb, file);
+			int index = 0;
+			int group = 0;
+			for (int r = 0; r < nr; r++)
+			{
+				for (int i = 0; i < 3; i++)
+				{
+					ret[offset + i] = node.leafIndex + readSigned(bb);
+					index += readSigned(bb);
+					ret[offset + 3 + i] = index;
+				}
+				group += readSigned(bb);
+				ret[offset + 6] = group;
+				offset += 7;
+			}
+			// Checksum
+			bb.getInt();
+		}
+		return ret;
+	}
+
+	/**
+	 * Writes vertex coordinates of a leaf.  In compressed format,
+	 * coordinates are rounded to the nearest point of OEMM integer grid.
+	 *
+	 * @param oemm  OEMM instance
+	 * @param node  leaf
+	 * @param coords  vertex coordinates, 3 values per vertex
+	 * @param n  number of vertices
+	 * @param compressed  if <code>true</code>, file is written in
+	 *    compressed format, otherwise in legacy format
+	 * @throws IOException  if file cannot be written
+	 */
+	public static void writeVertices(OEMM oemm, OEMM.Node node, double [] coords, int n, boolean compressed) throws IOException
+	{
+		File file = Storage.getVerticesFile(oemm, node);
+		if (!compressed)
+		{
+			ByteBuffer bb = ByteBuffer.allocate(n * Storage.VERTEX_SIZE);
+			bb.asDoubleBuffer().put(coords, 0, 3 * n);
+			writeFile(file, bb);
+			return;
+		}
+		int [] ijk = new int[3 * n];
+		double [] xyz = new double[3];
+		int [] cur = new int[3];
+		double [] p = new double[3];
+		for (int v = 0; v < n; v++)
+		{
+			System.arraycopy(coords, 3 * v, xyz, 0, 3);
+			oemm.double2int(xyz, cur);
+			// double2int truncates, pick the nearest grid point so that
+			// coordinates do not drift when leaves are stored again.
+			for (int i = 0; i < 3; i++)
+			{
+				oemm.int2double(cur, p);
+				double d0 = Math.abs(p[i] - xyz[i]);
+				cur[i]++;
+				oemm.int2double(cur, p);
+				if (Math.abs(p[i] - xyz[i]) >= d0)
+					cur[i]--;
+			}
+			System.arraycopy(cur, 0, ijk, 3 * v, 3);
+		}
+		writeCompressedVertices(file, node, ijk, n);
+	}
+
+	/**
+	 * Writes integer coordinates of vertices of a leaf in compressed
+	 * format.
+	 */
+	static void writeCompressedVertices(File file, OEMM.Node node, int [] ijk, int n) throws IOException
+	{
+		Encoder enc = new Encoder(VERTICES, n);
+		int [] prev = new int[3];
+		for (int v = 0; v < n; v++)
+		{
+			if (enc.startRecord())
+			{
+				prev[0] = node.i0;
+				prev[1] = node.j0;
+				prev[2] = node.k0;
+			}
+			for (int i = 0; i < 3; i++)
+			{
+				enc.writeSigned(ijk[3 * v + i] - prev[i]);
+				prev[i] = ijk[3 * v + i];
+			}
+		}
+		writeFile(file, enc.finish());
+	}
+
+	/**
+	 * Writes indexed triangles of a leaf.
+	 *
+	 * @param oemm  OEMM instance
+	 * @param node  leaf
+	 * @param triangles  indexed triangles, see {@link #readTriangles}
+	 * @param n  number of triangles
+	 * @param compressed  if <code>true</code>, file is written in
+	 *    compressed format, otherwise in legacy format
+	 * @throws IOException  if file cannot be written
+	 */
+	public static void writeTriangles(OEMM oemm, OEMM.Node node, int [] triangles, int n, boolean compressed) throws IOException
+	{
+		File file = Storage.getTrianglesFile(oemm, node);
+		if (!compressed)
+		{
+			ByteBuffer bb = ByteBuffer.allocate(n * Storage.TRIANGLE_SIZE);
+			bb.asIntBuffer().put(triangles, 0, 7 * n);
+			writeFile(file, bb);
+			return;
+		}
+		Encoder enc = new Encoder(TRIANGLES, n);
+		int index = 0;
+		int group = 0;
+		for (int t = 0; t < n; t++)
+		{
+			if (enc.startRecord())
+			{
+				index = 0;
+				group = 0;
+			}
+			int offset = 7 * t;
+			for (int i = 0; i < 3; i++)
+			{
+				enc.writeSigned(triangles[offset + i] - node.leafIndex);
+				enc.writeSigned(triangles[offset + 3 + i] - index);
+				index = triangles[offset + 3 + i];
+			}
+			enc.writeSigned(triangles[offset + 6] - group);
+			group = triangles[offset + 6];
+		}
+		writeFile(file, enc.finish());
+	}
+
+	private static boolean hasMagic(ByteBuffer bb)
+	{
+		return bb.remaining() >= HEADER_SIZE && bb.getInt(bb.position()) == MAGIC;
+	}
+
+	private static int readHeader(ByteBuffer bb, File file, int kind) throws IOException
+	{
+		bb.getInt();
+		int version = bb.get();
+		if (version > FORMAT_VERSION)
+			throw new IOException("Unsupported format version "+version+" in "+file);
+		if (bb.get() != kind)
+			throw new IOException("Invalid file kind in "+file);
+		return bb.getInt();
+	}
+
+	// Checks block checksum, and returns the number of records in this block
+	private static int checkBlock(ByteBuffer bb, File file) throws IOException
+	{
+		if (bb.remaining() < 8)
+			throw new IOException("Unexpected end of file "+file);
+		int nr = bb.getInt();
+		int length = bb.getInt();
+		if (length < 0 || bb.remaining() < length + 4)
+			throw new IOException("Unexpected end of file "+file);
+		CRC32 crc = new CRC32();
+		crc.update(bb.array(), bb.arrayOffset() + bb.position(), length);
+		if ((int) crc.getValue() != bb.getInt(bb.position() + length))
+			throw new IOException("Checksum error in "+file);
+		return nr;
+	}
+
+	private static int readSigned(ByteBuffer bb)
+	{
+		int value = 0;
+		int shift = 0;
+		int b;
+		do
+		{
+			b = bb.get();
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+		}
+		while (b < 0);
+		// Zigzag decoding
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Accumulates records into blocks.
+	 */
+	private static final class Encoder
+	{
+		private final int nrRecords;
+		private byte [] buf = new byte[1024];
+		private int pos = HEADER_SIZE;
+		private int record = 0;
+		// Position of current block header and index of its first record
+		private int blockStart = -1;
+		private int blockFirstRecord = 0;
+
+		Encoder(int kind, int n)
+		{
+			nrRecords = n;
+			ByteBuffer header = ByteBuffer.wrap(buf);
+			header.putInt(MAGIC);
+			header.put((byte) FORMAT_VERSION);
+			header.put((byte) kind);
+			header.putInt(n);
+		}
+
+		// Returns true if this record starts a new block
+		boolean startRecord()
+		{
+			boolean ret = (record % BLOCK_SIZE == 0);
+			if (ret)
+			{
+				endBlock();
+				blockStart = pos;
+				blockFirstRecord = record;
+				ensureCapacity(8);
+				pos += 8;
+			}
+			record++;
+			return ret;
+		}
+
+		void writeSigned(int n)
+		{
+			ensureCapacity(5);
+			int value = (n << 1) ^ (n >> 31);
+			while ((value & ~0x7f) != 0)
+			{
+				buf[pos++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			buf[pos++] = (byte) value;
+		}
+
+		private void endBlock()
+		{
+			if (blockStart < 0)
+				return;
+			int length = pos - blockStart - 8;
+			int nr = record - blockFirstRecord;
+			CRC32 crc = new CRC32();
+			crc.update(buf, blockStart + 8, length);
+			ByteBuffer bb = ByteBuffer.wrap(buf);
+			bb.putInt(blockStart, nr);
+			bb.putInt(blockStart + 4, length);
+			ensureCapacity(4);
+			ByteBuffer.wrap(buf).putInt(pos, (int) crc.getValue());
+			pos += 4;
+		}
+
+		ByteBuffer finish()
+		{
+			assert record == nrRecords;
+			endBlock();
+			return ByteBuffer.wrap(buf, 0, pos);
+		}
+
+		private void ensureCapacity(int n)
+		{
+			if (pos + n <= buf.length)
+				return;
+			byte [] newBuf = new byte[Math.max(2 * buf.length, pos + n)];
+			System.arraycopy(buf, 0, newBuf, 0, pos);
+			buf = newBuf;
+		}
+	}
+
+	private static ByteBuffer readFile(File file) throws IOException
+	{
+		FileChannel fc = new FileInputStream(file).getChannel();
+		try
+		{
+			ByteBuffer bb = ByteBuffer.allocate((int) fc.size());
+			while (bb.hasRemaining())
+			{
+				if (fc.read(bb) < 0)
+					throw new IOException("Unexpected end of file "+file);
+			}
+			bb.flip();
+			return bb;
+		}
+		finally
+		{
+			fc.close();
+		}
+	}
+
+	private static void writeFile(File file, ByteBuffer bb) throws IOException
+	{
+		FileChannel fc = new FileOutputStream(file).getChannel();
+		try
+		{
+			while (bb.hasRemaining())
+				fc.write(bb);
+		}
+		finally
+		{
+			fc.close();
+		}
+	}
+}
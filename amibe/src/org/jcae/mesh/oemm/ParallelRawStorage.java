@@ -0,0 +1,582 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.oemm;
+
+import gnu.trove.TLongIntHashMap;
+import gnu.trove.TLongIntIterator;
+import gnu.trove.TObjectIntHashMap;
+import gnu.trove.TObjectIntIterator;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Multi-threaded versions of {@link RawStorage#countTriangles} and
+ * {@link RawStorage#dispatch}.
+ *
+ * <p>
+ * Triangle soup is split into contiguous ranges of triangles, one per
+ * thread, which are read through memory-mapped regions.  When counting
+ * triangles, each thread counts triangles by deepest cell into a private
+ * map, and cells are then created by the calling thread.  Triangles are
+ * dispatched in two passes: the first one counts triangles of each range
+ * in each leaf, so that the second one can write each range at its final
+ * offset in dispatched file.  Triangles of a leaf are thus written in the
+ * same order as by {@link RawStorage}, and output files are identical.
+ * </p>
+ *
+ * <p>
+ * When dispatching, each thread buffers triangles of each leaf in a buffer
+ * of 4000 bytes.  Buffers are taken from a pool of
+ * <code>max(MIN_LEAF_BUFFERS, nrLeaves / nrThreads)</code> buffers per
+ * thread; when a thread needs more buffers, all its buffers are flushed
+ * and recycled.  All threads thus use about as much memory as the
+ * sequential version, 4&nbsp;KB per leaf, instead of 4&nbsp;KB per leaf
+ * and per thread.
+ * </p>
+ */
+final class ParallelRawStorage
+{
+	private static final Logger logger=Logger.getLogger(ParallelRawStorage.class.getName());
+
+	/**
+	 * Maximal depth of OEMM when it is built by {@link #countTriangles},
+	 * deepest cells are encoded into a <code>long</code>.
+	 */
+	static final int MAX_DEPTH = 22;
+	//  Number of triangles in a mapped region, about 64 MB
+	private static final int REGION_SIZE = (1 << 26) / RawStorage.TRIANGLE_SIZE_RAW;
+	//  Must be a multiple of TRIANGLE_SIZE_DISPATCHED
+	private static final int LEAF_BUFFER_SIZE = 4000;
+	//  Minimal number of leaf buffers of each thread
+	private static final int MIN_LEAF_BUFFERS = 16;
+
+	private final String soupFile;
+	private final int nrThreads;
+	private long nrTriangles;
+
+	ParallelRawStorage(String file, int threads)
+	{
+		soupFile = file;
+		nrThreads = threads;
+	}
+
+	/**
+	 * Returns the number of triangles found by the last call to
+	 * {@link #countTriangles}.
+	 */
+	long getTriangleCount()
+	{
+		return nrTriangles;
+	}
+
+	/**
+	 * Counts the number of triangles which have to be assigned to each leaf.
+	 *
+	 * @param  oemm  an OEMM
+	 * @param  build  if <code>true</code>, OEMM instance is built.  Otherwise,
+	 *         it is supposed to have already been built.
+	 * @return bounding box of triangle soup
+	 */
+	double [] countTriangles(final OEMM oemm, final boolean build)
+	{
+		assert !build || oemm.getDepth() <= MAX_DEPTH;
+		if (!build)
+		{
+			for (int i = 0; i < oemm.getNumberOfLeaves(); i++)
+				oemm.leaves[i].tn = 0;
+		}
+		final FileChannel fc = openSoup();
+		List<Callable<CountCells>> tasks = new ArrayList<Callable<CountCells>>(nrThreads);
+		long total = numberOfTriangles(fc);
+		for (int i = 0; i < nrThreads; i++)
+		{
+			final long first = total * i / nrThreads;
+			final long last = total * (i + 1) / nrThreads;
+			tasks.add(new Callable<CountCells>()
+			{
+				public CountCells call() throws IOException
+				{
+					CountCells cc = new CountCells(oemm, build);
+					readRange(fc, first, last, cc);
+					return cc;
+				}
+			});
+		}
+		List<CountCells> results = invokeAll(tasks);
+		close(fc);
+
+		nrTriangles = 0L;
+		double [] bbox = new double[6];
+		for (int k = 0; k < 3; k++)
+		{
+			bbox[k] = Double.MAX_VALUE;
+			bbox[k+3] = Double.MIN_VALUE;
+		}
+		int [] ijk = new int[3];
+		for (CountCells cc : results)
+		{
+			nrTriangles += cc.nrTriangles;
+			for (int k = 0; k < 3; k++)
+			{
+				if (cc.bbox[k] < bbox[k])
+					bbox[k] = cc.bbox[k];
+				if (cc.bbox[k+3] > bbox[k+3])
+					bbox[k+3] = cc.bbox[k+3];
+			}
+			if (build)
+			{
+				for (TLongIntIterator it = cc.cellCount.iterator(); it.hasNext(); )
+				{
+					it.advance();
+					cc.decode(it.key(), ijk);
+					oemm.build(ijk).tn += it.value();
+				}
+			}
+			else
+			{
+				for (TObjectIntIterator<OEMM.Node> it = cc.leafCount.iterator(); it.hasNext(); )
+				{
+					it.advance();
+					it.key().tn += it.value();
+				}
+			}
+		}
+		return bbox;
+	}
+
+	/**
+	 * Counts triangles of a range, either by deepest cells when OEMM is
+	 * being built, or by leaves.
+	 */
+	private static final class CountCells implements RawStorage.SoupReaderInterface
+	{
+		private final OEMM oemm;
+		private final boolean build;
+		private final int [] ijk = new int[3];
+		private final double [] bbox = new double[6];
+		private long nrTriangles = 0L;
+		//  Build mode
+		private final long [] keys = new long[3];
+		private final TLongIntHashMap cellCount;
+		private final int shift;
+		private final int bits;
+		//  Count mode
+		private final OEMM.Node [] cells = new OEMM.Node[3];
+		private final TObjectIntHashMap<OEMM.Node> leafCount;
+
+		CountCells(OEMM o, boolean b)
+		{
+			oemm = o;
+			build = b;
+			for (int k = 0; k < 3; k++)
+			{
+				bbox[k] = Double.MAX_VALUE;
+				bbox[k+3] = Double.MIN_VALUE;
+			}
+			shift = Integer.numberOfTrailingZeros(oemm.minCellSize());
+			bits = OEMM.MAXLEVEL - shift;
+			if (build)
+			{
+				cellCount = new TLongIntHashMap();
+				leafCount = null;
+			}
+			else
+			{
+				cellCount = null;
+				leafCount = new TObjectIntHashMap<OEMM.Node>();
+			}
+		}
+
+		public void processVertex(int i, double [] xyz)
+		{
+			for (int k = 0; k < 3; k++)
+			{
+				if (xyz[k] < bbox[k])
+					bbox[k] = xyz[k];
+				if (xyz[k] > bbox[k+3])
+					bbox[k+3] = xyz[k];
+			}
+			oemm.double2int(xyz, ijk);
+			if (build)
+			{
+				//  Only bits used by OEMM.build are kept
+				int mask = (1 << OEMM.MAXLEVEL) - 1;
+				keys[i] = ((long) ((ijk[0] & mask) >> shift) << (2 * bits)) |
+				          ((long) ((ijk[1] & mask) >> shift) << bits) |
+				          ((ijk[2] & mask) >> shift);
+			}
+			else
+				cells[i] = oemm.search(ijk);
+		}
+
+		public void processTriangle(int group)
+		{
+			nrTriangles++;
+			if (build)
+			{
+				cellCount.adjustOrPutValue(keys[0], 1, 1);
+				if (keys[1] != keys[0])
+					cellCount.adjustOrPutValue(keys[1], 1, 1);
+				if (keys[2] != keys[0] && keys[2] != keys[1])
+					cellCount.adjustOrPutValue(keys[2], 1, 1);
+			}
+			else
+			{
+				leafCount.adjustOrPutValue(cells[0], 1, 1);
+				if (cells[1] != cells[0])
+					leafCount.adjustOrPutValue(cells[1], 1, 1);
+				if (cells[2] != cells[0] && cells[2] != cells[1])
+					leafCount.adjustOrPutValue(cells[2], 1, 1);
+			}
+		}
+
+		void decode(long key, int [] xyz)
+		{
+			int mask = (1 << bits) - 1;
+			xyz[0] = ((int) (key >> (2 * bits)) & mask) << shift;
+			xyz[1] = ((int) (key >> bits) & mask) << shift;
+			xyz[2] = ((int) key & mask) << shift;
+		}
+	}
+
+	/**
+	 * Dispatches triangles into an intermediate OEMM data structure.
+	 * Leaf offsets in output file and leaf indices must have been
+	 * computed, and triangle counters reset, as done by
+	 * {@link RawStorage#dispatch}.  When this method returns,
+	 * <code>tn</code> contains the number of triangles of each leaf
+	 * and <code>counter</code> points to the end of leaf data.
+	 *
+	 * @param  oemm  an OEMM
+	 * @param  out  dispatched data file
+	 */
+	void dispatch(final OEMM oemm, final FileChannel out) throws IOException
+	{
+		final OEMM.Node [] leaves = new OEMM.Node[oemm.getNumberOfLeaves()];
+		oemm.walk(new TraversalProcedure()
+		{
+			@Override
+			public final int action(OEMM o, OEMM.Node current, int octant, int visit)
+			{
+				if (visit == LEAF)
+					leaves[current.leafIndex] = current;
+				return OK;
+			}
+		});
+		final FileChannel fc = openSoup();
+		long total = numberOfTriangles(fc);
+		final long [] first = new long[nrThreads + 1];
+		for (int i = 0; i <= nrThreads; i++)
+			first[i] = total * i / nrThreads;
+
+		//  Count triangles of each range in each leaf
+		logger.fine("Raw OEMM: count triangles by range");
+		List<Callable<int []>> countTasks = new ArrayList<Callable<int []>>(nrThreads);
+		for (int i = 0; i < nrThreads; i++)
+		{
+			final int range = i;
+			countTasks.add(new Callable<int []>()
+			{
+				public int [] call() throws IOException
+				{
+					DispatchRange dr = new DispatchRange(oemm, leaves.length, null, null, 0);
+					readRange(fc, first[range], first[range+1], dr);
+					return dr.count;
+				}
+			});
+		}
+		List<int []> counts = invokeAll(countTasks);
+
+		//  Compute offsets of each range in each leaf, and write leaf
+		//  headers.
+		final long [][] offsets = new long[nrThreads][leaves.length];
+		ByteBuffer header = ByteBuffer.allocate(8);
+		for (int l = 0; l < leaves.length; l++)
+		{
+			OEMM.Node current = leaves[l];
+			header.clear();
+			header.putLong(current.counter);
+			header.flip();
+			writeFully(out, header, current.counter);
+			long offset = current.counter + 8L;
+			int tn = 0;
+			for (int i = 0; i < nrThreads; i++)
+			{
+				offsets[i][l] = offset;
+				int nr = counts.get(i)[l];
+				offset += RawStorage.TRIANGLE_SIZE_DISPATCHED * (long) nr;
+				tn += nr;
+			}
+			//  RawStorage does not shift offsets of empty leaves,
+			//  this is mimicked to write identical files.
+			if (tn > 0)
+				current.counter = offset;
+			current.tn = tn;
+		}
+
+		logger.fine("Raw OEMM: dispatch triangles into raw OEMM");
+		final int maxBuffers = Math.max(MIN_LEAF_BUFFERS, leaves.length / nrThreads);
+		List<Callable<int []>> writeTasks = new ArrayList<Callable<int []>>(nrThreads);
+		for (int i = 0; i < nrThreads; i++)
+		{
+			final int range = i;
+			writeTasks.add(new Callable<int []>()
+			{
+				public int [] call() throws IOException
+				{
+					DispatchRange dr = new DispatchRange(oemm, leaves.length, out, offsets[range], maxBuffers);
+					readRange(fc, first[range], first[range+1], dr);
+					dr.flush();
+					return dr.count;
+				}
+			});
+		}
+		invokeAll(writeTasks);
+		close(fc);
+	}
+
+	/**
+	 * Counts or writes triangles of a range.  When output channel is
+	 * <code>null</code>, triangles are only counted.  Otherwise at most
+	 * <code>maxBuffers</code> leaf buffers are allocated.
+	 */
+	private static final class DispatchRange implements RawStorage.SoupReaderInterface
+	{
+		private final OEMM oemm;
+		private final FileChannel out;
+		private final long [] offsets;
+		private final ByteBuffer [] buffers;
+		private final int maxBuffers;
+		private int nrBuffers;
+		private final List<ByteBuffer> freeBuffers = new ArrayList<ByteBuffer>();
+		private final int [] count;
+		private final OEMM.Node [] cells = new OEMM.Node[3];
+		private final int [] ijk9 = new int[9];
+
+		DispatchRange(OEMM o, int nrLeaves, FileChannel fc, long [] off, int maxBuf)
+		{
+			oemm = o;
+			out = fc;
+			offsets = off;
+			maxBuffers = maxBuf;
+			count = new int[nrLeaves];
+			buffers = (out == null ? null : new ByteBuffer[nrLeaves]);
+		}
+
+		public void processVertex(int i, double [] xyz)
+		{
+			oemm.double2int(xyz, ijk9);
+			cells[i] = oemm.search(ijk9);
+			if (i < 2)
+				System.arraycopy(ijk9, 0, ijk9, 3 * i + 3, 3);
+		}
+
+		public void processTriangle(int group)
+		{
+			addToCell(cells[0], group);
+			if (cells[1] != cells[0])
+				addToCell(cells[1], group);
+			if (cells[2] != cells[0] && cells[2] != cells[1])
+				addToCell(cells[2], group);
+		}
+
+		private void addToCell(OEMM.Node current, int attribute)
+		{
+			int l = current.leafIndex;
+			count[l]++;
+			if (out == null)
+				return;
+			ByteBuffer list = buffers[l];
+			if (list == null)
+			{
+				list = newBuffer();
+				buffers[l] = list;
+			}
+			else if (!list.hasRemaining())
+				flush(l);
+			for (int i = 0; i < ijk9.length; i++)
+				list.putInt(ijk9[i]);
+			list.putInt(attribute);
+		}
+
+		private ByteBuffer newBuffer()
+		{
+			if (nrBuffers < maxBuffers)
+			{
+				nrBuffers++;
+				return ByteBuffer.allocate(LEAF_BUFFER_SIZE);
+			}
+			if (freeBuffers.isEmpty())
+			{
+				//  All buffers are in use, flush them all.  Leaves
+				//  are written at their own offsets, so output file
+				//  does not change.
+				for (int l = 0; l < buffers.length; l++)
+				{
+					if (buffers[l] == null)
+						continue;
+					if (buffers[l].position() > 0)
+						flush(l);
+					freeBuffers.add(buffers[l]);
+					buffers[l] = null;
+				}
+			}
+			return freeBuffers.remove(freeBuffers.size() - 1);
+		}
+
+		private void flush(int l)
+		{
+			ByteBuffer list = buffers[l];
+			list.flip();
+			try
+			{
+				int nr = list.limit();
+				writeFully(out, list, offsets[l]);
+				offsets[l] += nr;
+			}
+			catch (IOException ex)
+			{
+				logger.severe("I/O error when writing dispatched file");
+				throw new RuntimeException(ex);
+			}
+			list.clear();
+		}
+
+		void flush()
+		{
+			for (int l = 0; l < buffers.length; l++)
+			{
+				if (buffers[l] != null && buffers[l].position() > 0)
+					flush(l);
+			}
+		}
+	}
+
+	private FileChannel openSoup()
+	{
+		try
+		{
+			return new FileInputStream(soupFile).getChannel();
+		}
+		catch (FileNotFoundException ex)
+		{
+			logger.severe("File "+soupFile+" not found");
+			throw new RuntimeException(ex);
+		}
+	}
+
+	private long numberOfTriangles(FileChannel fc)
+	{
+		try
+		{
+			return fc.size() / RawStorage.TRIANGLE_SIZE_RAW;
+		}
+		catch (IOException ex)
+		{
+			logger.severe("I/O error when reading "+soupFile);
+			throw new RuntimeException(ex);
+		}
+	}
+
+	private void close(FileChannel fc)
+	{
+		try
+		{
+			fc.close();
+		}
+		catch (IOException ex)
+		{
+			logger.severe("I/O error when reading "+soupFile);
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Reads triangles <code>first</code> to <code>last - 1</code> of a
+	 * triangle soup through memory-mapped regions.
+	 */
+	private static void readRange(FileChannel fc, long first, long last, RawStorage.SoupReaderInterface proc)
+		throws IOException
+	{
+		double [] xyz = new double[3];
+		for (long start = first; start < last; start += REGION_SIZE)
+		{
+			int nr = (int) Math.min(REGION_SIZE, last - start);
+			MappedByteBuffer bb = fc.map(FileChannel.MapMode.READ_ONLY,
+				start * RawStorage.TRIANGLE_SIZE_RAW, (long) nr * RawStorage.TRIANGLE_SIZE_RAW);
+			for (int offset = 0, end = nr * RawStorage.TRIANGLE_SIZE_RAW; offset < end; offset += RawStorage.TRIANGLE_SIZE_RAW)
+			{
+				for (int i = 0; i < 3; i++)
+				{
+					for (int k = 0; k < 3; k++)
+						xyz[k] = bb.getDouble(offset + 24 * i + 8 * k);
+					proc.processVertex(i, xyz);
+				}
+				proc.processTriangle(bb.getInt(offset + 72));
+			}
+		}
+	}
+
+	private static void writeFully(FileChannel fc, ByteBuffer bb, long position)
+		throws IOException
+	{
+		long pos = position;
+		while (bb.hasRemaining())
+			pos += fc.write(bb, pos);
+	}
+
+	private <T> List<T> invokeAll(List<Callable<T>> tasks)
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(nrThreads);
+		List<T> ret = new ArrayList<T>(tasks.size());
+		try
+		{
+			for (Future<T> f : pool.invokeAll(tasks))
+				ret.add(f.get());
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		}
+		catch (ExecutionException ex)
+		{
+			throw new RuntimeException(ex.getCause());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		return ret;
+	}
+}
@@ -63,9 +63,9 @@ public class RawStorage
 	private static final Logger logger=Logger.getLogger(RawStorage.class.getName());
 
 	//  In triangle soup, a triangle has 9 double coordinates and two ints.
-	private static final int TRIANGLE_SIZE_RAW = 80;
+	static final int TRIANGLE_SIZE_RAW = 80;
 	//  In dispatched file, a triangle has 9 int coordinates and an int.
-	private static final int TRIANGLE_SIZE_DISPATCHED = 40;
+	static final int TRIANGLE_SIZE_DISPATCHED = 40;
 	//  In intermediate file, a vertex has 3 integer coordiantes and a
 	//  triangle has 2 int[3] arrays and an int.
 	private static final int VERTEX_SIZE_INDEXED = 12;
@@ -73,10 +73,9 @@ public class RawStorage
 	// bufferSize = 26880
 	// As TRIANGLE_SIZE_RAW is 2*TRIANGLE_SIZE_DISPATCHED, the latter
 	// does not need to be taken into account
+	//  Buffers are allocated by each method or procedure so that
+	//  this class can be used by several threads.
 	private static final int bufferSize = (TRIANGLE_SIZE_RAW * VERTEX_SIZE_INDEXED * TRIANGLE_SIZE_INDEXED);
-	private static final ByteBuffer bb = ByteBuffer.allocate(bufferSize);
-	private static final ByteBuffer bbt = ByteBuffer.allocate(bufferSize);
-	private static final ByteBuffer bbpos = ByteBuffer.allocate(8);
 
 	public static interface SoupReaderInterface
 	{
@@ -98,7 +97,7 @@ public class RawStorage
 	{
 		double [] xyz = new double[3];
 		boolean hasNext = true;
-		bb.clear();
+		ByteBuffer bb = ByteBuffer.allocate(bufferSize);
 		DoubleBuffer bbD = bb.asDoubleBuffer();
 		IntBuffer bbI = bb.asIntBuffer();
 		try
@@ -177,6 +176,24 @@ public class RawStorage
 	 *         bounds, <code>true</code> otherwise.
 	 */
 	public static boolean countTriangles(OEMM tree, String soupFile, boolean build)
+	{
+		return countTriangles(tree, soupFile, build, 1);
+	}
+
+	/**
+	 * Counts the number of triangles which have to be assigned to each leaf,
+	 * on several threads.  Results are identical to
+	 * {@link #countTriangles(OEMM, String, boolean)}.
+	 * 
+	 * @param  tree  an OEMM
+	 * @param  soupFile  triangle soup file name
+	 * @param  build  if <code>true</code>, OEMM instance is built.  Otherwise,
+	 *         it is supposed to have already been built.
+	 * @param  nrThreads  number of threads
+	 * @return <code>false</code> if a vertex was found outside of octree
+	 *         bounds, <code>true</code> otherwise.
+	 */
+	public static boolean countTriangles(OEMM tree, String soupFile, boolean build, int nrThreads)
 	{
 		if (tree == null)
 		{
@@ -185,10 +202,20 @@ public class RawStorage
 		}
 		logger.info("Count triangles");
 		logger.fine("Reading "+soupFile+" and count triangles");
-		CountTriangles ct = new CountTriangles(tree, build);
-		readSoup(soupFile, ct);
-		logger.info("Number of triangles: "+ct.getTriangleCount());
-		double [] bbox = ct.getBoundingBox();
+		double [] bbox;
+		if (nrThreads > 1 && (!build || tree.getDepth() <= ParallelRawStorage.MAX_DEPTH))
+		{
+			ParallelRawStorage prs = new ParallelRawStorage(soupFile, nrThreads);
+			bbox = prs.countTriangles(tree, build);
+			logger.info("Number of triangles: "+prs.getTriangleCount());
+		}
+		else
+		{
+			CountTriangles ct = new CountTriangles(tree, build);
+			readSoup(soupFile, ct);
+			logger.info("Number of triangles: "+ct.getTriangleCount());
+			bbox = ct.getBoundingBox();
+		}
 		if (!tree.checkBoundingBox(bbox))
 		{
 			if (!build)
@@ -279,6 +306,22 @@ public class RawStorage
 	 * @param  dataFile  dispatched data file
 	 */
 	public static void dispatch(OEMM tree, String soupFile, String structFile, String dataFile)
+	{
+		dispatch(tree, soupFile, structFile, dataFile, 1);
+	}
+
+	/**
+	 * Reads a triangle soup and dispatches triangles into an intermediate
+	 * OEMM data structure on several threads.  Output files are identical
+	 * to those written by {@link #dispatch(OEMM, String, String, String)}.
+	 * 
+	 * @param  tree  an OEMM
+	 * @param  soupFile  triangle soup file name
+	 * @param  structFile  output file containing dispatched data structure
+	 * @param  dataFile  dispatched data file
+	 * @param  nrThreads  number of threads
+	 */
+	public static void dispatch(OEMM tree, String soupFile, String structFile, String dataFile, int nrThreads)
 	{
 		if (tree == null)
 		{
@@ -303,13 +346,18 @@ public class RawStorage
 			FileChannel fc = raf.getChannel();
 			raf.setLength(outputFileSize);
 
-			Map<OEMM.Node, ByteBuffer> buffers = new HashMap<OEMM.Node, ByteBuffer>();
-			DispatchTriangles dt = new DispatchTriangles(tree, fc, buffers);
-			readSoup(soupFile, dt);
+			if (nrThreads > 1)
+				new ParallelRawStorage(soupFile, nrThreads).dispatch(tree, fc);
+			else
+			{
+				Map<OEMM.Node, ByteBuffer> buffers = new HashMap<OEMM.Node, ByteBuffer>();
+				DispatchTriangles dt = new DispatchTriangles(tree, fc, buffers);
+				readSoup(soupFile, dt);
 
-			logger.fine("Raw OEMM: flush buffers");
-			FlushBuffersProcedure fb_proc = new FlushBuffersProcedure(fc, buffers);
-			tree.walk(fb_proc);
+				logger.fine("Raw OEMM: flush buffers");
+				FlushBuffersProcedure fb_proc = new FlushBuffersProcedure(fc, buffers);
+				tree.walk(fb_proc);
+			}
 			raf.close();
 			
 			//  Write octree data structure onto disk
@@ -564,8 +612,8 @@ public class RawStorage
 			int nrleaves = bufIn.readInt();
 			int nrbytes = bufIn.readInt();
 			int nrT = 0;
-			byte [] name = new byte[nrbytes+1];
-			bufIn.read(name, 0, nrbytes);
+			byte [] name = new byte[nrbytes];
+			bufIn.readFully(name);
 			ret = new OEMM(new String(name));
 			ret.leaves = new OEMM.Node[nrleaves];
 			for (int i = 0; i < 4; i++)
@@ -612,6 +660,19 @@ public class RawStorage
 	 * @param outDir  directory in which OEMM structure will be stored.
 	 */
 	public static void indexOEMM(String structFile, String outDir)
+	{
+		indexOEMM(structFile, outDir, false);
+	}
+
+	/**
+	 * Transforms dispatched file into an OEMM.
+	 *
+	 * @param structFile  dispatched file.
+	 * @param outDir  directory in which OEMM structure will be stored.
+	 * @param compress  if <code>true</code>, vertex and triangle files
+	 *    are written in compressed format, see {@link OctantFormat}
+	 */
+	public static void indexOEMM(String structFile, String outDir, boolean compress)
 	{
 		try
 		{
@@ -628,7 +689,7 @@ public class RawStorage
 			
 			//  Index internal vertices
 			logger.fine("Index internal vertices");
-			FileInputStream fis = new FileInputStream(ret.getFileName());
+			FileInputStream fis = new FileInputStream(ret.getDirectory());
 			IndexInternalVerticesProcedure iiv_proc = new IndexInternalVerticesProcedure(fis, oos, outDir);
 			ret.walk(iiv_proc);
 			fis.close();
@@ -636,7 +697,7 @@ public class RawStorage
 			
 			//  Index external vertices
 			logger.fine("Index external vertices");
-			fis = new FileInputStream(ret.getFileName());
+			fis = new FileInputStream(ret.getDirectory());
 			//  We have a handle on triangle soup, which will be
 			//  no more read, we can now set output diirectory
 			//  to its final value.
@@ -647,7 +708,7 @@ public class RawStorage
 			
 			//  Transform vertex coordinates into doubles
 			logger.fine("Transform vertex coordinates into doubles");
-			ConvertVertexCoordinatesProcedure cvc_proc = new ConvertVertexCoordinatesProcedure();
+			ConvertVertexCoordinatesProcedure cvc_proc = new ConvertVertexCoordinatesProcedure(compress);
 			ret.walk(cvc_proc);
 			
 			//ShowIndexedNodesProcedure debug = new ShowIndexedNodesProcedure();
@@ -675,6 +736,9 @@ public class RawStorage
 		private int globalIndex = 0;
 		private final ArrayList<String> path = new ArrayList<String>();
 		private final int [] ijk = new int[3];
+		private final ByteBuffer bb = ByteBuffer.allocate(bufferSize);
+		private final ByteBuffer bbt = ByteBuffer.allocate(bufferSize);
+		private final ByteBuffer bbpos = ByteBuffer.allocate(8);
 		private int room = 0;
 		IndexInternalVerticesProcedure(FileInputStream in, ObjectOutputStream headerOut, String dir)
 		{
@@ -899,6 +963,9 @@ public class RawStorage
 	{
 		private final FileChannel fc;
 		private final int [] ijk = new int[3];
+		private final ByteBuffer bb = ByteBuffer.allocate(bufferSize);
+		private final ByteBuffer bbt = ByteBuffer.allocate(bufferSize);
+		private final ByteBuffer bbpos = ByteBuffer.allocate(8);
 		private PAVLTreeIntArrayDup [] vertices;
 		private SoftReference<PAVLTreeIntArrayDup> [] sr;
 		private int nr_ld_leaves = 0;
@@ -929,7 +996,7 @@ public class RawStorage
 				vertices[i] = sr[i].get();
 			if (vertices[i] == null)
 			{
-				vertices[i] = loadVerticesInAVLTreeDup(oemm.getDirectory(), oemm.leaves[i]);
+				vertices[i] = loadVerticesInAVLTreeDup(oemm.getDirectory(), oemm.leaves[i], bb);
 				sr[i] = new SoftReference<PAVLTreeIntArrayDup>(vertices[i]); 
 				nr_ld_leaves++;
 			}
@@ -1023,8 +1090,12 @@ public class RawStorage
 	{
 		private final int [] ijk = new int[3];
 		private final double [] xyz = new double[3];
-		ConvertVertexCoordinatesProcedure()
+		private final ByteBuffer bb = ByteBuffer.allocate(bufferSize);
+		private final ByteBuffer bbt = ByteBuffer.allocate(bufferSize);
+		private final boolean compress;
+		ConvertVertexCoordinatesProcedure(boolean c)
 		{
+			compress = c;
 		}
 		@Override
 		public final int action(OEMM oemm, OEMM.Node current, int octant, int visit)
@@ -1034,6 +1105,8 @@ public class RawStorage
 			if (logger.isLoggable(Level.FINE))
 				logger.fine("Converting coordinates of node "+(current.leafIndex+1)+"/"+oemm.getNumberOfLeaves());
 			
+			if (compress)
+				return compress(oemm, current);
 			try
 			{
 				FileChannel fci = new FileInputStream(new File(oemm.getDirectory(), current.file+"i")).getChannel();
@@ -1077,9 +1150,46 @@ public class RawStorage
 			}
 			return OK;
 		}
+		
+		// Integer coordinates are written as is, and triangle file is
+		// compressed too.
+		private int compress(OEMM oemm, OEMM.Node current)
+		{
+			try
+			{
+				File indexed = new File(oemm.getDirectory(), current.file+"i");
+				FileChannel fci = new FileInputStream(indexed).getChannel();
+				ByteBuffer bbi = ByteBuffer.allocate(current.vn * VERTEX_SIZE_INDEXED);
+				while (bbi.hasRemaining())
+				{
+					if (fci.read(bbi) < 0)
+						throw new IOException("Unexpected end of file "+indexed);
+				}
+				fci.close();
+				bbi.flip();
+				int [] ijk = new int[3 * current.vn];
+				bbi.asIntBuffer().get(ijk);
+				OctantFormat.writeCompressedVertices(new File(oemm.getDirectory(), current.file+"v"), current, ijk, current.vn);
+				indexed.delete();
+				// As in IndexInternalVerticesProcedure, current.tn
+				// is not the number of triangles written onto disk.
+				int tn = current.tn;
+				current.tn = (int) (new File(oemm.getDirectory(), current.file+"t").length() / TRIANGLE_SIZE_INDEXED);
+				int [] triangles = OctantFormat.readTriangles(oemm, current);
+				OctantFormat.writeTriangles(oemm, current, triangles, current.tn, true);
+				current.tn = tn;
+			}
+			catch (IOException ex)
+			{
+				logger.severe("I/O error when compressing node "+current.leafIndex);
+				ex.printStackTrace();
+				throw new RuntimeException(ex);
+			}
+			return OK;
+		}
 	}
 	
-	private static PAVLTreeIntArrayDup loadVerticesInAVLTreeDup(String outDir, OEMM.Node current)
+	private static PAVLTreeIntArrayDup loadVerticesInAVLTreeDup(String outDir, OEMM.Node current, ByteBuffer bb)
 	{
 		PAVLTreeIntArrayDup ret = new PAVLTreeIntArrayDup();
 		int [] ijk = new int[3];
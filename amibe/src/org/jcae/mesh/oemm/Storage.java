@@ -31,10 +31,6 @@ import java.io.DataOutputStream;
 import java.io.ObjectInputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
-import java.io.RandomAccessFile;
-import java.nio.IntBuffer;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -337,27 +333,20 @@ public class Storage
 				throw new RuntimeException("Cannot add/delete vertex yet");
 			}
 			
-			// Write vertex coordinates
-			DataOutputStream fc;
-			try {
-				fc = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getVerticesFile(oemm, node))));
-			} catch (FileNotFoundException e) {
-				logger.severe("I/O error when writing file "+getVerticesFile(oemm, node));
-				e.printStackTrace();
-				throw new RuntimeException(e);
+			// Write vertex coordinates, file format is kept
+			double [] coords = new double[3 * vertexList.size()];
+			int offset = 0;
+			for (Vertex vertex: vertexList)
+			{
+				System.arraycopy(vertex.getUV(), 0, coords, offset, 3);
+				offset += 3;
 			}
 			try {
-				for (Vertex vertex: vertexList)
-					writeDoubleArray(fc, vertex.getUV());
+				OctantFormat.writeVertices(oemm, node, coords, vertexList.size(), OctantFormat.isCompressed(oemm, node));
 			} catch (IOException e) {
+				logger.severe("I/O error when writing file "+getVerticesFile(oemm, node));
 				e.printStackTrace();
 				throw new RuntimeException(e);
-			} finally {
-				try {
-					fc.close();
-				} catch (IOException ex) {
-					//ignore this
-				}
 			}
 			
 			// Write adjacency
@@ -435,6 +424,7 @@ public class Storage
 					//ignore this
 				}
 			}
+			node.version++;
 		}
 		
 		updateNonReadNodes(oemm, nodes4Update, old2newIndex);
@@ -583,85 +573,48 @@ public class Storage
 	 */
 	private static void updateNonReadNodes(OEMM oemm, TIntHashSet nodes4Update, TIntObjectHashMap<VertexIndexHolder> old2newIndex)
 	{
-		int[] leaf = new int[3];
-		int[] localIndices = new int[3];
-		
-		int maxTn = 0;
-		for (TIntIterator it = nodes4Update.iterator(); it.hasNext();)
-		{
-			int tn = oemm.leaves[it.next()].tn;
-			if (tn > maxTn)
-				maxTn = tn;
-		}
-		ByteBuffer bb = ByteBuffer.allocate(maxTn * TRIANGLE_SIZE);
 		for (TIntIterator it = nodes4Update.iterator(); it.hasNext();)
 		{
 			OEMM.Node node = oemm.leaves[it.next()];
-			FileChannel fc = null;
+			File file = getTrianglesFile(oemm, node);
+			int [] triangles;
 			try {
-				fc = new RandomAccessFile(getTrianglesFile(oemm, node),"rw").getChannel();
-			} catch (FileNotFoundException e) {
-				logger.log(Level.SEVERE, "Couldn't find file " + getTrianglesFile(oemm, node), e);
-				throw new RuntimeException(e);
-			}
-			
-			bb.clear();
-			IntBuffer bbI = bb.asIntBuffer();
-			try {
-				fc.read(bb);
+				triangles = OctantFormat.readTriangles(oemm, node);
 			} catch (IOException e) {
-				logger.log(Level.SEVERE, "I/O error in operation with file " + getTrianglesFile(oemm, node), e);
+				logger.log(Level.SEVERE, "I/O error in operation with file " + file, e);
 				throw new RuntimeException(e);
 			}
-			bb.flip();
 
 			boolean fileModified = false;
 			for (int i = 0; i < node.tn; i++)
 			{
-				boolean modified_triangle = false;
-				bbI.mark();
-				bbI.get(leaf);
-				bbI.get(localIndices);
-				int group = bbI.get();
-				
 				for (int ii = 0; ii < 3; ii++)
 				{
-					OEMM.Node oldNode = oemm.leaves[leaf[ii]];
-					int globalIndexOfNode = oldNode.minIndex + localIndices[ii];
+					int leaf = triangles[7*i+ii];
+					int localIndex = triangles[7*i+3+ii];
+					OEMM.Node oldNode = oemm.leaves[leaf];
+					int globalIndexOfNode = oldNode.minIndex + localIndex;
 					if (!old2newIndex.containsKey(globalIndexOfNode)) {
-						assert 0 <= localIndices[ii] && localIndices[ii] <= oldNode.vn;
+						assert 0 <= localIndex && localIndex <= oldNode.vn;
 						continue;
 					}
-					modified_triangle = true;
+					fileModified = true;
 					
 					VertexIndexHolder newIndex = old2newIndex.get(globalIndexOfNode);
-					leaf[ii] = newIndex.getContainedNode().leafIndex;
-					localIndices[ii] = newIndex.getLocalIndex();
-					assert 0 <= localIndices[ii] && localIndices[ii] <= newIndex.containedNode.vn;
-				}
-				if (modified_triangle)
-				{
-					fileModified = true;
-					bbI.reset();
-					bbI.put(leaf);
-					bbI.put(localIndices);
-					bbI.put(group);
+					triangles[7*i+ii] = newIndex.getContainedNode().leafIndex;
+					triangles[7*i+3+ii] = newIndex.getLocalIndex();
+					assert 0 <= newIndex.getLocalIndex() && newIndex.getLocalIndex() <= newIndex.containedNode.vn;
 				}
 			}
 			if (fileModified)
 			{
 				try {
-					fc.position(0L);
-					fc.write(bb);
+					OctantFormat.writeTriangles(oemm, node, triangles, node.tn, OctantFormat.isCompressed(file));
 				} catch (IOException e) {
-					logger.log(Level.SEVERE, "I/O error in operation with file " + getTrianglesFile(oemm, node), e);
+					logger.log(Level.SEVERE, "I/O error in operation with file " + file, e);
 					throw new RuntimeException(e);
 				}
-			}
-			try {
-				fc.close();
-			} catch (IOException e) {
-				//ignore this
+				node.version++;
 			}
 		}
 	}
@@ -721,44 +674,35 @@ public class Storage
 			Node node = oemm.leaves[it.key()];
 			List<Triangle> triangleList = it.value();
 			
-			DataOutputStream fc;
-			try {
-				fc = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getTrianglesFile(oemm, node))));
-			} catch (FileNotFoundException e1) {
-				logger.severe("I/O error when reading indexed file "+getTrianglesFile(oemm, node));
-				e1.printStackTrace();
-				throw new RuntimeException(e1);
-			}
-			try {
-				
-				for (Triangle triangle: triangleList)
+			// File format is kept
+			int [] triangles = new int[7 * triangleList.size()];
+			int offset = 0;
+			for (Triangle triangle: triangleList)
+			{
+				for (int i = 0; i < 3; i++)
 				{
-					for (int i = 0; i < 3; i++)
-					{
-						Vertex v = triangle.vertex[i];
-						Node foundNode = oemm.leaves[searchNode(oemm, v, positions)];
-						leaf[i] = foundNode.leafIndex;
-						assert leaf[i] < oemm.leaves.length; 
-						pointIndex[i] = v.getLabel() - foundNode.minIndex;
-						assert pointIndex[i] < oemm.leaves[leaf[i]].vn; 
-					}
-					writeIntArray(fc, leaf);
-					writeIntArray(fc, pointIndex);
-					fc.writeInt(triangle.getGroupId());
+					Vertex v = triangle.vertex[i];
+					Node foundNode = oemm.leaves[searchNode(oemm, v, positions)];
+					leaf[i] = foundNode.leafIndex;
+					assert leaf[i] < oemm.leaves.length; 
+					pointIndex[i] = v.getLabel() - foundNode.minIndex;
+					assert pointIndex[i] < oemm.leaves[leaf[i]].vn; 
 				}
+				System.arraycopy(leaf, 0, triangles, offset, 3);
+				System.arraycopy(pointIndex, 0, triangles, offset + 3, 3);
+				triangles[offset + 6] = triangle.getGroupId();
+				offset += 7;
+			}
+			try {
+				OctantFormat.writeTriangles(oemm, node, triangles, triangleList.size(),
+					OctantFormat.isCompressed(getTrianglesFile(oemm, node)));
 				node.tn = triangleList.size();
-			
 			} catch (IOException e) {
 				logger.log(Level.SEVERE, "Error in saving to " + getTrianglesFile(oemm, node), e);
 				e.printStackTrace();
 				throw new RuntimeException(e);
-			} finally {
-				try {
-					fc.close();
-				} catch (IOException e) {
-					//ignore this
-				}
 			}
+			node.version++;
 		}
 	}
 
@@ -939,18 +883,6 @@ public class Storage
 			buffer[i] = fc.readInt();
 	}
 	
-	private static void writeIntArray(DataOutputStream fc, int[] pointIndex) throws IOException
-	{
-		for(int val: pointIndex)
-			fc.writeInt(val);
-	}
-	
-	private static void writeDoubleArray(DataOutputStream fc, double[] uv) throws IOException
-	{
-		for (double val: uv)
-			fc.writeDouble(val);
-	}
-	
 	/**
 	 * Class that helps to hold global index of vertex in local index way  - 
 	 * <containing_node, local_index_in_node>
@@ -25,13 +25,11 @@ import org.jcae.mesh.xmldata.AmibeReader.SubMesh;
 import org.jcae.mesh.xmldata.MeshExporter.UNV.Unit;
 import java.io.File;
 import java.io.PrintStream;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.text.NumberFormat;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import javax.xml.parsers.ParserConfigurationException;
 import java.util.logging.Logger;
 import org.xml.sax.SAXException;
@@ -45,7 +43,6 @@ import org.xml.sax.SAXException;
 public class Amibe2UNV
 {
 	private final static String CR=System.getProperty("line.separator");			
-	private final static NumberFormat FORMAT_I10=new MeshExporter.FormatI10();	
 	private static final Logger logger=Logger.getLogger(Amibe2UNV.class.getName());
 
 	/**
@@ -71,6 +68,7 @@ public class Amibe2UNV
 	private final File directory;
 	private final MeshExporter.UNV unvWriter;
 	private double scale = 1.0;
+	private int nrThreads = Runtime.getRuntime().availableProcessors();
 	
 	/**
 	 * @param directory The directory which contain 3d files
@@ -91,17 +89,54 @@ public class Amibe2UNV
 		this.scale = scale;
 	}
 
+	/**
+	 * Sets the number of threads which format nodes and elements.  Output
+	 * does not depend on this number, default is the number of available
+	 * processors.
+	 */
+	public void setNumberOfThreads(int nrThreads)
+	{
+		this.nrThreads = nrThreads;
+	}
+
+	public void write(String fileName) throws ParserConfigurationException, SAXException, IOException
+	{
+		FileOutputStream out = new FileOutputStream(fileName);
+		try
+		{
+			write(out.getChannel());
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
 	public void write(PrintStream out) throws ParserConfigurationException, SAXException, IOException
+	{
+		write(Channels.newChannel(out));
+		out.flush();
+	}
+
+	private void write(WritableByteChannel channel) throws SAXException, IOException
 	{
 		AmibeReader.Dim3 ar = new AmibeReader.Dim3(directory.getPath());
 		SubMesh sm = ar.getSubmeshes().get(0);
-		unvWriter.writeInit(out);
-		writeNodes(out);
-		out.println("    -1"+CR+"  2412");
-		int count = writeTriangles(out);
-		writeBeams(out, sm, count);
-		out.println("    -1");
-		writeGroups(out, sm, count);
+		ChunkWriter out = new ChunkWriter(channel, nrThreads);
+		try
+		{
+			unvWriter.writeInit(out);
+			writeNodes(out);
+			out.buffer().println("    -1"+CR+"  2412");
+			int count = writeTriangles(out);
+			writeBeams(out, sm, count);
+			out.buffer().println("    -1");
+			writeGroups(out, sm, count);
+		}
+		finally
+		{
+			out.close();
+		}
 	}
 	
 	/**
@@ -109,107 +144,100 @@ public class Amibe2UNV
 	 * @param count id of the first beam
 	 * @throws IOException 
 	 */
-	private void writeGroups(PrintStream out, AmibeReader.SubMesh subMesh, int count)
-			throws ParserConfigurationException, SAXException, IOException
+	private void writeGroups(ChunkWriter out, AmibeReader.SubMesh subMesh, final int count)
+			throws IOException
 	{
-		out.println("    -1"+CR+"  2435");
+		out.buffer().println("    -1"+CR+"  2435");
 		int i = 0;
 		for(Group g:subMesh.getGroups())
-		{				
-			out.println(FORMAT_I10.format(i+1)+
-				"         0         0         0         0         0         0"+
-				FORMAT_I10.format(g.getNumberOfTrias()+g.getNumberOfBeams()));
-			
-			out.println(g.getName());
-			int countg=0;
-			for(int id:g.readTria3Ids())
-			{				
-				out.print("         8"
-					+FORMAT_I10.format(id+1)
-					+"         0         0");
-				countg++;
-				if ((countg % 2) == 0)
-					out.println();
-			}
-			for(int id:g.readBeamsIds())
+		{
+			final int[] trias = g.readTria3Ids();
+			final int[] beams = g.readBeamsIds();
+			MeshExporter.UNV.writeSingleGroup(out, i+1, g.getName(),
+				trias.length + beams.length, new MeshExporter.UNV.Labels()
 			{
-				out.print("         8"
-					+FORMAT_I10.format(id+count)
-					+"         0         0");
-				countg++;
-				if ((countg % 2) == 0)
-					out.println();
-			}
-			if ((countg % 2) !=0 )
-				out.println();
+				public int get(int j)
+				{
+					if (j < trias.length)
+						return trias[j]+1;
+					return beams[j-trias.length]+count;
+				}
+			});
 			i++;
 		}
-		out.println("    -1");
+		out.buffer().println("    -1");
 	}	
 	
-	private void writeNodes(PrintStream out) throws IOException
+	private void writeNodes(ChunkWriter out) throws IOException
 	{
 		File f=unvWriter.getNodeFile();
-		// Open the file and then get a channel from the stream
-		FileInputStream fis = new FileInputStream(f);
-		FileChannel fc = fis.getChannel();
-	
-		ByteBuffer bb=ByteBuffer.allocate(3*8);
-		int count = 1;
-		out.println("    -1"+CR+"  2411");
-		
-		while(fc.read(bb)!=-1)
+		final DoubleFileReader dfrN = new PrimitiveFileReaderFactory("mmap").getDoubleReader(f);
+		int nbNodes = (int) (dfrN.size() / 3);
+		out.buffer().println("    -1"+CR+"  2411");
+		out.write(nbNodes, new ChunkWriter.Formatter()
 		{
-			bb.rewind();
-			MeshExporter.UNV.writeSingleNode(out, count,
-				bb.getDouble()*scale, bb.getDouble()*scale, bb.getDouble()*scale);
-			bb.rewind();
-			count ++;
-		}
-		
-		out.println("    -1");
-		
-		fc.close();
-		logger.info("Total number of nodes: "+count);
+			public void format(int first, int last, OutputBuffer b) throws IOException
+			{
+				for(int i=first; i<last; i++)
+				{
+					MeshExporter.UNV.writeSingleNode(b, i+1,
+						dfrN.get(3*i)*scale, dfrN.get(3*i+1)*scale, dfrN.get(3*i+2)*scale);
+				}
+			}
+		});
+		out.buffer().println("    -1");
+		dfrN.close();
+		logger.info("Total number of nodes: "+nbNodes);
 	}
 	
 	/**
+	 * Writes triangles, outer triangles are skipped but still numbered.
 	 * @param out
+	 * @return id of the first beam
 	 * @throws IOException 
 	 */
-	private int writeTriangles(PrintStream out) throws IOException
+	private int writeTriangles(ChunkWriter out) throws IOException
 	{
-		FileChannel fc = new FileInputStream(unvWriter.getTriaFile()).getChannel();
-		ByteBuffer bb=ByteBuffer.allocate(3*4);
-		int count = 1;
-		
-		while(fc.read(bb)!=-1)
+		final IntFileReader ifrT = new PrimitiveFileReaderFactory("mmap").getIntReader(unvWriter.getTriaFile());
+		int nbTrias = (int) (ifrT.size() / 3);
+		out.write(nbTrias, new ChunkWriter.Formatter()
 		{
-			bb.rewind();
-			int n1 = bb.getInt();
-			int n2 = bb.getInt();
-			int n3 = bb.getInt();
-			if(n1 >= 0)
-				MeshExporter.UNV.writeSingleTriangle(out, count,
-					n1+1, n2+1, n3+1);
-			bb.rewind();
-			count ++;
-		}
-		
-		logger.info("Total number of triangles: "+count);
-		return count;
+			public void format(int first, int last, OutputBuffer b) throws IOException
+			{
+				for(int i=first; i<last; i++)
+				{
+					int n1 = ifrT.get(3*i);
+					if(n1 >= 0)
+						MeshExporter.UNV.writeSingleTriangle(b, i+1,
+							n1+1, ifrT.get(3*i+1)+1, ifrT.get(3*i+2)+1);
+				}
+			}
+		});
+		ifrT.close();
+		logger.info("Total number of triangles: "+nbTrias);
+		return nbTrias+1;
 	}
 
-	private void writeBeams(PrintStream out, AmibeReader.SubMesh subMesh, int count) throws IOException
+	private void writeBeams(ChunkWriter out, AmibeReader.SubMesh subMesh, final int count) throws IOException
 	{
-		IntFileReader beams = subMesh.getBeams();
-		long nb = beams.size() / 2;
-		for(int i = 0; i < nb; i++)
+		final IntFileReader beams = subMesh.getBeams();
+		final int[] ids = new int[(int) beams.size()];
+		beams.get(ids);
+		beams.close();
+		out.write(ids.length / 2, new ChunkWriter.Formatter()
 		{
-			out.println(FORMAT_I10.format(count) +
-				"        21         2         1         5         2");
-			out.println("         0         1         1");
-			out.println(FORMAT_I10.format(beams.get()+1) + FORMAT_I10.format(beams.get()+1));
-		}
+			public void format(int first, int last, OutputBuffer b)
+			{
+				for(int i = first; i < last; i++)
+				{
+					b.printI10(count + i);
+					b.println("        21         2         1         5         2");
+					b.println("         0         1         1");
+					b.printI10(ids[2*i]+1);
+					b.printI10(ids[2*i+1]+1);
+					b.println();
+				}
+			}
+		});
 	}
 }
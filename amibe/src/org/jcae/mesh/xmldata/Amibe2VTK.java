@@ -21,12 +21,15 @@
 package org.jcae.mesh.xmldata;
 
 import java.io.BufferedOutputStream;
-import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import javax.xml.parsers.ParserConfigurationException;
 import org.jcae.mesh.xmldata.AmibeReader.SubMesh;
 import org.xml.sax.SAXException;
@@ -67,6 +70,7 @@ public class Amibe2VTK
 	}
 	private final File directory;
 	private boolean dummyData;
+	private int nrThreads = Runtime.getRuntime().availableProcessors();
 
 	public Amibe2VTK(String directory)
 	{
@@ -85,20 +89,33 @@ public class Amibe2VTK
 		long toReturn = 0;
 		for(int i=0; i<nbt; i++)
 		{
-			if(triaFile.get()>=0)
+			if(triaFile.get(3*i)>=0)
 				toReturn++;
-			triaFile.get();
-			triaFile.get();
 		}
-		triaFile.close();
 		return toReturn;
 	}
 
+	/**
+	 * Sets the number of threads which format the mesh.  Output
+	 * does not depend on this number, default is the number of available
+	 * processors.
+	 */
+	public void setNumberOfThreads(int nrThreads)
+	{
+		this.nrThreads = nrThreads;
+	}
+
 	public void write(String fileName) throws IOException, SAXException, ParserConfigurationException
 	{
 		FileOutputStream out= new FileOutputStream(fileName);
-		write(out);
-		out.close();
+		try
+		{
+			write(out.getChannel());
+		}
+		finally
+		{
+			out.close();
+		}
 	}
 	
 	/**
@@ -110,136 +127,186 @@ public class Amibe2VTK
 	 */
 	public final void write(OutputStream out)
 		throws ParserConfigurationException, SAXException, IOException
+	{
+		write(Channels.newChannel(out));
+		out.flush();
+	}
+
+	private void write(WritableByteChannel channel)
+		throws SAXException, IOException
 	{
 		AmibeReader.Dim3 amibeReader = new AmibeReader.Dim3(directory.getPath());
 		SubMesh sm = amibeReader.getSubmeshes().get(0);
-		PrintStream os=new PrintStream(out);
+		PrimitiveFileReaderFactory pfrf = new PrimitiveFileReaderFactory("mmap");
+		IntFileReader triaFile = sm.getTriangles(pfrf);
 		long nbp=sm.getNumberOfNodes();
-		long nbt=computeNumberOfTriangle(sm.getTriangles());
-		writeHeader(os, nbp, nbt, sm.getNumberOfBeams());
-		os.flush();
-		DataOutputStream dos=new DataOutputStream(new BufferedOutputStream(out));
-		writeNode(dos, sm.getNodes(), nbp);
-		writeTriangles(dos, sm.getTriangles(), nbt);
-		writeBeams(dos, sm.getBeams(), sm.getNumberOfBeams());
-		if(dummyData)
-			writeData(dos, nbt);
-		dos.flush();
-		os.println("</AppendedData></VTKFile>");
-		os.flush();
+		long nbt=computeNumberOfTriangle(triaFile);
+		ChunkWriter out = new ChunkWriter(channel, nrThreads);
+		try
+		{
+			writeHeader(out.buffer(), nbp, nbt, sm.getNumberOfBeams());
+			writeNode(out, amibeReader.getBinFile(JCAEXMLData.nodes3dFilename), nbp);
+			writeTriangles(out, triaFile, (int) nbt);
+			writeBeams(out, sm.getBeams(), sm.getNumberOfBeams());
+			if(dummyData)
+				writeData(out, (int) nbt);
+			out.buffer().println("</AppendedData></VTKFile>");
+		}
+		finally
+		{
+			out.close();
+			triaFile.close();
+		}
 	}
 	
 	/**
 	 * write the triangle connectivity
-	 * @param dos the stream to write on
+	 * @param out the stream to write on
 	 * @param triaFile the amibe triangle file
 	 * @param nbt the number of triangles
 	 * @throws IOException
 	 */
-	private void writeTriangles(DataOutputStream dos, IntFileReader triaFile, long nbt)
+	private void writeTriangles(ChunkWriter out, final IntFileReader triaFile, int nbt)
 		throws IOException
 	{
 		//Write the size of the array in octets
-		dos.writeInt((int) nbt*4*3);
+		out.buffer().writeInt(nbt*4*3);
 		
 		//Write the connectivity array
-		for(int i=0; i<nbt*3; i++)
+		out.write(nbt, new ChunkWriter.Formatter()
 		{
-			int v = triaFile.get();
-			if(v>=0)
-				dos.writeInt(v);
-		}
+			public void format(int first, int last, OutputBuffer b) throws IOException
+			{
+				for(int i=3*first; i<3*last; i++)
+				{
+					int v = triaFile.get(i);
+					if(v>=0)
+						b.writeInt(v);
+				}
+			}
+		});
 		
 		//Write the size of the array in octets
-		dos.writeInt((int) nbt*4);
+		out.buffer().writeInt(nbt*4);
 		
 		//Write the offset of each cells (in our case triangles) in the
 		//connectivity array
-		for(int i=1; i<=nbt; i++)
-			dos.writeInt(3*i);
-
-		triaFile.close();
+		out.write(nbt, new ChunkWriter.Formatter()
+		{
+			public void format(int first, int last, OutputBuffer b)
+			{
+				for(int i=first+1; i<=last; i++)
+					b.writeInt(3*i);
+			}
+		});
 	}
 
 	/**
 	 * write the triangle connectivity
-	 * @param dos the stream to write on
-	 * @param triaFile the amibe triangle file
-	 * @param nbt the number of triangles
+	 * @param out the stream to write on
+	 * @param beamFile the amibe beam file
+	 * @param numberOfBeams the number of beams
 	 * @throws IOException
 	 */
-	private void writeBeams(DataOutputStream dos, IntFileReader beamFile, long numberOfBeams)
+	private void writeBeams(ChunkWriter out, IntFileReader beamFile, int numberOfBeams)
 		throws IOException
 	{
+		OutputBuffer b = out.buffer();
 		//Write the size of the array in octets
-		dos.writeInt((int) numberOfBeams*4*2);
+		b.writeInt(numberOfBeams*4*2);
 
 		//Write the connectivity array
 		for(int i=0; i<numberOfBeams*2; i++)
-			dos.writeInt(beamFile.get());
+			out.buffer().writeInt(beamFile.get());
 
 		//Write the size of the array in octets
-		dos.writeInt((int) numberOfBeams*4);
+		b = out.buffer();
+		b.writeInt(numberOfBeams*4);
 
 		//Write the offset of each cells (in our case beams) in the
 		//connectivity array
 		for(int i=1; i<=numberOfBeams; i++)
-			dos.writeInt(2*i);
+			out.buffer().writeInt(2*i);
 
 		beamFile.close();
 	}
 
 	/**
-	 * Write the nodes of the mesh
-	 * @param dos the stream to write on
+	 * Write the nodes of the mesh.  Amibe and VTK files are both big
+	 * endian, so the node file is copied as is.
+	 * @param out the stream to write on
 	 * @param nodeFile the amibe node file
 	 * @param nbp the number of nodes
 	 * @throws IOException
-	 */	private void writeNode(DataOutputStream dos, DoubleFileReader nodeFile, long nbp)
+	 */
+	private void writeNode(ChunkWriter out, File nodeFile, long nbp)
 		throws IOException
 	{
 		//Write the size of the array in octets
-		dos.writeInt((int) nbp*8*3);
-		for(int i=0; i<nbp*3; i++)
-			dos.writeDouble(nodeFile.get());
-
-		nodeFile.close();
+		out.buffer().writeInt((int) nbp*8*3);
+		FileChannel nodes = new FileInputStream(nodeFile).getChannel();
+		try
+		{
+			out.transferFrom(nodes, 0, nbp*8*3);
+		}
+		finally
+		{
+			nodes.close();
+		}
 	}
 	 
 	/**
 	 * write dummy data associated to the triangle
-	 * @param dos the stream to write on
+	 * @param out the stream to write on
 	 * @param nbt the number of triangles
 	 * @throws IOException
 	 */
-	private void writeData(DataOutputStream dos, long nbt)
+	private void writeData(ChunkWriter out, int nbt)
 		throws IOException
 	{
 		//Write the size of the array in octets
-		dos.writeInt((int) nbt*8);		
-		for(int i=0; i<nbt; i++)
-			dos.writeDouble(i);
+		out.buffer().writeInt(nbt*8);		
+		out.write(nbt, new ChunkWriter.Formatter()
+		{
+			public void format(int first, int last, OutputBuffer b)
+			{
+				for(int i=first; i<last; i++)
+					b.writeDouble(i);
+			}
+		});
 		
-		dos.writeInt((int) nbt*8);
-		for(int i=0; i<nbt; i++)
-			dos.writeDouble((double)i*i);
+		out.buffer().writeInt(nbt*8);
+		out.write(nbt, new ChunkWriter.Formatter()
+		{
+			public void format(int first, int last, OutputBuffer b)
+			{
+				for(int i=first; i<last; i++)
+					b.writeDouble((double)i*i);
+			}
+		});
 
-		dos.writeInt((int) nbt*8*3);
-		for(int i=0; i<nbt; i++)
+		out.buffer().writeInt(nbt*8*3);
+		out.write(nbt, new ChunkWriter.Formatter()
 		{
-			dos.writeDouble(i);
-			dos.writeDouble(i);
-			dos.writeDouble(i);
-		}
+			public void format(int first, int last, OutputBuffer b)
+			{
+				for(int i=first; i<last; i++)
+				{
+					b.writeDouble(i);
+					b.writeDouble(i);
+					b.writeDouble(i);
+				}
+			}
+		});
 	}	 
 
 	/**
 	 * Write the header of the file (XML)
-	 * @param out the stream to write on
+	 * @param out the buffer to write on
 	 * @param numberOfNodes the number of nodes
 	 * @param numberOfTriangles the number of triangles
 	 */
-	private void writeHeader(PrintStream out, long numberOfNodes,
+	private void writeHeader(OutputBuffer out, long numberOfNodes,
 		long numberOfTriangles, long numberOfLines)
 	{
 		//This is Java so we write in big endian		
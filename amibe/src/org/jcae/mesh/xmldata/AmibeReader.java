@@ -215,8 +215,12 @@ public abstract class AmibeReader extends XMLReader implements JCAEXMLData {
 
 		public DoubleFileReader getNodes() throws IOException
 		{
-			File f = getBinFile("nodes"+dim()+"d.bin");
-			return new PrimitiveFileReaderFactory().getDoubleReader(f);
+			return getNodes(new PrimitiveFileReaderFactory());
+		}
+
+		public DoubleFileReader getNodes(PrimitiveFileReaderFactory pfrf) throws IOException
+		{
+			return pfrf.getDoubleReader(getBinFile("nodes"+dim()+"d.bin"));
 		}
 
 		public IntFileReader getBeams() throws IOException
@@ -227,8 +231,12 @@ public abstract class AmibeReader extends XMLReader implements JCAEXMLData {
 		
 		public IntFileReader getTriangles() throws IOException
 		{
-			return new PrimitiveFileReaderFactory().getIntReader(
-				getBinFile("triangles"+dim()+"d.bin"));
+			return getTriangles(new PrimitiveFileReaderFactory());
+		}
+
+		public IntFileReader getTriangles(PrimitiveFileReaderFactory pfrf) throws IOException
+		{
+			return pfrf.getIntReader(getBinFile("triangles"+dim()+"d.bin"));
 		}
 		
 		public float[] readNodes(int[] nodesID) throws IOException
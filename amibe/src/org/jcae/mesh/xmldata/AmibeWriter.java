@@ -22,11 +22,13 @@ package org.jcae.mesh.xmldata;
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
@@ -182,11 +184,35 @@ public abstract class AmibeWriter {
 		}
 	}
 
-	private static DataOutputStream createDOS(File f) throws FileNotFoundException
+	/**
+	 * Output stream which can also reserve regions at its end and map
+	 * them into memory.
+	 */
+	private static class ChannelDataOutputStream extends DataOutputStream
+	{
+		private final FileChannel channel;
+
+		public ChannelDataOutputStream(FileChannel c)
+		{
+			super(new BufferedOutputStream(new NIOutputStream(c), 1024*64));
+			channel = c;
+		}
+
+		public MappedByteBuffer map(long size) throws IOException
+		{
+			flush();
+			long position = channel.position();
+			MappedByteBuffer ret = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+			channel.position(position + size);
+			return ret;
+		}
+	}
+
+	private static DataOutputStream createDOS(File f) throws IOException
 	{
-		FileOutputStream fos = new FileOutputStream(f);
-		return new DataOutputStream(new BufferedOutputStream(
-			new NIOutputStream(fos.getChannel()), 1024*64));
+		RandomAccessFile raf = new RandomAccessFile(f, "rw");
+		raf.setLength(0L);
+		return new ChannelDataOutputStream(raf.getChannel());
 	}
 	
 	protected DataOutputStream nodeChan, triaChan, groupChan, refChan,
@@ -203,6 +229,74 @@ public abstract class AmibeWriter {
 	private boolean shapeWritten;
 	private int subShape;
 	private boolean haveSubShape;
+	private final List<MappedByteBuffer> mappedBuffers = new ArrayList<MappedByteBuffer>();
+
+	private MappedByteBuffer map(DataOutputStream chan, long size) throws IOException
+	{
+		MappedByteBuffer ret = ((ChannelDataOutputStream) chan).map(size);
+		mappedBuffers.add(ret);
+		return ret;
+	}
+
+	/**
+	 * Reserves space for nodes and returns a buffer mapped onto this
+	 * region.  Nodes are written at the same place as if they had been
+	 * added by {@link #addNode(double[])}, so both methods can be mixed.
+	 * Buffer can be filled by several threads with absolute put methods,
+	 * and must not be used after {@link #finish}.
+	 *
+	 * @param n  number of nodes
+	 * @return a buffer of <code>n * dim</code> coordinates
+	 */
+	public DoubleBuffer mapNodes(int n) throws IOException
+	{
+		DoubleBuffer ret = map(nodeChan, 8L * dim() * n).asDoubleBuffer();
+		numberOfNodes += n;
+		return ret;
+	}
+
+	/**
+	 * Reserves space for triangles and returns a buffer mapped onto this
+	 * region.  See {@link #mapNodes}.
+	 *
+	 * @param n  number of triangles
+	 * @return a buffer of <code>3 * n</code> node indices
+	 */
+	public IntBuffer mapTriangles(int n) throws IOException
+	{
+		IntBuffer ret = map(triaChan, 12L * n).asIntBuffer();
+		numberOfTriangles += n;
+		return ret;
+	}
+
+	/**
+	 * Reserves space for beams and returns a buffer mapped onto this
+	 * region.  See {@link #mapNodes}.
+	 *
+	 * @param n  number of beams
+	 * @return a buffer of <code>2 * n</code> node indices
+	 */
+	public IntBuffer mapBeams(int n) throws IOException
+	{
+		IntBuffer ret = map(beamChan, 8L * n).asIntBuffer();
+		numberOfBeams += n;
+		return ret;
+	}
+
+	/**
+	 * Reserves space for triangles of current group and returns a buffer
+	 * mapped onto this region.  See {@link #mapNodes}.
+	 *
+	 * @param n  number of triangles
+	 * @return a buffer of <code>n</code> triangle indices
+	 */
+	public IntBuffer mapTriaToGroup(int n) throws IOException
+	{
+		IntBuffer ret = map(groupChan, 4L * n).asIntBuffer();
+		groupOffset += n;
+		currentGroup.nbElement += n;
+		return ret;
+	}
 	
 	/** Set the subShape */
 	public void setSubShape(int i)
@@ -331,6 +425,9 @@ public abstract class AmibeWriter {
 			bGroupChan.close();
 			if(refChan != null)
 				refChan.close();
+			for (MappedByteBuffer bb : mappedBuffers)
+				IntFileReaderByMmap.clean(bb);
+			mappedBuffers.clear();
 		} catch (SAXException ex) {
 			LOGGER.log(Level.SEVERE, null, ex);
 		} catch (XMLStreamException ex) {
@@ -0,0 +1,180 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+
+package org.jcae.mesh.xmldata;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Formats records by chunks with several threads, and writes chunks in
+ * order into a channel.  Headers and small blocks are formatted by the
+ * calling thread into {@link #buffer}.
+ */
+final class ChunkWriter
+{
+	// Number of records formatted by a task
+	private static final int CHUNK_SIZE = 16384;
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Formats a range of records.
+	 */
+	interface Formatter
+	{
+		/**
+		 * Formats records from <code>first</code> (inclusive) to
+		 * <code>last</code> (exclusive).  This method is called
+		 * concurrently on distinct ranges.
+		 */
+		void format(int first, int last, OutputBuffer out) throws IOException;
+	}
+
+	private final WritableByteChannel channel;
+	private final ExecutorService pool;
+	// Maximal number of chunks being formatted or waiting to be written
+	private final int maxPending;
+	private final OutputBuffer buffer = new OutputBuffer(BUFFER_SIZE);
+	private final ConcurrentLinkedQueue<OutputBuffer> freeBuffers = new ConcurrentLinkedQueue<OutputBuffer>();
+
+	ChunkWriter(WritableByteChannel channel, int nrThreads)
+	{
+		this.channel = channel;
+		pool = Executors.newFixedThreadPool(nrThreads);
+		maxPending = 2 * nrThreads;
+	}
+
+	/**
+	 * Returns the buffer of the calling thread.  It is written before
+	 * chunks and when it becomes large.
+	 */
+	OutputBuffer buffer() throws IOException
+	{
+		if (buffer.size() >= BUFFER_SIZE)
+			flush();
+		return buffer;
+	}
+
+	void flush() throws IOException
+	{
+		buffer.writeTo(channel);
+		buffer.clear();
+	}
+
+	/**
+	 * Formats and writes records.
+	 *
+	 * @param n  number of records
+	 * @param formatter  formatter called by tasks
+	 */
+	void write(int n, final Formatter formatter) throws IOException
+	{
+		flush();
+		LinkedList<Future<OutputBuffer>> pending = new LinkedList<Future<OutputBuffer>>();
+		int start = 0;
+		try
+		{
+			while (start < n || !pending.isEmpty())
+			{
+				while (start < n && pending.size() < maxPending)
+				{
+					final int first = start;
+					final int last = (int) Math.min(n, (long) start + CHUNK_SIZE);
+					pending.add(pool.submit(new Callable<OutputBuffer>()
+					{
+						public OutputBuffer call() throws IOException
+						{
+							OutputBuffer out = freeBuffers.poll();
+							if (out == null)
+								out = new OutputBuffer(BUFFER_SIZE);
+							formatter.format(first, last, out);
+							return out;
+						}
+					}));
+					start = last;
+				}
+				OutputBuffer out = pending.removeFirst().get();
+				out.writeTo(channel);
+				out.clear();
+				freeBuffers.add(out);
+			}
+		}
+		catch (InterruptedException ex)
+		{
+			throw new IOException(ex);
+		}
+		catch (ExecutionException ex)
+		{
+			if (ex.getCause() instanceof IOException)
+				throw (IOException) ex.getCause();
+			throw new RuntimeException(ex.getCause());
+		}
+		finally
+		{
+			for (Future<OutputBuffer> f : pending)
+				f.cancel(true);
+		}
+	}
+
+	/**
+	 * Copies bytes from a file.
+	 *
+	 * @param in  input file
+	 * @param position  position of the first byte in input file
+	 * @param count  number of bytes
+	 */
+	void transferFrom(FileChannel in, long position, long count) throws IOException
+	{
+		flush();
+		long end = position + count;
+		while (position < end)
+		{
+			long n = in.transferTo(position, end - position, channel);
+			if (n <= 0)
+				throw new EOFException();
+			position += n;
+		}
+	}
+
+	/**
+	 * Writes the buffer and stops threads.  Channel is not closed.
+	 */
+	void close() throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,274 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+
+package org.jcae.mesh.xmldata;
+
+import java.math.BigInteger;
+
+/**
+ * Parses decimal numbers from ASCII bytes without creating strings.
+ * Short decimals are converted by a single floating point operation,
+ * other doubles with the Eisel-Lemire algorithm, which gives the
+ * correctly rounded result or reports that it cannot decide; this is
+ * very rare, and {@link Double#parseDouble} is then called.  Fortran
+ * exponent markers <code>D</code> and <code>d</code> are accepted.
+ */
+final class DecimalParser
+{
+	private static final int MIN_EXP10 = -348;
+	private static final int MAX_EXP10 = 347;
+	private static final double [] EXACT_POW10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	// Truncated 128-bit mantissas of powers of 10
+	private static final long [] POW10_HI = new long[MAX_EXP10 - MIN_EXP10 + 1];
+	private static final long [] POW10_LO = new long[MAX_EXP10 - MIN_EXP10 + 1];
+	static
+	{
+		BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+		for (int q = MIN_EXP10; q <= MAX_EXP10; q++)
+		{
+			BigInteger m;
+			if (q >= 0)
+			{
+				m = BigInteger.TEN.pow(q);
+				int shift = m.bitLength() - 128;
+				m = shift > 0 ? m.shiftRight(shift) : m.shiftLeft(-shift);
+			}
+			else
+			{
+				BigInteger d = BigInteger.TEN.pow(-q);
+				m = BigInteger.ONE.shiftLeft(d.bitLength() + 127).divide(d);
+			}
+			POW10_HI[q - MIN_EXP10] = m.shiftRight(64).longValue();
+			POW10_LO[q - MIN_EXP10] = m.and(mask).longValue();
+		}
+	}
+
+	private DecimalParser()
+	{
+	}
+
+	/**
+	 * Parses an integer.
+	 *
+	 * @param bb  bytes
+	 * @param start  index of first character
+	 * @param end  index after last character
+	 * @return the integer
+	 * @throws NumberFormatException if bytes are not an integer
+	 */
+	static int parseInt(byte [] bb, int start, int end)
+	{
+		int i = start;
+		boolean negative = false;
+		if (i < end && (bb[i] == '-' || bb[i] == '+'))
+		{
+			negative = bb[i] == '-';
+			i++;
+		}
+		if (i == end)
+			throw new NumberFormatException(toString(bb, start, end));
+		long ret = 0L;
+		for (; i < end; i++)
+		{
+			int c = bb[i] - '0';
+			if (c < 0 || c > 9)
+				throw new NumberFormatException(toString(bb, start, end));
+			ret = 10L * ret + c;
+			if (ret > Integer.MAX_VALUE + 1L)
+				throw new NumberFormatException(toString(bb, start, end));
+		}
+		if (negative)
+			ret = -ret;
+		if (ret > Integer.MAX_VALUE)
+			throw new NumberFormatException(toString(bb, start, end));
+		return (int) ret;
+	}
+
+	/**
+	 * Parses a double.
+	 *
+	 * @param bb  bytes
+	 * @param start  index of first character
+	 * @param end  index after last character
+	 * @return the double nearest to this decimal number
+	 * @throws NumberFormatException if bytes are not a number
+	 */
+	static double parseDouble(byte [] bb, int start, int end)
+	{
+		int i = start;
+		boolean negative = false;
+		if (i < end && (bb[i] == '-' || bb[i] == '+'))
+		{
+			negative = bb[i] == '-';
+			i++;
+		}
+		long mantissa = 0L;
+		int nrDigits = 0;
+		int exp10 = 0;
+		boolean digits = false;
+		boolean dot = false;
+		for (; i < end; i++)
+		{
+			byte c = bb[i];
+			if (c >= '0' && c <= '9')
+			{
+				digits = true;
+				if (dot)
+					exp10--;
+				if (nrDigits > 0 || c != '0')
+				{
+					nrDigits++;
+					if (nrDigits <= 19)
+						mantissa = 10L * mantissa + (c - '0');
+					else
+						exp10++;
+				}
+			}
+			else if (c == '.' && !dot)
+				dot = true;
+			else
+				break;
+		}
+		if (!digits)
+			throw new NumberFormatException(toString(bb, start, end));
+		int mantissaEnd = i;
+		if (i < end)
+		{
+			// Exponent, Fortran may omit the letter when exponent has 3 digits
+			byte c = bb[i];
+			if (c == 'e' || c == 'E' || c == 'd' || c == 'D')
+				i++;
+			else if (c != '+' && c != '-')
+				throw new NumberFormatException(toString(bb, start, end));
+			if (i == end)
+				throw new NumberFormatException(toString(bb, start, end));
+			exp10 += parseInt(bb, i, end);
+		}
+		if (nrDigits <= 19)
+		{
+			// Trailing zeros, written by fixed width formats.  Mantissa
+			// is unsigned and may be negative when it has 19 digits.
+			while (mantissa > 0L && mantissa % 10L == 0L)
+			{
+				mantissa /= 10L;
+				exp10++;
+			}
+			// Mantissa and power of ten are exact, so is their quotient or product
+			if (mantissa >= 0L && mantissa < (1L << 53) && exp10 >= -22 && exp10 <= 22)
+			{
+				double ret = exp10 < 0 ? mantissa / EXACT_POW10[-exp10] : mantissa * EXACT_POW10[exp10];
+				return negative ? -ret : ret;
+			}
+			double ret = eiselLemire(mantissa, exp10, negative);
+			if (!Double.isNaN(ret))
+				return ret;
+		}
+		if (mantissaEnd == end)
+			return Double.parseDouble(toString(bb, start, end));
+		return Double.parseDouble(toString(bb, start, mantissaEnd)+'E'+toString(bb, i, end));
+	}
+
+	private static String toString(byte [] bb, int start, int end)
+	{
+		char [] chars = new char[end - start];
+		for (int i = start; i < end; i++)
+			chars[i - start] = (char) bb[i];
+		return new String(chars);
+	}
+
+	/**
+	 * Converts <code>mantissa * 10^exp10</code> into a double.
+	 *
+	 * @return the correctly rounded double, or <code>NaN</code> if it cannot
+	 *         be computed
+	 */
+	static double eiselLemire(long mantissa, int exp10, boolean negative)
+	{
+		if (mantissa == 0L)
+			return negative ? -0.0 : 0.0;
+		if (exp10 < MIN_EXP10 || exp10 > MAX_EXP10)
+			return Double.NaN;
+		int clz = Long.numberOfLeadingZeros(mantissa);
+		long man = mantissa << clz;
+		long retExp2 = ((217706L * exp10) >> 16) + 64 + 1023 - clz;
+		int index = exp10 - MIN_EXP10;
+		long xHi = multiplyHigh(man, POW10_HI[index]);
+		long xLo = man * POW10_HI[index];
+		if ((xHi & 0x1FF) == 0x1FF && lessUnsigned(xLo + man, man))
+		{
+			long yHi = multiplyHigh(man, POW10_LO[index]);
+			long yLo = man * POW10_LO[index];
+			long mergedHi = xHi;
+			long mergedLo = xLo + yHi;
+			if (lessUnsigned(mergedLo, xLo))
+				mergedHi++;
+			if ((mergedHi & 0x1FF) == 0x1FF && mergedLo + 1 == 0 && lessUnsigned(yLo + man, man))
+				return Double.NaN;
+			xHi = mergedHi;
+			xLo = mergedLo;
+		}
+		// Shift to 54 bits
+		int msb = (int) (xHi >>> 63);
+		long retMantissa = xHi >>> (msb + 9);
+		retExp2 -= 1 ^ msb;
+		// Half-way ambiguity
+		if (xLo == 0 && (xHi & 0x1FF) == 0 && (retMantissa & 3) == 1)
+			return Double.NaN;
+		// Round to 53 bits
+		retMantissa += retMantissa & 1;
+		retMantissa >>>= 1;
+		if ((retMantissa >>> 53) > 0)
+		{
+			retMantissa >>>= 1;
+			retExp2++;
+		}
+		// Subnormal numbers and infinities are left to Double.parseDouble
+		if (retExp2 <= 0 || retExp2 >= 0x7FF)
+			return Double.NaN;
+		long bits = (retExp2 << 52) | (retMantissa & 0x000FFFFFFFFFFFFFL);
+		if (negative)
+			bits |= 0x8000000000000000L;
+		return Double.longBitsToDouble(bits);
+	}
+
+	private static boolean lessUnsigned(long a, long b)
+	{
+		return (a ^ Long.MIN_VALUE) < (b ^ Long.MIN_VALUE);
+	}
+
+	// High 64 bits of the unsigned product of x and y
+	static long multiplyHigh(long x, long y)
+	{
+		long x0 = x & 0xFFFFFFFFL;
+		long x1 = x >>> 32;
+		long y0 = y & 0xFFFFFFFFL;
+		long y1 = y >>> 32;
+		long p00 = x0 * y0;
+		long p01 = x0 * y1;
+		long p10 = x1 * y0;
+		long p11 = x1 * y1;
+		long middle = p10 + (p00 >>> 32) + (p01 & 0xFFFFFFFFL);
+		return p11 + (middle >>> 32) + (p01 >>> 32);
+	}
+}
@@ -79,7 +79,7 @@ public class DoubleFileReaderByMmap implements DoubleFileReader
 
 	public final int get(int index, double[] dst, int offset, int len) throws IOException
 	{
-		fc.position(index * 4L);
+		tb.position(index);
 		return get(dst, offset, len);
 	}
 
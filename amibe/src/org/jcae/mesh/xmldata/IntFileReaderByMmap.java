@@ -82,7 +82,7 @@ public class IntFileReaderByMmap implements IntFileReader
 
 	public final int get(int index, int[] dst, int offset, int len) throws IOException
 	{
-		fc.position(index * 4L);
+		tb.position(index);
 		return get(dst, offset, len);
 	}
 
@@ -0,0 +1,130 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.xmldata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Random access to fixed size records of a binary file.  File is mapped
+ * into memory by windows which are created when first accessed, so that
+ * files larger than 2GB or than physical memory can be read; pages are
+ * managed by the operating system and Java heap usage does not depend on
+ * file size.
+ */
+final class MappedRecords
+{
+	private static final int WINDOW_SIZE = 1 << 27;
+
+	private final FileChannel channel;
+	private final int recordSize;
+	private final int recordsByWindow;
+	private final long nrRecords;
+	private final MappedByteBuffer [] windows;
+
+	/**
+	 * Maps records of a file.
+	 *
+	 * @param channel  file channel, it is not closed by {@link #close}
+	 * @param recordSize  record size in bytes
+	 */
+	MappedRecords(FileChannel channel, int recordSize) throws IOException
+	{
+		this.channel = channel;
+		this.recordSize = recordSize;
+		recordsByWindow = WINDOW_SIZE / recordSize;
+		nrRecords = channel.size() / recordSize;
+		windows = new MappedByteBuffer[(int) ((nrRecords + recordsByWindow - 1) / recordsByWindow)];
+	}
+
+	/**
+	 * Returns the number of records.
+	 */
+	long size()
+	{
+		return nrRecords;
+	}
+
+	/**
+	 * Returns the buffer containing a record.  Its offset within this
+	 * buffer is given by {@link #offset}.
+	 *
+	 * @param index  record index
+	 * @return the buffer containing this record
+	 */
+	ByteBuffer buffer(long index) throws IOException
+	{
+		if (index < 0 || index >= nrRecords)
+			throw new IndexOutOfBoundsException("Record "+index+" not in [0, "+nrRecords+"[");
+		int w = (int) (index / recordsByWindow);
+		MappedByteBuffer ret = windows[w];
+		if (ret == null)
+		{
+			long start = (long) w * recordsByWindow;
+			long n = Math.min(recordsByWindow, nrRecords - start);
+			ret = channel.map(FileChannel.MapMode.READ_ONLY, start * recordSize, n * recordSize);
+			windows[w] = ret;
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the offset of a record within the buffer returned by {@link #buffer}.
+	 *
+	 * @param index  record index
+	 * @return the offset of this record, in bytes
+	 */
+	int offset(long index)
+	{
+		return (int) (index % recordsByWindow) * recordSize;
+	}
+
+	/**
+	 * Copies doubles found at the beginning of a record.
+	 *
+	 * @param index  record index
+	 * @param dst  destination array
+	 * @param pos  offset within <code>dst</code>
+	 * @param len  number of doubles to copy
+	 */
+	void getDoubles(long index, double [] dst, int pos, int len) throws IOException
+	{
+		ByteBuffer bb = buffer(index);
+		int offset = offset(index);
+		for (int i = 0; i < len; i++)
+			dst[pos + i] = bb.getDouble(offset + 8 * i);
+	}
+
+	/**
+	 * Unmaps all windows.
+	 */
+	void close()
+	{
+		for (int i = 0; i < windows.length; i++)
+		{
+			if (windows[i] != null)
+				IntFileReaderByMmap.clean(windows[i]);
+			windows[i] = null;
+		}
+	}
+}
@@ -22,9 +22,7 @@ package org.jcae.mesh.xmldata;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPath;
@@ -43,6 +41,8 @@ import org.xml.sax.SAXException;
  */
 public class Mesh3dToSoupConvert
 {
+	private static final int BLOCK_SIZE = 1 << 14;
+
 	public static void convert(String meshDirectory) throws XPathExpressionException, ParserConfigurationException, SAXException, IOException
 	{
 		XPath xpath = XPathFactory.newInstance().newXPath();
@@ -57,46 +57,55 @@ public class Mesh3dToSoupConvert
 		String ftrias = (String) xpath.evaluate(
 			"/jcae/mesh/submesh/triangles/file/@location", document,
 			XPathConstants.STRING);
-		FileChannel nodesChannel=new FileInputStream(
-			new File(meshDirectory, fnodes)).getChannel();
-		FileChannel triasChannel=new FileInputStream(
-			new File(meshDirectory, ftrias)).getChannel();
-		FileChannel soupChannel=new FileOutputStream(
-			new File(meshDirectory, "soup")).getChannel();
-		
-		convert(nodesChannel, triasChannel, soupChannel);
-		nodesChannel.close();
-		triasChannel.close();
-		soupChannel.close();
+		File soupFile = new File(meshDirectory, "soup");
+		File triasFile = new File(meshDirectory, ftrias);
+		if (triasFile.length() == 0)
+		{
+			new SoupWriter(soupFile, false).close();
+			return;
+		}
+		convert(new File(meshDirectory, fnodes), triasFile, soupFile);
 	}
 
-	private static void convert(FileChannel nodesChannel,
-		FileChannel triasChannel, FileChannel soupChannel) throws IOException
+	/**
+	 * Triangles are read by blocks and node coordinates are read from
+	 * mapped windows of the nodes file, so that memory usage does not
+	 * depend on mesh size.  Outer triangles are skipped.
+	 */
+	private static void convert(File nodesFile, File triasFile, File soupFile)
+		throws IOException
 	{
-		
-		ByteBuffer trias=ByteBuffer.allocate(3*4);
-		ByteBuffer nodes=ByteBuffer.allocate(3*8);
-		
-		ByteBuffer toWrite=ByteBuffer.allocate(80);
-		toWrite.putInt(64,0); //groupId
-		toWrite.putInt(72,0); //align on 64 bit
-		
-		while(triasChannel.read(trias)>0)
+		FileChannel nodesChannel = new FileInputStream(nodesFile).getChannel();
+		MappedRecords nodes = new MappedRecords(nodesChannel, 3 * 8);
+		IntFileReader trias = new PrimitiveFileReaderFactory().getIntReader(triasFile);
+		SoupWriter soup = new SoupWriter(soupFile, false);
+		try
 		{
-			trias.rewind();
-			for(int i=0; i<3; i++)
+			int [] ind = new int[3 * BLOCK_SIZE];
+			double [] coord = new double[9];
+			for (long remaining = trias.size() / 3; remaining > 0; )
 			{
-				int nodeId=trias.getInt();
-				nodesChannel.read(nodes, 3*8*nodeId);
-				nodes.rewind();
-				for(int j=0; j<3; j++)
-					toWrite.putDouble(nodes.getDouble());
-				nodes.rewind();
+				int nr = (int) Math.min(remaining, BLOCK_SIZE);
+				if (trias.get(ind, 0, 3 * nr) != 3 * nr)
+					throw new IOException("Unexpected end of file "+triasFile);
+				remaining -= nr;
+				for (int i = 0; i < 3 * nr; i += 3)
+				{
+					//  Outer triangles have negative indices
+					if (ind[i] < 0 || ind[i+1] < 0 || ind[i+2] < 0)
+						continue;
+					for (int j = 0; j < 3; j++)
+						nodes.getDoubles(ind[i+j], coord, 3 * j, 3);
+					soup.add(coord, 0, 3, 6, 0);
+				}
 			}
-			trias.rewind();
-			toWrite.rewind();
-			soupChannel.write(toWrite);
-			toWrite.rewind();
+		}
+		finally
+		{
+			soup.close();
+			trias.close();
+			nodes.close();
+			nodesChannel.close();
 		}
 	}
 	
@@ -20,18 +20,16 @@
 
 package org.jcae.mesh.xmldata;
 
-import gnu.trove.TIntHashSet;
-import gnu.trove.TIntArrayList;
-import gnu.trove.TIntIntHashMap;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.DataOutputStream;
 import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.text.FieldPosition;
 import java.text.ParsePosition;
 import java.text.DecimalFormatSymbols;
@@ -185,7 +183,12 @@ abstract public class MeshExporter
 	private final int[] groupIds;
 	int[][] groups;
 	String[] names;
+	/** Triangle ids, group by group */
+	int[] triaIDs;
+	/** Position in triaIDs of the first triangle of each group */
+	int[] groupOffsets;
 	private int numberOfTriangles;
+	private int nrThreads = Runtime.getRuntime().availableProcessors();
 	
 	/**
 	 * @param directory The directory which contains 3d files
@@ -353,32 +356,86 @@ abstract public class MeshExporter
 		return toReturn;
 	}	
 	
+	/**
+	 * Sets the number of threads which format nodes and elements.  Output
+	 * does not depend on this number, default is the number of available
+	 * processors.
+	 */
+	public final void setNumberOfThreads(int nrThreads)
+	{
+		this.nrThreads = nrThreads;
+	}
+
 	public final void write(PrintStream out) throws ParserConfigurationException, SAXException, IOException
+	{
+		write(Channels.newChannel(out));
+		out.flush();
+	}
+
+	private void write(WritableByteChannel channel) throws IOException
 	{
 		readGroups();
 		int[] nodeIDs=readTriangles();
-		TIntIntHashMap amibeNodeToUNVNode=new TIntIntHashMap();
-		writeInit(out);
-		TIntHashSet nodeset = new TIntHashSet(nodeIDs);
-		TIntArrayList nodelist = new TIntArrayList(nodeset.toArray());
-		nodelist.sort();
-		writeNodes(out, nodelist.toNativeArray(), amibeNodeToUNVNode);
-		TIntIntHashMap amibeTriaToUNVTria=new TIntIntHashMap();
-		writeTriangles(out, nodeIDs, amibeNodeToUNVNode, amibeTriaToUNVTria);
+		// Nodes used by triangles, sorted by ids
+		int nbNodes = (int) (getNodeFile().length() / 24);
+		boolean [] used = new boolean[nbNodes];
+		int nbUsed = 0;
+		for (int id : nodeIDs)
+		{
+			if (!used[id])
+			{
+				used[id] = true;
+				nbUsed++;
+			}
+		}
+		int [] nodelist = new int[nbUsed];
+		int [] nodeIndex = new int[nbNodes];
+		for (int i = 0, k = 0; i < nbNodes; i++)
+		{
+			if (used[i])
+			{
+				nodeIndex[i] = k;
+				nodelist[k++] = i;
+			}
+		}
+		used = null;
+		triaIDs = new int[numberOfTriangles];
+		groupOffsets = new int[groups.length + 1];
+		for (int i = 0; i < groups.length; i++)
+		{
+			System.arraycopy(groups[i], 0, triaIDs, groupOffsets[i], groups[i].length);
+			groupOffsets[i+1] = groupOffsets[i] + groups[i].length;
+		}
+		// When a triangle is in several groups, its last position is kept
+		int [] triaIndex = new int[(int) (getTriaFile().length() / 12)];
+		for (int i = 0; i < numberOfTriangles; i++)
+			triaIndex[triaIDs[i]] = i;
+
+		ChunkWriter out = new ChunkWriter(channel, nrThreads);
 		try
 		{
-			// Do not complain if normals had not been written
-			writeNormals(out, nodeIDs, amibeNodeToUNVNode, amibeTriaToUNVTria);
+			writeInit(out);
+			writeNodes(out, nodelist, nodeIndex);
+			writeTriangles(out, nodeIDs, nodeIndex, triaIndex);
+			try
+			{
+				// Do not complain if normals had not been written
+				writeNormals(out, nodeIDs, nodeIndex, triaIndex);
+			}
+			catch (IOException ex)
+			{
+			}
+			nodeIDs=null;
+			nodeIndex=null;
+			writeGroups(out, triaIndex);
+			writeFinish(out);
 		}
-		catch (IOException ex)
+		finally
 		{
+			out.close();
 		}
-		nodeIDs=null;
-		amibeNodeToUNVNode=null;
-		writeGroups(out, amibeTriaToUNVTria);
-		writeFinish(out);
 	}
-	
+
 	/**
 	 * @param fileName The UNV filename. If the name ends with ".gz" it will
 	 * be zlib compressed.
@@ -392,62 +449,85 @@ abstract public class MeshExporter
 		try
 		{
 			FileOutputStream fos=new FileOutputStream(fileName);
-			BufferedOutputStream bos=new BufferedOutputStream(fos);
-			PrintStream pstream;
-
-			if(fileName.endsWith(".gz"))
-				pstream=new PrintStream(new GZIPOutputStream(bos));
-			else
-				pstream=new PrintStream(bos);
-
-			write(pstream);
-			pstream.close();
+			try
+			{
+				if(fileName.endsWith(".gz"))
+				{
+					GZIPOutputStream gzos=new GZIPOutputStream(new BufferedOutputStream(fos));
+					write(Channels.newChannel(gzos));
+					gzos.finish();
+					gzos.flush();
+				}
+				else
+					write(fos.getChannel());
+			}
+			finally
+			{
+				fos.close();
+			}
 		}
 		catch(IOException e)
 		{
 			e.printStackTrace();
 			throw new RuntimeException(e);
 		}
-		catch (ParserConfigurationException e)
-		{
-			e.printStackTrace();
-			throw new RuntimeException(e);
-		}
-		catch (SAXException e)
-		{
-			e.printStackTrace();
-			throw new RuntimeException(e);
-		}
 	}
+
+	/**
+	 * Returns the index of the group containing the triangle at a given
+	 * position.
+	 */
+	final int getGroup(int position)
+	{
+		int ret = Arrays.binarySearch(groupOffsets, position);
+		if (ret < 0)
+			return -ret - 2;
+		// Skip empty groups
+		while (groupOffsets[ret + 1] == position)
+			ret++;
+		return ret;
+	}
+
+	/**
+	 * Writes nodes.
+	 *
+	 * @param out  output
+	 * @param nodesID  sorted ids of nodes used by triangles
+	 * @param nodeIndex  index in nodesID of each node id
+	 */
+	protected abstract void writeNodes(ChunkWriter out, int[] nodesID,
+		int[] nodeIndex) throws IOException;
+
+	/**
+	 * Writes triangles.
+	 *
+	 * @param out  output
+	 * @param triangles  node ids of triangles, group by group
+	 * @param nodeIndex  index in nodesID of each node id
+	 * @param triaIndex  position in triangles of each triangle id
+	 */
+	protected abstract void writeTriangles(ChunkWriter out, int[] triangles,
+		int[] nodeIndex, int[] triaIndex) throws IOException;
 	
-	protected abstract void writeNodes(PrintStream out, int[] nodesID,
-		TIntIntHashMap amibeToUNV) throws IOException;
-	
-	protected abstract void writeTriangles(PrintStream out, int[] triangles,
-		TIntIntHashMap amibeNodeToUNVNode,
-		TIntIntHashMap amibeTriaToUNVTria) throws IOException;
-	
-	void writeInit(PrintStream out)
+	void writeInit(ChunkWriter out)
 		throws IOException
 	{
 		//To be implemented by instanciating class
 	}
 	
-	void writeFinish(PrintStream out)
+	void writeFinish(ChunkWriter out)
 		throws IOException
 	{
 		//To be implemented by instanciating class
 	}
 	
-	void writeNormals(PrintStream out, int[] triangles,
-		TIntIntHashMap amibeNodeToUNVNode,
-		TIntIntHashMap amibeTriaToUNVTria) throws IOException
+	void writeNormals(ChunkWriter out, int[] triangles,
+		int[] nodeIndex, int[] triaIndex) throws IOException
 	{
 		//To be implemented by instanciating class
 	}
 	
-	void writeGroups(PrintStream out,
-		TIntIntHashMap amibeTriaToUNVTria) throws IOException
+	void writeGroups(ChunkWriter out, int[] triaIndex) throws IOException
 	{
 		//To be implemented by instanciating class
 	}
@@ -483,6 +563,16 @@ abstract public class MeshExporter
 			out.println(FORMAT_D25_16.format(x)+FORMAT_D25_16.format(y)+FORMAT_D25_16.format(z));
 		}
 
+		static void writeSingleNode(OutputBuffer out, int count, double x, double y, double z)
+		{
+			out.printI10(count);
+			out.println("         1         1         1");
+			out.printD25_16(x);
+			out.printD25_16(y);
+			out.printD25_16(z);
+			out.println();
+		}
+
 		// We use our own convention for elements:
 		//      2: linear beam
 		//      3: linear triangle
@@ -519,6 +609,16 @@ abstract public class MeshExporter
 			out.println(FORMAT_I10.format(n0)+FORMAT_I10.format(n1)+FORMAT_I10.format(n2));
 		}
 
+		static void writeSingleTriangle(OutputBuffer out, int count, int n0, int n1, int n2)
+		{
+			out.printI10(count);
+			out.println("        91         1         1         1         3");
+			out.printI10(n0);
+			out.printI10(n1);
+			out.printI10(n2);
+			out.println();
+		}
+
 		public static void writeSingleGroup(PrintStream out, int groupId, String name, int[] ids)
 		{
 			out.println(FORMAT_I10.format(groupId)+"         0         0         0         0         0         0"+FORMAT_I10.format(ids.length));
@@ -535,109 +635,135 @@ abstract public class MeshExporter
 				out.println();
 		}
 
+		/**
+		 * Writes a group header followed by its entities.
+		 *
+		 * @param out  output
+		 * @param groupId  group id
+		 * @param name  group name
+		 * @param n  number of elements
+		 * @param labels  label of i-th element
+		 */
+		static void writeSingleGroup(ChunkWriter out, int groupId, String name,
+			final int n, final Labels labels) throws IOException
+		{
+			OutputBuffer b = out.buffer();
+			b.printI10(groupId);
+			b.print("         0         0         0         0         0         0");
+			b.printI10(n);
+			b.println();
+			b.println(name);
+			out.write(n, new ChunkWriter.Formatter()
+			{
+				public void format(int first, int last, OutputBuffer ob) throws IOException
+				{
+					for (int j = first; j < last; j++)
+					{
+						ob.print("         8");
+						ob.printI10(labels.get(j));
+						ob.print("         0         0");
+						//  Two entities per line
+						if (j % 2 == 1 || j == n - 1)
+							ob.println();
+					}
+				}
+			});
+		}
+
+		/**
+		 * Labels of group entities.
+		 */
+		interface Labels
+		{
+			int get(int i) throws IOException;
+		}
+
 		@Override
-		public final void writeInit(PrintStream arg0)
+		public final void writeInit(ChunkWriter out)
 			throws IOException
 		{
 			if(unit.equals(Unit.Unknown))
 				return;
 
-			arg0.println("    -1");
-			arg0.println("   164");
+			OutputBuffer b = out.buffer();
+			b.println("    -1");
+			b.println("   164");
 			if(unit.equals(Unit.MM))
 			{
-				arg0.println("         5mm (milli-newton)            2");
-				arg0.println("  1.00000000000000000D+03  1.00000000000000000D+03  1.00000000000000000D+00");
+				b.println("         5mm (milli-newton)            2");
+				b.println("  1.00000000000000000D+03  1.00000000000000000D+03  1.00000000000000000D+00");
 			}
 			else
 			{
-				arg0.println("         1Meter (newton)               2");
-				arg0.println("  1.00000000000000000D+00  1.00000000000000000D+00  1.00000000000000000D+00");				
+				b.println("         1Meter (newton)               2");
+				b.println("  1.00000000000000000D+00  1.00000000000000000D+00  1.00000000000000000D+00");				
 			}
-			arg0.println("  2.73149999999999977D+02");
-			arg0.println("    -1");
-		}	
+			b.println("  2.73149999999999977D+02");
+			b.println("    -1");
+		}
 		
 		@Override
-		public void writeNodes(PrintStream out, int[] nodesID, TIntIntHashMap amibeToUNV) throws IOException
+		public void writeNodes(ChunkWriter out, final int[] nodesID, int[] nodeIndex) throws IOException
 		{
 			File f=getNodeFile();
-			DoubleFileReader dfrN = new PrimitiveFileReaderFactory().getDoubleReader(f);
+			final DoubleFileReader dfrN = new PrimitiveFileReaderFactory("mmap").getDoubleReader(f);
 
-			out.println("    -1"+CR+"  2411");
-			int count =  0;
-			double x,y,z;
-			for(int i=0; i<nodesID.length; i++)
+			out.buffer().println("    -1"+CR+"  2411");
+			out.write(nodesID.length, new ChunkWriter.Formatter()
 			{
-				int iid=nodesID[i]*3;
-				x=dfrN.get(iid);
-				y=dfrN.get(iid+1);
-				z=dfrN.get(iid+2);
-				count++;
-				amibeToUNV.put(nodesID[i], count);
-				writeSingleNode(out, count, x, y, z);
-			}
-			out.println("    -1");
+				public void format(int first, int last, OutputBuffer b) throws IOException
+				{
+					for(int i=first; i<last; i++)
+					{
+						int iid=nodesID[i]*3;
+						writeSingleNode(b, i+1, dfrN.get(iid), dfrN.get(iid+1), dfrN.get(iid+2));
+					}
+				}
+			});
+			out.buffer().println("    -1");
 			dfrN.close();
-			logger.info("Total number of nodes: "+count);
+			logger.info("Total number of nodes: "+nodesID.length);
 		}
 		
-		/**
-		 * @param out
-		 * @param amibeNodeToUNVNode
-		 */
 		@Override
-		public void writeTriangles(PrintStream out, int[] triangles,
-			TIntIntHashMap amibeNodeToUNVNode, TIntIntHashMap amibeTriaToUNVTria)
+		public void writeTriangles(ChunkWriter out, final int[] triangles,
+			final int[] nodeIndex, int[] triaIndex) throws IOException
 		{
-			out.println("    -1"+CR+"  2412");
-			int count=0;
-			int triaIndex=0;
-			for(int i=0; i<groups.length; i++)
+			out.buffer().println("    -1"+CR+"  2412");
+			int count = triangles.length / 3;
+			out.write(count, new ChunkWriter.Formatter()
 			{
-				for(int j=0; j<groups[i].length; j++)
+				public void format(int first, int last, OutputBuffer b)
 				{
-					count++;
-					amibeTriaToUNVTria.put(groups[i][j], count);
-					writeSingleTriangle(out, count,
-						amibeNodeToUNVNode.get(triangles[triaIndex++]),
-						amibeNodeToUNVNode.get(triangles[triaIndex++]),
-						amibeNodeToUNVNode.get(triangles[triaIndex++]));
+					for(int i=first; i<last; i++)
+					{
+						writeSingleTriangle(b, i+1,
+							nodeIndex[triangles[3*i]]+1,
+							nodeIndex[triangles[3*i+1]]+1,
+							nodeIndex[triangles[3*i+2]]+1);
+					}
 				}
-			}
-			out.println("    -1");
+			});
+			out.buffer().println("    -1");
 			logger.info("Total number of triangles: "+count);
 		}
 		
-		/**
-		 * @param out
-		 * @param amibeTriaToUNVTria
-		 */
 		@Override
-		public void writeGroups(PrintStream out, TIntIntHashMap amibeTriaToUNVTria)
+		public void writeGroups(ChunkWriter out, final int[] triaIndex) throws IOException
 		{
-			out.println("    -1"+CR+"  2435");
+			out.buffer().println("    -1"+CR+"  2435");
 			for(int i=0;i<groups.length; i++)
-			{				
-				out.println(FORMAT_I10.format(i+1)+
-					"         0         0         0         0         0         0"+
-					FORMAT_I10.format(groups[i].length));
-				
-				out.println(names[i]);
-				int countg=0;
-				for(int j=0; j<groups[i].length; j++)
+			{
+				final int[] group = groups[i];
+				writeSingleGroup(out, i+1, names[i], group.length, new Labels()
 				{
-					out.print("         8"
-						+FORMAT_I10.format(amibeTriaToUNVTria.get(groups[i][j]))
-						+"         0         0");
-					countg++;
-					if ((countg % 2) == 0)
-						out.println("");
-				}
-				if ((countg % 2) !=0 )
-					out.println();
+					public int get(int j)
+					{
+						return triaIndex[group[j]]+1;
+					}
+				});
 			}
-			out.println("    -1");
+			out.buffer().println("    -1");
 		}
 	}
 	
@@ -653,47 +779,47 @@ abstract public class MeshExporter
 			super(file);
 		}
 		
-		/**
-		 * @param out
-		 * @param amibeNodeToUNVNode
-		 */
 		@Override
-		public void writeTriangles(PrintStream out, int[] triangles,
-			TIntIntHashMap amibeNodeToUNVNode, TIntIntHashMap amibeTriaToUNVTria)
+		public void writeTriangles(ChunkWriter out, final int[] triangles,
+			int[] nodeIndex, int[] triaIndex)
 			throws IOException
 		{
 			File f=getNodeFile();
-			DoubleFileReader dfrN = new PrimitiveFileReaderFactory().getDoubleReader(f);
+			final DoubleFileReader dfrN = new PrimitiveFileReaderFactory("mmap").getDoubleReader(f);
 			
-			out.println("solid export");
-			int count=0;
-			double x,y,z;
-			for(int i=0; i<groups.length; i++)
+			out.buffer().println("solid export");
+			int count = triangles.length / 3;
+			out.write(count, new ChunkWriter.Formatter()
 			{
-				for(int j=0; j<groups[i].length; j++)
+				public void format(int first, int last, OutputBuffer b) throws IOException
 				{
-					out.println("facet");
-					out.println("   outer loop");
-					for(int k=0; k < 3; k++)
+					for(int i=first; i<last; i++)
 					{
-						int iid=triangles[count*3+k]*3;
-						x=dfrN.get(iid);
-						y=dfrN.get(iid+1);
-						z=dfrN.get(iid+2);
-						out.println("     vertex "+x+" "+y+" "+z);
+						b.println("facet");
+						b.println("   outer loop");
+						for(int k=0; k < 3; k++)
+						{
+							int iid=triangles[i*3+k]*3;
+							b.print("     vertex ");
+							b.print(dfrN.get(iid));
+							b.print(" ");
+							b.print(dfrN.get(iid+1));
+							b.print(" ");
+							b.print(dfrN.get(iid+2));
+							b.println();
+						}
+						b.println("   endloop");
+						b.println("endfacet");
 					}
-					out.println("   endloop");
-					out.println("endfacet");
-					count++;
 				}
-			}
+			});
 			dfrN.close();
-			out.println("endsolid export");
+			out.buffer().println("endsolid export");
 			logger.info("Total number of triangles: "+count);
 		}
 
 		@Override
-		protected void writeNodes(PrintStream out, int[] nodesID, TIntIntHashMap amibeToUNV)
+		protected void writeNodes(ChunkWriter out, int[] nodesID, int[] nodeIndex)
 		{
 			//Nothing to do
 		}
@@ -712,113 +838,128 @@ abstract public class MeshExporter
 		}		
 		
 		@Override
-		public void writeInit(PrintStream out)
+		public void writeInit(ChunkWriter out)
 			throws IOException
 		{
-			out.println("\nMeshVersionFormatted 1\n\nDimension\n3");
+			out.buffer().println("\nMeshVersionFormatted 1\n\nDimension\n3");
 		}
 		@Override
-		public void writeFinish(PrintStream out)
+		public void writeFinish(ChunkWriter out)
 			throws IOException
 		{
-			out.println("\nEnd");
+			out.buffer().println("\nEnd");
 		}
 		@Override
-		public void writeNodes(PrintStream out, int[] nodesID, TIntIntHashMap amibeToUNV) throws IOException
+		public void writeNodes(ChunkWriter out, final int[] nodesID, int[] nodeIndex) throws IOException
 		{
 			File f=getNodeFile();
-			DoubleFileReader dfrN = new PrimitiveFileReaderFactory().getDoubleReader(f);
+			final DoubleFileReader dfrN = new PrimitiveFileReaderFactory("mmap").getDoubleReader(f);
 			
-			int count =  0;
-			double x,y,z;
-			out.println("\nVertices\n"+nodesID.length);
-			for(int i=0; i<nodesID.length; i++)
+			out.buffer().println("\nVertices\n"+nodesID.length);
+			out.write(nodesID.length, new ChunkWriter.Formatter()
 			{
-				int iid=nodesID[i]*3;
-				x=dfrN.get(iid);
-				y=dfrN.get(iid+1);
-				z=dfrN.get(iid+2);
-				count++;
-				amibeToUNV.put(nodesID[i], count);
-				out.println(x+" "+y+" "+z+" 0");
-			}
+				public void format(int first, int last, OutputBuffer b) throws IOException
+				{
+					for(int i=first; i<last; i++)
+					{
+						int iid=nodesID[i]*3;
+						b.print(dfrN.get(iid));
+						b.print(" ");
+						b.print(dfrN.get(iid+1));
+						b.print(" ");
+						b.print(dfrN.get(iid+2));
+						b.println(" 0");
+					}
+				}
+			});
 			dfrN.close();
-			logger.info("Total number of nodes: "+count);
+			logger.info("Total number of nodes: "+nodesID.length);
 		}
 		
-		/**
-		 * @param out
-		 * @param amibeNodeToUNVNode
-		 */
 		@Override
-		public void writeTriangles(PrintStream out, int[] triangles,
-			TIntIntHashMap amibeNodeToUNVNode, TIntIntHashMap amibeTriaToUNVTria)
+		public void writeTriangles(ChunkWriter out, final int[] triangles,
+			final int[] nodeIndex, int[] triaIndex) throws IOException
 		{
-			int count=0;
-			for(int i=0; i<groups.length; i++)
-				count += groups[i].length;
-			
-			out.println("\nTriangles\n"+count);
-			int triaIndex=0;
-			count=0;
-			for(int i=0; i<groups.length; i++)
+			int count = triangles.length / 3;
+			out.buffer().println("\nTriangles\n"+count);
+			out.write(count, new ChunkWriter.Formatter()
 			{
-				for(int j=0; j<groups[i].length; j++)
+				public void format(int first, int last, OutputBuffer b)
 				{
-					count++;
-					amibeTriaToUNVTria.put(groups[i][j], count);
-					out.println(amibeNodeToUNVNode.get(triangles[triaIndex++])+" "+amibeNodeToUNVNode.get(triangles[triaIndex++])+" "+amibeNodeToUNVNode.get(triangles[triaIndex++])+" "+(i+1));
+					int g = getGroup(first);
+					for(int i=first; i<last; i++)
+					{
+						while (i >= groupOffsets[g+1])
+							g++;
+						b.print(nodeIndex[triangles[3*i]]+1);
+						b.print(" ");
+						b.print(nodeIndex[triangles[3*i+1]]+1);
+						b.print(" ");
+						b.print(nodeIndex[triangles[3*i+2]]+1);
+						b.print(" ");
+						b.print(g+1);
+						b.println();
+					}
 				}
-			}
+			});
 			logger.info("Total number of triangles: "+count);
 		}
 		
 		@Override
-		public void writeNormals(PrintStream out, int[] triangles,
-			TIntIntHashMap amibeNodeToUNVNode, TIntIntHashMap amibeTriaToUNVTria) throws IOException
+		public void writeNormals(ChunkWriter out, int[] triangles,
+			int[] nodeIndex, final int[] triaIndex) throws IOException
 		{
 			//  Open the input file first so that an exception is
 			//  raised if it is not found.
 			File f=getNormalFile();
 			if (f == null)
 				throw new IOException();
-			DoubleFileReader dfrN = new PrimitiveFileReaderFactory().getDoubleReader(f);
-			
-			int count=0;
-			for(int i=0; i<groups.length; i++)
-				count += groups[i].length;
+			final DoubleFileReader dfrN = new PrimitiveFileReaderFactory("mmap").getDoubleReader(f);
 			
-			out.println("\nNormals\n"+(3*count));
-
-			double x,y,z;
-			for(int i=0; i<groups.length; i++)
+			int count = triangles.length / 3;
+			out.buffer().println("\nNormals\n"+(3*count));
+			out.write(count, new ChunkWriter.Formatter()
 			{
-				for(int j=0; j<groups[i].length; j++)
+				public void format(int first, int last, OutputBuffer b) throws IOException
 				{
-					int iid = (amibeTriaToUNVTria.get(groups[i][j]) - 1)* 9;
-					for (int k = 0; k < 3; k++)
+					for(int i=first; i<last; i++)
 					{
-						x=dfrN.get(iid);
-						y=dfrN.get(iid+1);
-						z=dfrN.get(iid+2);
-						out.println(x+" "+y+" "+z);
-						iid += 3;
+						int iid = triaIndex[triaIDs[i]] * 9;
+						for (int k = 0; k < 3; k++)
+						{
+							b.print(dfrN.get(iid));
+							b.print(" ");
+							b.print(dfrN.get(iid+1));
+							b.print(" ");
+							b.print(dfrN.get(iid+2));
+							b.println();
+							iid += 3;
+						}
 					}
 				}
-			}
+			});
 			dfrN.close();
 
-			out.println("\nNormalAtTriangleVertices\n"+(3*count));
-			for(int i=0; i<groups.length; i++)
+			out.buffer().println("\nNormalAtTriangleVertices\n"+(3*count));
+			out.write(count, new ChunkWriter.Formatter()
 			{
-				for(int j=0; j<groups[i].length; j++)
+				public void format(int first, int last, OutputBuffer b)
 				{
-					int nT = amibeTriaToUNVTria.get(groups[i][j]);
-					out.println(nT+" 1 "+(3*nT-2));
-					out.println(nT+" 2 "+(3*nT-1));
-					out.println(nT+" 3 "+(3*nT));
+					for(int i=first; i<last; i++)
+					{
+						int nT = triaIndex[triaIDs[i]] + 1;
+						for (int k = 1; k <= 3; k++)
+						{
+							b.print(nT);
+							b.print(" ");
+							b.print(k);
+							b.print(" ");
+							b.print(3*nT-3+k);
+							b.println();
+						}
+					}
 				}
-			}
+			});
 		}
 	}
 	
@@ -835,65 +976,70 @@ abstract public class MeshExporter
 		}
 		
 		@Override
-		public void writeFinish(PrintStream out)
+		public void writeFinish(ChunkWriter out)
 			throws IOException
 		{
-			out.println("# Part 3 - hole list");
-			out.println("0");
-			out.println("# Part 4 - hole list");
-			out.println("0");
+			OutputBuffer b = out.buffer();
+			b.println("# Part 3 - hole list");
+			b.println("0");
+			b.println("# Part 4 - hole list");
+			b.println("0");
 		}
 		@Override
-		public void writeNodes(PrintStream out, int[] nodesID, TIntIntHashMap amibeToUNV) throws IOException
+		public void writeNodes(ChunkWriter out, final int[] nodesID, int[] nodeIndex) throws IOException
 		{
 			File f=getNodeFile();
-			DoubleFileReader dfrN = new PrimitiveFileReaderFactory().getDoubleReader(f);
+			final DoubleFileReader dfrN = new PrimitiveFileReaderFactory("mmap").getDoubleReader(f);
 			
-			int count =  0;
-			double x,y,z;
-			out.println("# Part 1 - node list");
-			out.println(""+nodesID.length+" 3 0 0");
-			for(int i=0; i<nodesID.length; i++)
+			out.buffer().println("# Part 1 - node list");
+			out.buffer().println(""+nodesID.length+" 3 0 0");
+			out.write(nodesID.length, new ChunkWriter.Formatter()
 			{
-				int iid=nodesID[i]*3;
-				x=dfrN.get(iid);
-				y=dfrN.get(iid+1);
-				z=dfrN.get(iid+2);
-				count++;
-				amibeToUNV.put(nodesID[i], count);
-				out.println("   "+count+" "+x+" "+y+" "+z);
-			}
+				public void format(int first, int last, OutputBuffer b) throws IOException
+				{
+					for(int i=first; i<last; i++)
+					{
+						int iid=nodesID[i]*3;
+						b.print("   ");
+						b.print(i+1);
+						b.print(" ");
+						b.print(dfrN.get(iid));
+						b.print(" ");
+						b.print(dfrN.get(iid+1));
+						b.print(" ");
+						b.print(dfrN.get(iid+2));
+						b.println();
+					}
+				}
+			});
 			dfrN.close();
-			logger.info("Total number of nodes: "+count);
+			logger.info("Total number of nodes: "+nodesID.length);
 		}
 		
-		/**
-		 * @param out
-		 * @param amibeNodeToUNVNode
-		 */
 		@Override
-		public void writeTriangles(PrintStream out, int[] triangles,
-			TIntIntHashMap amibeNodeToUNVNode, TIntIntHashMap amibeTriaToUNVTria)
+		public void writeTriangles(ChunkWriter out, final int[] triangles,
+			final int[] nodeIndex, int[] triaIndex) throws IOException
 		{
-			int count=0;
-			for(int i=0; i<groups.length; i++)
-				count += groups[i].length;
-			
-			out.println("# Part 2 - element list");
-			out.println(""+count+" 0");
-			int triaIndex=0;
-			count=0;
-			for(int i=0; i<groups.length; i++)
+			int count = triangles.length / 3;
+			out.buffer().println("# Part 2 - element list");
+			out.buffer().println(""+count+" 0");
+			out.write(count, new ChunkWriter.Formatter()
 			{
-				for(int j=0; j<groups[i].length; j++)
+				public void format(int first, int last, OutputBuffer b)
 				{
-					count++;
-					amibeTriaToUNVTria.put(groups[i][j], count);
-					out.println("   1 0 0");
-					out.println("   3 "+
-							amibeNodeToUNVNode.get(triangles[triaIndex++])+" "+amibeNodeToUNVNode.get(triangles[triaIndex++])+" "+amibeNodeToUNVNode.get(triangles[triaIndex++]));
+					for(int i=first; i<last; i++)
+					{
+						b.println("   1 0 0");
+						b.print("   3 ");
+						b.print(nodeIndex[triangles[3*i]]+1);
+						b.print(" ");
+						b.print(nodeIndex[triangles[3*i+1]]+1);
+						b.print(" ");
+						b.print(nodeIndex[triangles[3*i+2]]+1);
+						b.println();
+					}
 				}
-			}
+			});
 		}
 	}
 
@@ -932,6 +1078,7 @@ abstract public class MeshExporter
 					toReturn++;
 				in.skipBytes(8);
 			}
+			in.close();
 			return toReturn;
 		}
 
@@ -940,11 +1087,12 @@ abstract public class MeshExporter
 		 * @param out The stream to write on 
 		 */
 		@Override
-		public void writeInit(PrintStream out)
+		public void writeInit(ChunkWriter cw)
 			throws IOException
 		{
 			long numberOfNodes=getNodeFile().length()/8/3;
 			long numberOfTriangles=computeNumberOfTriangle(getTriaFile());
+			OutputBuffer out = cw.buffer();
 			//This is Java so we write in big endian		
 			out.println("<VTKFile type=\"PolyData\" version=\"0.1\" byte_order=\"BigEndian\">");
 			out.println("<PolyData>");
@@ -989,7 +1137,6 @@ abstract public class MeshExporter
 			
 			out.println("</Piece></PolyData>");
 			out.print("<AppendedData encoding=\"raw\"> _");
-			out.flush();
 		}
 	
 		/**
@@ -998,33 +1145,28 @@ abstract public class MeshExporter
 		 * @throws IOException
 		 */
 		@Override
-		protected void writeNodes(PrintStream out, int[] nodesID, TIntIntHashMap amibeToUNV)
+		protected void writeNodes(ChunkWriter out, final int[] nodesID, int[] nodeIndex)
 			throws IOException
 		{
-			DataOutputStream dos=new DataOutputStream(new BufferedOutputStream(out));
 			//Write the size of the array in octets
-			dos.writeInt(nodesID.length*8*3);
+			out.buffer().writeInt(nodesID.length*8*3);
 			File f=getNodeFile();
-			DoubleFileReader dfrN = new PrimitiveFileReaderFactory().getDoubleReader(f);
-			
-			int count =  0;
-			double x,y,z;
-			for(int i=0; i<nodesID.length; i++)
+			final DoubleFileReader dfrN = new PrimitiveFileReaderFactory("mmap").getDoubleReader(f);
+			out.write(nodesID.length, new ChunkWriter.Formatter()
 			{
-				int iid=nodesID[i]*3;
-				x=dfrN.get(iid);
-				y=dfrN.get(iid+1);
-				z=dfrN.get(iid+2);
-				amibeToUNV.put(nodesID[i], count);
-				dos.writeDouble(x);
-				dos.writeDouble(y);
-				dos.writeDouble(z);
-				count++;
-			}
+				public void format(int first, int last, OutputBuffer b) throws IOException
+				{
+					for(int i=first; i<last; i++)
+					{
+						int iid=nodesID[i]*3;
+						b.writeDouble(dfrN.get(iid));
+						b.writeDouble(dfrN.get(iid+1));
+						b.writeDouble(dfrN.get(iid+2));
+					}
+				}
+			});
 			dfrN.close();
-			logger.info("Total number of nodes: "+count);
-			dos.flush();
-			out.flush();
+			logger.info("Total number of nodes: "+nodesID.length);
 		}
 		 
 		/**
@@ -1033,65 +1175,77 @@ abstract public class MeshExporter
 		 * @throws IOException
 		 */
 		@Override
-		protected void writeTriangles(PrintStream out, int[] triangles,
-			TIntIntHashMap amibeNodeToUNVNode, TIntIntHashMap amibeTriaToUNVTria)
+		protected void writeTriangles(ChunkWriter out, final int[] triangles,
+			final int[] nodeIndex, int[] triaIndex)
 			throws IOException
 		{
-			DataOutputStream dos=new DataOutputStream(new BufferedOutputStream(out));
 			//Write the size of the array in octets
 			int nbt = triangles.length/3;
-			dos.writeInt(nbt*4*3);
-			int count=0;
-			int triaIndex=0;
-			for(int i=0; i<groups.length; i++)
+			out.buffer().writeInt(nbt*4*3);
+			out.write(nbt, new ChunkWriter.Formatter()
 			{
-				for(int j=0; j<groups[i].length; j++)
+				public void format(int first, int last, OutputBuffer b)
 				{
-					amibeTriaToUNVTria.put(groups[i][j], count);
-					dos.writeInt(amibeNodeToUNVNode.get(triangles[triaIndex++]));
-					dos.writeInt(amibeNodeToUNVNode.get(triangles[triaIndex++]));
-					dos.writeInt(amibeNodeToUNVNode.get(triangles[triaIndex++]));
-					count++;
+					for(int i=3*first; i<3*last; i++)
+						b.writeInt(nodeIndex[triangles[i]]);
 				}
-			}
-			logger.info("Total number of triangles: "+count);
+			});
+			logger.info("Total number of triangles: "+nbt);
 			//Write the size of the array in octets
-			dos.writeInt(nbt*4);
+			out.buffer().writeInt(nbt*4);
 			//Write the offset of each cells (in our case triangles) in the
 			//connectivity array
-			for(int i=1; i<=nbt; i++)
-				dos.writeInt(3*i);
-			dos.flush();
-			out.flush();
+			out.write(nbt, new ChunkWriter.Formatter()
+			{
+				public void format(int first, int last, OutputBuffer b)
+				{
+					for(int i=first+1; i<=last; i++)
+						b.writeInt(3*i);
+				}
+			});
 		}
 		
 		@Override
-		protected void writeFinish(PrintStream out)
+		protected void writeFinish(ChunkWriter out)
 			throws IOException
 		{
-			DataOutputStream dos=new DataOutputStream(new BufferedOutputStream(out));
 			if(dummyData)
 			{
-				long nbt=getTriaFile().length()/4/3;
+				int nbt=(int) (getTriaFile().length()/4/3);
 				//Write the size of the array in octets
-				dos.writeInt((int) nbt*8);		
-				for(int i=0; i<nbt; i++)
-					dos.writeDouble(i);
-				
-				dos.writeInt((int) nbt*8);
-				for(int i=0; i<nbt; i++)
-					dos.writeDouble((double)i*i);
-				dos.writeInt((int) nbt*8*3);
-				for(int i=0; i<nbt; i++)
+				out.buffer().writeInt(nbt*8);
+				out.write(nbt, new ChunkWriter.Formatter()
 				{
-					dos.writeDouble(i);
-					dos.writeDouble(i);
-					dos.writeDouble(i);
-				}
+					public void format(int first, int last, OutputBuffer b)
+					{
+						for(int i=first; i<last; i++)
+							b.writeDouble(i);
+					}
+				});
+				out.buffer().writeInt(nbt*8);
+				out.write(nbt, new ChunkWriter.Formatter()
+				{
+					public void format(int first, int last, OutputBuffer b)
+					{
+						for(int i=first; i<last; i++)
+							b.writeDouble((double)i*i);
+					}
+				});
+				out.buffer().writeInt(nbt*8*3);
+				out.write(nbt, new ChunkWriter.Formatter()
+				{
+					public void format(int first, int last, OutputBuffer b)
+					{
+						for(int i=first; i<last; i++)
+						{
+							b.writeDouble(i);
+							b.writeDouble(i);
+							b.writeDouble(i);
+						}
+					}
+				});
 			}
-			dos.flush();
-			out.println("</AppendedData></VTKFile>");
-			out.flush();
+			out.buffer().println("</AppendedData></VTKFile>");
 		}
 		
 		public boolean isDummyData()
@@ -22,6 +22,7 @@
 package org.jcae.mesh.xmldata;
 
 import java.util.logging.Level;
+import org.jcae.mesh.amibe.ds.CompactMesh;
 import org.jcae.mesh.amibe.ds.Mesh;
 import org.jcae.mesh.amibe.ds.Triangle;
 import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
@@ -38,6 +39,12 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathFactory;
@@ -56,6 +63,8 @@ import java.util.logging.Logger;
 public class MeshReader
 {
 	private static final Logger logger=Logger.getLogger(MeshReader.class.getName());
+	// Number of nodes or triangles decoded by a task of the bulk reader
+	private static final int CHUNK_SIZE = 65536;
 	
 	/**
 	 * Loads an Amibe 2D XML file into an existing Mesh2D instance.
@@ -201,7 +210,8 @@ public class MeshReader
 	}
 
 	/**
-	 * Loads an Amibe 3D XML file into an existing Mesh instance.
+	 * Loads an Amibe 3D XML file into an existing Mesh instance.  If
+	 * <code>xmlDir</code> is a file, it is read by {@link MeshSnapshot}.
 	 *
 	 * @param mesh     data structure updated when reading files
 	 * @param xmlDir   directory containing XML files
@@ -209,6 +219,11 @@ public class MeshReader
 	public static void readObject3D(Mesh mesh, String xmlDir)
 		throws IOException
 	{
+		if (new File(xmlDir).isFile())
+		{
+			MeshSnapshot.read(mesh, xmlDir);
+			return;
+		}
 		try {
 			AmibeReader.Dim3 reader = new AmibeReader.Dim3(xmlDir);
 			SubMesh subMesh = reader.getSubmeshes().get(0);
@@ -306,6 +321,238 @@ public class MeshReader
 		}
 	}
 
+	/**
+	 * Loads an Amibe 3D XML file into a {@link CompactMesh} instance.
+	 * Nodes and triangles are copied into primitive arrays without creating
+	 * any {@link Vertex} or {@link Triangle} object, so that very large
+	 * meshes can be loaded by algorithms which do not modify mesh topology.
+	 * Outer triangles and beams are skipped, group ids are numbered as
+	 * with {@link #readObject3D(Mesh, String)}, and adjacency relations
+	 * are built.  If <code>xmlDir</code> is a file, it is read by
+	 * {@link MeshSnapshot} and converted by {@link CompactMesh#createFromMesh}.
+	 *
+	 * @param xmlDir   directory containing XML files
+	 * @return  a new <code>CompactMesh</code> instance
+	 */
+	public static CompactMesh readCompactObject3D(String xmlDir)
+		throws IOException
+	{
+		if (new File(xmlDir).isFile())
+		{
+			Mesh mesh = new Mesh();
+			MeshSnapshot.read(mesh, xmlDir);
+			return CompactMesh.createFromMesh(mesh);
+		}
+		try {
+			AmibeReader.Dim3 reader = new AmibeReader.Dim3(xmlDir);
+			SubMesh subMesh = reader.getSubmeshes().get(0);
+			int numberOfReferences = subMesh.getNumberOfReferences();
+			int[] refs = null;
+			if (numberOfReferences > 0)
+				refs = subMesh.getReferences();
+			int numberOfNodes = subMesh.getNumberOfNodes();
+			int numberOfTriangles = subMesh.getNumberOfTrias();
+			CompactMesh mesh = new CompactMesh(numberOfNodes, numberOfTriangles);
+			DoubleFileReader dfrN = subMesh.getNodes();
+			double[] coord = new double[3];
+			for (int i = 0; i < numberOfNodes; i++) {
+				dfrN.get(coord);
+				mesh.addVertex(coord[0], coord[1], coord[2]);
+				if (i >= numberOfNodes - numberOfReferences) {
+					assert refs != null;
+					mesh.setRef(i, refs[i + numberOfReferences - numberOfNodes]);
+				}
+			}
+			dfrN.close();
+			IntFileReader ifrT = subMesh.getTriangles();
+			// Triangle indices in mesh, or -1 for outer triangles
+			int[] trianglesIndex = new int[numberOfTriangles];
+			int[] ind = new int[3];
+			for (int i = 0; i < numberOfTriangles; i++) {
+				boolean outer = false;
+				for (int j = 0; j < 3; j++) {
+					ind[j] = ifrT.get();
+					if (ind[j] < 0)
+						outer = true;
+				}
+				if (outer)
+					trianglesIndex[i] = -1;
+				else
+					trianglesIndex[i] = mesh.addTriangle(ind[0], ind[1], ind[2], 0);
+			}
+			ifrT.close();
+
+			int id = 1;
+			for (AmibeReader.Group g : subMesh.getGroups()) {
+				for (int j : g.readTria3Ids())
+					mesh.setGroupId(trianglesIndex[j], id);
+				id++;
+			}
+			logger.fine("Build mesh adjacency");
+			mesh.buildAdjacency();
+			return mesh;
+		} catch (SAXException ex) {
+			throw new IOException(ex);
+		}
+	}
+
+	/**
+	 * Loads an Amibe 3D XML file into an existing Mesh instance with
+	 * several threads.  Nodes and triangles files are memory mapped and
+	 * copied by large chunks into primitive arrays, vertices and triangles
+	 * are then created concurrently.  Adjacency relations are built by
+	 * {@link Mesh#buildAdjacency(int, int)} with the same number of threads.
+	 * Resulting mesh is the same as with {@link #readObject3D(Mesh, String)}.
+	 * If <code>xmlDir</code> is a file, it is read by {@link MeshSnapshot}.
+	 *
+	 * @param mesh     data structure updated when reading files
+	 * @param xmlDir   directory containing XML files
+	 * @param nrThreads  number of threads
+	 */
+	public static void readObject3D(final Mesh mesh, String xmlDir, int nrThreads)
+		throws IOException
+	{
+		if (new File(xmlDir).isFile())
+		{
+			MeshSnapshot.read(mesh, xmlDir, nrThreads);
+			return;
+		}
+		SubMesh subMesh;
+		try {
+			subMesh = new AmibeReader.Dim3(xmlDir).getSubmeshes().get(0);
+		} catch (SAXException ex) {
+			throw new IOException(ex);
+		}
+		PrimitiveFileReaderFactory pfrf = new PrimitiveFileReaderFactory("mmap");
+		final int numberOfReferences = subMesh.getNumberOfReferences();
+		final int[] refs = numberOfReferences > 0 ? subMesh.getReferences() : null;
+		if (numberOfReferences > 0)
+			mesh.setPersistentReferences(true);
+		final int numberOfNodes = subMesh.getNumberOfNodes();
+		final Vertex[] nodelist = new Vertex[numberOfNodes + 1];
+		nodelist[numberOfNodes] = mesh.outerVertex;
+		mesh.ensureCapacity(2 * numberOfNodes);
+
+		ExecutorService pool = Executors.newFixedThreadPool(nrThreads);
+		try {
+			final DoubleFileReader dfrN = subMesh.getNodes(pfrf);
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for (int start = 0; start < numberOfNodes; start += CHUNK_SIZE)
+			{
+				final int first = start;
+				final int last = Math.min(numberOfNodes, start + CHUNK_SIZE);
+				tasks.add(new Callable<Object>()
+				{
+					public Object call() throws IOException
+					{
+						double[] coord = new double[3 * (last - first)];
+						synchronized (dfrN) {
+							dfrN.get(3 * first, coord);
+						}
+						int offset = numberOfNodes - numberOfReferences;
+						for (int i = first; i < last; i++)
+						{
+							int k = 3 * (i - first);
+							Vertex v = mesh.createVertex(coord[k], coord[k+1], coord[k+2]);
+							if (i >= offset)
+								v.setRef(refs[i - offset]);
+							nodelist[i] = v;
+						}
+						return null;
+					}
+				});
+			}
+			invokeAll(pool, tasks);
+			dfrN.close();
+			if (mesh.hasNodes()) {
+				for (int i = 0; i < numberOfNodes; i++)
+					mesh.add(nodelist[i]);
+			}
+
+			final IntFileReader ifrT = subMesh.getTriangles(pfrf);
+			int numberOfTriangles = subMesh.getNumberOfTrias();
+			final Triangle[] facelist = new Triangle[numberOfTriangles];
+			tasks.clear();
+			for (int start = 0; start < numberOfTriangles; start += CHUNK_SIZE)
+			{
+				final int first = start;
+				final int last = Math.min(numberOfTriangles, start + CHUNK_SIZE);
+				tasks.add(new Callable<Object>()
+				{
+					public Object call() throws IOException
+					{
+						int[] ind = new int[3 * (last - first)];
+						synchronized (ifrT) {
+							ifrT.get(3 * first, ind);
+						}
+						for (int i = first; i < last; i++)
+						{
+							int k = 3 * (i - first);
+							//  Outer triangles have negative indices and are skipped
+							if (ind[k] >= 0 && ind[k+1] >= 0 && ind[k+2] >= 0)
+								facelist[i] = mesh.createTriangle(
+									nodelist[ind[k]], nodelist[ind[k+1]], nodelist[ind[k+2]]);
+						}
+						return null;
+					}
+				});
+			}
+			invokeAll(pool, tasks);
+			ifrT.close();
+			for (Triangle t : facelist)
+			{
+				if (t != null)
+					mesh.add(t);
+			}
+
+			int numberOfBeams = subMesh.getNumberOfBeams();
+			if (numberOfBeams > 0)
+			{
+				IntFileReader ifrB = subMesh.getBeams();
+				for (int i = 0; i < numberOfBeams; i++)
+					mesh.addBeam(nodelist[ifrB.get()], nodelist[ifrB.get()], 0);
+				ifrB.close();
+			}
+
+			int i = 1;
+			for (AmibeReader.Group g : subMesh.getGroups()) {
+				int id = i++;
+				mesh.setGroupName(id, g.getName());
+				for (int j : g.readTria3Ids())
+					facelist[j].setGroupId(id);
+				for(int j : g.readBeamsIds())
+					mesh.setBeamGroup(j, id);
+			}
+		} finally {
+			pool.shutdown();
+		}
+		//  Build adjacency relations
+		if (mesh.hasAdjacency()) {
+			logger.fine("Build mesh adjacency");
+			mesh.buildAdjacency(0, nrThreads);
+		}
+	}
+
+	static void invokeAll(ExecutorService pool, List<Callable<Object>> tasks)
+		throws IOException
+	{
+		try
+		{
+			for (Future<Object> f : pool.invokeAll(tasks))
+				f.get();
+		}
+		catch (InterruptedException ex)
+		{
+			throw new IOException(ex);
+		}
+		catch (ExecutionException ex)
+		{
+			if (ex.getCause() instanceof IOException)
+				throw (IOException) ex.getCause();
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+
 	// Method previously in MMesh3DReader, remove it?
 	public static int [] getInfos(String xmlDir)
 	{
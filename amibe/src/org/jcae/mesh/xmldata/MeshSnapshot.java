@@ -0,0 +1,680 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.xmldata;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TObjectIntHashMap;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+import org.jcae.mesh.amibe.ds.AbstractHalfEdge;
+import org.jcae.mesh.amibe.ds.HalfEdge;
+import org.jcae.mesh.amibe.ds.Mesh;
+import org.jcae.mesh.amibe.ds.Triangle;
+import org.jcae.mesh.amibe.ds.Vertex;
+
+/**
+ * Binary snapshot of a {@link Mesh} instance.
+ *
+ * <p>
+ * Amibe files only contain vertices, triangles, beams and groups, and
+ * {@link MeshReader} has to rebuild adjacency relations when loading a
+ * mesh.  A snapshot contains the whole half-edge structure: virtual outer
+ * triangles, symmetric edges, edge attributes (such as
+ * {@link AbstractHalfEdge#BOUNDARY}, {@link AbstractHalfEdge#NONMANIFOLD}
+ * or {@link AbstractHalfEdge#SHARP}), vertex references, labels and links
+ * (including fans of non-manifold vertices), group ids and names, and
+ * beams.  Reloading a snapshot gives the same mesh, triangles are in the
+ * same order, without calling {@link Mesh#buildAdjacency},
+ * {@link Mesh#buildRidges} or {@link Mesh#buildGroupBoundaries}.
+ * </p>
+ *
+ * <p>
+ * A snapshot is a single big-endian file made of a header followed by
+ * arrays of primitive values, each array starts at a multiple of 8 bytes.
+ * Arrays are memory mapped and copied by bulk operations when loading,
+ * vertices and triangles are then created by several threads.
+ * Only meshes with {@link HalfEdge} instances are supported.
+ * </p>
+ *
+ * <p>
+ * {@link MeshWriter#writeObject3D(Mesh, String, String)} writes a snapshot
+ * when output name ends with {@link #SUFFIX}, and
+ * {@link MeshReader#readObject3D(Mesh, String)} reads a snapshot when its
+ * argument is a file, so that scripts can exchange snapshots instead of
+ * Amibe directories between pipeline stages.
+ * </p>
+ */
+public final class MeshSnapshot
+{
+	private static final Logger logger=Logger.getLogger(MeshSnapshot.class.getName());
+
+	/** Suffix of snapshot file names. */
+	public static final String SUFFIX = ".snapshot";
+
+	// "AMSN"
+	private static final int MAGIC = 0x414d534e;
+	private static final int VERSION = 1;
+	private static final int CHUNK_SIZE = 65536;
+	// Size of mapped regions when reading arrays, multiple of 8
+	private static final int WINDOW_SIZE = 1 << 28;
+
+	private static final int PERSISTENT_REFERENCES = 1;
+
+	private static final int READABLE = 1;
+	private static final int WRITABLE = 2;
+	private static final int MUTABLE = 4;
+
+	private MeshSnapshot()
+	{
+	}
+
+	/**
+	 * Writes a mesh into a snapshot file.
+	 *
+	 * @param mesh  mesh with {@link HalfEdge} instances
+	 * @param file  output file name
+	 * @throws IllegalArgumentException if mesh does not contain
+	 * {@link HalfEdge} instances or its adjacency relations are inconsistent
+	 */
+	public static void write(Mesh mesh, String file) throws IOException
+	{
+		Collection<Triangle> triangles = mesh.getTriangles();
+		int nrTriangles = triangles.size();
+		// Indices are shifted by 1, 0 means that an element is unknown
+		TObjectIntHashMap<Triangle> triIndex = new TObjectIntHashMap<Triangle>(nrTriangles);
+		for (Triangle t : triangles)
+			triIndex.put(t, triIndex.size() + 1);
+
+		// Vertices are numbered by following node list if there is one,
+		// then triangles and beams
+		TObjectIntHashMap<Vertex> vertexIndex = new TObjectIntHashMap<Vertex>(nrTriangles / 2 + 1);
+		ArrayList<Vertex> vertices = new ArrayList<Vertex>(nrTriangles / 2 + 1);
+		if (mesh.hasNodes())
+		{
+			for (Vertex v : mesh.getNodes())
+				addVertex(mesh, v, vertexIndex, vertices);
+		}
+		for (Triangle t : triangles)
+		{
+			for (int i = 0; i < 3; i++)
+				addVertex(mesh, t.vertex[i], vertexIndex, vertices);
+		}
+		List<Vertex> beams = mesh.getBeams();
+		for (Vertex v : beams)
+			addVertex(mesh, v, vertexIndex, vertices);
+		int nrVertices = vertices.size();
+		int dim = nrVertices > 0 ? vertices.get(0).getUV().length : 3;
+
+		// Triangles and half-edges
+		int [] triVertices = new int[3 * nrTriangles];
+		int [] triGroups = new int[nrTriangles];
+		byte [] triFlags = new byte[nrTriangles];
+		int [] sym = new int[3 * nrTriangles];
+		byte [] attributes = new byte[3 * nrTriangles];
+		TreeSet<Integer> groupIds = new TreeSet<Integer>();
+		int k = 0;
+		for (Triangle t : triangles)
+		{
+			if (!(t.getAbstractHalfEdge() instanceof HalfEdge))
+				throw new IllegalArgumentException("Snapshots require HalfEdge instances");
+			for (int i = 0; i < 3; i++)
+				triVertices[3*k+i] = t.vertex[i] == mesh.outerVertex ? -1 : vertexIndex.get(t.vertex[i]);
+			triGroups[k] = t.getGroupId();
+			groupIds.add(t.getGroupId());
+			triFlags[k] = (byte) ((t.isReadable() ? READABLE : 0) | (t.isWritable() ? WRITABLE : 0));
+			HalfEdge e = (HalfEdge) t.getAbstractHalfEdge();
+			for (int i = 0; i < 3; i++)
+			{
+				int l = e.getLocalNumber();
+				attributes[3*k+l] = (byte) e.getAttributes();
+				HalfEdge s = e.sym();
+				if (s == null)
+					sym[3*k+l] = -1;
+				else
+				{
+					int ts = triIndex.get(s.getTri()) - 1;
+					if (ts < 0 || s.sym() != e)
+						throw new IllegalArgumentException("Inconsistent adjacency relations: "+t);
+					sym[3*k+l] = 3 * ts + s.getLocalNumber();
+				}
+				e = e.next();
+			}
+			k++;
+		}
+
+		// Vertices
+		double [] coord = new double[dim * nrVertices];
+		int [] refs = new int[nrVertices];
+		int [] labels = new int[nrVertices];
+		byte [] vertexFlags = new byte[nrVertices];
+		int [] links = new int[nrVertices];
+		TIntArrayList fanOffsets = new TIntArrayList();
+		TIntArrayList fans = new TIntArrayList();
+		fanOffsets.add(0);
+		for (int i = 0; i < nrVertices; i++)
+		{
+			Vertex v = vertices.get(i);
+			System.arraycopy(v.getUV(), 0, coord, dim * i, dim);
+			refs[i] = v.getRef();
+			labels[i] = v.getLabel();
+			vertexFlags[i] = (byte) ((v.isReadable() ? READABLE : 0) |
+				(v.isWritable() ? WRITABLE : 0) | (v.isMutable() ? MUTABLE : 0));
+			Object link = v.getLink();
+			if (link == null)
+				links[i] = -1;
+			else if (link instanceof Triangle)
+				links[i] = linkIndex(triIndex, (Triangle) link, v);
+			else if (link instanceof Triangle[])
+			{
+				links[i] = -2 - (fanOffsets.size() - 1);
+				for (Triangle t : (Triangle[]) link)
+					fans.add(linkIndex(triIndex, t, v));
+				fanOffsets.add(fans.size());
+			}
+			else
+				throw new IllegalArgumentException("Unsupported vertex link: "+v);
+		}
+
+		// Beams
+		int nrBeams = beams.size() / 2;
+		int [] beamVertices = new int[2 * nrBeams];
+		int [] beamGroups = new int[nrBeams];
+		for (int i = 0; i < 2 * nrBeams; i++)
+			beamVertices[i] = vertexIndex.get(beams.get(i));
+		for (int i = 0; i < nrBeams; i++)
+		{
+			beamGroups[i] = mesh.getBeamGroup(i);
+			groupIds.add(beamGroups[i]);
+		}
+		ArrayList<Integer> namedGroups = new ArrayList<Integer>();
+		for (int id : groupIds)
+		{
+			if (mesh.getGroupName(id) != null)
+				namedGroups.add(id);
+		}
+
+		FileOutputStream fos = new FileOutputStream(file);
+		try
+		{
+			Output out = new Output(fos.getChannel());
+			out.writeInts(new int[] { MAGIC, VERSION,
+				mesh.hasPersistentReferences() ? PERSISTENT_REFERENCES : 0,
+				mesh.getMaxLabel(), dim, nrVertices, nrTriangles,
+				fanOffsets.size() - 1, fans.size(), nrBeams, namedGroups.size() });
+			out.writeDoubles(coord);
+			out.writeInts(refs);
+			out.writeInts(labels);
+			out.writeBytes(vertexFlags);
+			out.writeInts(links);
+			out.writeInts(fanOffsets.toNativeArray());
+			out.writeInts(fans.toNativeArray());
+			out.writeInts(triVertices);
+			out.writeInts(triGroups);
+			out.writeBytes(triFlags);
+			out.writeInts(sym);
+			out.writeBytes(attributes);
+			out.writeInts(beamVertices);
+			out.writeInts(beamGroups);
+			for (int id : namedGroups)
+			{
+				out.writeInts(new int[] { id });
+				out.writeBytes(mesh.getGroupName(id).getBytes("UTF-8"));
+			}
+			out.flush();
+		}
+		finally
+		{
+			fos.close();
+		}
+		logger.fine("Snapshot written: "+nrVertices+" vertices, "+nrTriangles+" triangles");
+	}
+
+	private static int linkIndex(TObjectIntHashMap<Triangle> triIndex, Triangle t, Vertex v)
+	{
+		int ret = triIndex.get(t) - 1;
+		if (ret < 0)
+			throw new IllegalArgumentException("Vertex is linked to a triangle which is not in mesh: "+v);
+		return ret;
+	}
+
+	private static void addVertex(Mesh mesh, Vertex v, TObjectIntHashMap<Vertex> vertexIndex,
+		ArrayList<Vertex> vertices)
+	{
+		if (v == mesh.outerVertex || vertexIndex.containsKey(v))
+			return;
+		vertexIndex.put(v, vertices.size());
+		vertices.add(v);
+	}
+
+	/**
+	 * Loads a snapshot file into an empty Mesh instance with as many threads
+	 * as there are available processors.
+	 *
+	 * @param mesh  empty mesh with {@link HalfEdge} instances
+	 * @param file  snapshot file name
+	 */
+	public static void read(Mesh mesh, String file) throws IOException
+	{
+		read(mesh, file, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Loads a snapshot file into an empty Mesh instance.
+	 *
+	 * @param mesh  empty mesh with {@link HalfEdge} instances
+	 * @param file  snapshot file name
+	 * @param nrThreads  number of threads
+	 */
+	public static void read(final Mesh mesh, String file, int nrThreads) throws IOException
+	{
+		if (!mesh.hasAdjacency())
+			throw new IllegalArgumentException("Snapshots require HalfEdge instances");
+		FileInputStream fis = new FileInputStream(file);
+		try
+		{
+			Input in = new Input(fis.getChannel());
+			int [] header = in.readInts(2);
+			if (header[0] != MAGIC)
+				throw new IOException(file+" is not a mesh snapshot");
+			if (header[1] != VERSION)
+				throw new IOException("Unsupported snapshot version: "+header[1]);
+			header = in.readInts(9);
+			int flags = header[0];
+			int maxLabel = header[1];
+			final int dim = header[2];
+			final int nrVertices = header[3];
+			final int nrTriangles = header[4];
+			int nrFans = header[5];
+			int fanSize = header[6];
+			int nrBeams = header[7];
+			int nrGroupNames = header[8];
+
+			final double [] coord = in.readDoubles(dim * nrVertices);
+			final int [] refs = in.readInts(nrVertices);
+			final int [] labels = in.readInts(nrVertices);
+			final byte [] vertexFlags = in.readBytes(nrVertices);
+			final int [] links = in.readInts(nrVertices);
+			final int [] fanOffsets = in.readInts(nrFans + 1);
+			final int [] fans = in.readInts(fanSize);
+			final int [] triVertices = in.readInts(3 * nrTriangles);
+			final int [] triGroups = in.readInts(nrTriangles);
+			final byte [] triFlags = in.readBytes(nrTriangles);
+			final int [] sym = in.readInts(3 * nrTriangles);
+			final byte [] attributes = in.readBytes(3 * nrTriangles);
+			int [] beamVertices = in.readInts(2 * nrBeams);
+			int [] beamGroups = in.readInts(nrBeams);
+			for (int i = 0; i < nrGroupNames; i++)
+			{
+				int id = in.readInts(1)[0];
+				mesh.setGroupName(id, new String(in.readBytes(), "UTF-8"));
+			}
+
+			final Vertex [] nodelist = new Vertex[nrVertices];
+			final Triangle [] facelist = new Triangle[nrTriangles];
+			ExecutorService pool = Executors.newFixedThreadPool(nrThreads);
+			try
+			{
+				List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+				for (int start = 0; start < nrVertices; start += CHUNK_SIZE)
+				{
+					final int first = start;
+					final int last = Math.min(nrVertices, start + CHUNK_SIZE);
+					tasks.add(new Callable<Object>()
+					{
+						public Object call()
+						{
+							double [] p = new double[dim];
+							for (int i = first; i < last; i++)
+							{
+								System.arraycopy(coord, dim * i, p, 0, dim);
+								Vertex v = mesh.createVertex(p);
+								v.setRef(refs[i]);
+								v.setLabel(labels[i]);
+								v.setReadable((vertexFlags[i] & READABLE) != 0);
+								v.setWritable((vertexFlags[i] & WRITABLE) != 0);
+								v.setMutable((vertexFlags[i] & MUTABLE) != 0);
+								nodelist[i] = v;
+							}
+							return null;
+						}
+					});
+				}
+				MeshReader.invokeAll(pool, tasks);
+
+				tasks.clear();
+				for (int start = 0; start < nrTriangles; start += CHUNK_SIZE)
+				{
+					final int first = start;
+					final int last = Math.min(nrTriangles, start + CHUNK_SIZE);
+					tasks.add(new Callable<Object>()
+					{
+						public Object call()
+						{
+							for (int i = first; i < last; i++)
+							{
+								Triangle t = mesh.createTriangle(vertex(mesh, nodelist, triVertices[3*i]),
+									vertex(mesh, nodelist, triVertices[3*i+1]),
+									vertex(mesh, nodelist, triVertices[3*i+2]));
+								t.setGroupId(triGroups[i]);
+								t.setReadable((triFlags[i] & READABLE) != 0);
+								t.setWritable((triFlags[i] & WRITABLE) != 0);
+								facelist[i] = t;
+							}
+							return null;
+						}
+					});
+				}
+				MeshReader.invokeAll(pool, tasks);
+
+				// Each pair of symmetric edges is glued by the task which
+				// owns the edge with the lowest index, so that fields are
+				// written by a single thread.
+				tasks.clear();
+				for (int start = 0; start < nrTriangles; start += CHUNK_SIZE)
+				{
+					final int first = start;
+					final int last = Math.min(nrTriangles, start + CHUNK_SIZE);
+					tasks.add(new Callable<Object>()
+					{
+						public Object call()
+						{
+							for (int i = first; i < last; i++)
+							{
+								for (int l = 0; l < 3; l++)
+								{
+									int e = 3 * i + l;
+									HalfEdge he = edge(facelist[i], l);
+									if (attributes[e] != 0)
+										he.setAttributes(attributes[e] & 0xff);
+									int s = sym[e];
+									if (s > e)
+										he.glue(edge(facelist[s / 3], s % 3));
+								}
+							}
+							return null;
+						}
+					});
+				}
+				for (int start = 0; start < nrVertices; start += CHUNK_SIZE)
+				{
+					final int first = start;
+					final int last = Math.min(nrVertices, start + CHUNK_SIZE);
+					tasks.add(new Callable<Object>()
+					{
+						public Object call()
+						{
+							for (int i = first; i < last; i++)
+							{
+								int link = links[i];
+								if (link >= 0)
+									nodelist[i].setLink(facelist[link]);
+								else if (link <= -2)
+								{
+									int f = -2 - link;
+									Triangle [] list = new Triangle[fanOffsets[f+1] - fanOffsets[f]];
+									for (int j = 0; j < list.length; j++)
+										list[j] = facelist[fans[fanOffsets[f] + j]];
+									nodelist[i].setLink(list);
+								}
+							}
+							return null;
+						}
+					});
+				}
+				MeshReader.invokeAll(pool, tasks);
+			}
+			finally
+			{
+				pool.shutdown();
+			}
+
+			if (mesh.hasNodes())
+			{
+				for (Vertex v : nodelist)
+					mesh.add(v);
+			}
+			mesh.ensureCapacity(nrTriangles);
+			for (Triangle t : facelist)
+				mesh.add(t);
+			for (int i = 0; i < nrBeams; i++)
+			{
+				mesh.addBeam(nodelist[beamVertices[2*i]], nodelist[beamVertices[2*i+1]], beamGroups[i]);
+				// addBeam sets this flag
+				nodelist[beamVertices[2*i]].setMutable((vertexFlags[beamVertices[2*i]] & MUTABLE) != 0);
+				nodelist[beamVertices[2*i+1]].setMutable((vertexFlags[beamVertices[2*i+1]] & MUTABLE) != 0);
+			}
+			mesh.setPersistentReferences((flags & PERSISTENT_REFERENCES) != 0);
+			mesh.setMaxLabel(maxLabel);
+		}
+		finally
+		{
+			fis.close();
+		}
+	}
+
+	private static Vertex vertex(Mesh mesh, Vertex [] nodelist, int index)
+	{
+		return index < 0 ? mesh.outerVertex : nodelist[index];
+	}
+
+	private static HalfEdge edge(Triangle t, int l)
+	{
+		HalfEdge e = (HalfEdge) t.getAbstractHalfEdge();
+		if (l == 1)
+			return e.next();
+		if (l == 2)
+			return e.prev();
+		return e;
+	}
+
+	/**
+	 * Writes arrays of primitive values, each array starts at a multiple
+	 * of 8 bytes.
+	 */
+	private static final class Output
+	{
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+		// Number of bytes written into channel
+		private long written;
+
+		Output(FileChannel channel)
+		{
+			this.channel = channel;
+		}
+
+		void flush() throws IOException
+		{
+			buffer.flip();
+			while (buffer.hasRemaining())
+				written += channel.write(buffer);
+			buffer.clear();
+		}
+
+		private void pad() throws IOException
+		{
+			if (buffer.remaining() < 8)
+				flush();
+			while ((written + buffer.position()) % 8 != 0)
+				buffer.put((byte) 0);
+		}
+
+		void writeInts(int [] array) throws IOException
+		{
+			for (int offset = 0; offset < array.length; )
+			{
+				if (buffer.remaining() < 8)
+					flush();
+				int n = Math.min(array.length - offset, buffer.remaining() / 4);
+				buffer.asIntBuffer().put(array, offset, n);
+				buffer.position(buffer.position() + 4 * n);
+				offset += n;
+			}
+			pad();
+		}
+
+		void writeDoubles(double [] array) throws IOException
+		{
+			for (int offset = 0; offset < array.length; )
+			{
+				if (buffer.remaining() < 8)
+					flush();
+				int n = Math.min(array.length - offset, buffer.remaining() / 8);
+				buffer.asDoubleBuffer().put(array, offset, n);
+				buffer.position(buffer.position() + 8 * n);
+				offset += n;
+			}
+		}
+
+		/**
+		 * Writes array length followed by array values.
+		 */
+		void writeBytes(byte [] array) throws IOException
+		{
+			if (buffer.remaining() < 8)
+				flush();
+			buffer.putInt(array.length);
+			for (int offset = 0; offset < array.length; )
+			{
+				if (!buffer.hasRemaining())
+					flush();
+				int n = Math.min(array.length - offset, buffer.remaining());
+				buffer.put(array, offset, n);
+				offset += n;
+			}
+			pad();
+		}
+	}
+
+	/**
+	 * Reads arrays written by {@link Output} from a memory mapped window,
+	 * which is moved forward when needed.
+	 */
+	private static final class Input
+	{
+		private final FileChannel channel;
+		private MappedByteBuffer window;
+		private long windowStart;
+		private long position;
+
+		Input(FileChannel channel)
+		{
+			this.channel = channel;
+		}
+
+		/**
+		 * Returns a buffer containing at most <code>size</code> bytes
+		 * starting at current position, its length is a multiple of
+		 * <code>unit</code>.
+		 */
+		private ByteBuffer next(long size, int unit) throws IOException
+		{
+			long windowEnd = window == null ? 0L : windowStart + window.capacity();
+			if (position + unit > windowEnd)
+			{
+				long length = Math.min(WINDOW_SIZE, channel.size() - position);
+				if (length < unit)
+					throw new EOFException();
+				window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+				windowStart = position;
+				windowEnd = position + length;
+			}
+			int length = (int) Math.min(size, (windowEnd - position) / unit * unit);
+			ByteBuffer ret = window.duplicate();
+			ret.position((int) (position - windowStart));
+			ret.limit(ret.position() + length);
+			position += length;
+			return ret;
+		}
+
+		private void pad()
+		{
+			position = (position + 7) & ~7L;
+		}
+
+		int [] readInts(int n) throws IOException
+		{
+			int [] ret = new int[n];
+			for (int offset = 0; offset < n; )
+			{
+				ByteBuffer b = next(4L * (n - offset), 4);
+				int len = b.remaining() / 4;
+				b.asIntBuffer().get(ret, offset, len);
+				offset += len;
+			}
+			pad();
+			return ret;
+		}
+
+		double [] readDoubles(int n) throws IOException
+		{
+			double [] ret = new double[n];
+			for (int offset = 0; offset < n; )
+			{
+				ByteBuffer b = next(8L * (n - offset), 8);
+				int len = b.remaining() / 8;
+				b.asDoubleBuffer().get(ret, offset, len);
+				offset += len;
+			}
+			return ret;
+		}
+
+		/**
+		 * Reads array length followed by array values.
+		 */
+		byte [] readBytes() throws IOException
+		{
+			int n = next(4, 4).getInt();
+			byte [] ret = new byte[n];
+			for (int offset = 0; offset < n; )
+			{
+				ByteBuffer b = next(n - offset, 1);
+				int len = b.remaining();
+				b.get(ret, offset, len);
+				offset += len;
+			}
+			pad();
+			return ret;
+		}
+
+		byte [] readBytes(int n) throws IOException
+		{
+			byte [] ret = readBytes();
+			if (ret.length != n)
+				throw new IOException("Corrupted snapshot file");
+			return ret;
+		}
+	}
+}
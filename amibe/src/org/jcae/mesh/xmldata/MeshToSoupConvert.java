@@ -25,9 +25,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.DoubleBuffer;
-import java.nio.IntBuffer;
 import java.nio.channels.FileChannel;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
@@ -49,21 +48,22 @@ import java.util.logging.Logger;
 public class MeshToSoupConvert implements FilterInterface, JCAEXMLData
 {
 	private static final Logger logger=Logger.getLogger(MeshToSoupConvert.class.getName());
-	private int nrTriangles = 0;
 	private int nrIntNodes = 0;
 	private int nrNodes = 0;
 	private int nrRefs = 0;
 	private final String xmlDir;
 	private final String soupFile;
 	private File rawFile;
+	//  3D coordinates of face nodes, see processOneShape
+	private File nodesFile;
+	private SoupWriter soup;
 	private TIntIntHashMap xrefs;
 	private final TIntObjectHashMap<CADFace> mapFaces = new TIntObjectHashMap<CADFace>();
 	private double [] coordRefs;
-	// Must be a multiple of 8*2, 4*3 and 8*10
-	private static final int bufferSize = 15 << 12;
-	private final ByteBuffer bb = ByteBuffer.allocate(bufferSize);
-	private final IntBuffer bbI = bb.asIntBuffer();
-	private final DoubleBuffer bbD = bb.asDoubleBuffer();
+	//  Number of nodes or triangles read at once
+	private static final int BLOCK_SIZE = 1 << 14;
+	//  Coordinates and reference index of face nodes
+	private static final int NODE_SIZE = 32;
 	
 	/** 
 	 * @param args mesh directory, brep path
@@ -186,13 +186,32 @@ public class MeshToSoupConvert implements FilterInterface, JCAEXMLData
 		xrefs = new TIntIntHashMap(nrRefs);
 
 		rawFile = new File(xmlDir, soupFile);
-		rawFile.delete();
+		nodesFile = new File(xmlDir, soupFile+".nodes");
+		try
+		{
+			soup = new SoupWriter(rawFile, false);
+		}
+		catch(IOException ex)
+		{
+			ex.printStackTrace();
+			throw new RuntimeException(ex);
+		}
 	}
 	
 	public final void afterProcessingAllShapes()
 	{
+		try
+		{
+			soup.close();
+		}
+		catch(IOException ex)
+		{
+			ex.printStackTrace();
+			throw new RuntimeException(ex);
+		}
+		nodesFile.delete();
 		logger.info("Total number of nodes: "+(nrNodes+nrIntNodes));
-		logger.info("Total number of triangles: "+nrTriangles);
+		logger.info("Total number of triangles: "+soup.getNumberOfTriangles());
 	}
 	
 	public final void processOneShape(int groupId, String groupName, int iFace)
@@ -226,164 +245,155 @@ public class MeshToSoupConvert implements FilterInterface, JCAEXMLData
 				submeshElement, XPathConstants.NODE);
 			
 			String refFile = xpath.evaluate("references/file/@location", submeshNodes);
-			FileChannel fcR = new FileInputStream(xmlDir+File.separator+refFile).getChannel();
 			int numberOfReferences = Integer.parseInt(
 				xpath.evaluate("references/number/text()", submeshNodes));
-			int [] refs = new int[numberOfReferences];
-			logger.fine("Reading "+numberOfReferences+" references");
-			bb.clear();
-			bbI.clear();
-			int remaining = numberOfReferences;
-			int index = 0;
-			int nf = bufferSize / 12;
-			for (int nblock = (remaining * 12) / bufferSize; nblock >= 0; --nblock)
+			int numberOfNodes = Integer.parseInt(xpath.evaluate(
+				"number/text()", submeshNodes));
+			String nodesFile2d = xpath.evaluate("file/@location", submeshNodes);
+			int numberOfFaces = Integer.parseInt(xpath.evaluate(
+				"number/text()", submeshFaces));
+			String trianglesFile = xpath.evaluate("file/@location",
+				submeshFaces);
+			if (numberOfNodes == 0 || numberOfFaces == 0)
+				return;
+
+			//  Nodes are processed by blocks, their 3D coordinates are
+			//  written into a temporary file which is then mapped to
+			//  read triangles, so that memory usage does not depend on
+			//  face size.
+			logger.fine("Reading "+numberOfNodes+" nodes and "+numberOfReferences+" references");
+			PrimitiveFileReaderFactory pfrf = new PrimitiveFileReaderFactory();
+			DoubleFileReader dfrN = pfrf.getDoubleReader(new File(xmlDir, nodesFile2d));
+			IntFileReader ifrR = numberOfReferences == 0 ? null : pfrf.getIntReader(new File(xmlDir, refFile));
+			FileChannel fcN = new FileOutputStream(nodesFile).getChannel();
+			try
 			{
-				if (remaining <= 0)
-					break;
-				else if (remaining < nf)
-					nf = remaining;
-				remaining -= nf;
-				bb.rewind();
-				fcR.read(bb);
-				bbI.rewind();
-				for(int nr = 0; nr < nf; nr ++)
-				{
-					refs[index] = bbI.get();
-					index++;
-				}
+				writeNodes(surface, dfrN, ifrR, numberOfNodes, numberOfNodes - numberOfReferences, fcN);
+			}
+			finally
+			{
+				fcN.close();
+				if (ifrR != null)
+					ifrR.close();
+				dfrN.close();
 			}
-			assert index == numberOfReferences;
 
-			int numberOfNodes = Integer.parseInt(xpath.evaluate(
-				"number/text()", submeshNodes));
+			logger.fine("Reading " + numberOfFaces + " faces");
+			fcN = new FileInputStream(nodesFile).getChannel();
+			MappedRecords nodes = new MappedRecords(fcN, NODE_SIZE);
+			IntFileReader ifrT = pfrf.getIntReader(new File(xmlDir, trianglesFile));
+			try
+			{
+				writeTriangles(nodes, ifrT, numberOfFaces, F.isOrientationForward(), iFace);
+			}
+			finally
+			{
+				ifrT.close();
+				nodes.close();
+				fcN.close();
+			}
+			logger.fine("End reading");
+		}
+		catch(Exception ex)
+		{
+			ex.printStackTrace();
+			throw new RuntimeException(ex);
+		}
+	}
 
-			logger.fine("Reading " + numberOfNodes + " nodes");
-			String nodesFile = xpath.evaluate("file/@location", submeshNodes);
-			FileChannel fcN = new FileInputStream(xmlDir+File.separator+nodesFile).getChannel();
-			double [] coord = new double[3*numberOfNodes];
-			bb.clear();
-			bbD.clear();
-			index = 0;
-			remaining = numberOfNodes;
-			nf = bufferSize / 16;
-			for (int nblock = (remaining * 16) / bufferSize; nblock >= 0; --nblock)
+	/**
+	 * Computes 3D coordinates of face nodes and writes them into
+	 * <code>out</code>.  Each record contains coordinates and the index
+	 * of this node in {@link #coordRefs}, or -1 for interior nodes.
+	 * Boundary nodes are evaluated only once, so that all faces share
+	 * the same coordinates.
+	 */
+	private void writeNodes(CADGeomSurface surface, DoubleFileReader dfrN,
+		IntFileReader ifrR, int numberOfNodes, int numberOfInterior,
+		FileChannel out) throws IOException
+	{
+		ByteBuffer bbo = ByteBuffer.allocateDirect(NODE_SIZE * BLOCK_SIZE);
+		double [] uv = new double[2 * BLOCK_SIZE];
+		for (int index = 0; index < numberOfNodes; )
+		{
+			int nf = Math.min(BLOCK_SIZE, numberOfNodes - index);
+			if (dfrN.get(uv, 0, 2 * nf) != 2 * nf)
+				throw new IOException("Unexpected end of nodes file");
+			bbo.clear();
+			for (int nr = 0; nr < nf; nr++, index++)
 			{
-				if (remaining <= 0)
-					break;
-				else if (remaining < nf)
-					nf = remaining;
-				remaining -= nf;
-				bb.rewind();
-				fcN.read(bb);
-				bbD.rewind();
-				for(int nr = 0; nr < nf; nr ++)
+				double u = uv[2*nr];
+				double v = uv[2*nr+1];
+				if (index < numberOfInterior)
+				{
+					double [] p3 = surface.value(u, v);
+					bbo.putDouble(p3[0]).putDouble(p3[1]).putDouble(p3[2]);
+					bbo.putInt(-1).putInt(0);
+				}
+				else
 				{
-					double u = bbD.get();
-					double v = bbD.get();
-					if (index < numberOfNodes - numberOfReferences)
+					//  References are stored in the same order as boundary nodes
+					int ref = ifrR.get();
+					if (!xrefs.contains(ref))
 					{
 						double [] p3 = surface.value(u, v);
-						System.arraycopy(p3, 0, coord, 3 * index, 3);
+						xrefs.put(ref, nrNodes);
+						System.arraycopy(p3, 0, coordRefs, 3 * nrNodes, 3);
+						nrNodes++;
 					}
-					else
-					{
-						int ref = refs[index - numberOfNodes + numberOfReferences];
-						if (!xrefs.contains(ref))
-						{
-							double [] p3 = surface.value(u, v);
-							xrefs.put(ref, nrNodes);
-							System.arraycopy(p3, 0, coordRefs, 3 * nrNodes, 3);
-							nrNodes++;
-						}
-						ref = xrefs.get(ref);
-						System.arraycopy(coordRefs, 3 * ref, coord, 3 * index, 3);
-					}
-					index++;
+					ref = xrefs.get(ref);
+					bbo.putDouble(coordRefs[3*ref]).putDouble(coordRefs[3*ref+1]).putDouble(coordRefs[3*ref+2]);
+					bbo.putInt(ref).putInt(0);
 				}
 			}
-			assert index == numberOfNodes;
-			fcN.close();
-			
-			int numberOfFaces = Integer.parseInt(xpath.evaluate(
-				"number/text()", submeshFaces));
-			logger.fine("Reading " + numberOfFaces + " faces");
-			String trianglesFile = xpath.evaluate("file/@location",
-				submeshFaces);
-			FileChannel fcT = new FileInputStream(xmlDir+File.separator+trianglesFile).getChannel();
-			bb.clear();
-			bbI.clear();
-			FileChannel fcO = new FileOutputStream(rawFile, true).getChannel();
-			ByteBuffer bbo = ByteBuffer.allocate(bufferSize * 80 / 12);
-			DoubleBuffer bboD = bbo.asDoubleBuffer();
-			int ind [] = new int[3];
-			int indRef [] = new int[3];
-			double [] c = new double[9];
-			remaining = numberOfFaces;
-			nf = bufferSize / 12;
-			for (int nblock = (remaining * 12) / bufferSize; nblock >= 0; --nblock)
+			bbo.flip();
+			while (bbo.hasRemaining())
+				out.write(bbo);
+		}
+	}
+
+	/**
+	 * Reads triangles by blocks and appends them to the soup.
+	 */
+	private void writeTriangles(MappedRecords nodes, IntFileReader ifrT,
+		int numberOfFaces, boolean forward, int iFace) throws IOException
+	{
+		int [] ind = new int[3 * BLOCK_SIZE];
+		int [] indRef = new int[3];
+		double [] c = new double[9];
+		for (int remaining = numberOfFaces; remaining > 0; )
+		{
+			int nf = Math.min(BLOCK_SIZE, remaining);
+			if (ifrT.get(ind, 0, 3 * nf) != 3 * nf)
+				throw new IOException("Unexpected end of triangles file");
+			remaining -= nf;
+			for (int i = 0; i < 3 * nf; i += 3)
 			{
-				if (remaining <= 0)
-					break;
-				else if (remaining < nf)
-					nf = remaining;
-				remaining -= nf;
-				bb.clear();
-				fcT.read(bb);
-				bbI.rewind();
-				bbo.clear();
-				bboD.rewind();
-				for(int nr = 0; nr < nf; nr ++)
+				if (ind[i] < 0 || ind[i+1] < 0 || ind[i+2] < 0)
 				{
-					bbI.get(ind);
-					if (ind[0] < 0 || ind[1] < 0 || ind[2] < 0)
-					{
-						// Outer triangle
-						continue;
-					}
-					for (int j = 0; j < 3; j++)
-					{
-						if (ind[j] < numberOfNodes - numberOfReferences)
-							indRef[j] = - j - 1;
-						else
-							indRef[j] = xrefs.get(refs[ind[j] - numberOfNodes + numberOfReferences]);
-					}
-					if (indRef[0] == indRef[1] || indRef[1] == indRef[2] || indRef[2] == indRef[0])
-					{
-						// Triangle bound from a degenerated edge
-						continue;
-					}
-					nrTriangles++;
-					for (int j = 0; j < 3; j++)
-						System.arraycopy(coord, 3 * ind[j], c, 3 * j, 3);
-					if (F.isOrientationForward())
-					{
-						for (int j = 0; j < 3; j++)
-							for (int k = 0; k < 3; k++)
-								bboD.put(c[3*j+k]);
-					}
-					else
-					{
-						for (int j = 2; j >= 0; j--)
-							for (int k = 0; k < 3; k++)
-								bboD.put(c[3*j+k]);
-					}
-					//  Align on 64bit
-					bbo.position(8*bboD.position());
-					bbo.putInt(iFace);
-					bbo.putInt(0);
-					bboD.position(1+bboD.position());
+					// Outer triangle
+					continue;
 				}
-				bbo.flip();
-				fcO.write(bbo);
+				for (int j = 0; j < 3; j++)
+				{
+					ByteBuffer bb = nodes.buffer(ind[i+j]);
+					int offset = nodes.offset(ind[i+j]);
+					for (int k = 0; k < 3; k++)
+						c[3*j+k] = bb.getDouble(offset + 8 * k);
+					indRef[j] = bb.getInt(offset + 24);
+					if (indRef[j] < 0)
+						indRef[j] = - j - 1;
+				}
+				if (indRef[0] == indRef[1] || indRef[1] == indRef[2] || indRef[2] == indRef[0])
+				{
+					// Triangle bound from a degenerated edge
+					continue;
+				}
+				if (forward)
+					soup.add(c, 0, 3, 6, iFace);
+				else
+					soup.add(c, 6, 3, 0, iFace);
 			}
-			fcT.close();
-			fcO.close();
-			logger.fine("End reading");
-		}
-		catch(Exception ex)
-		{
-			ex.printStackTrace();
-			throw new RuntimeException(ex);
 		}
 	}
 }
@@ -28,30 +28,43 @@ import org.jcae.mesh.amibe.ds.Triangle;
 import org.jcae.mesh.amibe.ds.Vertex;
 import gnu.trove.TObjectIntHashMap;
 import gnu.trove.TIntArrayList;
+import gnu.trove.TIntIntHashMap;
 import gnu.trove.TIntHashSet;
 import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
 import java.util.Collection;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.HashMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 
 public class MeshWriter
 {
 	private static final Logger logger=Logger.getLogger(MeshWriter.class.getName());
+	// Number of nodes or triangles copied by a task of the parallel writer
+	private static final int CHUNK_SIZE = 65536;
 
 	/**
-	 * Used by {@link #writeObject(org.jcae.mesh.amibe.patch.Mesh2D, String, String, int)}
+	 * Sorts nodes in the order they are written: interior nodes first, then
+	 * boundary nodes and finally duplicate nodes.
+	 *
+	 * @param nodelist  nodes
+	 * @param outer  outer vertex, it is not written but gets the last index
+	 * @param nodeIndex  map updated with node indices
+	 * @param ordered  list updated with nodes to write
+	 * @return the number of interior nodes
 	 */
-	private static void writeObjectNodes(Collection<Vertex> nodelist,
-		Vertex outer, AmibeWriter out, TObjectIntHashMap<Vertex> nodeIndex)
-		throws IOException
+	private static int orderNodes(Collection<Vertex> nodelist, Vertex outer,
+		TObjectIntHashMap<Vertex> nodeIndex, List<Vertex> ordered)
 	{
-		//  Write interior nodes first
+		//  Interior nodes first
 		int nref = 0;
-		int i = 0;
 		for(Vertex v: nodelist)
 		{
 			if (v == outer)
@@ -59,14 +72,14 @@ public class MeshWriter
 			int ref1d = v.getRef();
 			if (0 == ref1d)
 			{
-				out.addNode(v.getUV());
-				nodeIndex.put(v, i);
-				i++;
+				nodeIndex.put(v, ordered.size());
+				ordered.add(v);
 			}
 			else
 				nref++;
 		}
-		//  Write boundary nodes and 1D references
+		int ret = ordered.size();
+		//  Boundary nodes
 		if (nref > 0)
 		{
 			//  Duplicate nodes, which are endpoints of 2D degenerated edges,
@@ -74,7 +87,6 @@ public class MeshWriter
 			//  do not have to be modified during 2D->3D conversion.
 			ArrayList<Vertex> duplicate3DNodes = new ArrayList<Vertex>();
 			TIntHashSet refs = new TIntHashSet(nref);
-			nref = 0;
 			for(Vertex v: nodelist)
 			{
 				if (v == outer)
@@ -85,27 +97,41 @@ public class MeshWriter
 				if (!refs.contains(ref1d))
 				{
 					refs.add(ref1d);
-					out.addNode(v.getUV());
-					out.addNodeRef(Math.abs(ref1d));
-					nodeIndex.put(v, i);
-					i++;
-					nref++;
+					nodeIndex.put(v, ordered.size());
+					ordered.add(v);
 				}
 				else
 					duplicate3DNodes.add(v);
 			}
 			for (Vertex v: duplicate3DNodes)
 			{
-				out.addNode(v.getUV());
-				out.addNodeRef(Math.abs(v.getRef()));
-				nodeIndex.put(v, i);
-				i++;
-				nref++;
+				nodeIndex.put(v, ordered.size());
+				ordered.add(v);
 			}
 		}
 		// Eventually add outer vertex.  It is not written onto disk, but its
 		// index may be used by outer triangles.
-		nodeIndex.put(outer, i);
+		nodeIndex.put(outer, ordered.size());
+		return ret;
+	}
+
+	/**
+	 * Used by {@link #writeObject(org.jcae.mesh.amibe.patch.Mesh2D, String, String, int)}
+	 */
+	private static void writeObjectNodes(Collection<Vertex> nodelist,
+		Vertex outer, AmibeWriter out, TObjectIntHashMap<Vertex> nodeIndex)
+		throws IOException
+	{
+		ArrayList<Vertex> ordered = new ArrayList<Vertex>(nodelist.size());
+		int nInterior = orderNodes(nodelist, outer, nodeIndex, ordered);
+		for (int i = 0, n = ordered.size(); i < n; i++)
+		{
+			Vertex v = ordered.get(i);
+			out.addNode(v.getUV());
+			//  Write 1D references of boundary nodes
+			if (i >= nInterior)
+				out.addNodeRef(Math.abs(v.getRef()));
+		}
 	}
 	
 	/**
@@ -230,21 +256,12 @@ public class MeshWriter
 		aw.finish();
 	}
 	
-	/**
-	 * Write the current object to an Amibe 3D XML file and binary files.
-	 *
-	 * @param submesh      mesh to be written on disk
-	 * @param xmlDir       name of the XML file
-	 * @param brepFile     basename of the brep file
-	 */
-	public static void writeObject3D(Mesh submesh, String xmlDir, String brepFile)
-		throws IOException
+	private static Collection<Vertex> getNodes3D(Mesh submesh)
 	{
-		logger.info("Write mesh into "+xmlDir+java.io.File.separator+JCAEXMLData.xml3dFilename);
-		Collection<Triangle> trianglelist = submesh.getTriangles();
 		Collection<Vertex> nodelist = submesh.getNodes();
 		if (nodelist == null)
 		{
+			Collection<Triangle> trianglelist = submesh.getTriangles();
 			nodelist = new LinkedHashSet<Vertex>(trianglelist.size() / 2);
 			for (Triangle t: trianglelist)
 			{
@@ -258,6 +275,29 @@ public class MeshWriter
 			}
 			nodelist.addAll(submesh.getBeams());
 		}
+		return nodelist;
+	}
+
+	/**
+	 * Write the current object to an Amibe 3D XML file and binary files.
+	 * If <code>xmlDir</code> ends with {@link MeshSnapshot#SUFFIX}, mesh is
+	 * written by {@link MeshSnapshot} and <code>brepFile</code> is ignored.
+	 *
+	 * @param submesh      mesh to be written on disk
+	 * @param xmlDir       name of the XML file
+	 * @param brepFile     basename of the brep file
+	 */
+	public static void writeObject3D(Mesh submesh, String xmlDir, String brepFile)
+		throws IOException
+	{
+		if (xmlDir.endsWith(MeshSnapshot.SUFFIX))
+		{
+			MeshSnapshot.write(submesh, xmlDir);
+			return;
+		}
+		logger.info("Write mesh into "+xmlDir+java.io.File.separator+JCAEXMLData.xml3dFilename);
+		Collection<Triangle> trianglelist = submesh.getTriangles();
+		Collection<Vertex> nodelist = getNodes3D(submesh);
 		TObjectIntHashMap<Vertex> nodeIndex=new TObjectIntHashMap<Vertex>(nodelist.size());
 		AmibeWriter.Dim3 aw = new AmibeWriter.Dim3(xmlDir, false,
 			submesh.hasPersistentReferences());
@@ -274,5 +314,185 @@ public class MeshWriter
 				nodeIndex.get(beams.get(i+1)));
 		aw.finish();
 	}
-}
 
+	/**
+	 * Write the current object to an Amibe 3D XML file and binary files
+	 * with several threads.  Nodes, triangles and groups files are
+	 * pre-sized, and regions mapped into memory are filled by concurrent
+	 * tasks.  XML file is written last.  Files are identical to those
+	 * written by {@link #writeObject3D(Mesh, String, String)}, snapshots are
+	 * also written when <code>xmlDir</code> ends with
+	 * {@link MeshSnapshot#SUFFIX}.
+	 *
+	 * @param submesh      mesh to be written on disk
+	 * @param xmlDir       name of the XML file
+	 * @param brepFile     basename of the brep file
+	 * @param nrThreads    number of threads
+	 */
+	public static void writeObject3D(Mesh submesh, String xmlDir, String brepFile, int nrThreads)
+		throws IOException
+	{
+		if (xmlDir.endsWith(MeshSnapshot.SUFFIX))
+		{
+			MeshSnapshot.write(submesh, xmlDir);
+			return;
+		}
+		logger.info("Write mesh into "+xmlDir+java.io.File.separator+JCAEXMLData.xml3dFilename);
+		Collection<Vertex> nodelist = getNodes3D(submesh);
+		final TObjectIntHashMap<Vertex> nodeIndex=new TObjectIntHashMap<Vertex>(nodelist.size());
+		ArrayList<Vertex> ordered = new ArrayList<Vertex>(nodelist.size());
+		int nInterior = orderNodes(nodelist, submesh.outerVertex, nodeIndex, ordered);
+		final Vertex[] nodes = ordered.toArray(new Vertex[ordered.size()]);
+		ordered = null;
+		//  Inner triangles first, then outer triangles
+		Collection<Triangle> trianglelist = submesh.getTriangles();
+		final Triangle[] triangles = new Triangle[trianglelist.size()];
+		int nrInner = 0;
+		for(Triangle f: trianglelist)
+		{
+			if (f.isWritable())
+				triangles[nrInner++] = f;
+		}
+		final int nrWritable = nrInner;
+		for(Triangle f: trianglelist)
+		{
+			if (!f.isWritable())
+				triangles[nrInner++] = f;
+		}
+
+		AmibeWriter.Dim3 aw = new AmibeWriter.Dim3(xmlDir, false,
+			submesh.hasPersistentReferences());
+		if (brepFile != null)
+			aw.setShape(brepFile);
+		ExecutorService pool = Executors.newFixedThreadPool(nrThreads);
+		try
+		{
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for (int start = 0; start < nodes.length; start += CHUNK_SIZE)
+			{
+				final int first = start;
+				final int last = Math.min(nodes.length, start + CHUNK_SIZE);
+				final DoubleBuffer buffer = aw.mapNodes(last - first);
+				tasks.add(new Callable<Object>()
+				{
+					public Object call()
+					{
+						int k = 0;
+						for (int i = first; i < last; i++)
+						{
+							double [] xyz = nodes[i].getUV();
+							buffer.put(k++, xyz[0]);
+							buffer.put(k++, xyz[1]);
+							buffer.put(k++, xyz[2]);
+						}
+						return null;
+					}
+				});
+			}
+			for (int i = nInterior; i < nodes.length; i++)
+				aw.addNodeRef(Math.abs(nodes[i].getRef()));
+
+			for (int start = 0; start < triangles.length; start += CHUNK_SIZE)
+			{
+				final int first = start;
+				final int last = Math.min(triangles.length, start + CHUNK_SIZE);
+				final IntBuffer buffer = aw.mapTriangles(last - first);
+				tasks.add(new Callable<Object>()
+				{
+					public Object call()
+					{
+						int k = 0;
+						for (int i = first; i < last; i++)
+						{
+							//  Indices of outer triangles are negative
+							int sign = i < nrWritable ? 1 : -1;
+							for (Vertex v : triangles[i].vertex)
+								buffer.put(k++, sign * nodeIndex.get(v));
+						}
+						return null;
+					}
+				});
+			}
+			mapObjectGroups(submesh, triangles, nrWritable, aw, tasks);
+			MeshReader.invokeAll(pool, tasks);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		List<Vertex> beams = submesh.getBeams();
+		for(int i = 0; i<beams.size(); i+=2)
+			aw.addBeam(
+				nodeIndex.get(beams.get(i)),
+				nodeIndex.get(beams.get(i+1)));
+		aw.finish();
+	}
+
+	/**
+	 * Same as {@link #writeObjectGroups}, but triangle indices are sorted
+	 * by group with a counting sort and copied by concurrent tasks.
+	 */
+	private static void mapObjectGroups(Mesh mesh, Triangle[] triangles,
+		int nrWritable, AmibeWriter aw, List<Callable<Object>> tasks)
+		throws IOException
+	{
+		HashMap<Integer, TIntArrayList> bgroupMap = new HashMap<Integer, TIntArrayList>();
+		List<Vertex> beams = mesh.getBeams();
+		for(int i = 0 ; i < beams.size(); i+=2)
+		{
+			int id = mesh.getBeamGroup(i/2);
+			TIntArrayList list = bgroupMap.get(id);
+			if (list == null)
+			{
+				list = new TIntArrayList(100);
+				bgroupMap.put(id, list);
+			}
+			list.add(i/2);
+		}
+
+		// Sort group ids
+		TreeSet<Integer> sortedKeys = new TreeSet<Integer>();
+		for (int i = 0; i < nrWritable; i++)
+			sortedKeys.add(triangles[i].getGroupId());
+		sortedKeys.addAll(bgroupMap.keySet());
+		TIntIntHashMap rank = new TIntIntHashMap(sortedKeys.size());
+		for (int id: sortedKeys)
+			rank.put(id, rank.size());
+
+		// Counting sort of triangles by group
+		final int [] offsets = new int[sortedKeys.size() + 1];
+		for (int i = 0; i < nrWritable; i++)
+			offsets[rank.get(triangles[i].getGroupId()) + 1]++;
+		for (int i = 1; i < offsets.length; i++)
+			offsets[i] += offsets[i-1];
+		final int [] sorted = new int[nrWritable];
+		int [] position = new int[sortedKeys.size()];
+		System.arraycopy(offsets, 0, position, 0, position.length);
+		for (int i = 0; i < nrWritable; i++)
+			sorted[position[rank.get(triangles[i].getGroupId())]++] = i;
+
+		for (int id: sortedKeys)
+		{
+			String name = mesh.getGroupName(id);
+			aw.nextGroup(name == null ? Integer.toString(id) : name);
+			final int r = rank.get(id);
+			if (offsets[r+1] > offsets[r])
+			{
+				final IntBuffer buffer = aw.mapTriaToGroup(offsets[r+1] - offsets[r]);
+				tasks.add(new Callable<Object>()
+				{
+					public Object call()
+					{
+						buffer.put(sorted, offsets[r], offsets[r+1] - offsets[r]);
+						return null;
+					}
+				});
+			}
+
+			TIntArrayList list = bgroupMap.get(id);
+			if(list != null)
+				for(int i = 0, n = list.size(); i < n; i++)
+					aw.addBeamToGroup(list.get(i));
+		}
+	}
+}
@@ -0,0 +1,435 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+
+package org.jcae.mesh.xmldata;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Growable array of bytes into which records are formatted.  Text
+ * methods produce the same output as <code>PrintStream</code> and
+ * {@link MeshExporter.FormatD25_16}, binary methods the same as
+ * <code>DataOutputStream</code>, but no intermediate string is created.
+ * Doubles are converted with the Schubfach algorithm, which computes the
+ * shortest decimal that rounds to the same double, as
+ * {@link Double#toString(double)} does.
+ */
+final class OutputBuffer
+{
+	private static final byte [] CR = System.getProperty("line.separator").getBytes();
+	private static final int K_MIN = -324;
+	private static final int K_MAX = 292;
+	private static final int Q_MIN = -1074;
+	private static final long C_MIN = 1L << 52;
+	private static final long C_TINY = 3L;
+	private static final long MASK_63 = Long.MAX_VALUE;
+	private static final long [] POW10 = new long[18];
+	// floor(10^(-k) 2^(-r)) + 1, in [2^125, 2^126), split into two 63-bit halves
+	private static final long [] G = new long[2 * (K_MAX - K_MIN + 1)];
+	static
+	{
+		POW10[0] = 1L;
+		for (int i = 1; i < POW10.length; i++)
+			POW10[i] = 10L * POW10[i - 1];
+		BigInteger mask = BigInteger.valueOf(MASK_63);
+		for (int k = K_MIN; k <= K_MAX; k++)
+		{
+			BigInteger num = BigInteger.ONE;
+			BigInteger den = BigInteger.ONE;
+			if (k <= 0)
+				num = BigInteger.TEN.pow(-k);
+			else
+				den = BigInteger.TEN.pow(k);
+			int r = flog2pow10(-k) - 125;
+			if (r < 0)
+				num = num.shiftLeft(-r);
+			else
+				den = den.shiftLeft(r);
+			BigInteger g = num.divide(den).add(BigInteger.ONE);
+			G[2 * (k - K_MIN)] = g.shiftRight(63).longValue();
+			G[2 * (k - K_MIN) + 1] = g.and(mask).longValue();
+		}
+	}
+
+	private byte [] bytes;
+	private int size;
+	// Result of toDecimal: value is 0.digits 10^exponent, with 17 digits
+	private final byte [] digits = new byte[17];
+	private int nrDigits;
+	private int exponent;
+
+	OutputBuffer(int capacity)
+	{
+		bytes = new byte[capacity];
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	void clear()
+	{
+		size = 0;
+	}
+
+	void writeTo(WritableByteChannel out) throws IOException
+	{
+		ByteBuffer bb = ByteBuffer.wrap(bytes, 0, size);
+		while (bb.hasRemaining())
+			out.write(bb);
+	}
+
+	private void ensureCapacity(int n)
+	{
+		if (size + n > bytes.length)
+		{
+			byte [] newBytes = new byte[Math.max(2 * bytes.length, size + n)];
+			System.arraycopy(bytes, 0, newBytes, 0, size);
+			bytes = newBytes;
+		}
+	}
+
+	void print(String s)
+	{
+		int n = s.length();
+		ensureCapacity(n);
+		for (int i = 0; i < n; i++)
+		{
+			char c = s.charAt(i);
+			if (c >= 0x80)
+			{
+				// Not ASCII, use default encoding
+				byte [] b = s.substring(i).getBytes();
+				ensureCapacity(b.length);
+				System.arraycopy(b, 0, bytes, size, b.length);
+				size += b.length;
+				return;
+			}
+			bytes[size++] = (byte) c;
+		}
+	}
+
+	void println()
+	{
+		ensureCapacity(CR.length);
+		for (byte b : CR)
+			bytes[size++] = b;
+	}
+
+	void println(String s)
+	{
+		print(s);
+		println();
+	}
+
+	private void spaces(int n)
+	{
+		ensureCapacity(n);
+		for (int i = 0; i < n; i++)
+			bytes[size++] = ' ';
+	}
+
+	private static int length(long v)
+	{
+		int ret = 1;
+		while (ret < POW10.length && v >= POW10[ret])
+			ret++;
+		return ret;
+	}
+
+	void print(long v)
+	{
+		if (v == Long.MIN_VALUE)
+		{
+			print(Long.toString(v));
+			return;
+		}
+		ensureCapacity(20);
+		if (v < 0)
+		{
+			bytes[size++] = '-';
+			v = -v;
+		}
+		int n = v >= 1000000000000000000L ? 19 : length(v);
+		for (int i = size + n - 1; i >= size; i--)
+		{
+			bytes[i] = (byte) ('0' + v % 10L);
+			v /= 10L;
+		}
+		size += n;
+	}
+
+	/**
+	 * Prints an integer right justified in 10 characters.
+	 */
+	void printI10(long v)
+	{
+		int n = v < 0 ? 1 : 0;
+		n += length(Math.abs(v));
+		if (n < 10)
+			spaces(10 - n);
+		print(v);
+	}
+
+	/**
+	 * Prints a double as {@link Double#toString(double)}.
+	 */
+	void print(double v)
+	{
+		if (Double.isNaN(v) || Double.isInfinite(v))
+		{
+			print(Double.toString(v));
+			return;
+		}
+		toDecimal(v);
+		ensureCapacity(26);
+		if (sign(v))
+			bytes[size++] = '-';
+		if (exponent > 0 && exponent <= 7)
+		{
+			// Plain notation
+			for (int i = 0; i < exponent; i++)
+				bytes[size++] = i < nrDigits ? digits[i] : (byte) '0';
+			bytes[size++] = '.';
+			if (nrDigits <= exponent)
+				bytes[size++] = '0';
+			for (int i = exponent; i < nrDigits; i++)
+				bytes[size++] = digits[i];
+		}
+		else if (exponent > -3 && exponent <= 0)
+		{
+			bytes[size++] = '0';
+			bytes[size++] = '.';
+			for (int i = exponent; i < 0; i++)
+				bytes[size++] = '0';
+			for (int i = 0; i < nrDigits; i++)
+				bytes[size++] = digits[i];
+		}
+		else
+		{
+			// Computerized scientific notation
+			bytes[size++] = digits[0];
+			bytes[size++] = '.';
+			if (nrDigits == 1)
+				bytes[size++] = '0';
+			for (int i = 1; i < nrDigits; i++)
+				bytes[size++] = digits[i];
+			bytes[size++] = 'E';
+			print((long) (exponent - 1));
+		}
+	}
+
+	/**
+	 * Prints a double as {@link MeshExporter.FormatD25_16}, with 17
+	 * significant digits and a Fortran exponent, right justified in 25
+	 * characters.
+	 */
+	void printD25_16(double v)
+	{
+		if (Double.isNaN(v) || Double.isInfinite(v))
+		{
+			// NumberFormat instances are not thread safe
+			print(new MeshExporter.FormatD25_16().format(v));
+			return;
+		}
+		toDecimal(v);
+		int e = exponent - 1;
+		int n = (sign(v) ? 23 : 22) + (e <= -100 ? 1 : 0);
+		if (n < 25)
+			spaces(25 - n);
+		ensureCapacity(n);
+		if (sign(v))
+			bytes[size++] = '-';
+		bytes[size++] = digits[0];
+		bytes[size++] = '.';
+		for (int i = 1; i < 17; i++)
+			bytes[size++] = i < nrDigits ? digits[i] : (byte) '0';
+		if (e <= -100 || e >= 100)
+			bytes[size++] = 'E';
+		else
+		{
+			bytes[size++] = 'D';
+			if (e >= 0)
+				bytes[size++] = '+';
+			else
+				bytes[size++] = '-';
+			e = Math.abs(e);
+			if (e < 10)
+				bytes[size++] = '0';
+		}
+		print((long) e);
+	}
+
+	void writeInt(int v)
+	{
+		ensureCapacity(4);
+		bytes[size++] = (byte) (v >>> 24);
+		bytes[size++] = (byte) (v >>> 16);
+		bytes[size++] = (byte) (v >>> 8);
+		bytes[size++] = (byte) v;
+	}
+
+	void writeDouble(double v)
+	{
+		long l = Double.doubleToLongBits(v);
+		writeInt((int) (l >>> 32));
+		writeInt((int) l);
+	}
+
+	private static boolean sign(double v)
+	{
+		return Double.doubleToRawLongBits(v) < 0L;
+	}
+
+	private static int flog10pow2(int e)
+	{
+		return (int) (e * 661971961083L >> 41);
+	}
+
+	private static int flog10threeQuartersPow2(int e)
+	{
+		return (int) (e * 661971961083L - 274743187321L >> 41);
+	}
+
+	private static int flog2pow10(int e)
+	{
+		return (int) (e * 913124641741L >> 38);
+	}
+
+	/**
+	 * Computes the shortest decimal of a finite double, and stores it into
+	 * digits, nrDigits and exponent.
+	 */
+	private void toDecimal(double v)
+	{
+		long bits = Double.doubleToRawLongBits(v);
+		long t = bits & (C_MIN - 1L);
+		int bq = (int) (bits >>> 52) & 0x7FF;
+		if (bq != 0)
+		{
+			int mq = -Q_MIN + 1 - bq;
+			long c = C_MIN | t;
+			// Integers
+			if (mq > 0 && mq < 53)
+			{
+				long f = c >> mq;
+				if (f << mq == c)
+				{
+					setDigits(f, 0);
+					return;
+				}
+			}
+			toDecimal(-mq, c, 0);
+		}
+		else if (t == 0L)
+		{
+			digits[0] = '0';
+			nrDigits = 1;
+			exponent = 1;
+		}
+		else if (t < C_TINY)
+			toDecimal(Q_MIN, 10L * t, -1);
+		else
+			toDecimal(Q_MIN, t, 0);
+	}
+
+	private void toDecimal(int q, long c, int dk)
+	{
+		int out = (int) c & 1;
+		long cb = c << 2;
+		long cbr = cb + 2;
+		long cbl;
+		int k;
+		if (c != C_MIN || q == Q_MIN)
+		{
+			cbl = cb - 2;
+			k = flog10pow2(q);
+		}
+		else
+		{
+			cbl = cb - 1;
+			k = flog10threeQuartersPow2(q);
+		}
+		int h = q + flog2pow10(-k) + 2;
+		long g1 = G[2 * (k - K_MIN)];
+		long g0 = G[2 * (k - K_MIN) + 1];
+		long vb = rop(g1, g0, cb << h);
+		long vbl = rop(g1, g0, cbl << h);
+		long vbr = rop(g1, g0, cbr << h);
+		long s = vb >> 2;
+		if (s >= 100)
+		{
+			// s / 10 * 10
+			long sp10 = 10L * DecimalParser.multiplyHigh(s, 115292150460684698L << 4);
+			long tp10 = sp10 + 10L;
+			boolean upin = vbl + out <= sp10 << 2;
+			boolean wpin = (tp10 << 2) + out <= vbr;
+			if (upin != wpin)
+			{
+				setDigits(upin ? sp10 : tp10, k);
+				return;
+			}
+		}
+		long t = s + 1;
+		boolean uin = vbl + out <= s << 2;
+		boolean win = (t << 2) + out <= vbr;
+		if (uin != win)
+		{
+			setDigits(uin ? s : t, k + dk);
+			return;
+		}
+		long cmp = vb - (s + t << 1);
+		setDigits(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk);
+	}
+
+	// Rounds to odd the product of g and cp, divided by 2^127
+	private static long rop(long g1, long g0, long cp)
+	{
+		long x1 = DecimalParser.multiplyHigh(g0, cp);
+		long y0 = g1 * cp;
+		long y1 = DecimalParser.multiplyHigh(g1, cp);
+		long z = (y0 >>> 1) + x1;
+		long vbp = y1 + (z >>> 63);
+		return vbp | (z & MASK_63) + MASK_63 >>> 63;
+	}
+
+	// Stores f 10^e, without trailing zeros
+	private void setDigits(long f, int e)
+	{
+		int len = length(f);
+		exponent = e + len;
+		while (f % 10L == 0L)
+		{
+			f /= 10L;
+			len--;
+		}
+		nrDigits = len;
+		for (int i = len - 1; i >= 0; i--)
+		{
+			digits[i] = (byte) ('0' + f % 10L);
+			f /= 10L;
+		}
+	}
+}
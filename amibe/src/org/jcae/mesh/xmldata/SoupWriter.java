@@ -0,0 +1,106 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+package org.jcae.mesh.xmldata;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append triangles to a triangle soup.  Each record contains the
+ * coordinates of the three vertices, the group number and a padding
+ * integer so that records are aligned on 64 bits, see
+ * {@link org.jcae.mesh.oemm.RawStorage}.  Records are accumulated into
+ * a fixed size buffer which is flushed when full, so memory usage does
+ * not depend on the number of triangles.
+ */
+final class SoupWriter
+{
+	/** Size of a soup record, in bytes. */
+	static final int RECORD_SIZE = 80;
+	private static final int BUFFER_SIZE = RECORD_SIZE << 13;
+
+	private final FileChannel channel;
+	private final ByteBuffer bb = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN);
+	private long nrTriangles;
+
+	/**
+	 * Creates a writer.
+	 *
+	 * @param file  soup file
+	 * @param append  if <code>true</code>, triangles are appended to this file, otherwise it is overwritten
+	 */
+	SoupWriter(File file, boolean append) throws IOException
+	{
+		channel = new FileOutputStream(file, append).getChannel();
+	}
+
+	/**
+	 * Appends a triangle.
+	 *
+	 * @param coord  array containing vertex coordinates
+	 * @param i0  offset in <code>coord</code> of first vertex
+	 * @param i1  offset in <code>coord</code> of second vertex
+	 * @param i2  offset in <code>coord</code> of third vertex
+	 * @param group  group number
+	 */
+	void add(double [] coord, int i0, int i1, int i2, int group) throws IOException
+	{
+		if (!bb.hasRemaining())
+			flush();
+		bb.putDouble(coord[i0]).putDouble(coord[i0+1]).putDouble(coord[i0+2]);
+		bb.putDouble(coord[i1]).putDouble(coord[i1+1]).putDouble(coord[i1+2]);
+		bb.putDouble(coord[i2]).putDouble(coord[i2+1]).putDouble(coord[i2+2]);
+		bb.putInt(group).putInt(0);
+		nrTriangles++;
+	}
+
+	/**
+	 * Returns the number of triangles written by this instance.
+	 */
+	long getNumberOfTriangles()
+	{
+		return nrTriangles;
+	}
+
+	private void flush() throws IOException
+	{
+		bb.flip();
+		while (bb.hasRemaining())
+			channel.write(bb);
+		bb.clear();
+	}
+
+	void close() throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+}
@@ -29,6 +29,8 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -197,6 +199,49 @@ public class UNV2Amibe
 		br.close();
 	}
 
+	/**
+	 * Converts a UNV file with several threads, see {@link UNVParser}.
+	 * Node and element labels do not need to be contiguous, but
+	 * {@link #setStripedUnv} is ignored.
+	 *
+	 * @param input  UNV file
+	 * @param outputDir  Amibe directory
+	 * @param nrThreads  number of threads
+	 */
+	public final void importMesh(File input, String outputDir, int nrThreads) throws IOException
+	{
+		final AmibeWriter.Dim3 out = new AmibeWriter.Dim3(outputDir);
+		out.setFixNoGroup(true);
+		UNVParser parser = new UNVParser(input);
+		parser.parse(new UNVParser.Target()
+		{
+			public DoubleBuffer mapNodes(int n) throws IOException
+			{
+				return out.mapNodes(n);
+			}
+
+			public IntBuffer mapTriangles(int n) throws IOException
+			{
+				return out.mapTriangles(n);
+			}
+
+			public IntBuffer mapBeams(int n) throws IOException
+			{
+				return out.mapBeams(n);
+			}
+		}, nrThreads);
+		for (UNVParser.Group g : parser.getGroups())
+		{
+			out.nextGroup(g.getName());
+			int [] triangles = g.getTriangles();
+			if (triangles.length > 0)
+				out.mapTriaToGroup(triangles.length).put(triangles);
+			for (int b : g.getBeams())
+				out.addBeamToGroup(b);
+		}
+		out.finish();
+	}
+
 	public final void importMesh(BufferedReader in, String outputDir) throws IOException
 	{
 		AmibeWriter.Dim3 out = new AmibeWriter.Dim3(outputDir);
@@ -496,8 +541,14 @@ public class UNV2Amibe
 				amibeDir = args[1];
 			if (args.length > 2)
 				stripedFile = args[2];
-			u.setStripedUnv(stripedFile);
-			u.importMesh(unvFile, amibeDir);
+			int nrThreads = Integer.getInteger("org.jcae.mesh.UNV2Amibe.threads", 0).intValue();
+			if (nrThreads > 0)
+				u.importMesh(new File(unvFile), amibeDir, nrThreads);
+			else
+			{
+				u.setStripedUnv(stripedFile);
+				u.importMesh(unvFile, amibeDir);
+			}
 		} catch (Exception ex) {
 			LOGGER.log(Level.SEVERE, null, ex);
 		}
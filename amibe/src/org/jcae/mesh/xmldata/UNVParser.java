@@ -0,0 +1,857 @@
+/* jCAE stand for Java Computer Aided Engineering. Features are : Small CAD
+   modeler, Finite element mesher, Plugin architecture.
+
+    Copyright (C) 2011, by EADS France
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA */
+
+
+
+package org.jcae.mesh.xmldata;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntIntHashMap;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Parser of large UNV files.  File is memory mapped.  A first sequential
+ * pass locates datasets and splits nodes and elements datasets into
+ * chunks of records, which are then parsed by concurrent tasks.  Numbers
+ * are parsed from bytes without creating strings.
+ *
+ * Datasets 164 (units), 781 and 2411 (nodes), 2412 (elements), 2430,
+ * 2435, 2467 and 2477 (groups) are read, other datasets are skipped.
+ * Linear and parabolic triangles are read, linear quadrangles are split
+ * into two triangles, rods and linear beams are read, other elements are
+ * skipped.  Node labels do not have to be contiguous, triangles and beams
+ * refer to node indices in file order.
+ */
+public class UNVParser
+{
+	private static final Logger LOGGER = Logger.getLogger(UNVParser.class.getName());
+	// Size of memory mapped windows during the first pass
+	private static final int WINDOW_SIZE = 1 << 26;
+	// Number of records parsed by a task
+	private static final int CHUNK_SIZE = 65536;
+
+	private static final int OTHER = 0;
+	private static final int TRIANGLE = 1;
+	private static final int PARABOLIC_TRIANGLE = 2;
+	private static final int QUADRANGLE = 3;
+	private static final int BEAM = 4;
+
+	/**
+	 * Receives nodes and elements.  Methods are called sequentially in file
+	 * order, and returned buffers are then filled by concurrent tasks with
+	 * absolute put methods.
+	 */
+	public interface Target
+	{
+		/**
+		 * Returns a buffer for <code>3*n</code> coordinates.
+		 */
+		DoubleBuffer mapNodes(int n) throws IOException;
+
+		/**
+		 * Returns a buffer for <code>3*n</code> node indices.
+		 */
+		IntBuffer mapTriangles(int n) throws IOException;
+
+		/**
+		 * Returns a buffer for <code>2*n</code> node indices.
+		 */
+		IntBuffer mapBeams(int n) throws IOException;
+	}
+
+	/**
+	 * Group of elements.
+	 */
+	public static final class Group
+	{
+		private final String name;
+		private TIntArrayList labels = new TIntArrayList();
+		private int [] triangles;
+		private int [] beams;
+
+		private Group(String name)
+		{
+			this.name = name;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * Returns indices of triangles in this group.
+		 */
+		public int [] getTriangles()
+		{
+			return triangles;
+		}
+
+		/**
+		 * Returns indices of beams in this group.
+		 */
+		public int [] getBeams()
+		{
+			return beams;
+		}
+	}
+
+	private static final class Chunk
+	{
+		long start, end;
+		int nrRecords;
+		int firstRecord;
+		int firstTriangle, nrTriangles;
+		int firstBeam, nrBeams;
+	}
+
+	/**
+	 * Target which stores nodes and elements into arrays.
+	 */
+	private final class ArrayTarget implements Target
+	{
+		private int nodeOffset, triangleOffset, beamOffset;
+
+		public DoubleBuffer mapNodes(int n)
+		{
+			if (nodes == null)
+				nodes = new double[3 * nrNodes];
+			DoubleBuffer ret = DoubleBuffer.wrap(nodes, nodeOffset, 3 * n).slice();
+			nodeOffset += 3 * n;
+			return ret;
+		}
+
+		public IntBuffer mapTriangles(int n)
+		{
+			if (triangles == null)
+				triangles = new int[3 * nrTriangles];
+			IntBuffer ret = IntBuffer.wrap(triangles, triangleOffset, 3 * n).slice();
+			triangleOffset += 3 * n;
+			return ret;
+		}
+
+		public IntBuffer mapBeams(int n)
+		{
+			if (beams == null)
+				beams = new int[2 * nrBeams];
+			IntBuffer ret = IntBuffer.wrap(beams, beamOffset, 2 * n).slice();
+			beamOffset += 2 * n;
+			return ret;
+		}
+	}
+
+	private final File file;
+	private double unit = 1.0;
+	private final List<Chunk> nodeChunks = new ArrayList<Chunk>();
+	private final List<Chunk> elementChunks = new ArrayList<Chunk>();
+	private final List<Group> groups = new ArrayList<Group>();
+	private int nrNodes, nrTriangles, nrBeams, nrQuadrangles, nrSkipped;
+	private int [] nodeLabels, triangleLabels, beamLabels;
+	// Node label to index + 1, null if labels are 1, 2, ... in file order
+	private TIntIntHashMap nodeIndex;
+	private double [] nodes;
+	private int [] triangles, beams;
+
+	public UNVParser(File file)
+	{
+		this.file = file;
+	}
+
+	/**
+	 * Parses this file and stores nodes and elements into arrays.
+	 *
+	 * @param nrThreads  number of threads
+	 * @see #getNodes
+	 * @see #getTriangles
+	 * @see #getBeams
+	 */
+	public void parse(int nrThreads) throws IOException
+	{
+		parse(new ArrayTarget(), nrThreads);
+		if (nodes == null)
+			nodes = new double[0];
+		if (triangles == null)
+			triangles = new int[0];
+		if (beams == null)
+			beams = new int[0];
+	}
+
+	/**
+	 * Parses this file and sends nodes and elements to a target.
+	 *
+	 * @param target  target
+	 * @param nrThreads  number of threads
+	 */
+	public void parse(Target target, int nrThreads) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		ExecutorService pool = Executors.newFixedThreadPool(nrThreads);
+		try
+		{
+			final FileChannel channel = raf.getChannel();
+			scan(channel);
+			LOGGER.fine("Found "+nrNodes+" nodes, "+nrTriangles+" triangles and "+nrBeams+" beams");
+			if (nrQuadrangles > 0)
+				LOGGER.warning("Quadrangles have been detected and converted into triangles.");
+			if (nrSkipped > 0)
+				LOGGER.warning("Skipped "+nrSkipped+" elements of unsupported types");
+
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			nodeLabels = new int[nrNodes];
+			for (final Chunk c : nodeChunks)
+			{
+				final DoubleBuffer buffer = target.mapNodes(c.nrRecords);
+				tasks.add(new Callable<Object>()
+				{
+					public Object call() throws IOException
+					{
+						parseNodes(channel, c, buffer);
+						return null;
+					}
+				});
+			}
+			MeshReader.invokeAll(pool, tasks);
+			buildNodeIndex();
+
+			tasks.clear();
+			triangleLabels = new int[nrTriangles];
+			beamLabels = new int[nrBeams];
+			for (final Chunk c : elementChunks)
+			{
+				final IntBuffer tBuffer = c.nrTriangles > 0 ? target.mapTriangles(c.nrTriangles) : null;
+				final IntBuffer bBuffer = c.nrBeams > 0 ? target.mapBeams(c.nrBeams) : null;
+				tasks.add(new Callable<Object>()
+				{
+					public Object call() throws IOException
+					{
+						parseElements(channel, c, tBuffer, bBuffer);
+						return null;
+					}
+				});
+			}
+			MeshReader.invokeAll(pool, tasks);
+			resolveGroups();
+		}
+		finally
+		{
+			pool.shutdown();
+			raf.close();
+		}
+	}
+
+	public int getNumberOfNodes()
+	{
+		return nrNodes;
+	}
+
+	public int getNumberOfTriangles()
+	{
+		return nrTriangles;
+	}
+
+	public int getNumberOfBeams()
+	{
+		return nrBeams;
+	}
+
+	/**
+	 * Returns node labels, in file order.
+	 */
+	public int [] getNodeLabels()
+	{
+		return nodeLabels;
+	}
+
+	/**
+	 * Returns node coordinates, if file has been parsed by {@link #parse(int)}.
+	 */
+	public double [] getNodes()
+	{
+		return nodes;
+	}
+
+	/**
+	 * Returns node indices of triangles, if file has been parsed by
+	 * {@link #parse(int)}.
+	 */
+	public int [] getTriangles()
+	{
+		return triangles;
+	}
+
+	/**
+	 * Returns node indices of beams, if file has been parsed by
+	 * {@link #parse(int)}.
+	 */
+	public int [] getBeams()
+	{
+		return beams;
+	}
+
+	public List<Group> getGroups()
+	{
+		return Collections.unmodifiableList(groups);
+	}
+
+	private static int kind(int type)
+	{
+		switch (type)
+		{
+			case 41:
+			case 51:
+			case 61:
+			case 74:
+			case 91:
+				return TRIANGLE;
+			case 92:
+				return PARABOLIC_TRIANGLE;
+			case 44:
+			case 54:
+			case 64:
+			case 71:
+			case 94:
+				return QUADRANGLE;
+			case 11:
+			case 21:
+				return BEAM;
+			default:
+				return OTHER;
+		}
+	}
+
+	// Beam elements have an additional record with orientation
+	private static boolean hasBeamRecord(int type)
+	{
+		return type == 11 || (type >= 21 && type <= 24);
+	}
+
+	private void scan(FileChannel channel) throws IOException
+	{
+		Lines lines = new Lines(channel, 0L, channel.size());
+		while (lines.next())
+		{
+			if (!lines.isSeparator() || !lines.next())
+				continue;
+			int dataset;
+			try
+			{
+				dataset = lines.firstInt();
+			}
+			catch (NumberFormatException ex)
+			{
+				dataset = -1;
+			}
+			switch (dataset)
+			{
+				case 164:
+					scanUnit(lines);
+					break;
+				case 781:
+				case 2411:
+					scanNodes(lines);
+					break;
+				case 2412:
+					scanElements(lines);
+					break;
+				case 2430:
+					scanGroups(lines, 2);
+					break;
+				case 2435:
+				case 2467:
+				case 2477:
+					scanGroups(lines, 4);
+					break;
+				default:
+					skip(lines);
+			}
+		}
+	}
+
+	private static void skip(Lines lines) throws IOException
+	{
+		while (lines.next() && !lines.isSeparator())
+		{
+			// Skip line
+		}
+	}
+
+	private void scanUnit(Lines lines) throws IOException
+	{
+		lines.nextLine();
+		lines.nextLine();
+		unit = lines.nextDouble();
+		skip(lines);
+	}
+
+	private void scanNodes(Lines lines) throws IOException
+	{
+		Chunk chunk = null;
+		while (lines.next() && !lines.isSeparator())
+		{
+			if (chunk == null || chunk.nrRecords == CHUNK_SIZE)
+			{
+				chunk = new Chunk();
+				chunk.start = lines.offset();
+				chunk.firstRecord = nrNodes;
+				nodeChunks.add(chunk);
+			}
+			// Coordinates
+			lines.nextLine();
+			chunk.nrRecords++;
+			chunk.end = lines.nextOffset();
+			nrNodes++;
+		}
+	}
+
+	private void scanElements(Lines lines) throws IOException
+	{
+		Chunk chunk = null;
+		while (lines.next() && !lines.isSeparator())
+		{
+			if (chunk == null || chunk.nrRecords == CHUNK_SIZE)
+			{
+				chunk = new Chunk();
+				chunk.start = lines.offset();
+				chunk.firstTriangle = nrTriangles;
+				chunk.firstBeam = nrBeams;
+				elementChunks.add(chunk);
+			}
+			lines.nextInt();
+			int type = lines.nextInt();
+			lines.nextInt();
+			lines.nextInt();
+			lines.nextInt();
+			int nrLines = (lines.nextInt() + 7) / 8;
+			if (hasBeamRecord(type))
+				nrLines++;
+			for (int i = 0; i < nrLines; i++)
+				lines.nextLine();
+			switch (kind(type))
+			{
+				case TRIANGLE:
+				case PARABOLIC_TRIANGLE:
+					chunk.nrTriangles++;
+					nrTriangles++;
+					break;
+				case QUADRANGLE:
+					chunk.nrTriangles += 2;
+					nrTriangles += 2;
+					nrQuadrangles++;
+					break;
+				case BEAM:
+					chunk.nrBeams++;
+					nrBeams++;
+					break;
+				default:
+					nrSkipped++;
+			}
+			chunk.nrRecords++;
+			chunk.end = lines.nextOffset();
+		}
+	}
+
+	private void scanGroups(Lines lines, int fieldsPerEntity) throws IOException
+	{
+		lines.nextLine();
+		while (!lines.isSeparator())
+		{
+			// Last field is the number of entities
+			int nrEntities = lines.lastInt();
+			lines.nextLine();
+			Group g = new Group(lines.text());
+			groups.add(g);
+			while (nrEntities > 0)
+			{
+				lines.nextLine();
+				while (nrEntities > 0 && lines.nextToken())
+				{
+					int entityType = lines.intToken();
+					int tag = lines.nextInt();
+					for (int i = 2; i < fieldsPerEntity; i++)
+						lines.nextInt();
+					//  Only elements are read
+					if (entityType == 8 && tag != 0)
+						g.labels.add(tag);
+					nrEntities--;
+				}
+			}
+			lines.nextLine();
+		}
+	}
+
+	private void parseNodes(FileChannel channel, Chunk c, DoubleBuffer buffer) throws IOException
+	{
+		Lines lines = new Lines(channel, c.start, c.end);
+		int k = 0;
+		for (int i = 0; i < c.nrRecords; i++)
+		{
+			lines.nextLine();
+			nodeLabels[c.firstRecord + i] = lines.nextInt();
+			lines.nextLine();
+			for (int j = 0; j < 3; j++)
+				buffer.put(k++, lines.nextToken() ? lines.doubleToken() / unit : 0.0);
+		}
+	}
+
+	private void buildNodeIndex()
+	{
+		boolean contiguous = true;
+		for (int i = 0; i < nrNodes && contiguous; i++)
+			contiguous = nodeLabels[i] == i + 1;
+		if (contiguous)
+			return;
+		nodeIndex = new TIntIntHashMap(nrNodes);
+		for (int i = 0; i < nrNodes; i++)
+			nodeIndex.put(nodeLabels[i], i + 1);
+	}
+
+	private int nodeIndex(int label) throws IOException
+	{
+		int ret;
+		if (nodeIndex == null)
+			ret = label;
+		else
+			ret = nodeIndex.get(label);
+		if (ret < 1 || ret > nrNodes)
+			throw new IOException("Unknown node: "+label);
+		return ret - 1;
+	}
+
+	private void parseElements(FileChannel channel, Chunk c, IntBuffer tBuffer, IntBuffer bBuffer)
+		throws IOException
+	{
+		Lines lines = new Lines(channel, c.start, c.end);
+		int [] ids = new int[8];
+		int t = 0;
+		int b = 0;
+		for (int i = 0; i < c.nrRecords; i++)
+		{
+			lines.nextLine();
+			int label = lines.nextInt();
+			int type = lines.nextInt();
+			lines.nextInt();
+			lines.nextInt();
+			lines.nextInt();
+			int nrIds = lines.nextInt();
+			if (hasBeamRecord(type))
+				lines.nextLine();
+			int kind = kind(type);
+			if (kind == OTHER)
+			{
+				for (int j = (nrIds + 7) / 8; j > 0; j--)
+					lines.nextLine();
+				continue;
+			}
+			if (ids.length < nrIds)
+				ids = new int[nrIds];
+			for (int n = 0; n < nrIds; )
+			{
+				lines.nextLine();
+				while (n < nrIds && lines.nextToken())
+					ids[n++] = nodeIndex(lines.intToken());
+			}
+			switch (kind)
+			{
+				case TRIANGLE:
+					tBuffer.put(3*t, ids[0]);
+					tBuffer.put(3*t+1, ids[1]);
+					tBuffer.put(3*t+2, ids[2]);
+					triangleLabels[c.firstTriangle + t] = label;
+					t++;
+					break;
+				case PARABOLIC_TRIANGLE:
+					tBuffer.put(3*t, ids[0]);
+					tBuffer.put(3*t+1, ids[2]);
+					tBuffer.put(3*t+2, ids[4]);
+					triangleLabels[c.firstTriangle + t] = label;
+					t++;
+					break;
+				case QUADRANGLE:
+					tBuffer.put(3*t, ids[0]);
+					tBuffer.put(3*t+1, ids[1]);
+					tBuffer.put(3*t+2, ids[2]);
+					tBuffer.put(3*t+3, ids[0]);
+					tBuffer.put(3*t+4, ids[2]);
+					tBuffer.put(3*t+5, ids[3]);
+					triangleLabels[c.firstTriangle + t] = label;
+					triangleLabels[c.firstTriangle + t + 1] = label;
+					t += 2;
+					break;
+				default:
+					bBuffer.put(2*b, ids[0]);
+					bBuffer.put(2*b+1, ids[1]);
+					beamLabels[c.firstBeam + b] = label;
+					b++;
+			}
+		}
+	}
+
+	/**
+	 * Converts element labels of groups into triangle and beam indices.
+	 */
+	private void resolveGroups()
+	{
+		if (groups.isEmpty())
+			return;
+		// Element label to triangle index + 1, or -(beam index + 1)
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int l : triangleLabels)
+		{
+			min = Math.min(min, l);
+			max = Math.max(max, l);
+		}
+		for (int l : beamLabels)
+		{
+			min = Math.min(min, l);
+			max = Math.max(max, l);
+		}
+		int [] dense = null;
+		TIntIntHashMap sparse = null;
+		long range = (long) max - min + 1L;
+		if (range > 0 && range <= 2L * (nrTriangles + nrBeams) + 1024L)
+			dense = new int[(int) range];
+		else
+			sparse = new TIntIntHashMap(nrTriangles + nrBeams);
+		for (int i = nrTriangles - 1; i >= 0; i--)
+		{
+			if (dense != null)
+				dense[triangleLabels[i] - min] = i + 1;
+			else
+				sparse.put(triangleLabels[i], i + 1);
+		}
+		for (int i = 0; i < nrBeams; i++)
+		{
+			if (dense != null)
+				dense[beamLabels[i] - min] = -(i + 1);
+			else
+				sparse.put(beamLabels[i], -(i + 1));
+		}
+		for (Group g : groups)
+		{
+			TIntArrayList t = new TIntArrayList(g.labels.size());
+			TIntArrayList b = new TIntArrayList();
+			for (int i = 0, n = g.labels.size(); i < n; i++)
+			{
+				int label = g.labels.get(i);
+				int code = 0;
+				if (dense != null)
+				{
+					if (label >= min && label <= max)
+						code = dense[label - min];
+				}
+				else
+					code = sparse.get(label);
+				if (code > 0)
+				{
+					t.add(code - 1);
+					//  Second triangle of a quadrangle
+					if (code < nrTriangles && triangleLabels[code] == label)
+						t.add(code);
+				}
+				else if (code < 0)
+					b.add(-code - 1);
+				else if (LOGGER.isLoggable(Level.WARNING))
+					LOGGER.warning("In group "+g.name+", element number "+label+" does not exist");
+			}
+			g.triangles = t.toNativeArray();
+			g.beams = b.toNativeArray();
+			g.labels = null;
+		}
+	}
+
+	/**
+	 * Sequential reader of lines and fields of a file region.  Region is
+	 * mapped by windows, which are copied into an array because parsing
+	 * bytes of a mapped buffer is slower.
+	 */
+	private static final class Lines
+	{
+		private final FileChannel channel;
+		private final long end;
+		private byte [] bytes;
+		private int limit;
+		// File offset of bytes
+		private long base;
+		// Current line, current token and next line, relative to bytes
+		private int lineStart, lineEnd, token, tokenEnd, next;
+
+		Lines(FileChannel channel, long start, long end) throws IOException
+		{
+			this.channel = channel;
+			this.end = end;
+			bytes = new byte[(int) Math.min(WINDOW_SIZE, end - start)];
+			map(start);
+		}
+
+		private void map(long position) throws IOException
+		{
+			base = position;
+			limit = (int) Math.min(bytes.length, end - position);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, limit);
+			buffer.get(bytes, 0, limit);
+			IntFileReaderByMmap.clean(buffer);
+			lineStart = lineEnd = token = tokenEnd = next = 0;
+		}
+
+		/**
+		 * Moves to next line.
+		 *
+		 * @return <code>false</code> if end of region is reached
+		 */
+		boolean next() throws IOException
+		{
+			if (next >= limit)
+			{
+				if (base + limit >= end)
+					return false;
+				map(base + next);
+			}
+			int i = next;
+			while (i < limit && bytes[i] != '\n')
+				i++;
+			if (i == limit && base + limit < end)
+			{
+				// Line crosses window boundary
+				if (next == 0)
+					throw new IOException("Line too long at offset "+base);
+				map(base + next);
+				return next();
+			}
+			lineStart = next;
+			lineEnd = i;
+			if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r')
+				lineEnd--;
+			next = i < limit ? i + 1 : i;
+			token = tokenEnd = lineStart;
+			return true;
+		}
+
+		void nextLine() throws IOException
+		{
+			if (!next())
+				throw new IOException("Unexpected end of file");
+		}
+
+		long offset()
+		{
+			return base + lineStart;
+		}
+
+		long nextOffset()
+		{
+			return base + next;
+		}
+
+		private static boolean isSpace(byte b)
+		{
+			return b == ' ' || b == '\t';
+		}
+
+		boolean isSeparator()
+		{
+			int i = lineStart;
+			while (i < lineEnd && isSpace(bytes[i]))
+				i++;
+			int j = lineEnd;
+			while (j > i && isSpace(bytes[j - 1]))
+				j--;
+			return j - i == 2 && bytes[i] == '-' && bytes[i + 1] == '1';
+		}
+
+		boolean nextToken()
+		{
+			int i = tokenEnd;
+			while (i < lineEnd && isSpace(bytes[i]))
+				i++;
+			token = i;
+			while (i < lineEnd && !isSpace(bytes[i]))
+				i++;
+			tokenEnd = i;
+			return token < tokenEnd;
+		}
+
+		int intToken()
+		{
+			return DecimalParser.parseInt(bytes, token, tokenEnd);
+		}
+
+		double doubleToken()
+		{
+			return DecimalParser.parseDouble(bytes, token, tokenEnd);
+		}
+
+		int nextInt() throws IOException
+		{
+			if (!nextToken())
+				throw new IOException("Missing field at offset "+offset());
+			return intToken();
+		}
+
+		double nextDouble() throws IOException
+		{
+			if (!nextToken())
+				throw new IOException("Missing field at offset "+offset());
+			return doubleToken();
+		}
+
+		int firstInt() throws IOException
+		{
+			tokenEnd = lineStart;
+			return nextInt();
+		}
+
+		int lastInt() throws IOException
+		{
+			tokenEnd = lineStart;
+			int start = -1;
+			int stop = -1;
+			while (nextToken())
+			{
+				start = token;
+				stop = tokenEnd;
+			}
+			if (start < 0)
+				throw new IOException("Missing field at offset "+offset());
+			return DecimalParser.parseInt(bytes, start, stop);
+		}
+
+		/**
+		 * Returns current line without leading and trailing spaces.
+		 */
+		String text()
+		{
+			return new String(bytes, lineStart, lineEnd - lineStart).trim();
+		}
+	}
+}
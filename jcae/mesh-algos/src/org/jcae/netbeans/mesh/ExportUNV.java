@@ -1,9 +1,6 @@
 package org.jcae.netbeans.mesh;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
 import javax.swing.JFileChooser;
 import org.jcae.mesh.xmldata.Amibe2UNV;
 import org.jcae.mesh.xmldata.MeshExporter;
@@ -37,16 +34,13 @@ public final class ExportUNV extends CookieAction
 				if(!unvFile.endsWith(".unv"))
 					unvFile+=".unv";
 
-				PrintStream stream=new PrintStream(new BufferedOutputStream(
-					new FileOutputStream(unvFile)));				
 				Amibe2UNV amibe2unv=new Amibe2UNV(meshDir);
 
 				if(unitPanel.isMeters())
 					amibe2unv.setUnit(MeshExporter.UNV.Unit.METER);
 				else
 					amibe2unv.setUnit(MeshExporter.UNV.Unit.MM);
-				amibe2unv.write(stream);				
-				stream.close();				
+				amibe2unv.write(unvFile);
 			}
 		}
 		catch(Exception ex)
@@ -43,6 +43,7 @@ import org.jcae.mesh.amibe.ds.Vertex;
 import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
 import org.jcae.mesh.oemm.OEMM;
 import org.jcae.mesh.oemm.MeshReader;
+import org.jcae.mesh.oemm.OctantCache;
 import org.jcae.viewer3d.bg.ViewableBG;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -157,7 +158,27 @@ public class OEMMBehavior extends Behavior
 	
 	private BranchGroup visibleMeshBranchGroup = new BranchGroup();
 	
+	/**
+	 * Memory used by the octant cache of the fine reader, in bytes.
+	 */
+	public static final long DEFAULT_CACHE_SIZE = 64L << 20;
+
 	public OEMMBehavior(View canvas, OEMM oemm, OEMM coarseOEMM)
+	{
+		this(canvas, oemm, coarseOEMM, new OctantCache(oemm, DEFAULT_CACHE_SIZE));
+	}
+
+	/**
+	 * Creates a behavior reading fine leaves through the given cache, which
+	 * can be shared with other readers of <code>oemm</code>.
+	 *
+	 * @param canvas  view
+	 * @param oemm  fine OEMM
+	 * @param coarseOEMM  decimated OEMM
+	 * @param cache  octant cache of <code>oemm</code>, or <code>null</code>
+	 *        to read files directly
+	 */
+	public OEMMBehavior(View canvas, OEMM oemm, OEMM coarseOEMM, OctantCache cache)
 	{
 		
 		visibleMeshBranchGroup.setCapability(BranchGroup.ALLOW_CHILDREN_EXTEND);
@@ -168,6 +189,8 @@ public class OEMMBehavior extends Behavior
 		
 		fineReader = new MeshReader(oemm);
 		fineReader.setLoadNonReadableTriangles(true);
+		// Adjacent octants are read again by each buildMesh() call
+		fineReader.setOctantCache(cache);
 
 		mtb.addTriangleList();
 		coarseReader = new MeshReader(coarseOEMM);
@@ -39,6 +39,7 @@ import org.jcae.mesh.amibe.traits.MeshTraitsBuilder;
 import org.jcae.mesh.amibe.traits.TriangleTraitsBuilder;
 import org.jcae.mesh.oemm.MeshReader;
 import org.jcae.mesh.oemm.OEMM;
+import org.jcae.mesh.oemm.OctantFormat;
 import org.jcae.mesh.amibe.ds.Mesh;
 import org.jcae.mesh.amibe.ds.Triangle;
 import org.jcae.mesh.amibe.ds.Vertex;
@@ -131,6 +132,28 @@ public class MeshVisuReader extends MeshReader
 
 	private void readVerticesForVisu(MeshVisu mesh, OEMM.Node current)
 	{
+		if (cache != null || OctantFormat.isCompressed(oemm, current))
+		{
+			double[] coords;
+			if (cache != null)
+				coords = cache.get(current.leafIndex).coords;
+			else
+			{
+				try
+				{
+					coords = OctantFormat.readVertices(oemm, current);
+				}
+				catch (IOException ex)
+				{
+					LOGGER.severe("I/O error when reading file " + getVerticesFile(oemm, current));
+					throw new RuntimeException(ex);
+				}
+			}
+			mesh.nodes = new float[coords.length];
+			for (int i = 0; i < coords.length; i++)
+				mesh.nodes[i] = (float) coords[i];
+			return;
+		}
 		try
 		{
 			if (LOGGER.isLoggable(Level.FINE))
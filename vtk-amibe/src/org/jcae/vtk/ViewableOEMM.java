@@ -30,6 +30,7 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
 import java.util.ArrayList;
 import org.jcae.mesh.oemm.OEMM;
+import org.jcae.mesh.oemm.OctantCache;
 import vtk.vtkActor;
 import vtk.vtkCellCenterDepthSort;
 import vtk.vtkDataSet;
@@ -59,10 +60,38 @@ public class ViewableOEMM extends Viewable implements MouseMotionListener
 	private final Node octreeNode;
 	volatile boolean rendering = false;
 
+	/**
+	 * Memory used by the octant cache of {@link #ViewableOEMM(OEMM)}, in
+	 * bytes.  At most <code>leafVisibleMax</code> leaves are displayed, so
+	 * a few dozens of leaves are enough to keep them and their neighbours.
+	 */
+	public static final long DEFAULT_CACHE_SIZE = 64L << 20;
+
+	/**
+	 * Creates a viewable with its own octant cache of
+	 * {@link #DEFAULT_CACHE_SIZE} bytes.
+	 *
+	 * @param oemm  OEMM to display
+	 */
 	public ViewableOEMM(OEMM oemm)
+	{
+		this(oemm, new OctantCache(oemm, DEFAULT_CACHE_SIZE));
+	}
+
+	/**
+	 * Creates a viewable reading leaves through the given cache.  Viewables
+	 * of the same OEMM can share a single cache, so that its memory budget
+	 * is not multiplied by the number of views.
+	 *
+	 * @param oemm  OEMM to display
+	 * @param cache  octant cache of <code>oemm</code>, or <code>null</code>
+	 *        to read files directly
+	 */
+	public ViewableOEMM(OEMM oemm, OctantCache cache)
 	{
 		this.oemm = oemm;
 		reader = new MeshVisuReader(oemm);
+		reader.setOctantCache(cache);
 
 		edgesNode = new Node(rootNode);
 		edgesNode.setDebugName("Edges");